@@ -0,0 +1,78 @@
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+// Сравнение приближённого режима Statistics с точным на синтетическом трафике
+// с тяжёлым хвостом: немного очень активных IP и страниц и миллионы редких.
+// Выводятся память и отклонения оценок; границы ошибок проверяют HyperLogLogTest и SpaceSavingTest.
+//   java -Xmx4g -cp out ApproximateBenchmark [записей] [бюджет МБ]
+public class ApproximateBenchmark {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int budgetMb = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long before = usedHeap();
+        Statistics e = fill(new Statistics(), count);
+        long exactHeap = usedHeap() - before;
+
+        before = usedHeap();
+        Statistics a = fill(Statistics.approximate(budgetMb * 1024L * 1024L), count);
+        long approximateHeap = usedHeap() - before;
+
+        System.out.printf("Записей: %d, бюджет приближённого режима: %d МБ%n", count, budgetMb);
+        System.out.printf("Память: точный режим %.1f МБ, приближённый %.1f МБ%n",
+                exactHeap / 1048576.0, approximateHeap / 1048576.0);
+        System.out.printf("Уникальных IP: точно %d, оценка %d (ошибка %.2f%%, стандартная ошибка %.2f%%)%n",
+                e.getUniqueNonBotIps(), a.getUniqueNonBotIps(),
+                100.0 * (a.getUniqueNonBotIps() - e.getUniqueNonBotIps()) / e.getUniqueNonBotIps(),
+                100 * a.getUniqueIpsRelativeError());
+        System.out.printf("Средняя посещаемость пользователем: точно %.4f, оценка %.4f%n",
+                e.getAverageVisitsPerUser(), a.getAverageVisitsPerUser());
+        System.out.printf("Максимум посещений одним IP: точно %d, оценка %d (±%d)%n",
+                e.getMaxVisitsPerUser(), a.getMaxVisitsPerUser(), a.getTopIps(1).get(0).getMaxError());
+        compare("IP", e.getTopIps(10), a.getTopIps(10));
+        compare("страниц", e.getTopPages(10), a.getTopPages(10));
+        compare("рефереров", e.getTopRefererDomains(10), a.getTopRefererDomains(10));
+    }
+
+    // Один и тот же поток записей для обоих режимов (одинаковое зерно генератора)
+    private static Statistics fill(Statistics statistics, int count) {
+        Random random = new Random(11);
+        for (int i = 0; i < count; i++) {
+            statistics.addEntry(new LogEntry(String.format(
+                    "%s - - [25/Sep/2022:06:%02d:%02d +0300] \"GET /page/%d HTTP/1.0\" 200 %d \"https://site%d.example/\" \"Mozilla/5.0 (Windows NT 10.0) Chrome/120.0\"",
+                    ip(skewed(random, 1_000_000)), i / 60 % 60, i % 60, skewed(random, 500_000),
+                    random.nextInt(10_000), skewed(random, 50_000))));
+        }
+        return statistics;
+    }
+
+    private static void compare(String name, List<HeavyHitter> exact, List<HeavyHitter> approximate) {
+        List<String> exactValues = exact.stream().map(HeavyHitter::getValue).collect(Collectors.toList());
+        long matched = approximate.stream().map(HeavyHitter::getValue).filter(exactValues::contains).count();
+        long worstError = 0;
+        for (HeavyHitter hitter : approximate) {
+            int index = exactValues.indexOf(hitter.getValue());
+            if (index >= 0) {
+                worstError = Math.max(worstError, hitter.getCount() - exact.get(index).getCount());
+            }
+        }
+        System.out.printf("Топ-10 %s: совпало %d из 10, наибольшее завышение %d%n", name, matched, worstError);
+    }
+
+    // Степенное распределение: малые номера встречаются намного чаще больших
+    private static int skewed(Random random, int range) {
+        return (int) (Math.pow(random.nextDouble(), 4) * range);
+    }
+
+    private static String ip(int index) {
+        return "10." + (index >>> 16 & 0xFF) + "." + (index >>> 8 & 0xFF) + "." + (index & 0xFF);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.management.ThreadMXBean;
+
+// Замер нагрузки для bench/: прогрев, затем несколько итераций фиксированной длительности.
+// Для каждой нагрузки считаются время на операцию (среднее и разброс по итерациям),
+// байты, выделенные на операцию текущим потоком, скорость выделения памяти и
+// число сборок мусора. Результаты сохраняются в JSON и сравниваются с базовыми.
+final class BenchmarkRunner {
+    // Порог, выше которого замедление считается регрессией, если оно больше разброса
+    private static final double REGRESSION_THRESHOLD = 0.10;
+
+    // Одна итерация нагрузки; возвращает число выполненных операций
+    interface Workload {
+        long run() throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final double nsPerOp;
+        final double nsPerOpError;
+        final double bytesPerOp;
+        final double allocationMbPerSecond;
+        final long gcCount;
+
+        Result(String name, double nsPerOp, double nsPerOpError, double bytesPerOp,
+               double allocationMbPerSecond, long gcCount) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.nsPerOpError = nsPerOpError;
+            this.bytesPerOp = bytesPerOp;
+            this.allocationMbPerSecond = allocationMbPerSecond;
+            this.gcCount = gcCount;
+        }
+    }
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    BenchmarkRunner(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+    }
+
+    Result measure(String name, Workload workload) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(workload);
+        }
+
+        double[] nsPerOp = new double[iterations];
+        long operations = 0;
+        long elapsed = 0;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long gcBefore = gcCount();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            long ops = iteration(workload);
+            long time = System.nanoTime() - start;
+            nsPerOp[i] = (double) time / ops;
+            operations += ops;
+            elapsed += time;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        double mean = 0;
+        for (double value : nsPerOp) mean += value;
+        mean /= iterations;
+        double variance = 0;
+        for (double value : nsPerOp) variance += (value - mean) * (value - mean);
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+        Result result = new Result(name, mean, error, (double) allocated / operations,
+                allocated / 1048576.0 / (elapsed / 1e9), gcCount() - gcBefore);
+        System.out.printf("%-16s %12.1f ± %.1f нс/оп %12.1f Б/оп %10.1f МБ/с выделений, сборок: %d%n",
+                name, result.nsPerOp, result.nsPerOpError, result.bytesPerOp, result.allocationMbPerSecond, result.gcCount);
+        return result;
+    }
+
+    // Повторяет нагрузку, пока не пройдёт длительность итерации
+    private long iteration(Workload workload) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        do {
+            operations += workload.run();
+        } while (System.nanoTime() - start < iterationNanos);
+        return operations;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    static void save(List<Result> results, Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            lines.add(String.format(Locale.ROOT,
+                    "  {\"benchmark\": \"%s\", \"nsPerOp\": %.3f, \"nsPerOpError\": %.3f, \"bytesPerOp\": %.3f, "
+                            + "\"allocationMbPerSecond\": %.3f, \"gcCount\": %d}%s",
+                    r.name, r.nsPerOp, r.nsPerOpError, r.bytesPerOp, r.allocationMbPerSecond, r.gcCount,
+                    i + 1 < results.size() ? "," : ""));
+        }
+        lines.add("]");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    // Читает файл, записанный save: по одному результату в строке
+    static Map<String, Result> load(Path file) throws IOException {
+        Pattern field = Pattern.compile("\"(\\w+)\": (\"[^\"]*\"|[-0-9.eE]+)");
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Map<String, String> fields = new LinkedHashMap<>();
+            Matcher matcher = field.matcher(line);
+            while (matcher.find()) {
+                fields.put(matcher.group(1), matcher.group(2).replace("\"", ""));
+            }
+            if (fields.containsKey("benchmark")) {
+                String name = fields.get("benchmark");
+                results.put(name, new Result(name,
+                        Double.parseDouble(fields.get("nsPerOp")),
+                        Double.parseDouble(fields.get("nsPerOpError")),
+                        Double.parseDouble(fields.get("bytesPerOp")),
+                        Double.parseDouble(fields.get("allocationMbPerSecond")),
+                        Long.parseLong(fields.get("gcCount"))));
+            }
+        }
+        return results;
+    }
+
+    // Печатает изменения относительно базовых результатов; возвращает число регрессий
+    static int compare(List<Result> results, Map<String, Result> baseline) {
+        int regressions = 0;
+        System.out.println("Сравнение с базовыми результатами:");
+        for (Result current : results) {
+            Result base = baseline.get(current.name);
+            if (base == null) {
+                System.out.printf("%-16s нет в базовых результатах%n", current.name);
+                continue;
+            }
+            double timeChange = current.nsPerOp / base.nsPerOp - 1;
+            double noise = (current.nsPerOpError + base.nsPerOpError) / base.nsPerOp;
+            boolean regression = timeChange > Math.max(REGRESSION_THRESHOLD, noise);
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-16s время %+6.1f%%, выделения %+6.1f%%%s%n", current.name, timeChange * 100,
+                    base.bytesPerOp == 0 ? 0.0 : (current.bytesPerOp / base.bytesPerOp - 1) * 100,
+                    regression ? "  РЕГРЕССИЯ" : "");
+        }
+        return regressions;
+    }
+}
\ No newline at end of file
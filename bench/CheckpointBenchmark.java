@@ -0,0 +1,73 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Контрольные точки StatisticsCheckpoint: время записи и чтения и размер для статистики
+// из заданного числа записей в точном и приближённом режимах. Восстановление статистики
+// и продолжение слежения с позиции контрольной точки проверяет StatisticsCheckpointTest.
+//   java -cp out CheckpointBenchmark [записей]
+public class CheckpointBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Path directory = Files.createTempDirectory("checkpoint");
+        Path checkpoint = directory.resolve("state.ckpt");
+
+        Statistics statistics = new Statistics();
+        Statistics approximate = Statistics.approximate(16L << 20);
+        LogGenerator generator = new LogGenerator(17);
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        for (int i = 0; i < count; i++) {
+            LogEntry entry = new LogEntry(generator.nextLine(), tokenizer);
+            statistics.addEntry(entry);
+            if (i < count / 10) {
+                approximate.addEntry(entry);
+            }
+        }
+        measure("Точный режим, записей " + count, statistics, checkpoint);
+        measure("Приближённый режим, записей " + count / 10, approximate, checkpoint);
+        measure("Высокая кардинальность, различных ключей " + count, distinctKeys(count), checkpoint);
+
+        Files.deleteIfExists(checkpoint);
+        Files.deleteIfExists(directory);
+    }
+
+    private static void measure(String title, Statistics statistics, Path checkpoint) throws Exception {
+        double writeSeconds = Double.MAX_VALUE, readSeconds = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            StatisticsCheckpoint.write(checkpoint, statistics, List.of());
+            writeSeconds = Math.min(writeSeconds, (System.nanoTime() - start) / 1e9);
+            start = System.nanoTime();
+            StatisticsCheckpoint.read(checkpoint);
+            readSeconds = Math.min(readSeconds, (System.nanoTime() - start) / 1e9);
+        }
+        System.out.printf("%s: запись %.3f с, чтение %.3f с, размер %,d байт%n",
+                title, writeSeconds, readSeconds, Files.size(checkpoint));
+    }
+
+    // Худший случай для размера: каждый IP, страница и секунда встречаются один раз.
+    // Половина ключей - IPv4, треть - страницы (пятая часть из них с кодом 404), остальное - секунды
+    static Statistics distinctKeys(int count) {
+        Statistics statistics = new Statistics();
+        java.util.Random random = new java.util.Random(29);
+        for (int i = 0; i < count / 2; i++) {
+            statistics.addNonBotVisits(Statistics.unpackIpv4(random.nextInt() & 0xFFFFFFFFL), 1 + random.nextInt(3));
+        }
+        for (int i = 0; i < count / 3; i++) {
+            String page = "/catalog/" + Integer.toHexString(random.nextInt()) + "/item" + i + ".html";
+            if (i % 5 == 0) {
+                statistics.addNotFoundPage(page, 1);
+            } else {
+                statistics.addExistingPage(page, 1 + random.nextInt(5));
+            }
+        }
+        long second = 1_600_000_000L;
+        for (int i = count / 2 + count / 3; i < count; i++) {
+            second += 1 + random.nextInt(3);
+            statistics.addNonBotSecond(second, 1 + random.nextInt(10));
+        }
+        return statistics;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Чтение gzip лога: распаковка и разбор в одном потоке (GZIPInputStream + BufferedReader)
+// против CompressedLogReader, где распаковка идёт в отдельном потоке параллельно с разбором.
+// Выигрыш заметен только при нескольких ядрах. Совпадение прочитанных строк проверяет LogFilesTest.
+//   java -cp out CompressedBenchmark [строк]
+public class CompressedBenchmark {
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path plain = Files.createTempFile("access", ".log");
+        Path compressed = Files.createTempFile("access", ".log.gz");
+        try {
+            LogGenerator.write(plain, lines, 42);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                Files.copy(plain, out);
+            }
+            System.out.printf("Лог %.1f МБ, сжатый %.1f МБ%n", Files.size(plain) / 1048576.0, Files.size(compressed) / 1048576.0);
+
+            for (int round = 1; round <= 5; round++) {
+                long start = System.nanoTime();
+                Statistics inline = readInline(compressed);
+                long middle = System.nanoTime();
+                Statistics pipelined = new Statistics();
+                CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+                new CompressedLogReader(1024).read(compressed, line -> pipelined.addEntry(new LogEntry(line, tokenizer)));
+                long end = System.nanoTime();
+                System.out.printf("Раунд %d: в одном потоке %.0f строк/с, с потоком распаковки %.0f строк/с, записей: %d и %d%n",
+                        round, lines * 1e9 / (middle - start), lines * 1e9 / (end - middle),
+                        inline.getTotalVisits(), pipelined.getTotalVisits());
+            }
+        } finally {
+            Files.delete(plain);
+            Files.delete(compressed);
+        }
+    }
+
+    private static Statistics readInline(Path file) throws Exception {
+        Statistics statistics = new Statistics();
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 1 << 16), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                statistics.addEntry(new LogEntry(line, tokenizer));
+            }
+        }
+        return statistics;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+// Несколько потоков одновременно добавляют записи в одну статистику: Statistics под общей
+// блокировкой против ConcurrentStatistics. Записи разобраны заранее, так что замеряется
+// только накопление. Для сравнения - потолок без общего состояния: у каждого потока
+// своя Statistics, объединение после окончания. Ускорение - пропускная способность
+// ConcurrentStatistics относительно одного потока; близко к линейному оно только пока потоков
+// не больше, чем ядер, поэтому число ядер печатается перед таблицей. Совпадение
+// с последовательной Statistics проверяет ConcurrentStatisticsTest.
+//   java -cp out ContentionBenchmark [записей] [наибольшее число потоков]
+public class ContentionBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        LogEntry[] entries = new LogEntry[count];
+        LogGenerator generator = new LogGenerator(7);
+        for (int i = 0; i < count; i++) {
+            entries[i] = new LogEntry(generator.nextLine());
+        }
+        System.out.println("Ядер: " + Runtime.getRuntime().availableProcessors());
+        double single = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double locked = 0, concurrent = 0, separate = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                Statistics shared = new Statistics();
+                locked = Math.max(locked, throughput(entries, threads, entry -> {
+                    synchronized (shared) {
+                        shared.addEntry(entry);
+                    }
+                }));
+                ConcurrentStatistics statistics = new ConcurrentStatistics();
+                concurrent = Math.max(concurrent, throughput(entries, threads, statistics::addEntry));
+                separate = Math.max(separate, separateThroughput(entries, threads));
+            }
+            if (threads == 1) {
+                single = concurrent;
+            }
+            System.out.printf("Потоков: %2d, общая блокировка %,.0f записей/с, ConcurrentStatistics %,.0f записей/с "
+                    + "(ускорение %.1f), отдельные статистики %,.0f записей/с%n",
+                    threads, locked, concurrent, concurrent / single, separate);
+        }
+    }
+
+    private static double throughput(LogEntry[] entries, int threads, Consumer<LogEntry> sink) throws InterruptedException {
+        long start = System.nanoTime();
+        run(entries, threads, sink);
+        return entries.length * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static double separateThroughput(LogEntry[] entries, int threads) throws InterruptedException {
+        List<Statistics> parts = new ArrayList<>();
+        ThreadLocal<Statistics> own = ThreadLocal.withInitial(() -> {
+            Statistics statistics = new Statistics();
+            synchronized (parts) {
+                parts.add(statistics);
+            }
+            return statistics;
+        });
+        long start = System.nanoTime();
+        run(entries, threads, entry -> own.get().addEntry(entry));
+        Statistics total = new Statistics();
+        parts.forEach(total::merge);
+        return entries.length * 1e9 / (System.nanoTime() - start);
+    }
+
+    // Записи делятся между потоками поровну; все потоки стартуют одновременно
+    private static void run(LogEntry[] entries, int threads, Consumer<LogEntry> sink) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) entries.length * t / threads);
+            int to = (int) ((long) entries.length * (t + 1) / threads);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = from; i < to; i++) {
+                    sink.accept(entries[i]);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+}
\ No newline at end of file
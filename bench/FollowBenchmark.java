@@ -0,0 +1,72 @@
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Пропускная способность режима слежения: писатель дописывает строки в файл
+// с заданной скоростью, LogFollower читает их в отдельном потоке.
+// На середине замера файл ротируется (переименование и создание нового).
+// Пропуск длинных строк, концы строк и ротацию проверяет LogFollowerTest.
+//   java -cp out FollowBenchmark [строк/с] [секунд]
+public class FollowBenchmark {
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 150_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String[] lines = ParserBenchmark.generateLines(100_000);
+        Path directory = Files.createTempDirectory("follow");
+        Path file = directory.resolve("access.log");
+        Files.createFile(file);
+
+        LogFollower follower = new LogFollower(file, new Statistics(), 1024, 1000);
+        Thread reader = new Thread(() -> {
+            try {
+                follower.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        reader.start();
+
+        long written = 0;
+        long start = System.nanoTime();
+        OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND);
+        for (int second = 0; second < seconds; second++) {
+            if (second == seconds / 2) {
+                out.close();
+                Files.move(file, directory.resolve("access.log.1"));
+                out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW);
+            }
+            // Пишем пачками по 1000 строк, равномерно внутри секунды
+            for (int batch = 0; batch < rate / 1000; batch++) {
+                StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < 1000; i++) {
+                    builder.append(lines[(int) (written++ % lines.length)]).append('\n');
+                }
+                out.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+                long target = start + (second * 1_000_000_000L) + (batch + 1) * 1_000_000_000L / (rate / 1000);
+                long sleep = target - System.nanoTime();
+                if (sleep > 0) {
+                    Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+                }
+            }
+        }
+        out.close();
+        long writeElapsed = System.nanoTime() - start;
+
+        while (follower.getProcessedLines() < written && System.nanoTime() - start < (seconds + 30) * 1_000_000_000L) {
+            Thread.sleep(10);
+        }
+        long elapsed = System.nanoTime() - start;
+        reader.interrupt();
+        reader.join();
+
+        System.out.printf("Записано %d строк за %.1f с (%.0f строк/с), прочитано %d за %.1f с (%.0f строк/с)%n",
+                written, writeElapsed / 1e9, written * 1e9 / writeElapsed,
+                follower.getProcessedLines(), elapsed / 1e9, follower.getProcessedLines() * 1e9 / elapsed);
+
+        Files.delete(file);
+        Files.delete(directory.resolve("access.log.1"));
+        Files.delete(directory);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+import java.nio.charset.StandardCharsets;
+
+// Разборщики форматов LogFormat на общем корпусе LogGenerator: строки combined
+// переводятся в common, расширенный формат nginx с $request_time и $upstream_response_time
+// и JSON (LogGenerator.reformat), и каждый формат разбирается своим разборщиком.
+// Время на строку: tokenize по String и по ByteSlice (так приходят строки из файлов) и весь
+// конструктор LogEntry вместе с классификацией User-Agent. Строки JSON почти вдвое длиннее,
+// поэтому для сравнения с combined выводится и время на байт. Совпадение полей с разбором
+// combined проверяет LogFormatTest.
+//   java -cp out FormatBenchmark [строк]
+public class FormatBenchmark {
+    private static final int ROUNDS = 10;
+    private static volatile long sink;
+
+    static final String[] NAMES = {"combined", "combined-template", "common", "custom", "json", "json-template"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        String[] combined = new LogGenerator(42).lines(count);
+        String[] names = NAMES;
+        String[][] corpus = corpus(combined);
+
+        // Прогоны форматов чередуются, чтобы помехи от соседних процессов доставались всем поровну
+        double[][] best = new double[names.length][3];
+        for (double[] row : best) java.util.Arrays.fill(row, Double.MAX_VALUE);
+        LogTokenizer[] tokenizers = new LogTokenizer[names.length];
+        byte[][] bytes = new byte[names.length][];
+        int[][] offsets = new int[names.length][];
+        for (int f = 0; f < names.length; f++) {
+            tokenizers[f] = format(names[f]).newTokenizer();
+            offsets[f] = new int[count + 1];
+            StringBuilder all = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                offsets[f][i] = all.length();
+                all.append(corpus[f][i]);
+            }
+            offsets[f][count] = all.length();
+            // Корпус из ASCII, поэтому смещения в символах совпадают со смещениями в байтах
+            bytes[f] = all.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int f = 0; f < names.length; f++) {
+                double[] times = measure(tokenizers[f], corpus[f], bytes[f], offsets[f]);
+                for (int k = 0; k < times.length; k++) {
+                    best[f][k] = Math.min(best[f][k], times[k]);
+                }
+            }
+        }
+        for (int f = 0; f < names.length; f++) {
+            double perByte = best[f][1] * count / bytes[f].length;
+            System.out.printf("%-18s tokenize: String %6.1f нс, ByteSlice %6.1f нс (%.2f нс/байт); LogEntry %6.1f нс; строка %d байт%n",
+                    names[f], best[f][0], best[f][1], perByte, best[f][2], bytes[f].length / count);
+        }
+    }
+
+    // Корпус combined в каждом из форматов NAMES, в том же порядке
+    static String[][] corpus(String[] combined) {
+        return new String[][]{combined, combined, LogGenerator.reformat(combined, "common", 7),
+                LogGenerator.reformat(combined, "custom", 7), LogGenerator.reformat(combined, "json", 7),
+                LogGenerator.reformat(combined, "json", 7)};
+    }
+
+    static LogFormat format(String name) {
+        switch (name) {
+            case "combined-template": return LogFormat.template(name, LogFormat.COMBINED_TEMPLATE);
+            case "custom": return LogFormat.parse(LogGenerator.CUSTOM_FORMAT);
+            case "json-template": return LogFormat.parse(LogGenerator.JSON_FORMAT);
+            default: return LogFormat.parse(name);
+        }
+    }
+
+    // Время на строку: tokenize по String, tokenize по ByteSlice (как строки из файла)
+    // и весь конструктор LogEntry по String
+    private static double[] measure(LogTokenizer tokenizer, String[] lines, byte[] bytes, int[] offsets) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (String line : lines) {
+            if (tokenizer.tokenize(line)) sum += tokenizer.responseCode();
+        }
+        double strings = (System.nanoTime() - start) / (double) lines.length;
+        ByteSlice slice = new ByteSlice();
+        start = System.nanoTime();
+        for (int i = 0; i < lines.length; i++) {
+            slice.set(bytes, offsets[i], offsets[i + 1] - offsets[i]);
+            if (tokenizer.tokenize(slice)) sum += tokenizer.responseCode();
+        }
+        double slices = (System.nanoTime() - start) / (double) lines.length;
+        start = System.nanoTime();
+        for (String line : lines) {
+            sum += new LogEntry(line, tokenizer).getDataSize();
+        }
+        double entries = (System.nanoTime() - start) / (double) lines.length;
+        sink += sum;
+        return new double[] {strings, slices, entries};
+    }
+}
\ No newline at end of file
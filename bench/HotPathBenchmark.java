@@ -0,0 +1,140 @@
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Набор замеров горячих путей на синтетическом логе LogGenerator: разбор строки,
+// разбор даты, классификация User-Agent, Statistics.addEntry, извлечение домена
+// referer и чтение файла целиком. Результаты можно сохранить как базовые и затем
+// сравнивать с ними после изменений; при регрессии код возврата - 1.
+//   gradle bench --args='--lines=100000 --save=results.json'
+//   javac -encoding UTF-8 -d out src/*.java bench/*.java
+//   java -cp out HotPathBenchmark [--lines=N] [--warmup=N] [--iterations=N] [--time=МС]
+//        [--only=имя,имя] [--save=results.json] [--baseline=results.json]
+public class HotPathBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int lineCount = 200_000;
+        int warmup = 5;
+        int iterations = 10;
+        int iterationMillis = 1000;
+        String only = null;
+        Path save = null;
+        Path baseline = null;
+        for (String arg : args) {
+            if (arg.startsWith("--lines=")) lineCount = Integer.parseInt(arg.substring("--lines=".length()));
+            else if (arg.startsWith("--warmup=")) warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            else if (arg.startsWith("--iterations=")) iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            else if (arg.startsWith("--time=")) iterationMillis = Integer.parseInt(arg.substring("--time=".length()));
+            else if (arg.startsWith("--only=")) only = "," + arg.substring("--only=".length()) + ",";
+            else if (arg.startsWith("--save=")) save = Path.of(arg.substring("--save=".length()));
+            else if (arg.startsWith("--baseline=")) baseline = Path.of(arg.substring("--baseline=".length()));
+            else throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+        }
+
+        String[] lines = new LogGenerator(42).lines(lineCount);
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        LogEntry[] entries = new LogEntry[lines.length];
+        String[] dates = new String[lines.length];
+        String[] agents = new String[lines.length];
+        List<String> refererList = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            entries[i] = new LogEntry(lines[i], tokenizer);
+            dates[i] = lines[i].substring(lines[i].indexOf('[') + 1, lines[i].indexOf(']'));
+            tokenizer.tokenize(lines[i]);
+            agents[i] = tokenizer.userAgentString();
+            if (tokenizer.referer() != null) {
+                refererList.add(tokenizer.referer());
+            }
+        }
+        String[] referers = refererList.toArray(new String[0]);
+        Path file = Files.createTempFile("access", ".log");
+        LogGenerator.write(file, lineCount, 42);
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations, iterationMillis);
+        List<BenchmarkRunner.Result> results = new ArrayList<>();
+        try {
+            if (selected(only, "parse")) {
+                results.add(runner.measure("parse", () -> {
+                    long sum = 0;
+                    for (String line : lines) sum += new LogEntry(line, tokenizer).getDataSize();
+                    sink += sum;
+                    return lines.length;
+                }));
+            }
+            if (selected(only, "date")) {
+                results.add(runner.measure("date", () -> {
+                    long sum = 0;
+                    for (String date : dates) sum += TimestampDecoder.decodeEpochSecond(date, 0, date.length());
+                    sink += sum;
+                    return dates.length;
+                }));
+            }
+            if (selected(only, "userAgent")) {
+                UserAgentClassifier classifier = new UserAgentClassifier();
+                results.add(runner.measure("userAgent", () -> {
+                    long bots = 0;
+                    for (String agent : agents) if (classifier.classify(agent, 0, agent.length()).isBot()) bots++;
+                    sink += bots;
+                    return agents.length;
+                }));
+            }
+            if (selected(only, "userAgentRules")) {
+                UserAgentRules rules = UserAgentRules.active();
+                results.add(runner.measure("userAgentRules", () -> {
+                    long bots = 0;
+                    for (String agent : agents) if (rules.classify(agent, 0, agent.length()).isBot()) bots++;
+                    sink += bots;
+                    return agents.length;
+                }));
+            }
+            if (selected(only, "addEntry")) {
+                results.add(runner.measure("addEntry", () -> {
+                    Statistics statistics = new Statistics();
+                    for (LogEntry entry : entries) statistics.addEntry(entry);
+                    sink += statistics.getTotalVisits();
+                    return entries.length;
+                }));
+            }
+            if (selected(only, "refererDomain")) {
+                results.add(runner.measure("refererDomain", () -> {
+                    long sum = 0;
+                    RefererDomainExtractor extractor = new RefererDomainExtractor();
+                    for (String referer : referers) {
+                        String domain = extractor.extract(referer);
+                        if (domain != null) sum += domain.length();
+                    }
+                    sink += sum;
+                    return referers.length;
+                }));
+            }
+            if (selected(only, "endToEnd")) {
+                results.add(runner.measure("endToEnd", () -> {
+                    Statistics statistics = new Statistics();
+                    CombinedLogTokenizer fileTokenizer = new CombinedLogTokenizer();
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        return new MappedLogReader(1024).read(channel, 0, channel.size(),
+                                line -> statistics.addEntry(new LogEntry(line, fileTokenizer)));
+                    }
+                }));
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        if (save != null) {
+            BenchmarkRunner.save(results, save);
+            System.out.println("Результаты сохранены в " + save);
+        }
+        if (baseline != null && BenchmarkRunner.compare(results, BenchmarkRunner.load(baseline)) > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean selected(String only, String name) {
+        return only == null || only.contains("," + name + ",");
+    }
+}
\ No newline at end of file
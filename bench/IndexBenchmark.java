@@ -0,0 +1,48 @@
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Повторный анализ лога: разбор текста против загрузки колоночного индекса LogIndex.
+// Совпадение статистик и отказ от повреждённого индекса проверяет LogIndexTest.
+//   java -cp out IndexBenchmark [строк]
+public class IndexBenchmark {
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Path file = Files.createTempFile("access", ".log");
+        Path index = LogIndex.defaultPath(file);
+        try {
+            Files.write(file, Arrays.asList(ParserBenchmark.generateLines(lines)));
+            long start = System.nanoTime();
+            LogIndex.build(file, index, 1024);
+            System.out.printf("Индекс построен за %.1f с: лог %.1f МБ, индекс %.1f МБ%n",
+                    (System.nanoTime() - start) / 1e9, Files.size(file) / 1048576.0, Files.size(index) / 1048576.0);
+
+            for (int round = 1; round <= 5; round++) {
+                start = System.nanoTime();
+                Statistics text = readText(file);
+                long middle = System.nanoTime();
+                Statistics indexed = new Statistics();
+                LogIndex.load(index, indexed);
+                long end = System.nanoTime();
+                System.out.printf("Раунд %d: текст %.0f строк/с, индекс %.0f строк/с (x%.1f), записей: %d и %d%n",
+                        round, lines * 1e9 / (middle - start), lines * 1e9 / (end - middle),
+                        (double) (middle - start) / (end - middle), text.getTotalVisits(), indexed.getTotalVisits());
+            }
+        } finally {
+            Files.deleteIfExists(index);
+            Files.delete(file);
+        }
+    }
+
+    private static Statistics readText(Path file) throws Exception {
+        Statistics statistics = new Statistics();
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new MappedLogReader(1024).read(channel, 0, channel.size(),
+                    line -> statistics.addEntry(new LogEntry(line, tokenizer)));
+        }
+        return statistics;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+// Время ответа: BenchmarkRunner замеряет время и выделения памяти на запись:
+// LatencyStatistics.record, LatencyHistogram.record и Statistics.addEntry для строк с временем
+// ответа и без него. Разбор времени во всех форматах проверяет LogFormatTest, точность
+// квантилей - LatencyHistogramTest.
+//   java -cp out LatencyBenchmark [строк]
+public class LatencyBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        String[] combined = new LogGenerator(42).lines(count);
+        String[] timed = LogGenerator.reformat(combined, "timed", 7);
+
+
+        BenchmarkRunner runner = new BenchmarkRunner(3, 5, 500);
+        LatencyStatistics latency = new LatencyStatistics();
+        LogEntry[] timedEntries = entries(timed);
+        LogEntry[] plainEntries = entries(combined);
+        long[] micros = new long[count];
+        for (int i = 0; i < count; i++) {
+            micros[i] = timedEntries[i].getRequestTimeMicros();
+        }
+        runner.measure("record", () -> {
+            for (LogEntry entry : timedEntries) {
+                latency.record(entry.getMethod(), entry.getResponseCode(), entry.getPath(), entry.getRequestTimeMicros());
+            }
+            return timedEntries.length;
+        });
+        LatencyHistogram histogram = new LatencyHistogram();
+        runner.measure("histogram", () -> {
+            for (long value : micros) {
+                histogram.record(value);
+            }
+            return micros.length;
+        });
+        Statistics[] statistics = {new Statistics()};
+        runner.measure("addEntry", () -> {
+            statistics[0] = new Statistics();
+            for (LogEntry entry : plainEntries) {
+                statistics[0].addEntry(entry);
+            }
+            return plainEntries.length;
+        });
+        runner.measure("addEntryTimed", () -> {
+            statistics[0] = new Statistics();
+            for (LogEntry entry : timedEntries) {
+                statistics[0].addEntry(entry);
+            }
+            return timedEntries.length;
+        });
+        System.out.println("\n" + statistics[0].getLatency());
+        statistics[0].getLatencyByStatusClass().forEach(summary -> System.out.println("  " + summary));
+    }
+
+    private static LogEntry[] entries(String[] lines) {
+        LogTokenizer tokenizer = LogFormat.combined().newTokenizer();
+        LogEntry[] entries = new LogEntry[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            entries[i] = new LogEntry(lines[i], tokenizer);
+        }
+        return entries;
+    }
+}
\ No newline at end of file
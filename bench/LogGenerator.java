@@ -0,0 +1,297 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+// Детерминированный генератор логов в формате combined с распределениями,
+// похожими на настоящий сайт: клиенты, страницы и User-Agent распределены по Ципфу,
+// около четверти трафика - боты, 404 в основном приходятся на сканеры уязвимостей,
+// у 304 нет тела ответа, время идёт вперёд с пуассоновскими интервалами.
+// При одинаковом seed всегда получаются одни и те же строки.
+final class LogGenerator {
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss", Locale.ENGLISH);
+
+    private static final String[] BROWSERS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Safari/537.36",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Safari/537.36 Edg/%d.0.%d.%d",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/%d.%d Safari/605.1.15",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:%d.0) Gecko/20100101 Firefox/%d.0",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:%d.0) Gecko/20100101 Firefox/%d.0",
+            "Mozilla/5.0 (Linux; Android %d; SM-G%d) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Mobile Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS %d_%d like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/%d.0 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Safari/537.36 OPR/%d.0.%d.%d"
+    };
+    private static final String[] BOTS = {
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+            "Mozilla/5.0 (compatible; bingbot/2.0; +http://www.bing.com/bingbot.htm)",
+            "Mozilla/5.0 (compatible; YandexBot/3.0; +http://yandex.com/bots)",
+            "Mozilla/5.0 (compatible; AhrefsBot/7.0; +http://ahrefs.com/robot/)",
+            "Mozilla/5.0 (compatible; SemrushBot/7~bl; +http://www.semrush.com/bot.html)",
+            "Mozilla/5.0 (Linux; Android 6.0.1; Nexus 5X Build/MMB29P) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.6099.71 Mobile Safari/537.36 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)"
+    };
+    private static final String[] PROBES = {
+            "/wp-login.php", "/.env", "/xmlrpc.php", "/admin/config.php", "/.git/config",
+            "/phpmyadmin/index.php", "/wp-content/plugins/revslider/temp/update_extract/x.php", "/cgi-bin/luci"
+    };
+    private static final String[] SEARCH_ENGINES = {
+            "https://www.google.com/", "https://yandex.ru/search/?text=example", "https://www.bing.com/search?q=example",
+            "https://duckduckgo.com/"
+    };
+    private static final String[] OTHER_SITES = {
+            "https://news.ycombinator.com/item?id=%d", "https://www.reddit.com/r/programming/comments/%d/",
+            "https://t.co/%d", "http://forum.example.org/topic/%d", "https://habr.com/ru/articles/%d/"
+    };
+
+    // Форматы, в которые reformat переводит строки: расширенный текстовый формат nginx
+    // с полями, которые Statistics не нужны, и JSON с ключами по именам переменных
+    static final String CUSTOM_FORMAT = LogFormat.COMBINED_TEMPLATE
+            + " rt=$request_time uct=\"$upstream_connect_time\" urt=\"$upstream_response_time\" host=$host";
+    static final String JSON_FORMAT = "{\"time_iso8601\":\"$time_iso8601\",\"remote_addr\":\"$remote_addr\","
+            + "\"host\":\"$host\",\"request_method\":\"$request_method\",\"request_uri\":\"$request_uri\","
+            + "\"status\":$status,\"body_bytes_sent\":$body_bytes_sent,\"request_time\":$request_time,"
+            + "\"http_referer\":\"$http_referer\",\"http_user_agent\":\"$http_user_agent\","
+            + "\"upstream_response_time\":\"$upstream_response_time\"}";
+    private static final DateTimeFormatter ISO_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss", Locale.ENGLISH);
+
+    private final Random random;
+    private final Zipf clients;
+    private final Zipf pages;
+    private final Zipf browsers;
+    private final String[] clientIps;
+    private final String[] botIps;
+    private final String[] pagePaths;
+    private final String[] browserAgents;
+    private LocalDateTime time = LocalDateTime.of(2022, 9, 25, 0, 0, 0);
+    private double fraction;
+    private LocalDateTime formattedTime;
+    private String formattedDate;
+
+    LogGenerator(long seed) {
+        this.random = new Random(seed);
+        this.clientIps = new String[20_000];
+        for (int i = 0; i < clientIps.length; i++) {
+            clientIps[i] = randomIp();
+        }
+        this.botIps = new String[200];
+        for (int i = 0; i < botIps.length; i++) {
+            botIps[i] = "66.249." + random.nextInt(256) + "." + random.nextInt(256);
+        }
+        this.pagePaths = new String[5_000];
+        for (int i = 0; i < pagePaths.length; i++) {
+            pagePaths[i] = randomPage(i);
+        }
+        this.browserAgents = new String[400];
+        for (int i = 0; i < browserAgents.length; i++) {
+            browserAgents[i] = randomBrowser();
+        }
+        this.clients = new Zipf(clientIps.length, 1.1);
+        this.pages = new Zipf(pagePaths.length, 1.0);
+        this.browsers = new Zipf(browserAgents.length, 1.2);
+    }
+
+    String[] lines(int count) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = nextLine();
+        }
+        return lines;
+    }
+
+    static void write(Path file, int count, long seed) throws IOException {
+        LogGenerator generator = new LogGenerator(seed);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(generator.nextLine());
+                writer.newLine();
+            }
+        }
+    }
+
+    String nextLine() {
+        advanceTime();
+        boolean bot = random.nextInt(100) < 25;
+        String ip = bot ? botIps[random.nextInt(botIps.length)] : clientIps[clients.next(random)];
+        String agent = bot ? BOTS[random.nextInt(BOTS.length)] : browserAgents[browsers.next(random)];
+
+        String method = method();
+        String path;
+        int status;
+        int roll = random.nextInt(1000);
+        if (roll < 40) {
+            // Сканеры и битые ссылки
+            path = random.nextBoolean() ? PROBES[random.nextInt(PROBES.length)] : pagePaths[pages.next(random)] + "/old";
+            status = 404;
+        } else {
+            path = pagePaths[pages.next(random)];
+            status = roll < 820 ? 200 : roll < 900 ? 304 : roll < 940 ? 301 : roll < 955 ? 302
+                    : roll < 970 ? 403 : roll < 985 ? 500 : roll < 993 ? 502 : 503;
+        }
+        int size = status == 304 || method.equals("HEAD") ? 0 : responseSize(path, status);
+
+        return ip + " - - [" + formatDate() + " +0300] \"" + method + " " + path + " HTTP/1.1\" "
+                + status + " " + size + " \"" + referer(bot) + "\" \"" + agent + "\"";
+    }
+
+    // Те же строки в формате common, CUSTOM_FORMAT, JSON_FORMAT или timed (combined с числом
+    // $request_time в конце). Поля берутся из строк combined, значения переменных, которых
+    // в combined нет ($request_time и другие), - из Random с заданным seed; время ответа
+    // i-й строки при одном seed одинаково во всех форматах
+    static String[] reformat(String[] lines, String format, long seed) {
+        Random random = new Random(seed);
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        String[] result = new String[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            if (!tokenizer.tokenize(lines[i])) {
+                throw new IllegalArgumentException("Строка не в формате combined: " + lines[i]);
+            }
+            int requestStart = lines[i].indexOf('"') + 1;
+            String request = lines[i].substring(requestStart, lines[i].indexOf('"', requestStart));
+            String referer = tokenizer.referer() == null ? "-" : tokenizer.referer();
+            String requestTime = String.format(Locale.ROOT, "%.3f", -Math.log(1 - random.nextDouble()) / 10);
+            String upstreamTime = tokenizer.responseCode() == 304 ? "-" : requestTime;
+            String host = "www.example.com";
+            switch (format) {
+                case "common":
+                    result[i] = lines[i].substring(0, requestStart + request.length() + 1) + " "
+                            + tokenizer.responseCode() + " " + tokenizer.dataSize();
+                    break;
+                case "custom":
+                    result[i] = lines[i] + " rt=" + requestTime + " uct=\"0.00" + i % 10
+                            + "\" urt=\"" + upstreamTime + "\" host=" + host;
+                    break;
+                case "timed":
+                    result[i] = lines[i] + " " + requestTime;
+                    break;
+                case "json":
+                    LocalDateTime time = LocalDateTime.ofEpochSecond(tokenizer.epochSecond(), 0,
+                            ZoneOffset.ofTotalSeconds(tokenizer.offsetSeconds()));
+                    result[i] = "{\"time_iso8601\":\"" + ISO_FORMAT.format(time) + "+03:00\",\"remote_addr\":\""
+                            + tokenizer.ipAddress() + "\",\"host\":\"" + host + "\",\"request_method\":\""
+                            + tokenizer.method() + "\",\"request_uri\":\"" + jsonEscape(tokenizer.path())
+                            + "\",\"status\":" + tokenizer.responseCode() + ",\"body_bytes_sent\":" + tokenizer.dataSize()
+                            + ",\"request_time\":" + requestTime + ",\"http_referer\":\"" + jsonEscape(referer)
+                            + "\",\"http_user_agent\":\"" + jsonEscape(tokenizer.userAgentString())
+                            + "\",\"upstream_response_time\":\"" + upstreamTime + "\"}";
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный формат: " + format);
+            }
+        }
+        return result;
+    }
+
+    private static String jsonEscape(String s) {
+        StringBuilder escaped = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < ' ') {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void advanceTime() {
+        // Экспоненциальные интервалы в среднем 20 запросов в секунду
+        fraction += -Math.log(1 - random.nextDouble()) / 20;
+        if (fraction >= 1) {
+            long seconds = (long) fraction;
+            time = time.plusSeconds(seconds);
+            fraction -= seconds;
+        }
+    }
+
+    private String formatDate() {
+        if (!time.equals(formattedTime)) {
+            formattedTime = time;
+            formattedDate = DATE_FORMAT.format(time);
+        }
+        return formattedDate;
+    }
+
+    private String method() {
+        int roll = random.nextInt(100);
+        if (roll < 88) return "GET";
+        if (roll < 95) return "POST";
+        if (roll < 98) return "HEAD";
+        String[] rare = {"PUT", "DELETE", "OPTIONS", "PATCH"};
+        return rare[random.nextInt(rare.length)];
+    }
+
+    private String referer(boolean bot) {
+        int roll = random.nextInt(100);
+        if (bot || roll < 45) return "-";
+        if (roll < 75) return "https://www.example.com" + pagePaths[pages.next(random)];
+        if (roll < 90) return SEARCH_ENGINES[random.nextInt(SEARCH_ENGINES.length)];
+        return String.format(OTHER_SITES[random.nextInt(OTHER_SITES.length)], random.nextInt(1_000_000));
+    }
+
+    private int responseSize(String path, int status) {
+        if (status >= 300) {
+            return 150 + random.nextInt(400);
+        }
+        // Логнормальный размер: статика крупнее страниц
+        double median = path.startsWith("/static/") ? 40_000 : 12_000;
+        return (int) Math.min(Integer.MAX_VALUE, median * Math.exp(random.nextGaussian()));
+    }
+
+    private String randomIp() {
+        return (1 + random.nextInt(223)) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + (1 + random.nextInt(254));
+    }
+
+    private String randomPage(int i) {
+        int roll = random.nextInt(100);
+        if (roll < 30) {
+            String[] types = {"js", "css", "png", "woff2", "svg"};
+            return "/static/" + Integer.toHexString(random.nextInt()) + "/asset" + i + "." + types[random.nextInt(types.length)];
+        }
+        if (roll < 45) {
+            return "/search?q=term" + i + "&page=" + (1 + random.nextInt(5));
+        }
+        if (roll < 55) {
+            return "/api/v1/items/" + i;
+        }
+        String[] sections = {"blog", "products", "docs", "news", "catalog"};
+        return "/" + sections[random.nextInt(sections.length)] + "/article-" + i + ".html";
+    }
+
+    private String randomBrowser() {
+        String template = BROWSERS[random.nextInt(BROWSERS.length)];
+        Object[] numbers = new Object[6];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = i == 0 ? 100 + random.nextInt(21) : random.nextInt(6000);
+        }
+        return String.format(template, numbers);
+    }
+
+    // Выбор номера 0..n-1 по закону Ципфа через двоичный поиск в накопленных весах
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        private Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+        }
+
+        private int next(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+            return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+        }
+    }
+}
\ No newline at end of file
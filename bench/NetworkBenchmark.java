@@ -0,0 +1,120 @@
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.LockSupport;
+
+// Приём по сети через loopback: отправитель шлёт строки LogGenerator с заданной скоростью
+// в NetworkListener сначала по TCP, потом датаграммами syslog по UDP.
+// Для обоих выводится, сколько сообщений отброшено приёмником и сколько потеряно в ядре;
+// совпадение статистики TCP с последовательной проверяет NetworkListenerTest.
+//   java -cp out NetworkBenchmark [сообщений] [сообщений в секунду] [потоков разбора]
+public class NetworkBenchmark {
+    // Отправитель выдерживает скорость пачками по столько сообщений
+    private static final int BURST = 500;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String[] lines = new LogGenerator(3).lines(count);
+
+        // TCP: строки через перевод строки, часть - с заголовком syslog RFC 5424
+        ConcurrentStatistics tcpStatistics = new ConcurrentStatistics();
+        try (NetworkListener listener = new NetworkListener(tcpStatistics, workers, 1024)) {
+            int port = listener.bindTcp(new InetSocketAddress("127.0.0.1", 0));
+            listener.start();
+            long start = System.nanoTime();
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port))) {
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+                send(lines, rate, (i, line) -> {
+                    byte[] bytes = ((i % 4 == 0 ? "<190>1 2022-09-25T00:00:00Z lb1 nginx - - - " : "") + line + "\n")
+                            .getBytes(StandardCharsets.UTF_8);
+                    if (buffer.remaining() < bytes.length) {
+                        writeFully(channel, buffer);
+                    }
+                    buffer.put(bytes);
+                }, () -> writeFully(channel, buffer));
+            }
+            double sendSeconds = (System.nanoTime() - start) / 1e9;
+            awaitProcessed(listener);
+            report("TCP", listener, count, sendSeconds, System.nanoTime() - start);
+        }
+
+        // UDP: датаграмма на сообщение с заголовком syslog RFC 3164
+        ConcurrentStatistics udpStatistics = new ConcurrentStatistics();
+        try (NetworkListener listener = new NetworkListener(udpStatistics, workers, 1024)) {
+            int port = listener.bindUdp(new InetSocketAddress("127.0.0.1", 0));
+            listener.start();
+            long start = System.nanoTime();
+            try (DatagramChannel channel = DatagramChannel.open()) {
+                channel.connect(new InetSocketAddress("127.0.0.1", port));
+                ByteBuffer buffer = ByteBuffer.allocate(65535);
+                send(lines, rate, (i, line) -> {
+                    buffer.clear();
+                    buffer.put(("<190>Sep 25 00:00:00 lb1 nginx: " + line).getBytes(StandardCharsets.UTF_8));
+                    buffer.flip();
+                    channel.write(buffer);
+                }, () -> { });
+            }
+            double sendSeconds = (System.nanoTime() - start) / 1e9;
+            awaitProcessed(listener);
+            report("UDP", listener, count, sendSeconds, System.nanoTime() - start);
+        }
+    }
+
+    private interface Sender {
+        void send(int index, String line) throws Exception;
+    }
+
+    private interface Flusher {
+        void flush() throws Exception;
+    }
+
+    // Отправляет строки пачками, выдерживая среднюю скорость rate сообщений в секунду
+    private static void send(String[] lines, int rate, Sender sender, Flusher flusher) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < lines.length; i++) {
+            sender.send(i, lines[i]);
+            if ((i + 1) % BURST == 0) {
+                flusher.flush();
+                long due = start + (long) ((i + 1) * 1e9 / rate);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+        flusher.flush();
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws Exception {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Ждёт, пока все полученные сообщения разобраны и новые перестали приходить
+    private static void awaitProcessed(NetworkListener listener) throws InterruptedException {
+        long previous = -1;
+        while (true) {
+            Thread.sleep(200);
+            long received = listener.getReceived();
+            long handled = listener.getParsed() + listener.getFailed() + listener.getDropped();
+            if (received == handled && received == previous) {
+                return;
+            }
+            previous = received;
+        }
+    }
+
+    private static void report(String protocol, NetworkListener listener, int sent, double sendSeconds, long totalNanos) {
+        System.out.printf("%s: отправлено %d за %.2f с (%,.0f сообщений/с), получено %d, разобрано %d, "
+                        + "с ошибками %d, отброшено приёмником %d, потеряно в ядре %d, всего %.2f с%n",
+                protocol, sent, sendSeconds, sent / sendSeconds, listener.getReceived(), listener.getParsed(),
+                listener.getFailed(), listener.getDropped(), sent - listener.getReceived(), totalNanos / 1e9);
+    }
+}
\ No newline at end of file
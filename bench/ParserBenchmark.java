@@ -0,0 +1,72 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Сравнение скорости разбора строк: прежний вариант на регулярном выражении
+// против CombinedLogTokenizer. Запуск:
+//   javac -encoding UTF-8 -d out src/*.java bench/*.java && java -cp out ParserBenchmark
+public class ParserBenchmark {
+    private static final int LINES = 200_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        String[] lines = generateLines(LINES);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            double regex = measure(lines, true);
+            double tokenizer = measure(lines, false);
+            System.out.printf("Раунд %d: regex %.0f строк/с, tokenizer %.0f строк/с (x%.1f)%n",
+                    round, regex, tokenizer, tokenizer / regex);
+        }
+    }
+
+    private static double measure(String[] lines, boolean legacy) {
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (String line : lines) {
+            if (legacy) {
+                checksum += legacyParse(line);
+            } else {
+                checksum += new LogEntry(line, tokenizer).getDataSize();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == 42) System.out.println();
+        return lines.length * 1e9 / elapsed;
+    }
+
+    // Прежняя реализация конструктора LogEntry
+    private static int legacyParse(String logLine) {
+        String regex = "^([\\d.]+) \\S+ \\S+ \\[(.*?)\\] \"(\\w+) (.*?) HTTP/.*?\" (\\d+) (\\d+) \"([^\"]*)\" \"([^\"]*)\"";
+        Pattern pattern = Pattern.compile(regex);
+        Matcher matcher = pattern.matcher(logLine);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Invalid log format: " + logLine);
+        }
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+        LocalDateTime dateTime = LocalDateTime.parse(matcher.group(2), formatter);
+        new UserAgent(matcher.group(8));
+        return Integer.parseInt(matcher.group(6)) + dateTime.getSecond() + matcher.group(4).length();
+    }
+
+    static String[] generateLines(int count) {
+        Random random = new Random(42);
+        String[] agents = {
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36",
+                "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+                "Mozilla/5.0 (X11; Linux x86_64; rv:121.0) Gecko/20100101 Firefox/121.0"
+        };
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = String.format("%d.%d.%d.%d - - [25/Sep/2022:06:%02d:%02d +0300] \"GET /page/%d HTTP/1.0\" %d %d \"https://www.example.com/ref\" \"%s\"",
+                    random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(256),
+                    (i / 60) % 60, i % 60, random.nextInt(1000), random.nextBoolean() ? 200 : 404,
+                    random.nextInt(100_000), agents[random.nextInt(agents.length)]);
+        }
+        return lines;
+    }
+}
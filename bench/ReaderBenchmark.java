@@ -0,0 +1,63 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.sun.management.ThreadMXBean;
+
+// Сравнение чтения через BufferedReader (строка String на каждую строку файла)
+// и через MappedLogReader (ByteSlice поверх отображённого файла). Совпадение результатов
+// проверяет MappedLogReaderTest.
+//   java -cp out ReaderBenchmark [строк]
+public class ReaderBenchmark {
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = Files.createTempFile("access", ".log");
+        try {
+            Files.write(file, Arrays.asList(ParserBenchmark.generateLines(lines)));
+            ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            for (int round = 1; round <= 5; round++) {
+                long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                Statistics buffered = readBuffered(file);
+                long middle = System.nanoTime();
+                long allocatedMiddle = threads.getCurrentThreadAllocatedBytes();
+                Statistics mapped = readMapped(file);
+                long end = System.nanoTime();
+                long allocatedAfter = threads.getCurrentThreadAllocatedBytes();
+                System.out.printf("Раунд %d: BufferedReader %.0f строк/с (%d МБ выделено), mmap %.0f строк/с (%d МБ), записей: %d и %d%n",
+                        round, lines * 1e9 / (middle - start), (allocatedMiddle - allocatedBefore) >> 20,
+                        lines * 1e9 / (end - middle), (allocatedAfter - allocatedMiddle) >> 20,
+                        buffered.getTotalVisits(), mapped.getTotalVisits());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Statistics readBuffered(Path file) throws IOException {
+        Statistics statistics = new Statistics();
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                statistics.addEntry(new LogEntry(line, tokenizer));
+            }
+        }
+        return statistics;
+    }
+
+    private static Statistics readMapped(Path file) throws IOException {
+        Statistics statistics = new Statistics();
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new MappedLogReader(1024).read(channel, 0, channel.size(),
+                    line -> statistics.addEntry(new LogEntry(line, tokenizer)));
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Извлечение домена реферера: прежний способ через java.net.URI и регулярные выражения
+// против линейного разбора RefererDomainExtractor без кеша и с кешем.
+// Рефереры берутся из строк LogGenerator; вторая серия добавляет длинный хвост
+// различных хостов, которые не помещаются в кеш.
+// Совпадение результатов с прежними проверяет RefererDomainExtractorTest.
+//   java -cp out RefererBenchmark [строк] [различных хостов в хвосте]
+public class RefererBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int tailHosts = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        String[] referers = generateReferers(count);
+        String[] tail = withTail(referers, tailHosts);
+
+        run("Повторяющиеся рефереры", referers);
+        run("Хвост из " + tailHosts + " хостов", tail);
+    }
+
+    // Непустые рефереры из строк LogGenerator
+    static String[] generateReferers(int count) {
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        List<String> list = new ArrayList<>();
+        LogGenerator generator = new LogGenerator(11);
+        while (list.size() < count) {
+            tokenizer.tokenize(generator.nextLine());
+            if (tokenizer.referer() != null && !tokenizer.referer().equals("-")) {
+                list.add(tokenizer.referer());
+            }
+        }
+        return list.toArray(new String[0]);
+    }
+
+    // Каждый пятый реферер заменён ссылкой на один из tailHosts хостов
+    static String[] withTail(String[] referers, int tailHosts) {
+        String[] tail = referers.clone();
+        Random random = new Random(5);
+        for (int i = 0; i < tail.length; i += 5) {
+            tail[i] = "https://site" + random.nextInt(tailHosts) + ".example.net/page/" + random.nextInt(1000);
+        }
+        return tail;
+    }
+
+    // Лучшее время из ROUNDS прогонов; вместе с извлечением домен учитывается в HashMap,
+    // как в Statistics
+    private static void run(String title, String[] referers) {
+        double legacy = Double.MAX_VALUE, scanner = Double.MAX_VALUE, cached = Double.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            Map<String, Integer> domains = new HashMap<>();
+            long start = System.nanoTime();
+            for (String referer : referers) {
+                String domain = legacy(referer);
+                if (domain != null) domains.merge(domain, 1, Integer::sum);
+            }
+            legacy = Math.min(legacy, (System.nanoTime() - start) / (double) referers.length);
+            sink += domains.size();
+
+            domains = new HashMap<>();
+            start = System.nanoTime();
+            for (String referer : referers) {
+                String domain = RefererDomainExtractor.extractDomain(referer);
+                if (domain != null) domains.merge(domain, 1, Integer::sum);
+            }
+            scanner = Math.min(scanner, (System.nanoTime() - start) / (double) referers.length);
+            sink += domains.size();
+
+            domains = new HashMap<>();
+            RefererDomainExtractor extractor = new RefererDomainExtractor();
+            start = System.nanoTime();
+            for (String referer : referers) {
+                String domain = extractor.extract(referer);
+                if (domain != null) domains.merge(domain, 1, Integer::sum);
+            }
+            cached = Math.min(cached, (System.nanoTime() - start) / (double) referers.length);
+            sink += domains.size();
+        }
+        System.out.printf("%s: URI и regex %.1f нс, линейный разбор %.1f нс (x%.1f), с кешем %.1f нс (x%.1f) (%d)%n",
+                title, legacy, scanner, legacy / scanner, cached, legacy / cached, sink % 10);
+    }
+
+    // Прежняя реализация Statistics.extractDomainFromUrl
+    static String legacy(String referer) {
+        if (referer == null || referer.equals("-") || referer.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            if (referer.contains("://")) {
+                java.net.URI uri = new java.net.URI(referer);
+                String host = uri.getHost();
+                if (host != null) {
+                    if (host.startsWith("www.")) {
+                        return host.substring(4);
+                    }
+                    return host;
+                }
+            }
+
+            if (referer.contains(".")) {
+                String[] parts = referer.split("[&?=]");
+                for (String part : parts) {
+                    part = part.trim();
+                    if (part.matches("^[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$")) {
+                        if (part.startsWith("www.")) {
+                            part = part.substring(4);
+                        }
+                        return part;
+                    }
+                }
+            }
+
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Масштабирование ParallelLogProcessor по числу потоков на синтетическом файле.
+// Совпадение с последовательным чтением проверяет ParallelLogProcessorTest.
+//   java -cp out ScalingBenchmark [строк]
+public class ScalingBenchmark {
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Path file = Files.createTempFile("access", ".log");
+        try {
+            Files.write(file, Arrays.asList(ParserBenchmark.generateLines(lines)));
+
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int workers = 1; workers <= cores; workers *= 2) {
+                for (int round = 0; round < 3; round++) {
+                    Statistics statistics = new Statistics();
+                    long start = System.nanoTime();
+                    int processed = ParallelLogProcessor.process(file.toString(), statistics, workers, 1024);
+                    long elapsed = System.nanoTime() - start;
+                    if (round == 2) {
+                        System.out.printf("Потоков: %d, %.0f строк/с%n", workers, processed * 1e9 / elapsed);
+                    }
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
\ No newline at end of file
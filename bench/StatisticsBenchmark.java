@@ -0,0 +1,63 @@
+import java.util.Random;
+
+// Скорость Statistics.addEntry и объём памяти, который удерживает статистика.
+// Записи разбираются заранее, чтобы замер не включал разбор строк.
+//   java -cp out StatisticsBenchmark [записей]
+public class StatisticsBenchmark {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        LogEntry[] entries = generateEntries(count);
+
+        for (int round = 1; round <= 5; round++) {
+            long start = System.nanoTime();
+            Statistics statistics = fill(entries);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Раунд %d: %.0f записей/с, пик в секунду %d%n",
+                    round, count * 1e9 / elapsed, statistics.getPeakVisitsPerSecond());
+        }
+
+        long before = usedHeap();
+        Statistics retained = fill(entries);
+        long after = usedHeap();
+        System.out.printf("Статистика занимает %.1f МБ (%d записей, %d уникальных IP)%n",
+                (after - before) / 1048576.0, retained.getTotalVisits(), retained.getUniqueNonBotIps());
+    }
+
+    private static Statistics fill(LogEntry[] entries) {
+        Statistics statistics = new Statistics();
+        for (LogEntry entry : entries) {
+            statistics.addEntry(entry);
+        }
+        return statistics;
+    }
+
+    // Сутки трафика: каждая секунда дня и широкий разброс IP-адресов
+    private static LogEntry[] generateEntries(int count) {
+        Random random = new Random(7);
+        String[] agents = {
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36",
+                "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_1) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.1 Safari/605.1.15",
+                "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+                "Mozilla/5.0 (X11; Linux x86_64; rv:121.0) Gecko/20100101 Firefox/121.0"
+        };
+        LogEntry[] entries = new LogEntry[count];
+        for (int i = 0; i < count; i++) {
+            int second = random.nextInt(86_400);
+            entries[i] = new LogEntry(String.format(
+                    "10.%d.%d.%d - - [25/Sep/2022:%02d:%02d:%02d +0300] \"GET /page/%d HTTP/1.0\" %d %d \"-\" \"%s\"",
+                    random.nextInt(64), random.nextInt(256), random.nextInt(256),
+                    second / 3600, second / 60 % 60, second % 60, random.nextInt(1000),
+                    random.nextInt(10) == 0 ? 404 : 200, random.nextInt(50_000),
+                    agents[random.nextInt(agents.length)]));
+        }
+        return entries;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Разбор метки времени combined-лога разными способами на датах подряд идущих строк
+// LogGenerator (около 20 строк на секунду, как на живом сайте):
+//   formatter - первоначальный путь: DateTimeFormatter.ofPattern и LocalDateTime.parse на каждую строку;
+//   localDateTime - ручной разбор полей, затем LocalDateTime.of и toEpochSecond;
+//   decode - TimestampDecoder.decodeEpochSecond без запоминания;
+//   decodeMemo - экземпляр TimestampDecoder, повторная метка берётся из памяти.
+// Совпадение TimestampDecoder с DateTimeFormatter проверяет TimestampDecoderTest.
+//   java -cp out TimestampBenchmark [--lines=N] [--warmup=N] [--iterations=N] [--time=МС]
+public class TimestampBenchmark {
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int lineCount = 200_000;
+        int warmup = 3;
+        int iterations = 5;
+        int iterationMillis = 1000;
+        for (String arg : args) {
+            if (arg.startsWith("--lines=")) lineCount = Integer.parseInt(arg.substring("--lines=".length()));
+            else if (arg.startsWith("--warmup=")) warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            else if (arg.startsWith("--iterations=")) iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            else if (arg.startsWith("--time=")) iterationMillis = Integer.parseInt(arg.substring("--time=".length()));
+            else throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+        }
+
+        String[] dates = dates(new LogGenerator(42).lines(lineCount));
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations, iterationMillis);
+        List<BenchmarkRunner.Result> results = new ArrayList<>();
+        results.add(runner.measure("formatter", () -> {
+            long sum = 0;
+            for (String date : dates) sum += formatter(date);
+            sink += sum;
+            return dates.length;
+        }));
+        results.add(runner.measure("localDateTime", () -> {
+            long sum = 0;
+            for (String date : dates) sum += localDateTime(date);
+            sink += sum;
+            return dates.length;
+        }));
+        results.add(runner.measure("decode", () -> {
+            long sum = 0;
+            for (String date : dates) sum += TimestampDecoder.decodeEpochSecond(date, 0, date.length());
+            sink += sum;
+            return dates.length;
+        }));
+        TimestampDecoder decoder = new TimestampDecoder();
+        results.add(runner.measure("decodeMemo", () -> {
+            long sum = 0;
+            for (String date : dates) {
+                decoder.decode(date, 0, date.length());
+                sum += decoder.epochSecond();
+            }
+            sink += sum;
+            return dates.length;
+        }));
+
+        System.out.printf("decodeMemo быстрее formatter в %.1f раза%n", results.get(0).nsPerOp / results.get(3).nsPerOp);
+    }
+
+    // Метки времени строк combined
+    static String[] dates(String[] lines) {
+        String[] dates = new String[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            // Отдельные строки, чтобы повтор метки не сводился к сравнению ссылок
+            dates[i] = new String(lines[i].substring(lines[i].indexOf('[') + 1, lines[i].indexOf(']')));
+        }
+        return dates;
+    }
+
+    private static long formatter(String date) {
+        return OffsetDateTime.parse(date, DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH))
+                .toEpochSecond();
+    }
+
+    // Разбор, которым пользовался CombinedLogTokenizer до TimestampDecoder
+    private static long localDateTime(String date) {
+        int offset = (date.charAt(21) == '-' ? -1 : 1) * (digits(date, 22, 2) * 3600 + digits(date, 24, 2) * 60);
+        LocalDateTime time = LocalDateTime.of(digits(date, 7, 4), MONTHS.indexOf(date.substring(3, 6)) / 3 + 1,
+                digits(date, 0, 2), digits(date, 12, 2), digits(date, 15, 2), digits(date, 18, 2));
+        return time.toEpochSecond(ZoneOffset.ofTotalSeconds(offset));
+    }
+
+    private static int digits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Скорость определения ОС, браузера и ботов по User-Agent: прежняя цепочка
+// toLowerCase().contains против автомата правил с кешем UserAgentClassifier.
+// Поток User-Agent распределён по Ципфу среди нескольких тысяч популярных строк,
+// плюс длинный хвост уникальных строк, как в логах реальных сайтов. Совпадение
+// результатов с прежней цепочкой проверяет UserAgentTest.
+//   java -cp out UserAgentBenchmark [строк] [доля уникальных, %]
+public class UserAgentBenchmark {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int uniquePercent = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String[] agents = generateAgents(count, 3000, uniquePercent);
+
+        for (int round = 1; round <= 5; round++) {
+            long start = System.nanoTime();
+            int legacyBots = 0;
+            for (String agent : agents) {
+                if (legacy(agent).isBot()) legacyBots++;
+            }
+            long legacyTime = System.nanoTime() - start;
+
+            UserAgentClassifier classifier = new UserAgentClassifier();
+            start = System.nanoTime();
+            int bots = 0;
+            for (String agent : agents) {
+                if (classifier.classify(agent, 0, agent.length()).isBot()) bots++;
+            }
+            long time = System.nanoTime() - start;
+
+            UserAgentRules rules = UserAgentRules.defaults();
+            start = System.nanoTime();
+            int automatonBots = 0;
+            for (String agent : agents) {
+                if (rules.classify(agent, 0, agent.length()).isBot()) automatonBots++;
+            }
+            long automatonTime = System.nanoTime() - start;
+
+            System.out.printf("Раунд %d: contains %.0f нс/строку, автомат %.0f нс/строку, автомат с кешем %.0f нс/строку (ботов %d/%d/%d)%n",
+                    round, (double) legacyTime / count, (double) automatonTime / count, (double) time / count,
+                    legacyBots, automatonBots, bots);
+        }
+        System.out.printf("Попадания в кеш: %.1f%%%n", UserAgentClassifier.hitRate() * 100);
+    }
+
+    // Прежняя реализация UserAgent: две строки в нижнем регистре и до одиннадцати contains
+    static UserAgent legacy(String userAgent) {
+        String lower = userAgent.toLowerCase();
+        OsType os = OsType.UNKNOWN;
+        if (lower.contains("windows")) os = OsType.WINDOWS;
+        else if (lower.contains("mac")) os = OsType.MACOS;
+        else if (lower.contains("linux")) os = OsType.LINUX;
+        else if (lower.contains("android")) os = OsType.ANDROID;
+        else if (lower.contains("ios")) os = OsType.IOS;
+
+        lower = userAgent.toLowerCase();
+        BrowserType browser = BrowserType.OTHER;
+        if (lower.contains("edg")) browser = BrowserType.EDGE;
+        else if (lower.contains("firefox")) browser = BrowserType.FIREFOX;
+        else if (lower.contains("chrome")) browser = BrowserType.CHROME;
+        else if (lower.contains("safari")) browser = BrowserType.SAFARI;
+        else if (lower.contains("opera")) browser = BrowserType.OPERA;
+
+        return new UserAgent(os, browser, userAgent.toLowerCase().contains("bot"));
+    }
+
+    static String[] generateAgents(int count, int distinct, int uniquePercent) {
+        Random random = new Random(11);
+        String[] popular = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            popular[i] = randomAgent(random);
+        }
+
+        // Кумулятивные веса распределения Ципфа с показателем 1
+        double[] cumulative = new double[distinct];
+        double sum = 0;
+        for (int i = 0; i < distinct; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+
+        String[] agents = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(100) < uniquePercent) {
+                agents[i] = randomAgent(random);
+            } else {
+                double x = random.nextDouble() * sum;
+                int index = Arrays.binarySearch(cumulative, x);
+                agents[i] = popular[index >= 0 ? index : -index - 1];
+            }
+        }
+        return agents;
+    }
+
+    private static String randomAgent(Random random) {
+        int build = random.nextInt(10000);
+        int patch = random.nextInt(200);
+        switch (random.nextInt(7)) {
+            case 0:
+                return "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/"
+                        + (100 + random.nextInt(30)) + ".0." + build + "." + patch + " Safari/537.36";
+            case 1:
+                return "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/"
+                        + (100 + random.nextInt(30)) + ".0." + build + "." + patch + " Safari/537.36 Edg/" + (100 + random.nextInt(30)) + ".0." + build;
+            case 2:
+                return "Mozilla/5.0 (X11; Linux x86_64; rv:" + (90 + random.nextInt(40)) + ".0) Gecko/20100101 Firefox/" + (90 + random.nextInt(40)) + ".0";
+            case 3:
+                return "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_" + random.nextInt(8) + ") AppleWebKit/605.1.15 (KHTML, like Gecko) Version/"
+                        + (14 + random.nextInt(4)) + "." + random.nextInt(6) + " Safari/605.1.15";
+            case 4:
+                return "Mozilla/5.0 (Linux; Android " + (8 + random.nextInt(7)) + "; SM-G" + build + ") AppleWebKit/537.36 (KHTML, like Gecko) Chrome/"
+                        + (100 + random.nextInt(30)) + ".0." + build + " Mobile Safari/537.36";
+            case 5:
+                return "Mozilla/5.0 (iPhone; CPU iPhone OS 16_" + random.nextInt(7) + " like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/16.0 Mobile/15E" + build + " Safari/604.1";
+            default:
+                return "Mozilla/5.0 (compatible; Crawler" + build + "bot/" + patch + ".0; +http://example.com/bot.html)";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Пакетная обработка дерева папок с логами без интерактивного ввода: каждый файл -
+// отдельная задача, одновременно открыто не больше заданного числа файлов.
+// Файл разбирается в собственную статистику, которая сразу вливается в статистику
+// своего хоста; общая статистика собирается из хостов в конце. Ошибка в одном файле
+// учитывается и выводится, но не прерывает обработку остальных.
+//
+// Хост - первая папка пути файла относительно корня обхода (logs/web-01/...), для файлов
+// прямо в корне и для шаблонов - папка, в которой лежит файл.
+final class BatchProcessor {
+    private static final long PROGRESS_INTERVAL_SECONDS = 1;
+
+    private final Statistics prototype;
+    private final int maxOpenFiles;
+    private final int maxLineLength;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    // Разборщики переиспользуются между файлами вместе с их кешем User-Agent:
+    // файлы мелкие, и новый кеш на каждый файл почти не давал бы попаданий
+    private final ConcurrentLinkedQueue<LogTokenizer> tokenizers = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong processedFiles = new AtomicLong();
+    private final AtomicLong processedBytes = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+    private final AtomicLong invalidLines = new AtomicLong();
+
+    BatchProcessor(Statistics prototype, int maxOpenFiles, int maxLineLength) {
+        this.prototype = prototype;
+        this.maxOpenFiles = maxOpenFiles;
+        this.maxLineLength = maxLineLength;
+    }
+
+    // Обрабатывает файлы и добавляет всё в statistics; root - папка обхода или null для шаблона
+    void process(Path root, List<Path> files, Statistics statistics) throws InterruptedException {
+        long totalBytes = 0;
+        for (Path file : files) {
+            totalBytes += sizeOf(file);
+        }
+        long start = System.nanoTime();
+        ScheduledExecutorService printer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long total = totalBytes;
+        printer.scheduleAtFixedRate(() -> printProgress(files.size(), total, start),
+                PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        // Очередь задач не растёт: следующий файл отправляется, только когда освободилось место
+        Semaphore openFiles = new Semaphore(maxOpenFiles);
+        ExecutorService executor = newTaskExecutor();
+        try {
+            for (Path file : files) {
+                openFiles.acquire();
+                String host = hostOf(root, file);
+                executor.execute(() -> {
+                    try {
+                        processFile(host, file);
+                    } finally {
+                        openFiles.release();
+                    }
+                });
+            }
+            openFiles.acquire(maxOpenFiles);
+        } finally {
+            executor.shutdownNow();
+            printer.shutdownNow();
+        }
+        printProgress(files.size(), total, start);
+
+        // Хосты вливаются в общую статистику в порядке имён, чтобы результат не зависел от порядка завершения
+        for (Host host : new TreeMap<>(hosts).values()) {
+            statistics.merge(host.statistics);
+        }
+    }
+
+    // Итоги по хостам, упорядоченные по имени
+    Map<String, Host> getHosts() {
+        return new TreeMap<>(hosts);
+    }
+
+    long getFailedFiles() { return failedFiles.get(); }
+    long getInvalidLines() { return invalidLines.get(); }
+
+    private void processFile(String hostName, Path file) {
+        Host host = hosts.computeIfAbsent(hostName, name -> new Host(prototype.createEmpty()));
+        Statistics statistics = prototype.createEmpty();
+        LogTokenizer tokenizer = tokenizers.poll();
+        if (tokenizer == null) {
+            tokenizer = LogFormat.active().newTokenizer();
+        }
+        long[] invalid = new long[1];
+        try {
+            LogTokenizer fileTokenizer = tokenizer;
+            int lines = LogFiles.read(file, maxLineLength, line -> {
+                try {
+                    statistics.addEntry(new LogEntry(line, fileTokenizer));
+                } catch (IllegalArgumentException e) {
+                    invalid[0]++;
+                }
+            });
+            synchronized (host) {
+                host.statistics.merge(statistics);
+                host.files++;
+                host.lines += lines;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Частично разобранный файл не учитывается вовсе, чтобы итоги не зависели от места ошибки
+            failedFiles.incrementAndGet();
+            synchronized (host) {
+                host.failedFiles++;
+            }
+            System.out.println("Ошибка в файле " + file + ": " + e.getMessage());
+        } finally {
+            tokenizers.add(tokenizer);
+            invalidLines.addAndGet(invalid[0]);
+            processedBytes.addAndGet(sizeOf(file));
+            processedFiles.incrementAndGet();
+        }
+    }
+
+    private void printProgress(int totalFiles, long totalBytes, long start) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        long files = processedFiles.get();
+        long bytes = processedBytes.get();
+        System.out.printf("Файлов: %d из %d (%.1f файлов/с), %.1f из %.1f МБ (%.1f МБ/с), ошибок: %d%n",
+                files, totalFiles, files / seconds, bytes / 1048576.0, totalBytes / 1048576.0,
+                bytes / 1048576.0 / seconds, failedFiles.get());
+    }
+
+    static String hostOf(Path root, Path file) {
+        if (root != null) {
+            Path relative = root.relativize(file);
+            if (relative.getNameCount() > 1) {
+                return relative.getName(0).toString();
+            }
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        return parent != null && parent.getFileName() != null ? parent.getFileName().toString() : "/";
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Поток на задачу: виртуальные потоки, если они есть в JVM (Java 21+), иначе обычные.
+    // Число потоков в обоих случаях ограничено семафором открытых файлов
+    private static ExecutorService newTaskExecutor() {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        } catch (Throwable e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // Итоги одного хоста; поля меняются под блокировкой объекта
+    static final class Host {
+        private final Statistics statistics;
+        private int files;
+        private int failedFiles;
+        private long lines;
+
+        private Host(Statistics statistics) {
+            this.statistics = statistics;
+        }
+
+        Statistics getStatistics() { return statistics; }
+        int getFiles() { return files; }
+        int getFailedFiles() { return failedFiles; }
+        long getLines() { return lines; }
+    }
+}
\ No newline at end of file
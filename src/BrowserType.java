@@ -0,0 +1,14 @@
+// Enum с браузерами, которые определяются по User-Agent
+enum BrowserType {
+    EDGE("Edge"), FIREFOX("Firefox"), CHROME("Chrome"), SAFARI("Safari"), OPERA("Opera"), OTHER("Other");
+
+    private final String displayName;
+
+    BrowserType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+// Представление строки лога (байты UTF-8) в виде CharSequence без декодирования.
+// charAt возвращает байт как символ Latin-1: для разделителей формата (ASCII) этого достаточно,
+// а байты многобайтовых символов UTF-8 никогда не совпадают с ASCII.
+// Строка создаётся только при вызове subSequence/toString.
+// Объект переиспользуется читателем, поэтому хранить ссылку на него нельзя.
+final class ByteSlice implements CharSequence {
+    // Чтение восьми байт массива одним long для поиска символа по словам
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    void set(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char) (bytes[offset + index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(bytes, offset + start, end - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    // Первое вхождение ASCII-символа c начиная с from или -1. Байты проверяются по восемь:
+    // после XOR с образцом совпавший байт становится нулевым, а выражение
+    // (x - 0x01..01) & ~x & 0x80..80 выставляет старший бит у нулевых байтов. Ложные
+    // срабатывания бывают только выше настоящего нуля, поэтому младший бит точен
+    int indexOf(char c, int from) {
+        int i = offset + Math.max(from, 0);
+        int end = offset + length;
+        long pattern = (c & 0xFF) * ONES;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            long word = (long) LONGS.get(bytes, i) ^ pattern;
+            long found = (word - ONES) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3) - offset;
+            }
+        }
+        for (; i < end; i++) {
+            if (bytes[i] == (byte) c) {
+                return i - offset;
+            }
+        }
+        return -1;
+    }
+
+    // Копирует байты строки в target начиная с position
+    void copyTo(byte[] target, int position) {
+        System.arraycopy(bytes, offset, target, position, length);
+    }
+
+    // Длина строки в символах UTF-16: байты-продолжения не считаются,
+    // а четырёхбайтовые последовательности дают суррогатную пару
+    int charLength() {
+        int chars = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int b = bytes[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                chars += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        return chars;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+// Однопроходный разборщик строки в формате combined без регулярных выражений,
+// написанный вручную для формата по умолчанию. Число после User-Agent считается
+// временем ответа ($request_time). Остальные форматы разбирает TemplateLogTokenizer
+// по описанию LogFormat.
+final class CombinedLogTokenizer extends LogTokenizer {
+    @Override
+    boolean tokenize(CharSequence line) {
+        this.line = line;
+        int length = line.length();
+        int pos = 0;
+
+        // IP-адрес: цифры и точки
+        ipStart = pos;
+        while (pos < length && isIpChar(line.charAt(pos))) pos++;
+        if (pos == ipStart || pos >= length || line.charAt(pos) != ' ') return false;
+        ipEnd = pos++;
+
+        // Поля ident и user пропускаем без сохранения
+        pos = skipToken(line, pos, length);
+        if (pos < 0) return false;
+        pos = skipToken(line, pos, length);
+        if (pos < 0) return false;
+
+        // Дата в квадратных скобках
+        if (pos >= length || line.charAt(pos) != '[') return false;
+        int dateStart = ++pos;
+        while (pos < length && line.charAt(pos) != ']') pos++;
+        if (pos >= length) return false;
+        if (!timestampDecoder.decode(line, dateStart, pos)) return false;
+        pos++;
+
+        // Строка запроса: "METHOD path HTTP/x"
+        if (pos + 1 >= length || line.charAt(pos) != ' ' || line.charAt(pos + 1) != '"') return false;
+        pos += 2;
+        methodStart = pos;
+        while (pos < length && isWordChar(line.charAt(pos))) pos++;
+        if (pos == methodStart || pos >= length || line.charAt(pos) != ' ') return false;
+        methodEnd = pos++;
+        pathStart = pos;
+        pathEnd = indexOfProtocol(line, pos, length);
+        if (pathEnd < 0) return false;
+        pos = pathEnd + 6;
+        while (pos < length && line.charAt(pos) != '"') pos++;
+        if (pos >= length) return false;
+        pos++;
+
+        // Код ответа и размер ответа
+        if (pos >= length || line.charAt(pos) != ' ') return false;
+        int codeStart = ++pos;
+        while (pos < length && isDigit(line.charAt(pos))) pos++;
+        // Как и в других разборщиках: слишком длинный код не должен переполнять int
+        long code = parseNumber(line, codeStart, pos);
+        if (code < 0 || pos >= length || line.charAt(pos) != ' ') return false;
+        responseCode = (int) code;
+        int sizeStart = ++pos;
+        long size = 0;
+        while (pos < length && isDigit(line.charAt(pos))) {
+            size = size * 10 + (line.charAt(pos++) - '0');
+            if (size > Integer.MAX_VALUE) return false;
+        }
+        if (pos == sizeStart) return false;
+        dataSize = (int) size;
+
+        // Referer и User-Agent в кавычках
+        if (pos + 1 >= length || line.charAt(pos) != ' ' || line.charAt(pos + 1) != '"') return false;
+        refererStart = pos + 2;
+        refererEnd = indexOf(line, '"', refererStart, length);
+        if (refererEnd < 0) return false;
+        pos = refererEnd + 1;
+        if (pos + 1 >= length || line.charAt(pos) != ' ' || line.charAt(pos + 1) != '"') return false;
+        userAgentStart = pos + 2;
+        userAgentEnd = indexOf(line, '"', userAgentStart, length);
+        if (userAgentEnd < 0) return false;
+
+        // Необязательное время ответа после User-Agent, как в log_format combined
+        // с $request_time в конце; другой текст после User-Agent не разбирается
+        requestTime = -1;
+        pos = userAgentEnd + 1;
+        if (pos + 1 < length && line.charAt(pos) == ' ' && isDigit(line.charAt(pos + 1))) {
+            int end = pos + 1;
+            while (end < length && line.charAt(end) != ' ') end++;
+            requestTime = parseSeconds(line, pos + 1, end);
+        }
+        return true;
+    }
+
+    // Пропускает непустую последовательность непробельных символов и пробел после неё
+    private static int skipToken(CharSequence s, int pos, int length) {
+        int start = pos;
+        while (pos < length && !Character.isWhitespace(s.charAt(pos))) pos++;
+        if (pos == start || pos >= length || s.charAt(pos) != ' ') return -1;
+        return pos + 1;
+    }
+
+    private static boolean isIpChar(char c) {
+        return isDigit(c) || c == '.';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+// Построчное чтение сжатого gzip лога без распаковки на диск.
+// Распаковка идёт в отдельном потоке: он заполняет крупные блоки и кладёт их
+// в ограниченную очередь, а вызывающий поток делит блоки на строки и разбирает их,
+// поэтому распаковка и разбор идут одновременно. Блоки переиспользуются через
+// вторую очередь, так что память ограничена BLOCKS блоками при любом размере файла.
+final class CompressedLogReader {
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final int BLOCKS = 4;
+
+    private final int maxLineLength;
+
+    CompressedLogReader(int maxLineLength) {
+        this.maxLineLength = maxLineLength;
+    }
+
+    // Заполненный блок, признак конца файла (length < 0) или ошибка распаковки
+    private static final class Chunk {
+        private final byte[] data;
+        private final int length;
+        private final IOException error;
+
+        private Chunk(byte[] data, int length, IOException error) {
+            this.data = data;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    // Читает все строки файла и возвращает их количество
+    int read(Path path, Consumer<CharSequence> handler) throws IOException {
+        BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BLOCKS);
+        BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(BLOCKS + 1);
+        for (int i = 0; i < BLOCKS; i++) {
+            free.add(new byte[BLOCK_SIZE]);
+        }
+
+        Thread producer = new Thread(() -> inflate(path, free, filled), "inflate-" + path.getFileName());
+        producer.setDaemon(true);
+        producer.start();
+
+        LineSplitter splitter = new LineSplitter(maxLineLength, handler);
+        PipelineMetrics.track(PipelineMetrics.Queue.GZIP_BLOCKS, filled);
+        try {
+            while (true) {
+                Chunk chunk = filled.take();
+                if (chunk.error != null) {
+                    throw chunk.error;
+                }
+                if (chunk.length < 0) {
+                    return splitter.finish();
+                }
+                splitter.accept(ByteBuffer.wrap(chunk.data, 0, chunk.length));
+                free.put(chunk.data);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Чтение прервано: " + path, e);
+        } finally {
+            // При ошибке разбора распаковка больше не нужна
+            producer.interrupt();
+            PipelineMetrics.untrack(PipelineMetrics.Queue.GZIP_BLOCKS, filled);
+        }
+    }
+
+    private static void inflate(Path path, BlockingQueue<byte[]> free, BlockingQueue<Chunk> filled) {
+        try {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(path), 1 << 16)) {
+                while (true) {
+                    byte[] block = free.take();
+                    int length = in.readNBytes(block, 0, block.length);
+                    if (length == 0) {
+                        break;
+                    }
+                    filled.put(new Chunk(block, length, null));
+                }
+            } catch (IOException e) {
+                filled.put(new Chunk(null, -1, new IOException("Ошибка распаковки " + path + ": " + e.getMessage(), e)));
+                return;
+            }
+            filled.put(new Chunk(null, -1, null));
+        } catch (InterruptedException e) {
+            // Читатель закончил раньше времени
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,220 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Статистика, которую одновременно наполняют несколько потоков (по потоку на сокет
+// или на файл) без общей блокировки. Устроена как LongAdder: записи попадают в полосы -
+// обычные Statistics, каждая под собственной блокировкой. Поток закреплён за своей полосой,
+// и пока потоков не больше, чем полос, блокировка полосы не бывает занята другим потоком.
+// При столкновении поток переходит на следующую полосу. Полосы создаются при первом обращении.
+//
+// Геттеры те же, что у Statistics. Простые счётчики (число запросов, запросы не от ботов,
+// ошибки, трафик, границы времени) ведутся ещё и в LongAdder и LongAccumulator и читаются
+// без объединения и без блокировок, например для метрик в реальном времени; относительно
+// полос они могут немного опережать или отставать. Остальные геттеры каждый раз объединяют
+// полосы, поэтому для нескольких показателей подряд лучше один раз взять merged или snapshot.
+public final class ConcurrentStatistics {
+    private final Statistics prototype;
+    private final AtomicReferenceArray<Stripe> stripes;
+    private final int mask;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    // Номер полосы, за которой закреплён поток; у каждого экземпляра своя привязка
+    private final ThreadLocal<int[]> stripeIndex;
+
+    private final LongAdder totalVisits = new LongAdder();
+    private final LongAdder nonBotVisits = new LongAdder();
+    private final LongAdder errorRequests = new LongAdder();
+    private final LongAdder totalTraffic = new LongAdder();
+    private final LongAccumulator minEpochSecond = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxEpochSecond = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    public ConcurrentStatistics() {
+        this(new Statistics());
+    }
+
+    // Полосы создаются в режиме prototype (точном или приближённом с тем же бюджетом памяти).
+    // В приближённом режиме бюджет действует на каждую полосу, а не делится между ними:
+    // полос до 2 × число ядер, и ещё одну статистику создаёт merged, так что памяти нужно
+    // до (полос + 1) × бюджет. Деление бюджета ухудшило бы точность каждой полосы и сделало бы
+    // их несовместимыми с prototype при объединении
+    public ConcurrentStatistics(Statistics prototype) {
+        this(prototype, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    ConcurrentStatistics(Statistics prototype, int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.prototype = prototype;
+        this.stripes = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.stripeIndex = ThreadLocal.withInitial(() -> new int[]{nextStripe.getAndIncrement() & mask});
+    }
+
+    public void addEntry(LogEntry entry) {
+        Stripe stripe = lockStripe();
+        try {
+            stripe.statistics.addEntry(entry);
+        } finally {
+            stripe.lock.unlock();
+        }
+        totalVisits.increment();
+        if (!entry.getUserAgent().isBot()) {
+            nonBotVisits.increment();
+        }
+        if (isError(entry)) {
+            errorRequests.increment();
+        }
+        totalTraffic.add(entry.getDataSize());
+        minEpochSecond.accumulate(entry.getEpochSecond());
+        maxEpochSecond.accumulate(entry.getEpochSecond());
+    }
+
+    // Первые count записей одним захватом полосы: для источников, которые разбирают пачками
+    public void addEntries(LogEntry[] entries, int count) {
+        Stripe stripe = lockStripe();
+        long traffic = 0;
+        int nonBot = 0;
+        int errors = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        try {
+            for (int i = 0; i < count; i++) {
+                LogEntry entry = entries[i];
+                stripe.statistics.addEntry(entry);
+                traffic += entry.getDataSize();
+                if (!entry.getUserAgent().isBot()) {
+                    nonBot++;
+                }
+                if (isError(entry)) {
+                    errors++;
+                }
+                min = Math.min(min, entry.getEpochSecond());
+                max = Math.max(max, entry.getEpochSecond());
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        totalVisits.add(count);
+        nonBotVisits.add(nonBot);
+        errorRequests.add(errors);
+        totalTraffic.add(traffic);
+        minEpochSecond.accumulate(min);
+        maxEpochSecond.accumulate(max);
+    }
+
+    // Все полосы, объединённые в новую статистику. Каждая полоса копируется под своей
+    // блокировкой, так что её записи попадают в результат целиком
+    public Statistics merged() {
+        Statistics result = prototype.createEmpty();
+        for (int i = 0; i < stripes.length(); i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            stripe.lock.lock();
+            try {
+                result.merge(stripe.statistics);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    public StatisticsSnapshot snapshot() {
+        return merged().snapshot();
+    }
+
+    public boolean isApproximate() { return prototype.isApproximate(); }
+
+    // Показатели без объединения полос; счётчики запросов - int, как в Statistics
+    public int getTotalVisits() { return toInt(totalVisits.sum()); }
+    public int getNonBotVisits() { return toInt(nonBotVisits.sum()); }
+    public int getErrorRequests() { return toInt(errorRequests.sum()); }
+    public long getTotalTraffic() { return totalTraffic.sum(); }
+    public LocalDateTime getMinTime() { return toDateTime(minEpochSecond.get(), Long.MAX_VALUE); }
+    public LocalDateTime getMaxTime() { return toDateTime(maxEpochSecond.get(), Long.MIN_VALUE); }
+
+    // Показатели по объединённым полосам
+    public long getLateEntries() { return merged().getLateEntries(); }
+    public int getPeakVisitsPerSecond() { return merged().getPeakVisitsPerSecond(); }
+    public Set<String> getRefererDomains() { return merged().getRefererDomains(); }
+    public int getMaxVisitsPerUser() { return merged().getMaxVisitsPerUser(); }
+    public double getAverageVisitsPerHour() { return merged().getAverageVisitsPerHour(); }
+    public double getAverageErrorsPerHour() { return merged().getAverageErrorsPerHour(); }
+    public double getAverageVisitsPerUser() { return merged().getAverageVisitsPerUser(); }
+    public double getTrafficRate() { return merged().getTrafficRate(); }
+    public Set<String> getExistingPages() { return merged().getExistingPages(); }
+    public Set<String> getNotFoundPages() { return merged().getNotFoundPages(); }
+    public List<HeavyHitter> getTopIps(int n) { return merged().getTopIps(n); }
+    public List<HeavyHitter> getTopPages(int n) { return merged().getTopPages(n); }
+    public List<HeavyHitter> getTopRefererDomains(int n) { return merged().getTopRefererDomains(n); }
+    public double getUniqueIpsRelativeError() { return prototype.getUniqueIpsRelativeError(); }
+    public int getUniqueNonBotIps() { return merged().getUniqueNonBotIps(); }
+    public Map<String, Double> getOsShareStatistics() { return merged().getOsShareStatistics(); }
+    public Map<String, Double> getBrowserShareStatistics() { return merged().getBrowserShareStatistics(); }
+    public Map<String, Integer> getOsStatistics() { return merged().getOsStatistics(); }
+    public Map<String, Integer> getBrowserStatistics() { return merged().getBrowserStatistics(); }
+    public Map<HttpMethod, Integer> getMethodStatistics() { return merged().getMethodStatistics(); }
+    public List<TimeBucket> getTimeSeries(TimeGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        return merged().getTimeSeries(granularity, from, to);
+    }
+    public TimeBucket getTimeSeriesTotal(TimeGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        return merged().getTimeSeriesTotal(granularity, from, to);
+    }
+    public LatencySummary getLatency() { return merged().getLatency(); }
+    public List<LatencySummary> getLatencyByMethod() { return merged().getLatencyByMethod(); }
+    public List<LatencySummary> getLatencyByStatusClass() { return merged().getLatencyByStatusClass(); }
+    public List<LatencySummary> getLatencyByPathPrefix(int n) { return merged().getLatencyByPathPrefix(n); }
+
+    // То же условие, что в Statistics.addEntry
+    private static boolean isError(LogEntry entry) {
+        int responseCode = entry.getResponseCode();
+        return responseCode >= 400 && responseCode <= 599;
+    }
+
+    private static int toInt(long count) {
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    private static LocalDateTime toDateTime(long epochSecond, long empty) {
+        return epochSecond == empty ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    // Захватывает полосу потока; если она занята другим потоком, поток переходит
+    // на следующую, чтобы не столкнуться снова
+    private Stripe lockStripe() {
+        int[] index = stripeIndex.get();
+        Stripe stripe = stripe(index[0]);
+        if (!stripe.lock.tryLock()) {
+            index[0] = (index[0] + 1) & mask;
+            stripe = stripe(index[0]);
+            stripe.lock.lock();
+        }
+        return stripe;
+    }
+
+    private Stripe stripe(int index) {
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe(prototype.createEmpty()));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Statistics statistics;
+
+        private Stripe(Statistics statistics) {
+            this.statistics = statistics;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+// Элемент отчёта о самых частых значениях (IP, страницы, домены рефереров).
+// В приближённом режиме count может быть завышен не более чем на maxError;
+// в точном режиме maxError всегда равен нулю.
+public final class HeavyHitter {
+    private final String value;
+    private final long count;
+    private final long maxError;
+
+    HeavyHitter(String value, long count, long maxError) {
+        this.value = value;
+        this.count = count;
+        this.maxError = maxError;
+    }
+
+    public String getValue() { return value; }
+    public long getCount() { return count; }
+    public long getMaxError() { return maxError; }
+
+    @Override
+    public String toString() {
+        return maxError == 0 ? value + ": " + count : value + ": " + count + " (±" + maxError + ")";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+import java.io.IOException;
+
+// Оценка количества уникальных значений (HyperLogLog) в фиксированном объёме памяти.
+// 2^precision однобайтовых регистров дают стандартную относительную ошибку 1.04 / sqrt(2^precision).
+final class HyperLogLog {
+    static final int MIN_PRECISION = 4;
+    static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Точность HyperLogLog должна быть от "
+                    + MIN_PRECISION + " до " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    // Наибольшая точность, регистры которой помещаются в заданное число байт
+    static int precisionFor(long budgetBytes) {
+        int precision = MIN_PRECISION;
+        while (precision < MAX_PRECISION && (1L << (precision + 1)) <= budgetBytes) {
+            precision++;
+        }
+        return precision;
+    }
+
+    void add(CharSequence value) {
+        addHash(hash(value));
+    }
+
+    void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Номер первой единицы в оставшихся битах; сдвиг гарантирует конечный результат
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Для малых значений точнее линейный подсчёт по пустым регистрам
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // Стандартная относительная ошибка оценки
+    double relativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    int sizeInBytes() {
+        return registers.length;
+    }
+
+    void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Нельзя объединить HyperLogLog разной точности");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    // Для контрольной точки: точность и регистры как есть
+    void writeTo(StatisticsCheckpoint.Output out) throws IOException {
+        out.writeByte(precision);
+        out.writeBytes(registers, 0, registers.length);
+    }
+
+    void readFrom(StatisticsCheckpoint.Input in) throws IOException {
+        if (in.readByte() != precision) {
+            throw new IOException("Контрольная точка записана с другой точностью HyperLogLog");
+        }
+        in.readBytes(registers, 0, registers.length);
+    }
+
+    // 64-битный хеш FNV-1a с финальным перемешиванием: String.hashCode слишком короткий
+    // для десятков миллионов значений
+    static long hash(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
\ No newline at end of file
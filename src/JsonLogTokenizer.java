@@ -0,0 +1,328 @@
+// Потоковый разборщик JSON-логов (по объекту в строке) для формата LogFormat с таблицей
+// ключей. Объект проходится один раз без построения дерева и без создания строк: у ключей
+// из таблицы запоминаются границы значений, остальные значения, включая вложенные объекты
+// и массивы, только пропускаются. Как только найдены все ключи таблицы, остаток строки
+// не читается.
+// Строки с escape-последовательностями встречаются редко, поэтому границы указывают прямо
+// в строку лога; только если нужное значение содержит "\", все нужные значения
+// раскодируются в собственный буфер, и поля указывают в него.
+// Экземпляр не потокобезопасен: у каждого потока свой.
+final class JsonLogTokenizer extends LogTokenizer {
+    private final char[][] keys;
+    private final String[] keyStrings;
+    private final int[] keyVariables;
+    // Открытая адресация по длине, первому и последнему символу ключа: номер ключа + 1
+    // или 0 в пустой ячейке
+    private final int[] table;
+    // Номер ключа + 1 (0 - ключа нет в таблице) для каждой по счёту пары предыдущей строки.
+    // Строки пишутся по одному шаблону, поэтому ключи обычно идут в том же порядке, и
+    // ожидаемый ключ проверяется одним сравнением без поиска кавычки и хеш-таблицы
+    private final int[] expected = new int[32];
+    // Все переменные таблицы: когда найдены все, разбор заканчивается
+    private final int wanted;
+    private final int[] starts = new int[LogFormat.VARIABLES.length];
+    private final int[] ends = new int[LogFormat.VARIABLES.length];
+    private final StringBuilder unescaped = new StringBuilder();
+    // Есть ли "\" где-нибудь в строке лога: если нет, конец каждой строки JSON - просто
+    // следующая кавычка
+    private boolean lineEscaped;
+    // Были ли "\" в последней пройденной строке JSON
+    private boolean stringEscaped;
+
+    JsonLogTokenizer(LogFormat format) {
+        this.keys = format.keys;
+        this.keyVariables = format.keyVariables;
+        this.keyStrings = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keyStrings[i] = new String(keys[i]);
+        }
+        int wanted = 0;
+        for (int variable : keyVariables) {
+            wanted |= LogFormat.bit(variable);
+        }
+        this.wanted = wanted;
+        this.table = new int[Math.max(16, Integer.highestOneBit(keys.length) * 4)];
+        for (int i = 0; i < keys.length; i++) {
+            int slot = hash(keys[i].length, keys[i][0], keys[i][keys[i].length - 1]) & (table.length - 1);
+            while (table[slot] != 0) slot = (slot + 1) & (table.length - 1);
+            table[slot] = i + 1;
+        }
+    }
+
+    @Override
+    boolean tokenize(CharSequence line) {
+        int length = line.length();
+        int pos = skipSpaces(line, 0, length);
+        if (pos >= length || line.charAt(pos) != '{') return false;
+        pos = skipSpaces(line, pos + 1, length);
+        lineEscaped = indexOf(line, '\\', pos, length) >= 0;
+        int present = 0;
+        int escaped = 0;
+
+        for (int pair = 0; present != wanted; pair++) {
+            if (pos >= length || line.charAt(pos) != '"') return false;
+            int key = pair < expected.length ? expected[pair] - 1 : -1;
+            int keyEnd = key < 0 ? -1 : pos + 1 + keys[key].length;
+            if (keyEnd < 0 || keyEnd >= length || line.charAt(keyEnd) != '"' || !matches(line, pos + 1, key)) {
+                keyEnd = stringEnd(line, pos + 1, length);
+                if (keyEnd < 0) return false;
+                key = key(line, pos + 1, keyEnd);
+                if (pair < expected.length) {
+                    expected[pair] = key + 1;
+                }
+            }
+            int variable = key < 0 ? LogFormat.SKIP : keyVariables[key];
+            pos = skipSpaces(line, keyEnd + 1, length);
+            if (pos >= length || line.charAt(pos) != ':') return false;
+            pos = skipSpaces(line, pos + 1, length);
+            if (pos >= length) return false;
+
+            char c = line.charAt(pos);
+            int valueStart = pos;
+            int valueEnd;
+            if (c == '"') {
+                valueStart = pos + 1;
+                valueEnd = stringEnd(line, valueStart, length);
+                if (valueEnd < 0) return false;
+                pos = valueEnd + 1;
+            } else if (c == '{' || c == '[') {
+                pos = skipNested(line, pos, length);
+                if (pos < 0) return false;
+                variable = LogFormat.SKIP;
+                valueEnd = pos;
+            } else {
+                // Число, true, false или null
+                while (pos < length && !isDelimiter(line.charAt(pos))) pos++;
+                if (pos == valueStart) return false;
+                valueEnd = pos;
+                if (valueEnd - valueStart == 4 && line.charAt(valueStart) == 'n') {
+                    variable = LogFormat.SKIP;
+                }
+            }
+            if (variable != LogFormat.SKIP && (present & LogFormat.bit(variable)) == 0) {
+                starts[variable] = valueStart;
+                ends[variable] = valueEnd;
+                present |= LogFormat.bit(variable);
+                if (c == '"' && stringEscaped) {
+                    escaped |= LogFormat.bit(variable);
+                }
+            }
+
+            pos = skipSpaces(line, pos, length);
+            if (pos >= length) return false;
+            if (line.charAt(pos) == '}') break;
+            if (line.charAt(pos) != ',') return false;
+            pos = skipSpaces(line, pos + 1, length);
+        }
+        return setFields(line, present, escaped);
+    }
+
+    // Поля из найденных значений; приоритет переменных - как в LogFormat.used
+    private boolean setFields(CharSequence line, int present, int escaped) {
+        if (!LogFormat.isComplete(present)) return false;
+        int used = LogFormat.used(present);
+        if ((escaped & used) != 0) {
+            if (!unescape(line, used, escaped)) return false;
+            line = unescaped;
+        }
+        this.line = line;
+        clearOptional();
+
+        ipStart = starts[LogFormat.REMOTE_ADDR];
+        ipEnd = ends[LogFormat.REMOTE_ADDR];
+        if (ipEnd == ipStart) return false;
+
+        boolean time;
+        if (isUsed(used, LogFormat.TIME_LOCAL)) {
+            time = timestampDecoder.decode(line, starts[LogFormat.TIME_LOCAL], ends[LogFormat.TIME_LOCAL]);
+        } else if (isUsed(used, LogFormat.TIME_ISO8601)) {
+            time = timestampDecoder.decodeIso8601(line, starts[LogFormat.TIME_ISO8601], ends[LogFormat.TIME_ISO8601]);
+        } else {
+            time = timestampDecoder.decodeMsec(line, starts[LogFormat.MSEC], ends[LogFormat.MSEC]);
+        }
+        if (!time) return false;
+
+        if (isUsed(used, LogFormat.REQUEST)) {
+            if (!setRequest(line, starts[LogFormat.REQUEST], ends[LogFormat.REQUEST])) return false;
+        } else {
+            if (isUsed(used, LogFormat.REQUEST_METHOD)) {
+                methodStart = starts[LogFormat.REQUEST_METHOD];
+                methodEnd = ends[LogFormat.REQUEST_METHOD];
+            }
+            int uri = isUsed(used, LogFormat.REQUEST_URI) ? LogFormat.REQUEST_URI : LogFormat.URI;
+            pathStart = starts[uri];
+            pathEnd = ends[uri];
+            if (pathEnd == pathStart) return false;
+        }
+
+        long status = parseNumber(line, starts[LogFormat.STATUS], ends[LogFormat.STATUS]);
+        if (status < 0) return false;
+        responseCode = (int) status;
+        int bytes = isUsed(used, LogFormat.BODY_BYTES_SENT) ? LogFormat.BODY_BYTES_SENT
+                : isUsed(used, LogFormat.BYTES_SENT) ? LogFormat.BYTES_SENT : LogFormat.SKIP;
+        if (bytes != LogFormat.SKIP) {
+            long size = parseNumber(line, starts[bytes], ends[bytes]);
+            if (size < 0) return false;
+            dataSize = (int) size;
+        }
+        if (isUsed(used, LogFormat.HTTP_REFERER)) {
+            refererStart = starts[LogFormat.HTTP_REFERER];
+            refererEnd = ends[LogFormat.HTTP_REFERER];
+        }
+        if (isUsed(used, LogFormat.HTTP_USER_AGENT)) {
+            userAgentStart = starts[LogFormat.HTTP_USER_AGENT];
+            userAgentEnd = ends[LogFormat.HTTP_USER_AGENT];
+        }
+        if (isUsed(used, LogFormat.REQUEST_TIME)) {
+            requestTime = parseSeconds(line, starts[LogFormat.REQUEST_TIME], ends[LogFormat.REQUEST_TIME]);
+            if (requestTime < 0) return false;
+        }
+        return true;
+    }
+
+    // Копирует нужные значения в буфер, раскодируя escape-последовательности, и переносит
+    // их границы в буфер; false, если последовательность неверна. Участки без "\"
+    // копируются через subSequence, чтобы ByteSlice раскодировал байты UTF-8
+    private boolean unescape(CharSequence line, int used, int escaped) {
+        unescaped.setLength(0);
+        for (int variable = 0; variable < LogFormat.VARIABLES.length; variable++) {
+            if (!isUsed(used, variable)) continue;
+            int start = unescaped.length();
+            int end = ends[variable];
+            int run = starts[variable];
+            for (int i = run; i < end; i++) {
+                if (line.charAt(i) != '\\' || !isUsed(escaped, variable)) {
+                    continue;
+                }
+                appendRaw(line, run, i);
+                if (++i >= end) return false;
+                switch (line.charAt(i)) {
+                    case '"': unescaped.append('"'); break;
+                    case '\\': unescaped.append('\\'); break;
+                    case '/': unescaped.append('/'); break;
+                    case 'b': unescaped.append('\b'); break;
+                    case 'f': unescaped.append('\f'); break;
+                    case 'n': unescaped.append('\n'); break;
+                    case 'r': unescaped.append('\r'); break;
+                    case 't': unescaped.append('\t'); break;
+                    case 'u': {
+                        if (i + 4 >= end) return false;
+                        int code = 0;
+                        for (int k = 1; k <= 4; k++) {
+                            int digit = Character.digit(line.charAt(i + k), 16);
+                            if (digit < 0) return false;
+                            code = code * 16 + digit;
+                        }
+                        // Суррогатная пара приходит двумя последовательностями подряд и складывается сама
+                        unescaped.append((char) code);
+                        i += 4;
+                        break;
+                    }
+                    default:
+                        return false;
+                }
+                run = i + 1;
+            }
+            appendRaw(line, run, end);
+            starts[variable] = start;
+            ends[variable] = unescaped.length();
+        }
+        return true;
+    }
+
+    private void appendRaw(CharSequence line, int start, int end) {
+        if (line instanceof String) {
+            unescaped.append(line, start, end);
+        } else if (start < end) {
+            unescaped.append(line.subSequence(start, end));
+        }
+    }
+
+    // Номер ключа таблицы на участке [start, end) или -1
+    private int key(CharSequence line, int start, int end) {
+        int length = end - start;
+        if (length == 0) return -1;
+        int mask = table.length - 1;
+        for (int slot = hash(length, line.charAt(start), line.charAt(end - 1)) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int key = table[slot] - 1;
+            if (keys[key].length == length && matches(line, start, key)) return key;
+        }
+        return -1;
+    }
+
+    // Совпадает ли участок строки с началом в start с ключом
+    private boolean matches(CharSequence line, int start, int key) {
+        if (line instanceof String) {
+            // Сравнение по байтам String без charAt на каждый символ
+            return ((String) line).regionMatches(start, keyStrings[key], 0, keyStrings[key].length());
+        }
+        char[] chars = keys[key];
+        if (line.length() - start < chars.length) return false;
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] != line.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private static int hash(int length, char first, char last) {
+        int h = (length * 31 + first) * 31 + last;
+        return h ^ (h >>> 7);
+    }
+
+    // Позиция закрывающей кавычки строки, которая начинается в start, или -1
+    private int stringEnd(CharSequence s, int start, int length) {
+        if (!lineEscaped) {
+            stringEscaped = false;
+            return indexOf(s, '"', start, length);
+        }
+        boolean escapes = false;
+        for (int i = start; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                stringEscaped = escapes;
+                return i;
+            }
+            if (c == '\\') {
+                escapes = true;
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    // Позиция после вложенного объекта или массива, который начинается в pos, или -1
+    private int skipNested(CharSequence s, int pos, int length) {
+        int depth = 0;
+        for (; pos < length; pos++) {
+            char c = s.charAt(pos);
+            if (c == '"') {
+                pos = stringEnd(s, pos + 1, length);
+                if (pos < 0) return -1;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                return pos + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(CharSequence s, int pos, int length) {
+        while (pos < length && isSpace(s.charAt(pos))) pos++;
+        return pos;
+    }
+
+    // Конец числа или литерала: запятая, скобка или пробельный символ (все пробельные
+    // символы JSON не больше ' ')
+    private static boolean isDelimiter(char c) {
+        return c <= ' ' || c == ',' || c == '}' || c == ']';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static boolean isUsed(int used, int variable) {
+        return (used & LogFormat.bit(variable)) != 0;
+    }
+}
\ No newline at end of file
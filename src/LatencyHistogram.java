@@ -0,0 +1,120 @@
+import java.io.IOException;
+
+// Гистограмма времени ответа в микросекундах с логарифмически-линейными корзинами, как
+// в HdrHistogram: значения меньше 64 мкс хранятся точно, а каждый следующий интервал
+// [2^k, 2^(k+1)) делится на 32 равные корзины. Поэтому квантиль отличается от точного
+// не больше чем на 1/32 (~3%) при любом масштабе, а память постоянна: 896 счётчиков
+// на значения до 2^32 мкс (больше часа), более долгие запросы попадают в последнюю корзину.
+//
+// Номер корзины считается по старшему биту значения без циклов и ветвлений по корзинам,
+// поэтому запись - несколько операций без создания объектов. Гистограммы с одинаковыми
+// корзинами складываются счётчик к счётчику, так что частичные гистограммы потоков
+// и файлов объединяются без потери точности.
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Наибольшее различимое значение; значения больше него записываются как оно
+    static final long MAX_VALUE = (1L << 32) - 1;
+    static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final int[] counts = new int[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    long getCount() { return count; }
+    long getSum() { return sum; }
+    long getMax() { return max; }
+
+    // Значение, которого не превышает доля quantile записей (0.5 - медиана): верхняя граница
+    // корзины, где набирается нужное число записей, но не больше наибольшего значения
+    long quantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    // Сводка по квантилям, которые выводятся в отчётах
+    LatencySummary summary(String name) {
+        return new LatencySummary(name, count, sum, quantile(0.5), quantile(0.9), quantile(0.99),
+                quantile(0.999), max);
+    }
+
+    static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    // Наибольшее значение, которое попадает в корзину
+    static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    // Непустые корзины: их число, затем разность номера с предыдущей и счётчик;
+    // после них наибольшее значение и сумма
+    void writeTo(StatisticsCheckpoint.Output out) throws IOException {
+        int nonEmpty = 0;
+        for (int c : counts) {
+            if (c != 0) nonEmpty++;
+        }
+        out.writeVarLong(nonEmpty);
+        int previous = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                out.writeVarLong(i - previous);
+                out.writeVarLong(counts[i]);
+                previous = i;
+            }
+        }
+        out.writeVarLong(max);
+        out.writeVarLong(sum);
+    }
+
+    void readFrom(StatisticsCheckpoint.Input in) throws IOException {
+        int index = 0;
+        for (int i = in.readCount(); i > 0; i--) {
+            index += in.readIndex();
+            if (index >= BUCKETS) {
+                throw new IOException("Контрольная точка повреждена: неверный номер корзины гистограммы");
+            }
+            counts[index] = in.readVarInt();
+            count += counts[index];
+        }
+        max = in.readVarLong();
+        sum = in.readVarLong();
+    }
+}
\ No newline at end of file
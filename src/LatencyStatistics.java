@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Время ответа ($request_time) в Statistics: общая гистограмма и разрезы по HTTP-методу,
+// классу кода ответа (1xx-5xx) и началу пути - первому его сегменту ("/api" для
+// "/api/v1/items?id=5").
+//
+// Памяти нужно не больше фиксированного объёма: гистограммы постоянного размера создаются
+// при первой записи в свой разрез, а различных начал пути хранится не больше
+// MAX_PATH_PREFIXES, остальные складываются в одну общую гистограмму. Начало пути ищется
+// в открытой адресации сравнением с участком пути, так что строка для него создаётся
+// только при первом появлении, и запись уже виденного разреза обходится без создания объектов.
+// Объединение частичных статистик точно, пока различных начал пути не больше предела;
+// после него то, какие начала попадут в общую гистограмму, зависит от порядка записей.
+final class LatencyStatistics {
+    static final int MAX_PATH_PREFIXES = 64;
+    // Название общей гистограммы начал пути, не вошедших в MAX_PATH_PREFIXES
+    static final String OTHER_PATHS = "(остальные)";
+    private static final String[] STATUS_CLASSES = {"прочие", "1xx", "2xx", "3xx", "4xx", "5xx"};
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram[] byMethod = new LatencyHistogram[METHODS.length];
+    // Индекс - первая цифра кода ответа, 0 - коды вне 100-599
+    private final LatencyHistogram[] byStatusClass = new LatencyHistogram[STATUS_CLASSES.length];
+    // Таблица вдвое больше предела, поэтому в ней всегда есть пустые ячейки
+    private final String[] prefixes = new String[2 * MAX_PATH_PREFIXES];
+    private final LatencyHistogram[] byPrefix = new LatencyHistogram[prefixes.length];
+    private int prefixCount;
+    private LatencyHistogram otherPrefixes;
+
+    void record(HttpMethod method, int responseCode, String path, long micros) {
+        total.record(micros);
+        histogram(byMethod, method.ordinal()).record(micros);
+        histogram(byStatusClass, statusClass(responseCode)).record(micros);
+        prefixHistogram(path, prefixEnd(path)).record(micros);
+    }
+
+    long getCount() {
+        return total.getCount();
+    }
+
+    void merge(LatencyStatistics other) {
+        total.merge(other.total);
+        mergeAll(byMethod, other.byMethod);
+        mergeAll(byStatusClass, other.byStatusClass);
+        for (int slot = 0; slot < other.prefixes.length; slot++) {
+            String prefix = other.prefixes[slot];
+            if (prefix != null) {
+                prefixHistogram(prefix, prefix.length()).merge(other.byPrefix[slot]);
+            }
+        }
+        if (other.otherPrefixes != null) {
+            otherPrefixes().merge(other.otherPrefixes);
+        }
+    }
+
+    // Сводка по всем запросам; null, если времени ответа в логах не было
+    LatencySummary summary() {
+        return total.getCount() == 0 ? null : total.summary("все запросы");
+    }
+
+    List<LatencySummary> byMethod() {
+        List<LatencySummary> result = new ArrayList<>();
+        for (HttpMethod method : METHODS) {
+            if (byMethod[method.ordinal()] != null) {
+                result.add(byMethod[method.ordinal()].summary(method.name()));
+            }
+        }
+        return result;
+    }
+
+    // Классы кодов по возрастанию, коды вне 100-599 в конце
+    List<LatencySummary> byStatusClass() {
+        List<LatencySummary> result = new ArrayList<>();
+        for (int i = 1; i <= STATUS_CLASSES.length; i++) {
+            int statusClass = i % STATUS_CLASSES.length;
+            if (byStatusClass[statusClass] != null) {
+                result.add(byStatusClass[statusClass].summary(STATUS_CLASSES[statusClass]));
+            }
+        }
+        return result;
+    }
+
+    // n начал пути с наибольшим числом запросов
+    List<LatencySummary> byPathPrefix(int n) {
+        List<LatencySummary> result = new ArrayList<>();
+        for (int slot = 0; slot < prefixes.length; slot++) {
+            if (prefixes[slot] != null) {
+                result.add(byPrefix[slot].summary(prefixes[slot]));
+            }
+        }
+        if (otherPrefixes != null) {
+            result.add(otherPrefixes.summary(OTHER_PATHS));
+        }
+        result.sort(Comparator.comparingLong(LatencySummary::getCount).reversed()
+                .thenComparing(LatencySummary::getName));
+        return result.size() > n ? new ArrayList<>(result.subList(0, n)) : result;
+    }
+
+    // Гистограммы разрезов по порядку, у отсутствующих - пустые; затем начала пути
+    // с их гистограммами и гистограмма остальных начал
+    void writeTo(StatisticsCheckpoint.Output out) throws IOException {
+        total.writeTo(out);
+        writeAll(out, byMethod);
+        writeAll(out, byStatusClass);
+        out.writeVarLong(prefixCount);
+        for (int slot = 0; slot < prefixes.length; slot++) {
+            if (prefixes[slot] != null) {
+                out.writeString(prefixes[slot]);
+                byPrefix[slot].writeTo(out);
+            }
+        }
+        (otherPrefixes != null ? otherPrefixes : new LatencyHistogram()).writeTo(out);
+    }
+
+    void readFrom(StatisticsCheckpoint.Input in) throws IOException {
+        total.readFrom(in);
+        readAll(in, byMethod);
+        readAll(in, byStatusClass);
+        int count = in.readCount();
+        if (count > MAX_PATH_PREFIXES) {
+            throw new IOException("Контрольная точка повреждена: неверное число начал пути " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            String prefix = in.readString();
+            prefixHistogram(prefix, prefix.length()).readFrom(in);
+        }
+        LatencyHistogram other = new LatencyHistogram();
+        other.readFrom(in);
+        if (other.getCount() > 0) {
+            otherPrefixes = other;
+        }
+    }
+
+    private static void writeAll(StatisticsCheckpoint.Output out, LatencyHistogram[] histograms) throws IOException {
+        out.writeVarLong(histograms.length);
+        for (LatencyHistogram histogram : histograms) {
+            (histogram != null ? histogram : new LatencyHistogram()).writeTo(out);
+        }
+    }
+
+    // Число гистограмм должно совпасть, как у счётчиков в Statistics.readCounts
+    private static void readAll(StatisticsCheckpoint.Input in, LatencyHistogram[] histograms) throws IOException {
+        if (in.readCount() != histograms.length) {
+            throw new IOException("Контрольная точка повреждена: неверное число гистограмм");
+        }
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.readFrom(in);
+            histograms[i] = histogram.getCount() > 0 ? histogram : null;
+        }
+    }
+
+    private static void mergeAll(LatencyHistogram[] target, LatencyHistogram[] source) {
+        for (int i = 0; i < target.length; i++) {
+            if (source[i] != null) {
+                histogram(target, i).merge(source[i]);
+            }
+        }
+    }
+
+    private static LatencyHistogram histogram(LatencyHistogram[] histograms, int index) {
+        LatencyHistogram histogram = histograms[index];
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms[index] = histogram;
+        }
+        return histogram;
+    }
+
+    private static int statusClass(int responseCode) {
+        return responseCode >= 100 && responseCode <= 599 ? responseCode / 100 : 0;
+    }
+
+    // Конец первого сегмента пути: следующий "/" или начало параметров запроса
+    static int prefixEnd(String path) {
+        int end = 1;
+        while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '?') end++;
+        return Math.min(end, path.length());
+    }
+
+    // Гистограмма начала пути path[0, end)
+    private LatencyHistogram prefixHistogram(String path, int end) {
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + path.charAt(i);
+        }
+        int mask = prefixes.length - 1;
+        for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            String prefix = prefixes[slot];
+            if (prefix == null) {
+                if (prefixCount == MAX_PATH_PREFIXES) {
+                    return otherPrefixes();
+                }
+                prefixes[slot] = path.substring(0, end);
+                byPrefix[slot] = new LatencyHistogram();
+                prefixCount++;
+                return byPrefix[slot];
+            }
+            if (prefix.length() == end && path.startsWith(prefix)) {
+                return byPrefix[slot];
+            }
+        }
+    }
+
+    private LatencyHistogram otherPrefixes() {
+        if (otherPrefixes == null) {
+            otherPrefixes = new LatencyHistogram();
+        }
+        return otherPrefixes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+import java.util.Locale;
+
+// Квантили времени ответа для одного разреза (всех запросов, метода, класса кода ответа
+// или начала пути). Значения в микросекундах; квантили - верхние границы корзин
+// LatencyHistogram, то есть завышены не больше чем на 1/32
+public final class LatencySummary {
+    private final String name;
+    private final long count;
+    private final long sumMicros;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    LatencySummary(String name, long count, long sumMicros, long p50, long p90, long p99, long p999, long max) {
+        this.name = name;
+        this.count = count;
+        this.sumMicros = sumMicros;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public String getName() { return name; }
+    // Запросов с известным временем ответа
+    public long getCount() { return count; }
+    public long getSumMicros() { return sumMicros; }
+    public double getMeanMicros() { return count == 0 ? 0.0 : (double) sumMicros / count; }
+    public long getP50Micros() { return p50; }
+    public long getP90Micros() { return p90; }
+    public long getP99Micros() { return p99; }
+    public long getP999Micros() { return p999; }
+    public long getMaxMicros() { return max; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s: %d запросов, p50 %s, p90 %s, p99 %s, p99.9 %s, max %s мс",
+                name, count, millis(p50), millis(p90), millis(p99), millis(p999), millis(max));
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Деление потока байт на строки. Байты поступают порциями любого размера (окно
+// отображённого файла, блок распакованных данных), переносятся в рабочий блок одним
+// копированием, границы строк ищутся прямо в нём, а строка передаётся обработчику
+// как ByteSlice без декодирования в String. Незавершённая строка в конце блока
+// переносится в начало следующего.
+// Переводы строк \n, \r\n и \r обрабатываются так же, как в BufferedReader.readLine.
+// Строка длиннее maxLineLength символов - ошибка LineTooLongException, а если задан
+// обработчик tooLong, она пропускается целиком и чтение продолжается со следующей
+final class LineSplitter {
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final int maxLineLength;
+    private final Consumer<CharSequence> handler;
+    private final Runnable tooLong;
+    private final ByteSlice slice = new ByteSlice();
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int carry;
+    private int lines;
+    private boolean skipLineFeed;
+    // Начало текущей строки уже отброшено как слишком длинное, остаток пропускается
+    private boolean skipping;
+
+    LineSplitter(int maxLineLength, Consumer<CharSequence> handler) {
+        this(maxLineLength, handler, null);
+    }
+
+    LineSplitter(int maxLineLength, Consumer<CharSequence> handler, Runnable tooLong) {
+        this.maxLineLength = maxLineLength;
+        this.handler = handler;
+        this.tooLong = tooLong;
+    }
+
+    // Разбирает все оставшиеся байты буфера
+    void accept(ByteBuffer source) {
+        PipelineMetrics.bytesRead(source.remaining());
+        while (source.hasRemaining()) {
+            if (carry == block.length) {
+                // Незавершённая строка заняла весь блок
+                if (skipping || !checkLength(0, carry)) {
+                    skipping = true;
+                    carry = 0;
+                } else {
+                    block = Arrays.copyOf(block, block.length * 2);
+                }
+            }
+            int count = Math.min(block.length - carry, source.remaining());
+            source.get(block, carry, count);
+
+            int limit = carry + count;
+            int lineStart = 0;
+            for (int i = carry; i < limit; i++) {
+                byte b = block[i];
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (b == '\n') {
+                        lineStart = i + 1;
+                        continue;
+                    }
+                }
+                if (b == '\n' || b == '\r') {
+                    lines++;
+                    emit(lineStart, i - lineStart);
+                    skipLineFeed = b == '\r';
+                    lineStart = i + 1;
+                }
+            }
+            carry = limit - lineStart;
+            System.arraycopy(block, lineStart, block, 0, carry);
+        }
+    }
+
+    // Передаёт последнюю строку без перевода строки; возвращает общее количество строк
+    int finish() {
+        if (carry > 0) {
+            lines++;
+            emit(0, carry);
+            carry = 0;
+        }
+        return lines;
+    }
+
+    private void emit(int offset, int length) {
+        if (skipping) {
+            skipping = false;
+            return;
+        }
+        if (checkLength(offset, length)) {
+            handler.accept(slice);
+        }
+    }
+
+    // Число символов не больше числа байт, поэтому точный подсчёт нужен только для длинных строк.
+    // false - строка слишком длинная и пропускается
+    private boolean checkLength(int offset, int length) {
+        slice.set(block, offset, length);
+        if (length > maxLineLength) {
+            int chars = slice.charLength();
+            if (chars > maxLineLength) {
+                PipelineMetrics.lineTooLong();
+                if (tooLong == null) {
+                    throw new Main.LineTooLongException("Строка слишком длинная: " + chars + " символов");
+                }
+                tooLong.run();
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
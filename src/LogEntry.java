@@ -1,59 +1,67 @@
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.time.ZoneOffset;
 
 public class LogEntry {
     private final String ipAddress;
-    private final LocalDateTime dateTime;
+    // Время хранится примитивами: LocalDateTime создаётся только по запросу
+    private final long epochSecond;
+    private final int offsetSeconds;
     private final HttpMethod method;
     private final String path;
     private final int responseCode;
     private final int dataSize;
     private final String referer;
     private final UserAgent userAgent;
+    // Время ответа в микросекундах или -1, если его нет в строке
+    private final long requestTimeMicros;
+
+    // Разборщик для конструктора по строке: у каждого потока свой, вместе с кешем User-Agent
+    private static final ThreadLocal<LogTokenizer> TOKENIZER =
+            ThreadLocal.withInitial(() -> LogFormat.active().newTokenizer());
 
     public LogEntry(String logLine) {
-        // Регулярное выражение для парсинга лог-строки
-        String regex = "^([\\d.]+) \\S+ \\S+ \\[(.*?)\\] \"(\\w+) (.*?) HTTP/.*?\" (\\d+) (\\d+) \"([^\"]*)\" \"([^\"]*)\"";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(logLine);
+        this(logLine, TOKENIZER.get());
+    }
 
-        if (matcher.find()) {
-            this.ipAddress = matcher.group(1);
-            this.dateTime = parseDateTime(matcher.group(2));
-            this.method = parseHttpMethod(matcher.group(3));
-            this.path = matcher.group(4);
-            this.responseCode = Integer.parseInt(matcher.group(5));
-            this.dataSize = Integer.parseInt(matcher.group(6));
-            this.referer = matcher.group(7).equals("-") ? null : matcher.group(7);
-            this.userAgent = new UserAgent(matcher.group(8));
-        } else {
+    // Конструктор для горячего цикла чтения: разборщик переиспользуется между строками
+    LogEntry(CharSequence logLine, LogTokenizer tokenizer) {
+        // Без сервера метрик ни счётчик выборки, ни System.nanoTime не трогаются
+        boolean sampled = PipelineMetrics.isEnabled() && tokenizer.sampleLatency();
+        long start = sampled ? System.nanoTime() : 0;
+        if (!tokenizer.tokenize(logLine)) {
+            PipelineMetrics.parseFailed();
             throw new IllegalArgumentException("Invalid log format: " + logLine);
         }
-    }
-
-    private LocalDateTime parseDateTime(String dateTimeString) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
-        return LocalDateTime.parse(dateTimeString, formatter);
-    }
-
-    private HttpMethod parseHttpMethod(String methodString) {
-        try {
-            return HttpMethod.valueOf(methodString.toUpperCase());
-        } catch (IllegalArgumentException e) {
-            return HttpMethod.UNKNOWN;
+        this.ipAddress = tokenizer.ipAddress();
+        this.epochSecond = tokenizer.epochSecond();
+        this.offsetSeconds = tokenizer.offsetSeconds();
+        this.method = tokenizer.method();
+        this.path = tokenizer.path();
+        this.responseCode = tokenizer.responseCode();
+        this.dataSize = tokenizer.dataSize();
+        this.referer = tokenizer.referer();
+        this.userAgent = tokenizer.userAgent();
+        this.requestTimeMicros = tokenizer.requestTimeMicros();
+        if (sampled) {
+            PipelineMetrics.parseLatency(System.nanoTime() - start);
         }
+        PipelineMetrics.lineParsed();
     }
 
     // Геттеры
     public String getIpAddress() { return ipAddress; }
-    public LocalDateTime getDateTime() { return dateTime; }
+    // Местное время, как оно записано в логе
+    public LocalDateTime getDateTime() {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+    // Момент запроса в секундах эпохи UTC
+    public long getEpochSecond() { return epochSecond; }
     public HttpMethod getMethod() { return method; }
     public String getPath() { return path; }
     public int getResponseCode() { return responseCode; }
     public int getDataSize() { return dataSize; }
     public String getReferer() { return referer; }
     public UserAgent getUserAgent() { return userAgent; }
+    // Время ответа ($request_time) в микросекундах; -1, если формат лога его не содержит
+    public long getRequestTimeMicros() { return requestTimeMicros; }
 }
\ No newline at end of file
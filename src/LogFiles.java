@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Выбор входных файлов и способа их чтения. Сжатие определяется по первым байтам
+// файла, а не по расширению: ротация не всегда сохраняет .gz в имени.
+final class LogFiles {
+    enum Compression { NONE, GZIP, ZSTD }
+
+    private LogFiles() {
+    }
+
+    static Compression detect(Path path) throws IOException {
+        byte[] magic = new byte[4];
+        int read;
+        try (InputStream in = Files.newInputStream(path)) {
+            read = in.readNBytes(magic, 0, magic.length);
+        }
+        if (read >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+            return Compression.GZIP;
+        }
+        if (read == 4 && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5
+                && (magic[2] & 0xFF) == 0x2F && (magic[3] & 0xFF) == 0xFD) {
+            return Compression.ZSTD;
+        }
+        return Compression.NONE;
+    }
+
+    // Читает строки файла любого поддерживаемого вида и возвращает их количество
+    static int read(Path path, int maxLineLength, Consumer<CharSequence> handler) throws IOException {
+        switch (detect(path)) {
+            case GZIP:
+                return new CompressedLogReader(maxLineLength).read(path, handler);
+            case ZSTD:
+                // В стандартной библиотеке нет распаковщика zstd, а внешних зависимостей у проекта нет
+                throw new IOException("Файл сжат zstd, такой формат не поддерживается: " + path
+                        + " (распакуйте его или пережмите в gzip)");
+            default:
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    return new MappedLogReader(maxLineLength).read(channel, 0, channel.size(), handler);
+                }
+        }
+    }
+
+    // Файлы по введённому пути: сам файл, все файлы папки или файлы, подходящие под шаблон
+    // вида /var/log/nginx/access.log*. Список упорядочен по имени; индексы в папке
+    // пропускаются, потому что рядом с ними лежат исходные логи
+    static List<Path> expand(String input) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (isPattern(input)) {
+            Path pattern = Path.of(input);
+            Path directory = pattern.getParent() != null ? pattern.getParent() : Path.of(".");
+            PathMatcher matcher = directory.getFileSystem().getPathMatcher("glob:" + pattern.getFileName());
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    for (Path file : stream) {
+                        if (Files.isRegularFile(file) && matcher.matches(file.getFileName())) {
+                            files.add(file);
+                        }
+                    }
+                }
+            }
+        } else {
+            Path path = Path.of(input);
+            if (Files.isDirectory(path)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                    for (Path file : stream) {
+                        if (Files.isRegularFile(file) && !LogIndex.isIndex(file)) {
+                            files.add(file);
+                        }
+                    }
+                }
+            } else if (Files.isRegularFile(path)) {
+                files.add(path);
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    // Как expand, но папка обходится вместе со всеми вложенными папками. Индексы
+    // узнаются по расширению, чтобы не открывать лишний раз каждый из тысяч файлов
+    static List<Path> walk(String input) throws IOException {
+        Path path = Path.of(input);
+        if (isPattern(input) || !Files.isDirectory(path)) {
+            return expand(input);
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(path)) {
+            stream.filter(file -> Files.isRegularFile(file)
+                    && !(file.getFileName().toString().endsWith(LogIndex.EXTENSION) && LogIndex.isIndex(file)))
+                    .forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    // Шаблоны ищутся только в имени файла, в имени папки они не поддерживаются
+    private static boolean isPattern(String input) {
+        return input.indexOf('*') >= 0 || input.indexOf('?') >= 0 || input.indexOf('[') >= 0 || input.indexOf('{') >= 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Режим слежения за растущим файлом лога (аналог tail -F).
+// Файл читается с начала, затем новые полные строки подхватываются по мере дозаписи.
+// Ротация определяется по смене идентификатора файла (inode), усечение - по уменьшению размера.
+// Поток чтения копит записи в частичной статистике и с заданным интервалом передаёт её
+// отдельному потоку публикации, а сам начинает новую. Поток публикации вливает частичные
+// статистики в общую по порядку и строит из неё StatisticsSnapshot, который публикуется
+// через volatile-поле; так полные обходы IP и посекундных счётчиков при построении среза
+// не останавливают чтение лога, а читатели срезов его не блокируют.
+// Контрольные точки пишет поток публикации: частичная статистика передаётся между блоками
+// вместе с позицией, поэтому статистика в точке в точности соответствует позиции в файле.
+// Общая статистика полна, когда run() завершился. В приближённом режиме частичная
+// статистика занимает тот же бюджет памяти, а скетчи объединяются приближённо.
+final class LogFollower {
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    // Сколько байт обрабатывать за один проход, чтобы срезы публиковались и при большом отставании
+    private static final long MAX_CHUNK_SIZE = 64L << 20;
+
+    private final Path path;
+    // Общая статистика; пока идёт run(), её меняет только поток публикации
+    private final Statistics statistics;
+    // Записи, прочитанные после последней передачи потоку публикации
+    private Statistics pending;
+    private ExecutorService publisher;
+    private final MappedLogReader reader;
+    private final int maxLineLength;
+    private final LogTokenizer tokenizer = LogFormat.active().newTokenizer();
+    private final long snapshotIntervalNanos;
+
+    private volatile StatisticsSnapshot latestSnapshot;
+    private volatile long processedLines;
+    private volatile boolean stopped;
+
+    private Path checkpoint;
+    private long checkpointIntervalNanos;
+    // Позиция, с которой начнётся чтение при первом открытии файла
+    private long resumePosition;
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    // Начало строки длиннее MAX_CHUNK_SIZE уже пропущено, остаток до перевода строки отбрасывается
+    private boolean skippingLine;
+
+    LogFollower(Path path, Statistics statistics, int maxLineLength, long snapshotIntervalMillis) {
+        this.path = path;
+        this.statistics = statistics;
+        this.pending = statistics.createEmpty();
+        this.maxLineLength = maxLineLength;
+        this.reader = new MappedLogReader(maxLineLength, this::lineTooLong);
+        this.snapshotIntervalNanos = TimeUnit.MILLISECONDS.toNanos(snapshotIntervalMillis);
+    }
+
+    // Последний опубликованный срез; null, пока не прошёл первый интервал
+    StatisticsSnapshot getLatestSnapshot() {
+        return latestSnapshot;
+    }
+
+    long getProcessedLines() {
+        return processedLines;
+    }
+
+    // Периодически сохранять статистику и позицию в файле; последняя точка пишется при stop()
+    void enableCheckpoints(Path checkpoint, long intervalMillis) {
+        this.checkpoint = checkpoint;
+        this.checkpointIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    // Продолжить чтение с позиции из контрольной точки, если по пути лежит тот же файл
+    // и он не стал короче. Возвращает позицию или -1, если файл придётся читать с начала
+    long resume(List<StatisticsCheckpoint.FileOffset> offsets) throws IOException {
+        Object currentKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        for (StatisticsCheckpoint.FileOffset offset : offsets) {
+            if (offset.matches(path, currentKey)) {
+                resumePosition = offset.getOffset();
+                return resumePosition;
+            }
+        }
+        return -1;
+    }
+
+    // Завершить run() после текущего блока; вызывается из другого потока
+    void stop() {
+        stopped = true;
+    }
+
+    // Основной цикл; завершается при прерывании потока или после stop(), когда все
+    // прочитанные записи влиты в общую статистику и последняя контрольная точка записана
+    void run() throws IOException {
+        publisher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean completed = false;
+        try {
+            open();
+            long nextSnapshot = System.nanoTime() + snapshotIntervalNanos;
+            long nextCheckpoint = System.nanoTime() + checkpointIntervalNanos;
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                boolean progressed = readAvailable(false);
+                checkRotation();
+
+                boolean snapshotDue = System.nanoTime() >= nextSnapshot;
+                boolean checkpointDue = checkpoint != null && System.nanoTime() >= nextCheckpoint;
+                if (snapshotDue || checkpointDue) {
+                    publish(snapshotDue, checkpointDue);
+                }
+                if (snapshotDue) {
+                    nextSnapshot = System.nanoTime() + snapshotIntervalNanos;
+                }
+                if (checkpointDue) {
+                    nextCheckpoint = System.nanoTime() + checkpointIntervalNanos;
+                }
+                if (!progressed) {
+                    try {
+                        Thread.sleep(POLL_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            // Цикл закончился между блоками, позиция соответствует статистике
+            completed = true;
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+            // Остаток записей вливается в общую статистику и при ошибке чтения,
+            // но контрольная точка пишется только после завершения между блоками
+            publish(false, completed && checkpoint != null);
+            awaitPublisher();
+        }
+    }
+
+    // Передаёт накопленные записи потоку публикации и начинает новую частичную статистику;
+    // позиция и файл запоминаются сейчас, пока они соответствуют переданным записям
+    private void publish(boolean snapshot, boolean writeCheckpoint) {
+        Statistics delta = pending;
+        pending = statistics.createEmpty();
+        Object key = fileKey;
+        long at = position;
+        publisher.execute(() -> {
+            statistics.merge(delta);
+            if (snapshot) {
+                latestSnapshot = statistics.snapshot();
+            }
+            if (writeCheckpoint) {
+                writeCheckpoint(key, at);
+            }
+        });
+    }
+
+    // Ждёт, пока поток публикации обработает всё переданное, даже если поток чтения прерван
+    private void awaitPublisher() {
+        publisher.shutdown();
+        boolean interrupted = Thread.interrupted();
+        while (true) {
+            try {
+                if (publisher.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        position = resumePosition;
+        resumePosition = 0;
+        skippingLine = false;
+    }
+
+    private void writeCheckpoint(Object key, long at) {
+        try {
+            StatisticsCheckpoint.write(checkpoint, statistics,
+                    List.of(StatisticsCheckpoint.FileOffset.of(path, key, at)));
+        } catch (IOException e) {
+            System.out.println("Не удалось записать контрольную точку: " + e.getMessage());
+        }
+    }
+
+    // Обрабатывает дописанные полные строки; при includeTail - и последнюю незавершённую.
+    // Возвращает true, если что-то было прочитано
+    private boolean readAvailable(boolean includeTail) throws IOException {
+        long size = channel.size();
+        if (size < position) {
+            System.out.println("Файл " + path + " усечён, чтение начинается сначала");
+            position = 0;
+            skippingLine = false;
+        }
+        if (size == position) {
+            return false;
+        }
+        // Прошлый блок мог закончиться на "\r" перед "\n": этот "\n" завершает уже прочитанную строку
+        if (lineFeedAfterReturn(position)) {
+            position++;
+            return true;
+        }
+
+        long limit = Math.min(size, position + MAX_CHUNK_SIZE);
+        if (skippingLine) {
+            long next = nextLineStart(position, limit);
+            skippingLine = next < 0;
+            position = skippingLine ? limit : next;
+            return true;
+        }
+        long end = includeTail && limit == size ? size : lastLineEnd(position, limit);
+        if (end == position) {
+            if (limit - position < MAX_CHUNK_SIZE) {
+                return false;
+            }
+            // Целый блок без перевода строки: такая строка заведомо слишком длинная,
+            // она пропускается до следующего перевода строки, даже если он ещё не дописан
+            System.out.println("Ошибка: строка длиннее " + MAX_CHUNK_SIZE + " байт пропущена");
+            position = limit;
+            skippingLine = true;
+            return true;
+        }
+
+        processedLines += reader.read(channel, position, end, this::processLine);
+        position = end;
+        return true;
+    }
+
+    // Слишком длинная строка пропускается, строки после неё в том же блоке обрабатываются
+    private void lineTooLong() {
+        System.out.println("Ошибка: строка длиннее " + maxLineLength + " символов пропущена");
+    }
+
+    private void processLine(CharSequence line) {
+        try {
+            pending.addEntry(new LogEntry(line, tokenizer));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка парсинга строки: " + e.getMessage());
+        }
+    }
+
+    // Если по пути лежит другой файл, дочитываем старый до конца и переключаемся на новый
+    private void checkRotation() throws IOException {
+        Object currentKey;
+        try {
+            currentKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            // Старый файл уже переименован, новый ещё не создан
+            return;
+        }
+        if (Objects.equals(currentKey, fileKey)) {
+            return;
+        }
+
+        while (readAvailable(true)) {
+            // Дочитываем всё, что успели записать в старый файл
+        }
+        channel.close();
+        System.out.println("Файл " + path + " заменён (ротация), чтение нового файла");
+        open();
+    }
+
+    // Позиция сразу после последнего перевода строки (\n или \r, как в LineSplitter)
+    // в диапазоне [from, to); from, если его нет
+    private long lastLineEnd(long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long chunkEnd = to;
+        while (chunkEnd > from) {
+            long chunkStart = Math.max(from, chunkEnd - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (chunkEnd - chunkStart));
+            int read = channel.read(buffer, chunkStart);
+            for (int i = read - 1; i >= 0; i--) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    return chunkStart + i + 1;
+                }
+            }
+            chunkEnd = chunkStart;
+        }
+        return from;
+    }
+
+    // Позиция сразу после первого перевода строки в диапазоне [from, to); -1, если его нет
+    private long nextLineStart(long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (long chunkStart = from; chunkStart < to; chunkStart += buffer.capacity()) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - chunkStart));
+            int read = channel.read(buffer, chunkStart);
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    return chunkStart + i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // true, если в позиции at стоит "\n", а перед ним "\r"
+    private boolean lineFeedAfterReturn(long at) throws IOException {
+        if (at == 0) {
+            return false;
+        }
+        ByteBuffer pair = ByteBuffer.allocate(2);
+        return channel.read(pair, at - 1) == 2 && pair.get(0) == '\r' && pair.get(1) == '\n';
+    }
+}
\ No newline at end of file
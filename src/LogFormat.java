@@ -0,0 +1,318 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Формат строк лога. Задаётся именем (combined, common, json) или строкой log_format
+// nginx с переменными $имя и ${имя}; строка, которая начинается с "{", описывает
+// JSON-лог, где значения полей - переменные ("ip": "$remote_addr").
+//
+// Описание компилируется один раз: из переменных остаются только те, что нужны LogEntry
+// (адрес, время, запрос, код, размер, referer, User-Agent, время ответа $request_time),
+// остальные ($upstream_response_time, $host и любые другие) разборщик пропускает,
+// не создавая строк.
+// Текстовый формат превращается в последовательность шагов "поле и литерал после него"
+// для TemplateLogTokenizer, JSON - в таблицу ключей для потокового JsonLogTokenizer.
+// Для combined используется написанный вручную CombinedLogTokenizer.
+//
+// Как и правила UserAgentRules, активный формат задаётся один раз при запуске,
+// а каждый поток создаёт свой разборщик через newTokenizer.
+final class LogFormat {
+    static final String COMBINED_TEMPLATE = "$remote_addr - $remote_user [$time_local] \"$request\" "
+            + "$status $body_bytes_sent \"$http_referer\" \"$http_user_agent\"";
+    static final String COMMON_TEMPLATE = "$remote_addr - $remote_user [$time_local] \"$request\" $status $body_bytes_sent";
+
+    // Переменные, из которых берутся поля LogEntry. Номер переменной - бит в масках
+    // present и used; остальные переменные - SKIP
+    static final int SKIP = -1;
+    static final int REMOTE_ADDR = 0;
+    static final int TIME_LOCAL = 1;
+    static final int TIME_ISO8601 = 2;
+    static final int MSEC = 3;
+    static final int REQUEST = 4;
+    static final int REQUEST_METHOD = 5;
+    static final int REQUEST_URI = 6;
+    static final int URI = 7;
+    static final int STATUS = 8;
+    static final int BODY_BYTES_SENT = 9;
+    static final int BYTES_SENT = 10;
+    static final int HTTP_REFERER = 11;
+    static final int HTTP_USER_AGENT = 12;
+    static final int REQUEST_TIME = 13;
+    static final String[] VARIABLES = {
+            "remote_addr", "time_local", "time_iso8601", "msec", "request", "request_method",
+            "request_uri", "uri", "status", "body_bytes_sent", "bytes_sent", "http_referer", "http_user_agent",
+            "request_time"
+    };
+
+    private static final LogFormat COMBINED = new LogFormat("combined", null, null, null, null, null);
+    private static volatile LogFormat active = COMBINED;
+
+    private final String name;
+    // Текстовый формат: литерал до первой переменной, переменные и литералы после каждой
+    final char[] prefix;
+    final int[] steps;
+    final char[][] literals;
+    // JSON: ключи и их переменные
+    final char[][] keys;
+    final int[] keyVariables;
+
+    private LogFormat(String name, char[] prefix, int[] steps, char[][] literals, char[][] keys, int[] keyVariables) {
+        this.name = name;
+        this.prefix = prefix;
+        this.steps = steps;
+        this.literals = literals;
+        this.keys = keys;
+        this.keyVariables = keyVariables;
+    }
+
+    static LogFormat combined() {
+        return COMBINED;
+    }
+
+    // Формат, которым разбираются логи
+    static LogFormat active() {
+        return active;
+    }
+
+    static void activate(LogFormat format) {
+        active = format;
+    }
+
+    // Формат по имени или строке log_format; IllegalArgumentException, если описание неверно
+    static LogFormat parse(String spec) {
+        switch (spec) {
+            case "combined":
+                return COMBINED;
+            case "common":
+                return template("common", COMMON_TEMPLATE);
+            case "json":
+                // Ключи совпадают с именами переменных nginx
+                char[][] keys = new char[VARIABLES.length][];
+                int[] variables = new int[VARIABLES.length];
+                for (int i = 0; i < VARIABLES.length; i++) {
+                    keys[i] = VARIABLES[i].toCharArray();
+                    variables[i] = i;
+                }
+                return new LogFormat("json", null, null, null, keys, variables);
+            default:
+                return spec.trim().startsWith("{") ? json(spec) : template(spec, spec);
+        }
+    }
+
+    LogTokenizer newTokenizer() {
+        if (keys != null) {
+            return new JsonLogTokenizer(this);
+        }
+        return steps != null ? new TemplateLogTokenizer(this) : new CombinedLogTokenizer();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    // Текстовый формат: переменные должны разделяться литералами, иначе граница между
+    // значениями неизвестна
+    static LogFormat template(String name, String template) {
+        List<String> parts = split(template);
+        char[] prefix = parts.get(0).toCharArray();
+        int count = (parts.size() - 1) / 2;
+        String[] names = new String[count];
+        char[][] literals = new char[count][];
+        int present = 0;
+        for (int i = 0; i < count; i++) {
+            names[i] = parts.get(1 + 2 * i);
+            literals[i] = parts.get(2 + 2 * i).toCharArray();
+            if (literals[i].length == 0 && i < count - 1) {
+                throw new IllegalArgumentException("Переменные $" + names[i] + " и $" + parts.get(3 + 2 * i)
+                        + " в формате лога ничем не разделены");
+            }
+            int variable = variable(names[i]);
+            if (variable != SKIP) {
+                present |= bit(variable);
+            }
+        }
+        checkComplete(present);
+        int used = used(present);
+        int[] steps = new int[count];
+        for (int i = 0; i < count; i++) {
+            // Повторная переменная пропускается: поле берётся из первой
+            int variable = variable(names[i]);
+            if (variable != SKIP && (used & bit(variable)) != 0) {
+                steps[i] = variable;
+                used &= ~bit(variable);
+            } else {
+                steps[i] = SKIP;
+            }
+        }
+        return new LogFormat(name, prefix, steps, literals, null, null);
+    }
+
+    // JSON-формат: пары "ключ": "$переменная" или "ключ": $переменная верхнего уровня;
+    // значения из нескольких переменных или с текстом вокруг не разбираются
+    static LogFormat json(String template) {
+        List<char[]> keys = new ArrayList<>();
+        List<Integer> variables = new ArrayList<>();
+        int present = 0;
+        int pos = skipSpaces(template, 0);
+        if (pos >= template.length() || template.charAt(pos) != '{') {
+            throw new IllegalArgumentException("JSON-формат лога должен начинаться с {");
+        }
+        pos = skipSpaces(template, pos + 1);
+        while (pos < template.length() && template.charAt(pos) != '}') {
+            int keyEnd = template.charAt(pos) == '"' ? template.indexOf('"', pos + 1) : -1;
+            int colon = keyEnd < 0 ? -1 : skipSpaces(template, keyEnd + 1);
+            if (colon < 0 || colon >= template.length() || template.charAt(colon) != ':') {
+                throw new IllegalArgumentException("Ошибка в JSON-формате лога в позиции " + pos);
+            }
+            String key = template.substring(pos + 1, keyEnd);
+            int valueStart = skipSpaces(template, colon + 1);
+            int valueEnd = valueEnd(template, valueStart);
+            String value = template.substring(valueStart, valueEnd).trim();
+            if (value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                value = value.substring(1, value.length() - 1);
+            }
+            List<String> parts = split(value);
+            int variable = parts.size() == 3 && parts.get(0).isEmpty() && parts.get(2).isEmpty()
+                    ? variable(parts.get(1)) : SKIP;
+            if (variable != SKIP) {
+                keys.add(key.toCharArray());
+                variables.add(variable);
+                present |= bit(variable);
+            }
+            pos = skipSpaces(template, valueEnd);
+            if (pos < template.length() && template.charAt(pos) == ',') {
+                pos = skipSpaces(template, pos + 1);
+            }
+        }
+        checkComplete(present);
+        int[] keyVariables = new int[variables.size()];
+        for (int i = 0; i < keyVariables.length; i++) {
+            keyVariables[i] = variables.get(i);
+        }
+        return new LogFormat(template, null, null, null, keys.toArray(new char[0][]), keyVariables);
+    }
+
+    // Какие из найденных переменных дают поля: $request важнее $request_method и $request_uri,
+    // $request_uri важнее $uri, $time_local - $time_iso8601 и $msec, $body_bytes_sent - $bytes_sent
+    static int used(int present) {
+        int used = present & (bit(REMOTE_ADDR) | bit(STATUS) | bit(HTTP_REFERER) | bit(HTTP_USER_AGENT) | bit(REQUEST_TIME));
+        used |= first(present, TIME_LOCAL, TIME_ISO8601, MSEC);
+        if ((present & bit(REQUEST)) != 0) {
+            used |= bit(REQUEST);
+        } else {
+            used |= present & bit(REQUEST_METHOD);
+            used |= first(present, REQUEST_URI, URI);
+        }
+        used |= first(present, BODY_BYTES_SENT, BYTES_SENT);
+        return used;
+    }
+
+    // Есть ли всё, без чего запись не построить: адрес, время, путь и код ответа
+    static boolean isComplete(int present) {
+        return (present & bit(REMOTE_ADDR)) != 0 && (present & bit(STATUS)) != 0
+                && (present & (bit(TIME_LOCAL) | bit(TIME_ISO8601) | bit(MSEC))) != 0
+                && (present & (bit(REQUEST) | bit(REQUEST_URI) | bit(URI))) != 0;
+    }
+
+    private static void checkComplete(int present) {
+        if (isComplete(present)) {
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        if ((present & bit(REMOTE_ADDR)) == 0) missing.add("$remote_addr");
+        if ((present & (bit(TIME_LOCAL) | bit(TIME_ISO8601) | bit(MSEC))) == 0) missing.add("$time_local, $time_iso8601 или $msec");
+        if ((present & (bit(REQUEST) | bit(REQUEST_URI) | bit(URI))) == 0) missing.add("$request, $request_uri или $uri");
+        if ((present & bit(STATUS)) == 0) missing.add("$status");
+        throw new IllegalArgumentException("В формате лога нет нужных переменных: " + String.join("; ", missing));
+    }
+
+    private static int first(int present, int a, int b) {
+        return (present & bit(a)) != 0 ? bit(a) : present & bit(b);
+    }
+
+    private static int first(int present, int a, int b, int c) {
+        if ((present & bit(a)) != 0) return bit(a);
+        if ((present & bit(b)) != 0) return bit(b);
+        return present & bit(c);
+    }
+
+    static int bit(int variable) {
+        return 1 << variable;
+    }
+
+    private static int variable(String name) {
+        for (int i = 0; i < VARIABLES.length; i++) {
+            if (VARIABLES[i].equals(name)) {
+                return i;
+            }
+        }
+        return SKIP;
+    }
+
+    // Литералы и имена переменных по очереди: литерал, имя, литерал, ..., литерал
+    private static List<String> split(String template) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < template.length()) {
+            char c = template.charAt(pos);
+            if (c != '$') {
+                literal.append(c);
+                pos++;
+                continue;
+            }
+            int start = pos + 1;
+            int end;
+            if (start < template.length() && template.charAt(start) == '{') {
+                end = template.indexOf('}', start);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Незакрытая переменная в формате лога: " + template.substring(pos));
+                }
+                start++;
+                pos = end + 1;
+            } else {
+                end = start;
+                while (end < template.length() && isNameChar(template.charAt(end))) end++;
+                pos = end;
+            }
+            if (end == start) {
+                throw new IllegalArgumentException("Пустое имя переменной в формате лога в позиции " + start);
+            }
+            parts.add(literal.toString());
+            parts.add(template.substring(start, end));
+            literal.setLength(0);
+        }
+        parts.add(literal.toString());
+        return parts;
+    }
+
+    // Конец значения в JSON-шаблоне: запятая или } вне строки и вложенных объектов
+    private static int valueEnd(String template, int pos) {
+        boolean quoted = false;
+        int depth = 0;
+        for (; pos < template.length(); pos++) {
+            char c = template.charAt(pos);
+            if (c == '\\' && quoted) {
+                pos++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == '{' || c == '[')) {
+                depth++;
+            } else if (!quoted && depth > 0 && (c == '}' || c == ']')) {
+                depth--;
+            } else if (!quoted && depth == 0 && (c == ',' || c == '}')) {
+                return pos;
+            }
+        }
+        throw new IllegalArgumentException("JSON-формат лога должен заканчиваться }");
+    }
+
+    private static int skipSpaces(String s, int pos) {
+        while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        return pos;
+    }
+
+    private static boolean isNameChar(char c) {
+        return LogTokenizer.isWordChar(c);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,498 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Бинарный колоночный индекс разобранного лога. Один раз разобранный текст сохраняется
+// в компактном виде, и статистика по нему пересчитывается без повторного разбора строк.
+//
+// Строковые поля (IP, путь, User-Agent, referer) хранятся словарями, а в колонках -
+// номера значений в словаре. Время - разность с предыдущей записью в секундах,
+// метод - байт, код и размер ответа - числа переменной длины (varint), время ответа -
+// varint микросекунд плюс один (0 - времени ответа в строке нет).
+// При загрузке колонки читаются через отображение в память, счётчики сначала
+// копятся по номерам значений, и в Statistics каждое значение попадает один раз
+// со своим числом повторений. User-Agent классифицируется при загрузке, поэтому
+// индекс не зависит от правил --ua-rules.
+//
+// Формат: заголовок (сигнатура, версия, имя исходного файла, его размер, время изменения
+// и контрольная сумма начала, число записей, длины разделов), затем четыре словаря
+// и девять колонок подряд.
+final class LogIndex {
+    static final String EXTENSION = ".idx";
+
+    private static final int MAGIC = 0x414C4958; // "ALIX"
+    // Версия 2: время хранится по UTC с учётом смещения пояса из лога.
+    // Версия 3: добавлена колонка времени ответа
+    private static final int VERSION = 3;
+    private static final int CHECKSUM_BYTES = 1 << 16;
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int IP_DICTIONARY = 0;
+    private static final int PATH_DICTIONARY = 1;
+    private static final int AGENT_DICTIONARY = 2;
+    private static final int REFERER_DICTIONARY = 3;
+    private static final int TIME_COLUMN = 4;
+    private static final int IP_COLUMN = 5;
+    private static final int PATH_COLUMN = 6;
+    private static final int AGENT_COLUMN = 7;
+    private static final int REFERER_COLUMN = 8;
+    private static final int METHOD_COLUMN = 9;
+    private static final int STATUS_COLUMN = 10;
+    private static final int SIZE_COLUMN = 11;
+    private static final int REQUEST_TIME_COLUMN = 12;
+    private static final int SECTIONS = 13;
+
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+
+    private LogIndex() {
+    }
+
+    // Путь индекса по умолчанию: рядом с логом, с расширением .idx
+    static Path defaultPath(Path log) {
+        return log.resolveSibling(log.getFileName() + EXTENSION);
+    }
+
+    // Проверяет по сигнатуре, что файл является индексом
+    static boolean isIndex(Path path) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Разбирает лог и записывает индекс; возвращает число записей в индексе.
+    // Строки, которые не удалось разобрать, в индекс не попадают
+    static int build(Path log, Path index, int maxLineLength) throws IOException {
+        Builder builder = new Builder();
+        LogTokenizer tokenizer = LogFormat.active().newTokenizer();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            new MappedLogReader(maxLineLength).read(channel, 0, channel.size(), line -> {
+                if (tokenizer.tokenize(line)) {
+                    builder.add(tokenizer);
+                } else {
+                    System.out.println("Ошибка парсинга строки: Invalid log format: " + line);
+                }
+            });
+        }
+
+        Source source = Source.of(log);
+        ByteColumn[] sections = builder.sections();
+        Path temporary = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, log.getFileName().toString());
+            out.writeLong(source.size);
+            out.writeLong(source.modified);
+            out.writeLong(source.checksum);
+            out.writeInt(builder.rows);
+            for (ByteColumn section : sections) {
+                out.writeLong(section.length);
+            }
+            for (ByteColumn section : sections) {
+                section.writeTo(out);
+            }
+        }
+        // Индекс появляется под своим именем только целиком
+        Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING);
+        return builder.rows;
+    }
+
+    // Добавляет в статистику все записи индекса; возвращает их число.
+    // Если исходный лог изменился после построения индекса, индекс не читается
+    static int load(Path index, Statistics statistics) throws IOException {
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            DataInputStream header = new DataInputStream(Channels.newInputStream(channel));
+            if (header.readInt() != MAGIC) {
+                throw new IOException("Файл не является индексом логов: " + index);
+            }
+            int version = header.readInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия индекса " + version + ": " + index);
+            }
+            Path log;
+            try {
+                log = index.resolveSibling(readString(header, channel.size()));
+            } catch (InvalidPathException e) {
+                throw new IOException("Индекс повреждён: неверное имя исходного лога: " + index);
+            }
+            Source expected = new Source(header.readLong(), header.readLong(), header.readLong());
+            if (Files.exists(log) && !expected.equals(Source.of(log))) {
+                throw new IOException("Индекс устарел: файл " + log + " изменился после построения индекса");
+            }
+            int rows = header.readInt();
+            if (rows < 0) {
+                throw new IOException("Индекс повреждён: отрицательное число записей: " + index);
+            }
+            long[] lengths = new long[SECTIONS];
+            for (int i = 0; i < SECTIONS; i++) {
+                lengths[i] = header.readLong();
+            }
+
+            // Разделы идут сразу за заголовком; усечённый или испорченный файл отвергается
+            // до отображения, а не падает на чтении за концом файла
+            ColumnReader[] sections = new ColumnReader[SECTIONS];
+            long offset = channel.position();
+            for (int i = 0; i < SECTIONS; i++) {
+                if (lengths[i] < 0 || lengths[i] > channel.size() - offset) {
+                    throw new IOException("Индекс повреждён: раздел " + i + " выходит за конец файла: " + index);
+                }
+                if (lengths[i] > Integer.MAX_VALUE) {
+                    throw new IOException("Раздел индекса больше 2 ГБ: " + index);
+                }
+                sections[i] = new ColumnReader(channel.map(FileChannel.MapMode.READ_ONLY, offset, lengths[i]));
+                offset += lengths[i];
+            }
+
+            aggregate(rows, sections, statistics);
+            return rows;
+        }
+    }
+
+    // Проход по колонкам: счётчики копятся по номерам значений в словарях
+    private static void aggregate(int rows, ColumnReader[] sections, Statistics statistics) throws IOException {
+        String[] ips = sections[IP_DICTIONARY].readDictionary();
+        String[] paths = sections[PATH_DICTIONARY].readDictionary();
+        String[] agents = sections[AGENT_DICTIONARY].readDictionary();
+        String[] referers = sections[REFERER_DICTIONARY].readDictionary();
+
+        UserAgentRules rules = UserAgentRules.active();
+        UserAgent[] userAgents = new UserAgent[agents.length];
+        for (int i = 0; i < agents.length; i++) {
+            userAgents[i] = rules.classify(agents[i], 0, agents[i].length());
+        }
+
+        int[] visitsPerIp = new int[ips.length];
+        int[] existingPages = new int[paths.length];
+        int[] notFoundPages = new int[paths.length];
+        int[] agentCounts = new int[agents.length];
+        int[] refererCounts = new int[referers.length];
+        int[] methodCounts = new int[METHODS.length];
+        LongIntHashMap responseCodes = new LongIntHashMap();
+        LongIntHashMap visitsPerSecond = new LongIntHashMap();
+        long traffic = 0;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+
+        ColumnReader timeColumn = sections[TIME_COLUMN];
+        ColumnReader ipColumn = sections[IP_COLUMN];
+        ColumnReader pathColumn = sections[PATH_COLUMN];
+        ColumnReader agentColumn = sections[AGENT_COLUMN];
+        ColumnReader refererColumn = sections[REFERER_COLUMN];
+        ColumnReader methodColumn = sections[METHOD_COLUMN];
+        ColumnReader statusColumn = sections[STATUS_COLUMN];
+        ColumnReader sizeColumn = sections[SIZE_COLUMN];
+        ColumnReader requestTimeColumn = sections[REQUEST_TIME_COLUMN];
+        long time = 0;
+        for (int row = 0; row < rows; row++) {
+            time += decodeZigZag(timeColumn.readVarLong());
+            int ip = ipColumn.readIndex(ips.length);
+            int path = pathColumn.readIndex(paths.length);
+            int agent = agentColumn.readIndex(agents.length);
+            int referer = refererColumn.readIndex(referers.length + 1);
+            int method = methodColumn.readByte();
+            if (method >= METHODS.length) {
+                throw new IOException("Индекс повреждён: неверный номер метода " + method);
+            }
+            int status = (int) statusColumn.readVarLong();
+            long size = sizeColumn.readVarLong();
+            long requestTime = requestTimeColumn.readVarLong() - 1;
+            traffic += size;
+
+            statistics.addTimeSeries(time, userAgents[agent].isBot(), status, size);
+            // Начала путей для квантилей набираются в порядке записей, как при разборе текста
+            if (requestTime >= 0) {
+                statistics.addRequestTime(METHODS[method], status, paths[path], requestTime);
+            }
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            agentCounts[agent]++;
+            methodCounts[method]++;
+            responseCodes.add(status, 1);
+            if (status == 200) {
+                existingPages[path]++;
+            } else if (status == 404) {
+                notFoundPages[path]++;
+            }
+            if (!userAgents[agent].isBot()) {
+                visitsPerIp[ip]++;
+                visitsPerSecond.add(time, 1);
+            }
+            // Номер 0 означает отсутствующий referer
+            if (referer > 0) {
+                refererCounts[referer - 1]++;
+            }
+        }
+
+        if (rows > 0) {
+            statistics.addRequests(rows, traffic, minTime, maxTime);
+        }
+        for (int i = 0; i < agents.length; i++) {
+            statistics.addUserAgent(userAgents[i], agentCounts[i]);
+        }
+        for (int i = 0; i < METHODS.length; i++) {
+            statistics.addMethod(METHODS[i], methodCounts[i]);
+        }
+        responseCodes.forEach((code, count) -> statistics.addResponseCode((int) code, count));
+        for (int i = 0; i < paths.length; i++) {
+            statistics.addExistingPage(paths[i], existingPages[i]);
+            statistics.addNotFoundPage(paths[i], notFoundPages[i]);
+        }
+        for (int i = 0; i < ips.length; i++) {
+            statistics.addNonBotVisits(ips[i], visitsPerIp[i]);
+        }
+        visitsPerSecond.forEach(statistics::addNonBotSecond);
+        for (int i = 0; i < referers.length; i++) {
+            statistics.addReferer(referers[i], refererCounts[i]);
+        }
+    }
+
+    private static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Длина строки не может быть больше файла, в котором она записана
+    private static String readString(DataInputStream in, long limit) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > limit) {
+            throw new IOException("Индекс повреждён: неверная длина строки " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Размер, время изменения и контрольная сумма начала исходного лога
+    private static final class Source {
+        private final long size;
+        private final long modified;
+        private final long checksum;
+
+        private Source(long size, long modified, long checksum) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+        }
+
+        private static Source of(Path log) throws IOException {
+            CRC32 crc = new CRC32();
+            try (InputStream in = Files.newInputStream(log)) {
+                byte[] head = in.readNBytes(CHECKSUM_BYTES);
+                crc.update(head);
+            }
+            return new Source(Files.size(log), Files.getLastModifiedTime(log).toMillis(), crc.getValue());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Source)) return false;
+            Source other = (Source) o;
+            return size == other.size && modified == other.modified && checksum == other.checksum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(checksum);
+        }
+    }
+
+    // Накопление колонок при построении индекса
+    private static final class Builder {
+        private final Dictionary ips = new Dictionary();
+        private final Dictionary paths = new Dictionary();
+        private final Dictionary agents = new Dictionary();
+        private final Dictionary referers = new Dictionary();
+        private final ByteColumn times = new ByteColumn();
+        private final ByteColumn ipIds = new ByteColumn();
+        private final ByteColumn pathIds = new ByteColumn();
+        private final ByteColumn agentIds = new ByteColumn();
+        private final ByteColumn refererIds = new ByteColumn();
+        private final ByteColumn methods = new ByteColumn();
+        private final ByteColumn statuses = new ByteColumn();
+        private final ByteColumn sizes = new ByteColumn();
+        private final ByteColumn requestTimes = new ByteColumn();
+        private long previousTime;
+        private int rows;
+
+        private void add(LogTokenizer tokenizer) {
+            long time = tokenizer.epochSecond();
+            times.writeVarLong(encodeZigZag(time - previousTime));
+            previousTime = time;
+            ipIds.writeVarLong(ips.id(tokenizer.ipAddress()));
+            pathIds.writeVarLong(paths.id(tokenizer.path()));
+            agentIds.writeVarLong(agents.id(tokenizer.userAgentString()));
+            String referer = tokenizer.referer();
+            refererIds.writeVarLong(referer == null ? 0 : referers.id(referer) + 1);
+            methods.writeByte(tokenizer.method().ordinal());
+            statuses.writeVarLong(tokenizer.responseCode());
+            sizes.writeVarLong(tokenizer.dataSize());
+            requestTimes.writeVarLong(tokenizer.requestTimeMicros() + 1);
+            rows++;
+        }
+
+        private ByteColumn[] sections() {
+            return new ByteColumn[]{
+                    ips.encode(), paths.encode(), agents.encode(), referers.encode(),
+                    times, ipIds, pathIds, agentIds, refererIds, methods, statuses, sizes, requestTimes};
+        }
+    }
+
+    // Словарь строковых значений в порядке первого появления
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int id(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        private ByteColumn encode() {
+            ByteColumn column = new ByteColumn();
+            column.writeVarLong(values.size());
+            for (String value : values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                column.writeVarLong(bytes.length);
+                column.writeBytes(bytes);
+            }
+            return column;
+        }
+    }
+
+    // Растущий буфер байтов одного раздела индекса
+    private static final class ByteColumn {
+        private byte[] bytes = new byte[1024];
+        private int length;
+
+        private void writeByte(int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeBytes(byte[] values) {
+            if (length + values.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + values.length));
+            }
+            System.arraycopy(values, 0, bytes, length, values.length);
+            length += values.length;
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+    }
+
+    // Последовательное чтение отображённого раздела: как в MappedLogReader, байты
+    // переносятся в массив блоками, а не читаются из буфера по одному
+    private static final class ColumnReader {
+        private final ByteBuffer buffer;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private int position;
+        private int limit;
+
+        private ColumnReader(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private int readByte() throws IOException {
+            if (position == limit) {
+                fill();
+            }
+            return block[position++] & 0xFF;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b < 0x80) {
+                    return value;
+                }
+            }
+            throw new IOException("Индекс повреждён: слишком длинное число");
+        }
+
+        // Номер значения в словаре из bound значений
+        private int readIndex(int bound) throws IOException {
+            long value = readVarLong();
+            if (value < 0 || value >= bound) {
+                throw new IOException("Индекс повреждён: номер " + value + " вне словаря из " + bound + " значений");
+            }
+            return (int) value;
+        }
+
+        // Каждое значение занимает хотя бы байт длины, поэтому ни число значений, ни длина
+        // строки не могут превышать остаток раздела
+        private String[] readDictionary() throws IOException {
+            String[] values = new String[readIndex(remaining() + 1)];
+            for (int i = 0; i < values.length; i++) {
+                byte[] bytes = new byte[readIndex(remaining() + 1)];
+                for (int j = 0; j < bytes.length; j++) {
+                    bytes[j] = (byte) readByte();
+                }
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return values;
+        }
+
+        private int remaining() {
+            return limit - position + buffer.remaining();
+        }
+
+        private void fill() throws IOException {
+            int count = Math.min(block.length, buffer.remaining());
+            if (count == 0) {
+                throw new IOException("Индекс повреждён: раздел закончился раньше времени");
+            }
+            buffer.get(block, 0, count);
+            position = 0;
+            limit = count;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+// Общая часть разборщиков строк лога: границы полей, которые нужны LogEntry, и их значения.
+// Подкласс реализует только tokenize для своего формата (CombinedLogTokenizer,
+// TemplateLogTokenizer, JsonLogTokenizer), а поля из найденных границ достаются здесь.
+// Объект хранит только границы и числа, поэтому его можно переиспользовать для всех
+// строк одного потока чтения; экземпляр не потокобезопасен.
+abstract class LogTokenizer {
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+
+    final UserAgentClassifier userAgentClassifier = new UserAgentClassifier();
+    final TimestampDecoder timestampDecoder = new TimestampDecoder();
+
+    CharSequence line;
+    int ipStart, ipEnd;
+    int methodStart, methodEnd;
+    int pathStart, pathEnd;
+    // Отсутствующий referer - пустой участок с началом -1
+    int refererStart, refererEnd;
+    int userAgentStart, userAgentEnd;
+    int responseCode;
+    int dataSize;
+    // Время ответа в микросекундах или -1, если его нет в строке
+    long requestTime;
+    // Строк, разобранных этим экземпляром: по нему выбираются строки для замера времени
+    private int sampleCounter;
+
+    // Разбирает строку; возвращает false, если строка не соответствует формату
+    abstract boolean tokenize(CharSequence line);
+
+    // Нужно ли замерить время разбора очередной строки (одна из PipelineMetrics.SAMPLE_EVERY)
+    final boolean sampleLatency() { return (sampleCounter++ & (PipelineMetrics.SAMPLE_EVERY - 1)) == 0; }
+
+    final String ipAddress() { return substring(ipStart, ipEnd); }
+    // Время строки в секундах эпохи UTC и смещение пояса, с которым оно было записано
+    final long epochSecond() { return timestampDecoder.epochSecond(); }
+    final int offsetSeconds() { return timestampDecoder.offsetSeconds(); }
+    final String path() { return substring(pathStart, pathEnd); }
+    final int responseCode() { return responseCode; }
+    final int dataSize() { return dataSize; }
+    final long requestTimeMicros() { return requestTime; }
+    final UserAgent userAgent() { return userAgentClassifier.classify(line, userAgentStart, userAgentEnd); }
+    final String userAgentString() { return substring(userAgentStart, userAgentEnd); }
+
+    // Прочерк в referer означает его отсутствие
+    final String referer() {
+        if (refererStart < 0 || (refererEnd - refererStart == 1 && line.charAt(refererStart) == '-')) {
+            return null;
+        }
+        return substring(refererStart, refererEnd);
+    }
+
+    // Метод сравнивается с именами enum без учёта регистра и без создания строки
+    final HttpMethod method() {
+        int length = methodEnd - methodStart;
+        for (HttpMethod method : METHODS) {
+            String name = method.name();
+            if (name.length() != length || method == HttpMethod.UNKNOWN) continue;
+            int i = 0;
+            while (i < length && Character.toUpperCase(line.charAt(methodStart + i)) == name.charAt(i)) i++;
+            if (i == length) return method;
+        }
+        return HttpMethod.UNKNOWN;
+    }
+
+    // Строка запроса "METHOD path HTTP/x" на участке [start, end), как в CombinedLogTokenizer
+    final boolean setRequest(CharSequence s, int start, int end) {
+        int pos = start;
+        methodStart = pos;
+        while (pos < end && isWordChar(s.charAt(pos))) pos++;
+        if (pos == methodStart || pos >= end || s.charAt(pos) != ' ') return false;
+        methodEnd = pos++;
+        pathStart = pos;
+        pathEnd = indexOfProtocol(s, pos, end);
+        return pathEnd >= 0;
+    }
+
+    // Поля, которых нет в формате: метод неизвестен, referer отсутствует, User-Agent пуст,
+    // время ответа неизвестно
+    final void clearOptional() {
+        methodStart = methodEnd = 0;
+        refererStart = refererEnd = -1;
+        userAgentStart = userAgentEnd = 0;
+        dataSize = 0;
+        requestTime = -1;
+    }
+
+    private String substring(int start, int end) {
+        return line.subSequence(start, end).toString();
+    }
+
+    // Неотрицательное число из одних цифр на участке [start, end) или -1
+    static long parseNumber(CharSequence s, int start, int end) {
+        if (start == end) return -1;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) return -1;
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) return -1;
+        }
+        return value;
+    }
+
+    // Время в секундах с дробной частью, как пишет nginx в $request_time ("0.123"), на участке
+    // [start, end) в микросекундах или -1. Знаки дроби после шестого отбрасываются
+    static long parseSeconds(CharSequence s, int start, int end) {
+        int pos = start;
+        long seconds = 0;
+        while (pos < end && isDigit(s.charAt(pos))) {
+            seconds = seconds * 10 + (s.charAt(pos++) - '0');
+            if (seconds > Integer.MAX_VALUE) return -1;
+        }
+        if (pos == start) return -1;
+        long micros = seconds * 1_000_000;
+        if (pos < end) {
+            if (s.charAt(pos++) != '.' || pos == end) return -1;
+            for (int scale = 100_000; pos < end; pos++, scale /= 10) {
+                char c = s.charAt(pos);
+                if (!isDigit(c)) return -1;
+                micros += (c - '0') * scale;
+            }
+        }
+        return micros;
+    }
+
+    // Ищет первое вхождение " HTTP/" после пути
+    static int indexOfProtocol(CharSequence s, int pos, int length) {
+        for (int i = pos; i + 6 <= length; i++) {
+            if (s.charAt(i) == ' ' && s.charAt(i + 1) == 'H' && s.charAt(i + 2) == 'T'
+                    && s.charAt(i + 3) == 'T' && s.charAt(i + 4) == 'P' && s.charAt(i + 5) == '/') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Поиск символа: в String - встроенным String.indexOf (JIT делает его векторным),
+    // в ByteSlice - прямо по байтам
+    static int indexOf(CharSequence s, char c, int pos, int length) {
+        if (s instanceof String || s instanceof ByteSlice) {
+            int index = s instanceof String ? ((String) s).indexOf(c, pos) : ((ByteSlice) s).indexOf(c, pos);
+            return index < length ? index : -1;
+        }
+        for (int i = pos; i < length; i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static boolean isWordChar(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+}
\ No newline at end of file
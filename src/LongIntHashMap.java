@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+// Хеш-таблица long -> int с открытой адресацией и линейным пробированием.
+// В отличие от HashMap<Long, Integer> не создаёт объектов на каждую запись:
+// ключи и значения лежат в двух массивах примитивов.
+// Значение 0 для ключа означает отсутствие записи, поэтому хранятся только
+// положительные счётчики (ровно то, что нужно для подсчёта посещений).
+final class LongIntHashMap {
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeThreshold;
+
+    // Обработчик для обхода записей без упаковки в объекты
+    interface EntryConsumer {
+        void accept(long key, int value);
+    }
+
+    LongIntHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    // Увеличивает счётчик ключа на delta и возвращает новое значение
+    int add(long key, int delta) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (values[index] != 0) {
+            if (keys[index] == key) {
+                return values[index] += delta;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = delta;
+        if (++size > resizeThreshold) {
+            resize(keys.length * 2);
+        }
+        return delta;
+    }
+
+    int get(long key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (values[index] != 0) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int maxValue() {
+        int max = 0;
+        for (int value : values) {
+            if (value > max) {
+                max = value;
+            }
+        }
+        return max;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int index = hash(oldKeys[i]) & mask;
+                while (values[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // Перемешивание битов: соседние секунды и адреса одной подсети не должны
+    // попадать в соседние ячейки
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
\ No newline at end of file
@@ -1,7 +1,15 @@
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Main {
     // Пользовательское исключение для слишком длинных строк
@@ -11,69 +19,438 @@ public class Main {
         }
     }
 
+    // Максимальная допустимая длина строки лога в символах по умолчанию
+    private static final int DEFAULT_MAX_LINE_LENGTH = 1024;
+    // Интервал вывода статистики в режиме слежения по умолчанию
+    private static final int DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 10;
+    // Сколько файлов пакетный режим держит открытыми одновременно по умолчанию. Разбор
+    // упирается в процессор, а каждый открытый файл держит свою статистику, у gzip ещё
+    // 4 МБ блоков и поток распаковки, поэтому файлов ненамного больше, чем ядер
+    private static final int DEFAULT_OPEN_FILES = 2 * Runtime.getRuntime().availableProcessors();
+    // Интервал записи контрольных точек по умолчанию, в секундах
+    private static final int DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 60;
+    // Сколько ждать записи последней контрольной точки при остановке процесса
+    private static final long SHUTDOWN_WAIT_MILLIS = 30_000;
+    // Последний выведенный срез статистики; его же отдаёт сервер метрик, не строя срез сам
+    private static final AtomicReference<StatisticsSnapshot> PUBLISHED = new AtomicReference<>();
+
     public static void main(String[] args) {
         int fileCounter = 1;
+        int workers = 1;
+        int maxLineLength = DEFAULT_MAX_LINE_LENGTH;
+        String followPath = null;
+        int snapshotIntervalSeconds = DEFAULT_SNAPSHOT_INTERVAL_SECONDS;
+        int approximateBudgetMb = 0;
+        String indexSource = null;
+        String batchPath = null;
+        InetSocketAddress udpAddress = null;
+        InetSocketAddress tcpAddress = null;
+        InetSocketAddress metricsAddress = null;
+        Path checkpoint = null;
+        int checkpointIntervalSeconds = DEFAULT_CHECKPOINT_INTERVAL_SECONDS;
+        boolean resume = false;
+        int openFiles = DEFAULT_OPEN_FILES;
         Scanner scanner = new Scanner(System.in);
-        Statistics statistics = new Statistics();
-
-        while (true) {
-            System.out.print("Введите путь к файлу: ");
-            String path = scanner.nextLine();
 
-            File file = new File(path);
-            // Проверка существования файла
-            if (!file.exists()) {
-                System.out.println("Вы ввели путь к несуществующему файлу!");
-                continue;
+        // Разбор параметров командной строки
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--threads=")) {
+                    workers = parsePositiveInt(arg.substring("--threads=".length()), "--threads");
+                } else if (arg.startsWith("--max-line-length=")) {
+                    maxLineLength = parsePositiveInt(arg.substring("--max-line-length=".length()), "--max-line-length");
+                } else if (arg.startsWith("--follow=")) {
+                    followPath = arg.substring("--follow=".length());
+                } else if (arg.startsWith("--snapshot-interval=")) {
+                    snapshotIntervalSeconds = parsePositiveInt(arg.substring("--snapshot-interval=".length()), "--snapshot-interval");
+                } else if (arg.startsWith("--approximate=")) {
+                    approximateBudgetMb = parsePositiveInt(arg.substring("--approximate=".length()), "--approximate");
+                } else if (arg.startsWith("--build-index=")) {
+                    indexSource = arg.substring("--build-index=".length());
+                } else if (arg.startsWith("--batch=")) {
+                    batchPath = arg.substring("--batch=".length());
+                } else if (arg.startsWith("--open-files=")) {
+                    openFiles = parsePositiveInt(arg.substring("--open-files=".length()), "--open-files");
+                } else if (arg.startsWith("--listen-udp=")) {
+                    udpAddress = parseAddress(arg.substring("--listen-udp=".length()), "--listen-udp");
+                } else if (arg.startsWith("--listen-tcp=")) {
+                    tcpAddress = parseAddress(arg.substring("--listen-tcp=".length()), "--listen-tcp");
+                } else if (arg.startsWith("--metrics=")) {
+                    metricsAddress = parseAddress(arg.substring("--metrics=".length()), "--metrics");
+                } else if (arg.startsWith("--checkpoint=")) {
+                    checkpoint = Path.of(arg.substring("--checkpoint=".length()));
+                } else if (arg.startsWith("--checkpoint-interval=")) {
+                    checkpointIntervalSeconds = parsePositiveInt(arg.substring("--checkpoint-interval=".length()), "--checkpoint-interval");
+                } else if (arg.equals("--resume")) {
+                    resume = true;
+                } else if (arg.startsWith("--log-format=")) {
+                    LogFormat.activate(LogFormat.parse(arg.substring("--log-format=".length())));
+                } else if (arg.startsWith("--ua-rules=")) {
+                    UserAgentRules.activate(UserAgentRules.load(Path.of(arg.substring("--ua-rules=".length()))));
+                } else {
+                    throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                }
             }
-            // Проверка что это файл, а не папка
-            if (file.isDirectory()) {
-                System.out.println("Вы ввели путь к папке!");
-                continue;
+            if (resume && checkpoint == null) {
+                throw new IllegalArgumentException("Для --resume нужен параметр --checkpoint=ПУТЬ");
             }
+            if (checkpoint != null && followPath == null) {
+                throw new IllegalArgumentException("Контрольные точки поддерживаются только в режиме --follow");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        } catch (IOException e) {
+            System.out.println("Не удалось прочитать правила User-Agent: " + e.getMessage());
+            return;
+        }
 
-            System.out.println("Путь указан верно! Это файл номер " + fileCounter++);
-            processFile(path, statistics);
+        // В приближённом режиме уникальные IP, страницы и рефереры занимают не больше заданного объёма памяти
+        Statistics statistics = approximateBudgetMb > 0
+                ? Statistics.approximate(approximateBudgetMb * 1024L * 1024L)
+                : new Statistics();
+        if (approximateBudgetMb > 0 && (workers > 1 || batchPath != null || udpAddress != null || tcpAddress != null)) {
+            System.out.println("Бюджет --approximate=" + approximateBudgetMb + " действует на каждую частичную статистику"
+                    + " (поток, диапазон файла, хост): общий объём памяти может быть в несколько раз больше");
+        }
 
-            // Выводим статистику
-            printStatistics(statistics);
+        MetricsServer metrics = null;
+        if (metricsAddress != null) {
+            try {
+                metrics = MetricsServer.start(metricsAddress, PUBLISHED::get);
+            } catch (IOException e) {
+                System.out.println("Не удалось запустить сервер метрик: " + e.getMessage());
+                return;
+            }
+            System.out.println("Метрики: http://" + metricsAddress.getHostString() + ":" + metrics.getPort() + "/metrics");
         }
-    }
-    //Обрабатывает файл логов построчно
-    private static void processFile(String path, Statistics statistics) {
-        int totalLines = 0;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
-            String line;
+        try {
+            if (indexSource != null) {
+                buildIndex(Path.of(indexSource), maxLineLength);
+                return;
+            }
 
-            while ((line = reader.readLine()) != null) {
-                totalLines++;
+            if (batchPath != null) {
+                batch(batchPath, statistics, openFiles, maxLineLength);
+                return;
+            }
 
-                if (line.length() > 1024) {
-                    throw new LineTooLongException("Строка слишком длинная: " + line.length() + " символов");
-                }
+            if (udpAddress != null || tcpAddress != null) {
+                listen(udpAddress, tcpAddress, statistics, workers, maxLineLength, snapshotIntervalSeconds);
+                return;
+            }
 
+            if (followPath != null) {
+                follow(Path.of(followPath), statistics, maxLineLength, snapshotIntervalSeconds,
+                        checkpoint, checkpointIntervalSeconds, resume);
+                return;
+            }
+
+            while (true) {
+                System.out.print("Введите путь к файлу: ");
+                String path = scanner.nextLine();
+
+                // Путь может указывать на файл, на папку с ротированными логами или быть шаблоном вида access.log*
+                List<Path> files;
                 try {
-                    LogEntry entry = new LogEntry(line);
-                    statistics.addEntry(entry);
-                } catch (IllegalArgumentException e) {
-                    System.out.println("Ошибка парсинга строки: " + e.getMessage());
+                    files = LogFiles.expand(path);
+                } catch (IOException | InvalidPathException e) {
+                    System.out.println("Не удалось прочитать путь: " + e.getMessage());
+                    continue;
+                }
+                // Проверка существования файла
+                if (files.isEmpty()) {
+                    System.out.println(new File(path).isDirectory()
+                            ? "В папке нет файлов!"
+                            : "Вы ввели путь к несуществующему файлу!");
+                    continue;
+                }
+
+                if (files.size() == 1) {
+                    System.out.println("Путь указан верно! Это файл номер " + fileCounter++);
+                    processFile(files.get(0).toString(), statistics, workers, maxLineLength);
+                } else {
+                    System.out.println("Найдено файлов: " + files.size() + ", это файлы с " + fileCounter + " по " + (fileCounter + files.size() - 1));
+                    fileCounter += files.size();
+                    processFiles(files, statistics, workers, maxLineLength);
                 }
+
+                // Выводим статистику
+                printStatistics(statistics.snapshot());
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.close();
             }
+        }
+    }
+
+    private static int parsePositiveInt(String value, String option) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Параметр " + option + " должен быть положительным числом: " + value);
+    }
+
+    // Адрес вида [хост:]порт; без хоста - все интерфейсы
+    private static InetSocketAddress parseAddress(String value, String option) {
+        int colon = value.lastIndexOf(':');
+        String host = colon >= 0 ? value.substring(0, colon) : null;
+        String portValue = value.substring(colon + 1);
+        try {
+            int port = Integer.parseInt(portValue);
+            if (port >= 0 && port <= 65535) {
+                return host == null || host.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Параметр " + option + " должен быть портом или адресом вида хост:порт: " + value);
+    }
+
+    //Разбирает лог один раз и сохраняет колоночный индекс рядом с ним
+    private static void buildIndex(Path log, int maxLineLength) {
+        if (!Files.isRegularFile(log)) {
+            System.out.println("Вы ввели путь к несуществующему файлу!");
+            return;
+        }
+        Path index = LogIndex.defaultPath(log);
+        try {
+            int rows = LogIndex.build(log, index, maxLineLength);
+            System.out.printf("Индекс записан: %s (%d записей, %.1f МБ при исходных %.1f МБ)%n",
+                    index, rows, Files.size(index) / 1048576.0, Files.size(log) / 1048576.0);
+        } catch (LineTooLongException e) {
+            System.out.println("Ошибка: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Не удалось построить индекс: " + e.getMessage());
+        }
+    }
+
+    //Обрабатывает файл логов: несжатый отображается в память и читается построчно или параллельно по диапазонам,
+    //если задано несколько потоков; сжатый gzip распаковывается в отдельном потоке одновременно с разбором
+    private static void processFile(String path, Statistics statistics, int workers, int maxLineLength) {
+        // Индекс, построенный через --build-index, читается без разбора текста
+        if (LogIndex.isIndex(Path.of(path))) {
+            try {
+                System.out.println("Загружено записей из индекса: " + LogIndex.load(Path.of(path), statistics));
+            } catch (IOException e) {
+                System.out.println("Ошибка: " + e.getMessage());
+            }
+            return;
+        }
+
+        try {
+            int totalLines = workers > 1 && LogFiles.detect(Path.of(path)) == LogFiles.Compression.NONE
+                    ? ParallelLogProcessor.process(path, statistics, workers, maxLineLength)
+                    : processLines(path, statistics, maxLineLength);
 
             System.out.println("Обработано строк: " + totalLines);
+            System.out.printf("Попадания в кеш User-Agent: %.1f%%%n", UserAgentClassifier.hitRate() * 100);
 
         } catch (LineTooLongException e) {
             System.out.println("Ошибка: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Ошибка: " + e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    //Обрабатывает несколько файлов одновременно: число файлов в работе задаёт --threads
+    private static void processFiles(List<Path> files, Statistics statistics, int workers, int maxLineLength) {
+        try {
+            int totalLines = ParallelLogProcessor.processFiles(files, statistics, workers, maxLineLength);
+            System.out.println("Обработано строк: " + totalLines);
+            System.out.printf("Попадания в кеш User-Agent: %.1f%%%n", UserAgentClassifier.hitRate() * 100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Пакетный режим: обходит дерево папок или шаблон, обрабатывает файлы без вопросов
+    //и выводит итоги по каждому хосту, затем общую статистику
+    private static void batch(String path, Statistics statistics, int openFiles, int maxLineLength) {
+        List<Path> files;
+        try {
+            files = LogFiles.walk(path);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Не удалось прочитать путь: " + e.getMessage());
+            return;
+        }
+        if (files.isEmpty()) {
+            System.out.println(new File(path).isDirectory()
+                    ? "В папке нет файлов!"
+                    : "Вы ввели путь к несуществующему файлу!");
+            return;
+        }
+
+        System.out.println("Найдено файлов: " + files.size());
+        Path root = Files.isDirectory(Path.of(path)) ? Path.of(path) : null;
+        BatchProcessor processor = new BatchProcessor(statistics, openFiles, maxLineLength);
+        try {
+            processor.process(root, files, statistics);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        System.out.println("\n=== ХОСТЫ ===");
+        processor.getHosts().forEach((name, host) -> System.out.printf(
+                "  %s: файлов %d (с ошибками %d), строк %d, запросов %d, трафик %d bytes%n",
+                name, host.getFiles() + host.getFailedFiles(), host.getFailedFiles(), host.getLines(),
+                host.getStatistics().getTotalVisits(), host.getStatistics().getTotalTraffic()));
+        if (processor.getFailedFiles() > 0) {
+            System.out.println("Файлов с ошибками, не вошедших в статистику: " + processor.getFailedFiles());
+        }
+        if (processor.getInvalidLines() > 0) {
+            System.out.println("Строк, не соответствующих формату: " + processor.getInvalidLines());
+        }
+        System.out.printf("Попадания в кеш User-Agent: %.1f%%%n", UserAgentClassifier.hitRate() * 100);
+        printStatistics(statistics.snapshot());
+    }
+
+    private static int processLines(String path, Statistics statistics, int maxLineLength) throws IOException {
+        LogTokenizer tokenizer = LogFormat.active().newTokenizer();
+
+        return LogFiles.read(Path.of(path), maxLineLength, line -> {
+            try {
+                LogEntry entry = new LogEntry(line, tokenizer);
+                statistics.addEntry(entry);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Ошибка парсинга строки: " + e.getMessage());
+            }
+        });
+    }
+    //Слежение за растущим файлом: чтение идёт в текущем потоке,
+    //а отдельный поток периодически выводит последний опубликованный срез статистики.
+    //С контрольной точкой статистика и позиция в файле периодически сохраняются,
+    //а с resume восстанавливаются при запуске
+    private static void follow(Path path, Statistics statistics, int maxLineLength, int snapshotIntervalSeconds,
+                               Path checkpoint, int checkpointIntervalSeconds, boolean resume) {
+        if (!Files.isRegularFile(path)) {
+            System.out.println("Вы ввели путь к несуществующему файлу!");
+            return;
+        }
+
+        LogFollower follower = new LogFollower(path, statistics, maxLineLength,
+                TimeUnit.SECONDS.toMillis(snapshotIntervalSeconds));
+        if (checkpoint != null) {
+            if (resume && !resume(follower, path, checkpoint, statistics)) {
+                return;
+            }
+            follower.enableCheckpoints(checkpoint, TimeUnit.SECONDS.toMillis(checkpointIntervalSeconds));
+            // При остановке процесса чтение завершается между блоками и пишется последняя контрольная точка
+            Thread reader = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                follower.stop();
+                try {
+                    reader.join(SHUTDOWN_WAIT_MILLIS);
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        ScheduledExecutorService printer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-printer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicReference<StatisticsSnapshot> printed = new AtomicReference<>();
+        printer.scheduleAtFixedRate(() -> {
+            StatisticsSnapshot snapshot = follower.getLatestSnapshot();
+            if (snapshot != null && printed.getAndSet(snapshot) != snapshot) {
+                System.out.println("Обработано строк: " + follower.getProcessedLines());
+                printStatistics(snapshot);
+            }
+        }, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+
+        System.out.println("Слежение за файлом " + path + ", статистика каждые " + snapshotIntervalSeconds + " с");
+        try {
+            follower.run();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            printer.shutdownNow();
+        }
+    }
+
+    //Восстанавливает статистику из контрольной точки и позицию чтения файла;
+    //false, если продолжать нельзя
+    private static boolean resume(LogFollower follower, Path path, Path checkpoint, Statistics statistics) {
+        if (!Files.exists(checkpoint)) {
+            System.out.println("Контрольная точка " + checkpoint + " не найдена, файл читается с начала");
+            return true;
+        }
+        try {
+            StatisticsCheckpoint saved = StatisticsCheckpoint.read(checkpoint);
+            if (saved.getStatistics().getMemoryBudgetBytes() != statistics.getMemoryBudgetBytes()) {
+                System.out.println("Контрольная точка записана с другим значением --approximate");
+                return false;
+            }
+            statistics.merge(saved.getStatistics());
+            long position = follower.resume(saved.getOffsets());
+            if (position >= 0) {
+                System.out.println("Статистика восстановлена из " + checkpoint + ", чтение продолжается с байта " + position);
+            } else {
+                System.out.println("Статистика восстановлена из " + checkpoint
+                        + ", но файл с тех пор заменён или усечён и читается с начала");
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Не удалось прочитать контрольную точку: " + e.getMessage());
+            return false;
+        }
+    }
+
+    //Приём логов по сети: syslog по UDP и строки по TCP разбираются в --threads потоках,
+    //статистика и счётчики сообщений выводятся с интервалом --snapshot-interval
+    private static void listen(InetSocketAddress udpAddress, InetSocketAddress tcpAddress, Statistics prototype,
+                               int workers, int maxLineLength, int snapshotIntervalSeconds) {
+        ConcurrentStatistics statistics = new ConcurrentStatistics(prototype);
+        NetworkListener listener;
+        try {
+            listener = new NetworkListener(statistics, workers, maxLineLength);
+            if (udpAddress != null) {
+                System.out.println("Приём syslog по UDP на порту " + listener.bindUdp(udpAddress));
+            }
+            if (tcpAddress != null) {
+                System.out.println("Приём строк по TCP на порту " + listener.bindTcp(tcpAddress));
+            }
+        } catch (IOException e) {
+            System.out.println("Не удалось открыть порт: " + e.getMessage());
+            return;
+        }
+
+        ScheduledExecutorService printer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-printer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        printer.scheduleAtFixedRate(() -> {
+            System.out.printf("Сообщений получено: %d, разобрано: %d, с ошибками: %d, отброшено: %d%n",
+                    listener.getReceived(), listener.getParsed(), listener.getFailed(), listener.getDropped());
+            printStatistics(statistics.snapshot());
+        }, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+
+        listener.start();
+        try {
+            listener.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            printer.shutdownNow();
+        }
+    }
+
     //Вывод собранной статистики
-    private static void printStatistics(Statistics stats) {
+    private static void printStatistics(StatisticsSnapshot stats) {
+        PUBLISHED.set(stats);
         System.out.println("=== СТАТИСТИКА ===");
         System.out.println("Общий трафик: " + stats.getTotalTraffic() + " bytes");
-        System.out.println("Временной диапазон: " + stats.getMinTime() + " - " + stats.getMaxTime());
+        System.out.println("Временной диапазон: " + stats.getMinTime() + " - " + stats.getMaxTime() + " (UTC)");
         System.out.println("Средний трафик в час: " + String.format("%.2f", stats.getTrafficRate()) + " bytes/hour");
 
         System.out.println("Среднее количество посещений в час (не-боты): " +
@@ -82,10 +459,34 @@ public class Main {
                 String.format("%.2f", stats.getAverageErrorsPerHour()));
         System.out.println("Средняя посещаемость одним пользователем: " +
                 String.format("%.2f", stats.getAverageVisitsPerUser()));
+        System.out.println("Уникальных пользователей (не-боты): " + stats.getUniqueNonBotIps());
+        if (stats.isApproximate()) {
+            System.out.println("  (приближённый режим: стандартная ошибка числа пользователей " +
+                    String.format("%.2f", stats.getUniqueIpsRelativeError() * 100) + "%, счётчики ниже - верхние оценки)");
+        }
 
         System.out.println("Пиковая посещаемость в секунду: " + stats.getPeakVisitsPerSecond());
         System.out.println("Максимальная посещаемость одним пользователем: " + stats.getMaxVisitsPerUser());
 
+        System.out.println("\nСамые нагруженные часы:");
+        stats.getBusiestHours().forEach(hour ->
+                System.out.println("  " + hour));
+        if (stats.getLateEntries() > 0) {
+            System.out.println("  (опоздавших больше чем на сутки записей не в минутном ряду: " + stats.getLateEntries() + ")");
+        }
+
+        System.out.println("\nСамые активные пользователи:");
+        stats.getTopIps().forEach(ip ->
+                System.out.println("  " + ip));
+
+        System.out.println("\nСамые посещаемые страницы:");
+        stats.getTopPages().forEach(page ->
+                System.out.println("  " + page));
+
+        System.out.println("\nСамые частые рефереры:");
+        stats.getTopRefererDomains().forEach(domain ->
+                System.out.println("  " + domain));
+
         System.out.println("\nСайты-рефереры:");
         stats.getRefererDomains().forEach(domain ->
                 System.out.println("  " + domain));
@@ -113,5 +514,23 @@ public class Main {
         System.out.println("\nСтатистика браузеров (количество):");
         stats.getBrowserStatistics().forEach((browser, count) ->
                 System.out.println("  " + browser + ": " + count));
+
+        System.out.println("\nСтатистика HTTP-методов (количество):");
+        stats.getMethodStatistics().forEach((method, count) ->
+                System.out.println("  " + method + ": " + count));
+
+        if (stats.getLatency() != null) {
+            System.out.println("\nВремя ответа:");
+            System.out.println("  " + stats.getLatency());
+            System.out.println("По HTTP-методам:");
+            stats.getLatencyByMethod().forEach(summary ->
+                    System.out.println("  " + summary));
+            System.out.println("По классам кодов ответа:");
+            stats.getLatencyByStatusClass().forEach(summary ->
+                    System.out.println("  " + summary));
+            System.out.println("По началам путей:");
+            stats.getLatencyByPathPrefix().forEach(summary ->
+                    System.out.println("  " + summary));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+
+// Построчное чтение файла через отображение в память (FileChannel.map).
+// Отображённое окно передаётся в LineSplitter, который копирует его блоками
+// в массив и ищет границы строк без декодирования в String.
+// Файлы больше 2 ГБ читаются последовательными окнами; незавершённая строка
+// в конце окна переносится в начало следующего.
+final class MappedLogReader {
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    private final int maxLineLength;
+    private final Runnable tooLong;
+
+    MappedLogReader(int maxLineLength) {
+        this(maxLineLength, null);
+    }
+
+    // Слишком длинные строки пропускаются с вызовом tooLong вместо LineTooLongException
+    MappedLogReader(int maxLineLength, Runnable tooLong) {
+        this.maxLineLength = maxLineLength;
+        this.tooLong = tooLong;
+    }
+
+    // Читает строки диапазона [start, end) и возвращает их количество
+    int read(FileChannel channel, long start, long end, Consumer<CharSequence> handler) throws IOException {
+        LineSplitter splitter = new LineSplitter(maxLineLength, handler, tooLong);
+        for (long windowStart = start; windowStart < end; windowStart += WINDOW_SIZE) {
+            int windowSize = (int) Math.min(WINDOW_SIZE, end - windowStart);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+            splitter.accept(buffer);
+        }
+        return splitter.finish();
+    }
+}
\ No newline at end of file
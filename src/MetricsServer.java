@@ -0,0 +1,347 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Встроенный HTTP-сервер метрик на com.sun.net.httpserver из JDK:
+//   /metrics      - текстовый формат Prometheus;
+//   /metrics.json - те же значения в JSON.
+// Показатели статистики берутся из последнего опубликованного StatisticsSnapshot,
+// а счётчики разборщика - из PipelineMetrics. Ни то, ни другое не требует блокировок,
+// поэтому запрос метрик никогда не останавливает чтение и разбор: срез строит тот поток,
+// который наполняет статистику, когда ему удобно. Скорость разбора раз в секунду считает
+// отдельный поток, так что она не зависит от того, сколько клиентов и как часто запрашивают
+// метрики; для своих окон есть монотонный счётчик parser_lines_total и rate() в Prometheus.
+final class MetricsServer implements Closeable {
+    private static final String PREFIX = "accesslog_";
+    private static final long RATE_INTERVAL_MILLIS = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sampler;
+    private final Supplier<StatisticsSnapshot> snapshots;
+
+    // Скорость разбора за последний интервал; меняет только поток sampler
+    private volatile double linesPerSecond;
+    private long previousLines = PipelineMetrics.getLines();
+    private long previousNanos = System.nanoTime();
+
+    private MetricsServer(HttpServer server, Supplier<StatisticsSnapshot> snapshots) {
+        this.server = server;
+        this.snapshots = snapshots;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // snapshots возвращает последний опубликованный срез или null, пока его нет
+    static MetricsServer start(InetSocketAddress address, Supplier<StatisticsSnapshot> snapshots) throws IOException {
+        PipelineMetrics.enable();
+        MetricsServer metrics = new MetricsServer(HttpServer.create(address, 0), snapshots);
+        metrics.server.createContext("/metrics", exchange -> metrics.respond(exchange, false));
+        metrics.server.createContext("/metrics.json", exchange -> metrics.respond(exchange, true));
+        metrics.server.setExecutor(metrics.executor);
+        metrics.server.start();
+        metrics.sampler.scheduleAtFixedRate(metrics::sampleRate, RATE_INTERVAL_MILLIS, RATE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return metrics;
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        sampler.shutdownNow();
+    }
+
+    private void sampleRate() {
+        long lines = PipelineMetrics.getLines();
+        long now = System.nanoTime();
+        linesPerSecond = (lines - previousLines) / Math.max(1e-9, (now - previousNanos) / 1e9);
+        previousLines = lines;
+        previousNanos = now;
+    }
+
+    private void respond(HttpExchange exchange, boolean json) throws IOException {
+        try (exchange) {
+            // Контексты HttpServer сопоставляются по префиксу, лишние пути отсекаются здесь
+            if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            List<Metric> metrics = collect();
+            byte[] body = (json ? json(metrics) : prometheus(metrics)).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type",
+                    json ? "application/json; charset=utf-8" : "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    // Метрики в порядке вывода; у метрики с метками несколько значений
+    private List<Metric> collect() {
+        List<Metric> metrics = new ArrayList<>();
+
+        long lines = PipelineMetrics.getLines();
+        metrics.add(Metric.counter("parser_lines_total", "Строк передано разборщику").value(lines));
+        metrics.add(Metric.gauge("parser_lines_per_second", "Скорость разбора за последнюю секунду").value(linesPerSecond));
+        metrics.add(Metric.gauge("parser_lines_per_second_average", "Средняя скорость разбора с запуска")
+                .value(lines / Math.max(1e-9, PipelineMetrics.getUptimeSeconds())));
+        metrics.add(Metric.counter("parser_failures_total", "Строк, не соответствующих формату").value(PipelineMetrics.getParseFailures()));
+        metrics.add(Metric.gauge("parser_failure_ratio", "Доля строк, не соответствующих формату")
+                .value(lines == 0 ? 0 : (double) PipelineMetrics.getParseFailures() / lines));
+        metrics.add(Metric.counter("parser_lines_too_long_total", "Строк длиннее --max-line-length").value(PipelineMetrics.getLinesTooLong()));
+        metrics.add(Metric.counter("parser_read_bytes_total", "Прочитано байт (после распаковки)").value(PipelineMetrics.getBytesRead()));
+        metrics.add(Metric.counter("parser_dropped_total", "Сетевых сообщений отброшено из-за отставания разбора").value(PipelineMetrics.getDropped()));
+        Metric queues = Metric.gauge("parser_queue_depth", "Элементов в очередях между потоками");
+        for (PipelineMetrics.Queue queue : PipelineMetrics.Queue.values()) {
+            queues.value("queue", queue.getLabel(), PipelineMetrics.getQueueDepth(queue));
+        }
+        metrics.add(queues);
+        metrics.add(Metric.gauge("parser_user_agent_cache_hit_ratio", "Доля попаданий в кеш User-Agent").value(UserAgentClassifier.hitRate()));
+        metrics.add(latencyHistogram());
+        metrics.add(Metric.gauge("uptime_seconds", "Время работы процесса").value(PipelineMetrics.getUptimeSeconds()));
+
+        StatisticsSnapshot stats = snapshots.get();
+        if (stats == null) {
+            return metrics;
+        }
+        metrics.add(Metric.counter("requests_total", "Запросов в статистике").value(stats.getTotalVisits()));
+        metrics.add(Metric.counter("traffic_bytes_total", "Отдано байт").value(stats.getTotalTraffic()));
+        if (stats.getMinTime() != null) {
+            metrics.add(Metric.gauge("first_request_timestamp_seconds", "Время первого запроса, UTC")
+                    .value(stats.getMinTime().toEpochSecond(ZoneOffset.UTC)));
+            metrics.add(Metric.gauge("last_request_timestamp_seconds", "Время последнего запроса, UTC")
+                    .value(stats.getMaxTime().toEpochSecond(ZoneOffset.UTC)));
+        }
+        metrics.add(Metric.gauge("traffic_bytes_per_hour", "Средний трафик в час").value(stats.getTrafficRate()));
+        metrics.add(Metric.gauge("visits_per_hour", "Среднее количество посещений в час (не-боты)").value(stats.getAverageVisitsPerHour()));
+        metrics.add(Metric.gauge("errors_per_hour", "Среднее количество ошибочных запросов в час").value(stats.getAverageErrorsPerHour()));
+        metrics.add(Metric.gauge("visits_per_user", "Средняя посещаемость одним пользователем").value(stats.getAverageVisitsPerUser()));
+        metrics.add(Metric.gauge("unique_users", "Уникальных пользователей (не-боты)").value(stats.getUniqueNonBotIps()));
+        metrics.add(Metric.gauge("peak_visits_per_second", "Пиковая посещаемость в секунду").value(stats.getPeakVisitsPerSecond()));
+        metrics.add(Metric.gauge("max_visits_per_user", "Максимальная посещаемость одним пользователем").value(stats.getMaxVisitsPerUser()));
+        metrics.add(labeled(Metric.counter("requests_by_os_total", "Запросов по ОС"), "os", stats.getOsStatistics()));
+        metrics.add(labeled(Metric.counter("requests_by_browser_total", "Запросов по браузерам"), "browser", stats.getBrowserStatistics()));
+        Metric methods = Metric.counter("requests_by_method_total", "Запросов по HTTP-методам");
+        stats.getMethodStatistics().forEach((method, count) -> methods.value("method", method.name(), count));
+        metrics.add(methods);
+        Metric topIps = Metric.gauge("top_user_visits", "Посещения самых активных пользователей");
+        stats.getTopIps().forEach(ip -> topIps.value("ip", ip.getValue(), ip.getCount()));
+        metrics.add(topIps);
+        Metric topPages = Metric.gauge("top_page_visits", "Посещения самых посещаемых страниц");
+        stats.getTopPages().forEach(page -> topPages.value("page", page.getValue(), page.getCount()));
+        metrics.add(topPages);
+        metrics.add(Metric.counter("late_entries_total", "Записей старше окна временных рядов").value(stats.getLateEntries()));
+        Metric topReferers = Metric.gauge("top_referer_visits", "Переходы с самых частых рефереров");
+        stats.getTopRefererDomains().forEach(domain -> topReferers.value("domain", domain.getValue(), domain.getCount()));
+        metrics.add(topReferers);
+        if (stats.getLatency() != null) {
+            metrics.add(requestDuration(stats.getLatency()));
+            metrics.add(Metric.gauge("request_duration_max_seconds", "Наибольшее время ответа")
+                    .value(stats.getLatency().getMaxMicros() / 1e6));
+            metrics.add(p99(Metric.gauge("request_duration_p99_by_method_seconds", "99-й процентиль времени ответа по HTTP-методам"),
+                    "method", stats.getLatencyByMethod()));
+            metrics.add(p99(Metric.gauge("request_duration_p99_by_status_seconds", "99-й процентиль времени ответа по классам кодов ответа"),
+                    "status", stats.getLatencyByStatusClass()));
+            metrics.add(p99(Metric.gauge("request_duration_p99_by_path_seconds", "99-й процентиль времени ответа по началам путей"),
+                    "path", stats.getLatencyByPathPrefix()));
+        }
+        return metrics;
+    }
+
+    // Время ответа как summary Prometheus: квантили, сумма и число запросов
+    private static Metric requestDuration(LatencySummary latency) {
+        Metric summary = new Metric("request_duration_seconds", "summary", "Время ответа ($request_time)");
+        summary.sample("", "quantile", "0.5", latency.getP50Micros() / 1e6);
+        summary.sample("", "quantile", "0.9", latency.getP90Micros() / 1e6);
+        summary.sample("", "quantile", "0.99", latency.getP99Micros() / 1e6);
+        summary.sample("", "quantile", "0.999", latency.getP999Micros() / 1e6);
+        summary.sample("_sum", null, null, latency.getSumMicros() / 1e6);
+        summary.sample("_count", null, null, latency.getCount());
+        return summary;
+    }
+
+    private static Metric p99(Metric metric, String label, List<LatencySummary> summaries) {
+        summaries.forEach(summary -> metric.value(label, summary.getName(), summary.getP99Micros() / 1e6));
+        return metric;
+    }
+
+    private static Metric labeled(Metric metric, String label, Map<String, Integer> counts) {
+        counts.forEach((name, count) -> metric.value(label, name, count));
+        return metric;
+    }
+
+    private static Metric latencyHistogram() {
+        Metric histogram = new Metric("parser_parse_latency_seconds", "histogram",
+                "Время разбора строки, выборка каждой " + PipelineMetrics.SAMPLE_EVERY + "-й строки");
+        long[] buckets = PipelineMetrics.getLatencyBuckets();
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i];
+            String bound = i < PipelineMetrics.LATENCY_BOUNDS_NANOS.length
+                    ? format(PipelineMetrics.LATENCY_BOUNDS_NANOS[i] / 1e9) : "+Inf";
+            histogram.sample("_bucket", "le", bound, cumulative);
+        }
+        histogram.sample("_sum", null, null, PipelineMetrics.getLatencySumNanos() / 1e9);
+        histogram.sample("_count", null, null, cumulative);
+        return histogram;
+    }
+
+    private static String prometheus(List<Metric> metrics) {
+        StringBuilder out = new StringBuilder();
+        for (Metric metric : metrics) {
+            String name = PREFIX + metric.name;
+            out.append("# HELP ").append(name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(metric.type).append('\n');
+            for (Sample sample : metric.samples) {
+                out.append(name).append(sample.suffix);
+                if (sample.label != null) {
+                    out.append('{').append(sample.label).append("=\"").append(escapeLabel(sample.labelValue)).append("\"}");
+                }
+                out.append(' ').append(format(sample.value)).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    // Метрика без меток - число, с метками - объект "значение метки": число. У гистограммы
+    // корзины вложены под "bucket", рядом с ними "sum" и "count"
+    private static String json(List<Metric> metrics) {
+        StringBuilder out = new StringBuilder("{");
+        for (int m = 0; m < metrics.size(); m++) {
+            Metric metric = metrics.get(m);
+            out.append(m == 0 ? "\n  " : ",\n  ").append(jsonString(metric.name)).append(": ");
+            if (metric.samples.size() == 1 && metric.samples.get(0).label == null) {
+                out.append(format(metric.samples.get(0).value));
+                continue;
+            }
+            out.append('{');
+            // Суффикс открытого вложенного объекта (корзины гистограммы)
+            String nested = null;
+            boolean first = true;
+            for (Sample sample : metric.samples) {
+                if (nested != null && !nested.equals(sample.suffix)) {
+                    out.append('}');
+                    nested = null;
+                }
+                if (sample.label != null && !sample.suffix.isEmpty() && nested == null) {
+                    out.append(first ? "" : ", ").append(jsonString(sample.suffix.substring(1))).append(": {");
+                    nested = sample.suffix;
+                    first = true;
+                }
+                String key = sample.label != null ? sample.labelValue : sample.suffix.substring(1);
+                out.append(first ? "" : ", ").append(jsonString(key)).append(": ").append(format(sample.value));
+                first = false;
+            }
+            out.append(nested != null ? "}}" : "}");
+        }
+        return out.append("\n}\n").toString();
+    }
+
+    // Целые числа выводятся без дробной части, остальные - как Double.toString (например, 2.5E-4),
+    // что понимают и Prometheus, и JSON
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    // Одна метрика: имя без префикса, тип Prometheus, описание и значения
+    private static final class Metric {
+        private final String name;
+        private final String type;
+        private final String help;
+        private final List<Sample> samples = new ArrayList<>();
+
+        private Metric(String name, String type, String help) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+        }
+
+        private static Metric counter(String name, String help) {
+            return new Metric(name, "counter", help);
+        }
+
+        private static Metric gauge(String name, String help) {
+            return new Metric(name, "gauge", help);
+        }
+
+        private Metric value(double value) {
+            return sample("", null, null, value);
+        }
+
+        private Metric value(String label, String labelValue, double value) {
+            return sample("", label, labelValue, value);
+        }
+
+        private Metric sample(String suffix, String label, String labelValue, double value) {
+            samples.add(new Sample(suffix, label, labelValue, value));
+            return this;
+        }
+    }
+
+    private static final class Sample {
+        private final String suffix;
+        private final String label;
+        private final String labelValue;
+        private final double value;
+
+        private Sample(String suffix, String label, String labelValue, double value) {
+            this.suffix = suffix;
+            this.label = label;
+            this.labelValue = labelValue;
+            this.value = value;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,551 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Приём логов по сети: syslog по UDP (сообщение - датаграмма) и поток строк по TCP
+// (сообщение - строка до перевода строки). Заголовок syslog (RFC 3164 или RFC 5424)
+// отбрасывается, остаток разбирается как строка формата combined.
+//
+// Все сокеты обслуживает один поток на Selector: он только копирует байты сообщений
+// в пачки и кладёт заполненные пачки в очередь. Разбор идёт в рабочих потоках, каждый
+// добавляет в ConcurrentStatistics целую пачку за раз. Пачки переиспользуются через
+// очередь свободных, как блоки в CompressedLogReader, так что память ограничена BATCHES
+// пачками. Если разбор не успевает и свободных пачек нет, чтение TCP-соединений
+// приостанавливается (отправитель упирается в окно TCP), а датаграммы UDP вычитываются
+// и отбрасываются с подсчётом - у UDP нет способа притормозить отправителя. Строки, которые
+// уже прочитаны из сокета, но не поместились в пачки, откладываются в своём соединении:
+// оно не читается, пока они не переданы в освободившиеся пачки. Поток ввода-вывода
+// никогда не ждёт свободную пачку, поэтому остальные сокеты обслуживаются и в это время.
+//
+// Счётчики: получено сообщений, разобрано, с ошибкой разбора, отброшено. Когда очередь
+// пуста, получено = разобрано + с ошибкой + отброшено.
+final class NetworkListener implements Closeable {
+    private static final int BATCHES = 64;
+    private static final int BATCH_MESSAGES = 1024;
+    private static final int BATCH_BYTES = 256 << 10;
+    private static final int MAX_DATAGRAM = 65535;
+    private static final int UDP_RECEIVE_BUFFER = 16 << 20;
+    // Неполная пачка отправляется на разбор не позже, чем через столько миллисекунд
+    private static final long FLUSH_INTERVAL_MILLIS = 20;
+    private static final Batch END = new Batch();
+
+    private final ConcurrentStatistics statistics;
+    private final int workers;
+    private final int maxLineLength;
+    private final Selector selector;
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES);
+    private final BlockingQueue<Batch> filled;
+    private final List<Connection> connections = new ArrayList<>();
+    private final ByteBuffer datagram = ByteBuffer.allocate(MAX_DATAGRAM);
+    private final ByteBuffer socketBuffer = ByteBuffer.allocate(1 << 16);
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder parsed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private Batch current;
+    private long currentSince;
+    private boolean paused;
+    private volatile boolean running;
+
+    NetworkListener(ConcurrentStatistics statistics, int workers, int maxLineLength) throws IOException {
+        this.statistics = statistics;
+        this.workers = workers;
+        this.maxLineLength = maxLineLength;
+        this.selector = Selector.open();
+        this.filled = new ArrayBlockingQueue<>(BATCHES + workers);
+        for (int i = 0; i < BATCHES; i++) {
+            free.add(new Batch());
+        }
+    }
+
+    // Открывает приём syslog по UDP; возвращает фактический порт (для порта 0 - выбранный системой)
+    int bindUdp(InetSocketAddress address) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        // Большой приёмный буфер сглаживает всплески: то, что не поместилось в него, теряется в ядре
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, UDP_RECEIVE_BUFFER);
+        channel.bind(address);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    // Открывает приём строк по TCP; возвращает фактический порт
+    int bindTcp(InetSocketAddress address) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(address);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_ACCEPT);
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    void start() {
+        running = true;
+        PipelineMetrics.track(PipelineMetrics.Queue.NETWORK_BATCHES, filled);
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::parse, "network-parser-" + i);
+            worker.setDaemon(true);
+            threads.add(worker);
+        }
+        Thread io = new Thread(this::serve, "network-io");
+        io.setDaemon(true);
+        threads.add(io);
+        threads.forEach(Thread::start);
+    }
+
+    // Ждёт остановки приёма (close из другого потока или прерывание)
+    void await() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    // Останавливает приём, дожидается разбора уже принятых сообщений и закрывает сокеты
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PipelineMetrics.untrack(PipelineMetrics.Queue.NETWORK_BATCHES, filled);
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    long getReceived() { return received.sum(); }
+    long getParsed() { return parsed.sum(); }
+    long getFailed() { return failed.sum(); }
+    long getDropped() { return dropped.sum(); }
+
+    // Поток ввода-вывода
+    private void serve() {
+        try {
+            while (running) {
+                selector.select(FLUSH_INTERVAL_MILLIS);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                    } else if (key.channel() instanceof DatagramChannel) {
+                        receive((DatagramChannel) key.channel());
+                    } else {
+                        read(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                if (current != null && current.count > 0
+                        && System.nanoTime() - currentSince > TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS)) {
+                    flush();
+                }
+                if (paused && (current != null || nextBatch())) {
+                    resume();
+                }
+            }
+            // Незавершённые и отложенные строки соединений при остановке теряются, как при обрыве
+            // соединения; отложенные уже учтены как полученные, поэтому считаются отброшенными
+            if (current != null && current.count > 0) {
+                flush();
+            }
+            for (Connection connection : connections) {
+                connection.discard();
+            }
+        } catch (IOException e) {
+            System.out.println("Ошибка приёма: " + e.getMessage());
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                filled.add(END);
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, paused ? 0 : SelectionKey.OP_READ);
+        Connection connection = new Connection(key);
+        key.attach(connection);
+        connections.add(connection);
+    }
+
+    private void receive(DatagramChannel channel) throws IOException {
+        // Очередь датаграмм в ядре вычитывается целиком, даже если их придётся отбросить
+        while (channel.receive(datagram) != null) {
+            datagram.flip();
+            PipelineMetrics.bytesRead(datagram.limit());
+            splitDatagram(datagram.array(), datagram.limit());
+            datagram.clear();
+        }
+    }
+
+    // В одной датаграмме обычно одно сообщение, но некоторые отправители склеивают
+    // несколько через перевод строки
+    private void splitDatagram(byte[] data, int length) {
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || data[i] == '\n' || data[i] == '\r') {
+                if (i > start) {
+                    received.increment();
+                    if (reserve(i - start)) {
+                        System.arraycopy(data, start, current.data, current.size, i - start);
+                        current.commit(i - start);
+                    } else {
+                        dropped.increment();
+                        PipelineMetrics.messageDropped();
+                        pause();
+                    }
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        if (current == null && !nextBatch()) {
+            // Свободных пачек нет: данные остаются в сокете, отправитель ждёт
+            key.interestOps(0);
+            pause();
+            return;
+        }
+        try {
+            socketBuffer.clear();
+            int read = channel.read(socketBuffer);
+            if (read < 0) {
+                connection.splitter.finish();
+                if (connection.count == 0) {
+                    disconnect(connection);
+                } else {
+                    // Соединение закроется, когда отложенные строки попадут в пачки
+                    connection.closed = true;
+                    key.interestOps(0);
+                }
+                return;
+            }
+            socketBuffer.flip();
+            connection.splitter.accept(socketBuffer);
+        } catch (Main.LineTooLongException e) {
+            // После слишком длинной строки границы сообщений в потоке потеряны
+            received.increment();
+            failed.increment();
+            System.out.println("Соединение " + describe(channel) + " закрыто: " + e.getMessage());
+            disconnect(connection);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        connection.discard();
+        connections.remove(connection);
+        connection.key.cancel();
+        try {
+            connection.key.channel().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Готовит место под сообщение длиной length; false, если свободных пачек нет
+    private boolean reserve(int length) {
+        if (current != null && !current.fits(length)) {
+            flush();
+        }
+        if (current == null && !nextBatch()) {
+            return false;
+        }
+        current.ensureCapacity(length);
+        return true;
+    }
+
+    private boolean nextBatch() {
+        current = free.poll();
+        currentSince = System.nanoTime();
+        return current != null;
+    }
+
+    private void flush() {
+        // В очереди заполненных места хватает на все пачки, поэтому add не блокируется
+        filled.add(current);
+        current = null;
+    }
+
+    // Разбор не успевает: TCP-соединения не читаются до появления свободной пачки
+    private void pause() {
+        if (!paused) {
+            paused = true;
+            for (Connection connection : connections) {
+                connection.key.interestOps(0);
+            }
+        }
+    }
+
+    // Появилась свободная пачка: сначала в пачки передаются отложенные строки, потом
+    // соединения снова читаются. Если пачек опять не хватило, остальные соединения ждут
+    private void resume() {
+        paused = false;
+        for (Connection connection : new ArrayList<>(connections)) {
+            if (!connection.drain()) {
+                paused = true;
+                return;
+            }
+            if (connection.closed) {
+                disconnect(connection);
+            } else if (connection.key.isValid()) {
+                connection.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    // Рабочий поток разбора
+    private void parse() {
+        LogTokenizer tokenizer = LogFormat.active().newTokenizer();
+        ByteSlice message = new ByteSlice();
+        LogEntry[] entries = new LogEntry[BATCH_MESSAGES];
+        try {
+            Batch batch;
+            while ((batch = filled.take()) != END) {
+                // Пачка возвращается в свободные при любой ошибке, иначе приём встанет без пачек
+                try {
+                    parseBatch(batch, tokenizer, message, entries);
+                } catch (RuntimeException e) {
+                    failed.add(batch.count);
+                    System.out.println("Ошибка разбора пачки из " + batch.count + " сообщений: " + e);
+                } finally {
+                    Arrays.fill(entries, null);
+                    batch.reset();
+                    free.add(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Счётчики обновляются только после того, как вся пачка добавлена в статистику
+    private void parseBatch(Batch batch, LogTokenizer tokenizer, ByteSlice message, LogEntry[] entries) {
+        int count = 0;
+        int failures = 0;
+        int tooLong = 0;
+        int start = 0;
+        for (int i = 0; i < batch.count; i++) {
+            int end = batch.ends[i];
+            message.set(batch.data, start, end - start);
+            int payload = payloadStart(message);
+            message.set(batch.data, start + payload, end - start - payload);
+            start = end;
+            if (message.length() > maxLineLength && message.charLength() > maxLineLength) {
+                tooLong++;
+                continue;
+            }
+            try {
+                entries[count++] = new LogEntry(message, tokenizer);
+            } catch (IllegalArgumentException e) {
+                count--;
+                failures++;
+            }
+        }
+        statistics.addEntries(entries, count);
+        parsed.add(count);
+        failed.add(failures + tooLong);
+        for (int i = 0; i < tooLong; i++) {
+            PipelineMetrics.lineTooLong();
+        }
+    }
+
+    // Начало текста сообщения после заголовка syslog; 0, если заголовка нет.
+    //   RFC 3164: <PRI>Mmm dd hh:mm:ss HOST TAG: сообщение
+    //   RFC 5424: <PRI>1 TIMESTAMP HOST APP PROCID MSGID STRUCTURED-DATA сообщение
+    static int payloadStart(CharSequence s) {
+        int length = s.length();
+        if (length == 0 || s.charAt(0) != '<') {
+            return 0;
+        }
+        int pos = 1;
+        while (pos < length && pos <= 4 && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') pos++;
+        if (pos == 1 || pos >= length || s.charAt(pos) != '>') {
+            return 0;
+        }
+        pos++;
+
+        if (pos + 1 < length && s.charAt(pos) >= '1' && s.charAt(pos) <= '9' && s.charAt(pos + 1) == ' ') {
+            // Версия, затем пять полей заголовка через пробел
+            for (int field = 0; field < 6 && pos < length; field++) {
+                while (pos < length && s.charAt(pos) != ' ') pos++;
+                pos++;
+            }
+            pos = skipStructuredData(s, pos, length);
+            if (pos < length && s.charAt(pos) == ' ') pos++;
+            // Метка порядка байт UTF-8 перед текстом (в представлении ByteSlice - три символа Latin-1)
+            if (pos + 2 < length && s.charAt(pos) == 0xEF && s.charAt(pos + 1) == 0xBB && s.charAt(pos + 2) == 0xBF) {
+                pos += 3;
+            }
+            return Math.min(pos, length);
+        }
+
+        for (int i = pos; i + 1 < length; i++) {
+            if (s.charAt(i) == ':' && s.charAt(i + 1) == ' ') {
+                return i + 2;
+            }
+        }
+        return pos;
+    }
+
+    // "-" или последовательность элементов [id param="value" ...]; в значениях экранируются \] и \"
+    private static int skipStructuredData(CharSequence s, int pos, int length) {
+        if (pos < length && s.charAt(pos) == '-') {
+            return pos + 1;
+        }
+        while (pos < length && s.charAt(pos) == '[') {
+            boolean quoted = false;
+            pos++;
+            while (pos < length) {
+                char c = s.charAt(pos++);
+                if (c == '\\' && quoted) {
+                    pos++;
+                } else if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ']' && !quoted) {
+                    break;
+                }
+            }
+        }
+        return pos;
+    }
+
+    private static String describe(SocketChannel channel) {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+
+    // TCP-соединение: деление потока на строки и строки, для которых не нашлось свободной
+    // пачки (не больше одного чтения из сокета и незавершённой строки). Пока они не переданы
+    // в пачки, соединение не читается, а новые строки встают за ними, чтобы не нарушить порядок
+    private final class Connection {
+        private final SelectionKey key;
+        private final LineSplitter splitter;
+        private byte[] data = new byte[0];
+        private int[] ends = new int[0];
+        private int size;
+        private int count;
+        // Отправитель закрыл соединение, осталось передать отложенные строки
+        private boolean closed;
+
+        private Connection(SelectionKey key) {
+            this.key = key;
+            this.splitter = new LineSplitter(maxLineLength, this::addLine);
+        }
+
+        private void addLine(CharSequence line) {
+            ByteSlice slice = (ByteSlice) line;
+            int length = slice.length();
+            received.increment();
+            if (count == 0 && reserve(length)) {
+                slice.copyTo(current.data, current.size);
+                current.commit(length);
+                return;
+            }
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+            }
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, Math.max(16, count * 2));
+            }
+            slice.copyTo(data, size);
+            size += length;
+            ends[count++] = size;
+            key.interestOps(0);
+            pause();
+        }
+
+        // Переносит отложенные строки в пачки; false, если свободные пачки снова кончились
+        private boolean drain() {
+            int start = 0;
+            int moved = 0;
+            while (moved < count) {
+                int length = ends[moved] - start;
+                if (!reserve(length)) {
+                    break;
+                }
+                System.arraycopy(data, start, current.data, current.size, length);
+                current.commit(length);
+                start = ends[moved++];
+            }
+            System.arraycopy(data, start, data, 0, size - start);
+            for (int i = moved; i < count; i++) {
+                ends[i - moved] = ends[i] - start;
+            }
+            size -= start;
+            count -= moved;
+            return count == 0;
+        }
+
+        // Отложенные строки теряются вместе с соединением
+        private void discard() {
+            dropped.add(count);
+            for (int i = 0; i < count; i++) {
+                PipelineMetrics.messageDropped();
+            }
+            size = 0;
+            count = 0;
+        }
+    }
+
+    // Сообщения подряд в одном массиве; ends[i] - конец i-го сообщения
+    private static final class Batch {
+        private byte[] data = new byte[BATCH_BYTES];
+        private final int[] ends = new int[BATCH_MESSAGES];
+        private int size;
+        private int count;
+
+        private boolean fits(int length) {
+            return count < ends.length && size + length <= data.length;
+        }
+
+        // Сообщение длиннее пустой пачки помещается в расширенный массив
+        private void ensureCapacity(int length) {
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, size + length);
+            }
+        }
+
+        private void commit(int length) {
+            size += length;
+            ends[count++] = size;
+        }
+
+        private void reset() {
+            size = 0;
+            count = 0;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+// Enum с операционными системами, которые определяются по User-Agent
+enum OsType {
+    WINDOWS("Windows"), MACOS("macOS"), LINUX("Linux"), ANDROID("Android"), IOS("iOS"), UNKNOWN("Unknown");
+
+    private final String displayName;
+
+    OsType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Параллельная обработка одного файла: файл делится на диапазоны байт,
+// выровненные по границам строк, каждый диапазон разбирается в собственную
+// статистику, после чего частичные результаты объединяются по порядку.
+// Несколько файлов (например, ротированные логи) обрабатываются так же,
+// только единицей работы служит целый файл.
+final class ParallelLogProcessor {
+    private static final int RANGES_PER_WORKER = 4;
+
+    private ParallelLogProcessor() {
+    }
+
+    // Возвращает количество прочитанных строк; при слишком длинной строке
+    // статистика содержит всё, что предшествовало ей в файле, как и при последовательном чтении
+    static int process(String path, Statistics statistics, int workers, int maxLineLength)
+            throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            List<Future<RangeResult>> futures = new ArrayList<>();
+            for (long[] range : splitIntoRanges(channel, workers * RANGES_PER_WORKER)) {
+                futures.add(executor.submit(() -> processRange(channel, range[0], range[1], statistics.createEmpty(), maxLineLength)));
+            }
+
+            int totalLines = 0;
+            for (Future<RangeResult> future : futures) {
+                RangeResult result = getResult(future);
+                statistics.merge(result.statistics);
+                totalLines += result.lines;
+                if (result.tooLongLine != null) {
+                    futures.forEach(f -> f.cancel(true));
+                    throw result.tooLongLine;
+                }
+            }
+            return totalLines;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Обрабатывает файлы одновременно, по файлу на поток, и возвращает общее количество строк.
+    // Ошибка в одном файле сообщается и не мешает обработке остальных. Результаты вливаются
+    // по порядку файлов, и в работе не больше нескольких файлов на поток, поэтому частичные
+    // статистики тысяч файлов не копятся в памяти
+    static int processFiles(List<Path> files, Statistics statistics, int workers, int maxLineLength)
+            throws InterruptedException {
+        int threads = Math.max(1, Math.min(workers, files.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayDeque<Future<RangeResult>> pending = new ArrayDeque<>();
+            int totalLines = 0;
+            int next = 0;
+            for (int i = 0; i < files.size(); i++) {
+                while (next < files.size() && pending.size() < threads * RANGES_PER_WORKER) {
+                    Path file = files.get(next++);
+                    pending.add(executor.submit(() -> processWholeFile(file, statistics.createEmpty(), maxLineLength)));
+                }
+                try {
+                    RangeResult result = getResult(pending.poll());
+                    statistics.merge(result.statistics);
+                    totalLines += result.lines;
+                    if (result.tooLongLine != null) {
+                        System.out.println("Ошибка в файле " + files.get(i) + ": " + result.tooLongLine.getMessage());
+                    }
+                } catch (IOException e) {
+                    System.out.println("Ошибка в файле " + files.get(i) + ": " + e.getMessage());
+                }
+            }
+            return totalLines;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Делит файл на диапазоны; каждый диапазон начинается сразу после перевода строки
+    private static List<long[]> splitIntoRanges(FileChannel channel, int count) throws IOException {
+        long size = channel.size();
+        List<long[]> ranges = new ArrayList<>();
+        long start = 0;
+        for (int i = 1; i <= count && start < size; i++) {
+            long end = i == count ? size : alignToLine(channel, size * i / count, size);
+            if (end > start) {
+                ranges.add(new long[]{start, end});
+                start = end;
+            }
+        }
+        return ranges;
+    }
+
+    // Начало первой строки, которая начинается не раньше position. Концы строк те же, что
+    // в LineSplitter: '\n', одиночный '\r' и пара "\r\n", которая считается одним переводом
+    // строки, даже если position приходится между её байтами
+    private static long alignToLine(FileChannel channel, long position, long size) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long pos = position - 1;
+        boolean carriageReturn = false;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (carriageReturn) {
+                    return b == '\n' ? pos + i + 1 : pos + i;
+                }
+                if (b == '\n') {
+                    return pos + i + 1;
+                }
+                carriageReturn = b == '\r';
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static RangeResult processRange(FileChannel channel, long start, long end, Statistics statistics,
+                                            int maxLineLength) throws IOException {
+        RangeResult result = new RangeResult(statistics);
+        try {
+            new MappedLogReader(maxLineLength).read(channel, start, end, result.lineHandler());
+        } catch (Main.LineTooLongException e) {
+            // Строки после слишком длинной не учитываются, как и при последовательном чтении
+            result.tooLongLine = e;
+        }
+        return result;
+    }
+
+    // Файл целиком: сжатый, несжатый или индекс LogIndex
+    private static RangeResult processWholeFile(Path file, Statistics statistics, int maxLineLength) throws IOException {
+        RangeResult result = new RangeResult(statistics);
+        if (LogIndex.isIndex(file)) {
+            result.lines = LogIndex.load(file, statistics);
+            return result;
+        }
+        try {
+            LogFiles.read(file, maxLineLength, result.lineHandler());
+        } catch (Main.LineTooLongException e) {
+            result.tooLongLine = e;
+        }
+        return result;
+    }
+
+    private static RangeResult getResult(Future<RangeResult> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // Частичный результат обработки одного диапазона
+    private static class RangeResult {
+        private final Statistics statistics;
+        private int lines;
+        private Main.LineTooLongException tooLongLine;
+
+        private RangeResult(Statistics statistics) {
+            this.statistics = statistics;
+        }
+
+        private Consumer<CharSequence> lineHandler() {
+            LogTokenizer tokenizer = LogFormat.active().newTokenizer();
+            return line -> {
+                lines++;
+                try {
+                    statistics.addEntry(new LogEntry(line, tokenizer));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Ошибка парсинга строки: " + e.getMessage());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Счётчики самого разборщика для MetricsServer: строки, ошибки разбора, слишком длинные
+// строки, прочитанные байты, сообщения, отброшенные из-за отставания разбора, глубина очередей между потоками и время разбора строки.
+// Счётчики общие для всех потоков и построены на LongAdder, как счётчики кеша
+// User-Agent, поэтому потоки не мешают друг другу. Время разбора замеряется не у каждой
+// строки, а у одной из SAMPLE_EVERY: два вызова System.nanoTime на строку стоили бы
+// заметной доли разбора. Глубина очередей не считается на каждой операции, а берётся
+// из самих очередей при чтении.
+// Пока сервер метрик не запущен, счётчики не ведутся: горячий цикл разбора не платит
+// за LongAdder и nanoTime, если метрики никто не читает.
+final class PipelineMetrics {
+    // Замеряется каждая 64-я строка каждого разборщика
+    static final int SAMPLE_EVERY = 64;
+
+    // Очереди между потоками, глубина которых публикуется
+    enum Queue {
+        GZIP_BLOCKS("gzip"),
+        NETWORK_BATCHES("network");
+
+        private final String label;
+
+        Queue(String label) {
+            this.label = label;
+        }
+
+        String getLabel() {
+            return label;
+        }
+    }
+
+    // Верхние границы корзин гистограммы времени разбора, наносекунды
+    static final long[] LATENCY_BOUNDS_NANOS = {
+            250, 500, 1_000, 2_000, 4_000, 8_000, 16_000, 32_000, 64_000, 128_000, 1_000_000
+    };
+
+    private static final LongAdder LINES = new LongAdder();
+    private static final LongAdder PARSE_FAILURES = new LongAdder();
+    private static final LongAdder LINES_TOO_LONG = new LongAdder();
+    private static final LongAdder BYTES_READ = new LongAdder();
+    private static final LongAdder DROPPED = new LongAdder();
+    // Очереди, которые сейчас в работе; у каждого читателя gzip своя
+    private static final Map<Queue, Set<Collection<?>>> QUEUES = new EnumMap<>(Queue.class);
+    // Последняя корзина - больше самой большой границы
+    private static final LongAdder[] LATENCY_BUCKETS = new LongAdder[LATENCY_BOUNDS_NANOS.length + 1];
+    private static final LongAdder LATENCY_SUM_NANOS = new LongAdder();
+    private static final long START_NANOS = System.nanoTime();
+    // Включается один раз при запуске MetricsServer, до начала чтения логов, поэтому потоки
+    // разбора, запущенные после этого, видят значение без volatile, а JIT может вынести
+    // проверку из цикла
+    private static boolean enabled;
+
+    static {
+        for (Queue queue : Queue.values()) {
+            QUEUES.put(queue, ConcurrentHashMap.newKeySet());
+        }
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            LATENCY_BUCKETS[i] = new LongAdder();
+        }
+    }
+
+    private PipelineMetrics() {
+    }
+
+    static void enable() { enabled = true; }
+    static boolean isEnabled() { return enabled; }
+
+    static void lineParsed() {
+        if (enabled) LINES.increment();
+    }
+
+    static void parseFailed() {
+        if (enabled) {
+            LINES.increment();
+            PARSE_FAILURES.increment();
+        }
+    }
+
+    static void lineTooLong() {
+        if (enabled) LINES_TOO_LONG.increment();
+    }
+
+    static void bytesRead(long bytes) {
+        if (enabled) BYTES_READ.add(bytes);
+    }
+
+    static void messageDropped() {
+        if (enabled) DROPPED.increment();
+    }
+
+    static void track(Queue queue, Collection<?> elements) {
+        if (enabled) QUEUES.get(queue).add(elements);
+    }
+
+    static void untrack(Queue queue, Collection<?> elements) { QUEUES.get(queue).remove(elements); }
+
+    static void parseLatency(long nanos) {
+        if (!enabled) {
+            return;
+        }
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS_NANOS.length && nanos > LATENCY_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        LATENCY_BUCKETS[bucket].increment();
+        LATENCY_SUM_NANOS.add(nanos);
+    }
+
+    static long getLines() { return LINES.sum(); }
+    static long getParseFailures() { return PARSE_FAILURES.sum(); }
+    static long getLinesTooLong() { return LINES_TOO_LONG.sum(); }
+    static long getBytesRead() { return BYTES_READ.sum(); }
+    static long getDropped() { return DROPPED.sum(); }
+
+    // Суммарное число элементов во всех очередях этого вида
+    static long getQueueDepth(Queue queue) {
+        long depth = 0;
+        for (Collection<?> elements : QUEUES.get(queue)) {
+            depth += elements.size();
+        }
+        return depth;
+    }
+
+    static double getUptimeSeconds() { return (System.nanoTime() - START_NANOS) / 1e9; }
+
+    // Число замеров в каждой корзине (не накопленное)
+    static long[] getLatencyBuckets() {
+        long[] counts = new long[LATENCY_BUCKETS.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = LATENCY_BUCKETS[i].sum();
+        }
+        return counts;
+    }
+
+    static long getLatencySumNanos() { return LATENCY_SUM_NANOS.sum(); }
+}
\ No newline at end of file
@@ -0,0 +1,260 @@
+// Извлечение домена из Referer линейным проходом, без java.net.URI и регулярных выражений.
+// Для URL (схема://хост...) домен - хост без пользователя, порта и префикса "www.";
+// для остальных строк, как и раньше, первый фрагмент между &, ? и =, похожий на домен.
+//
+// Рефереры сильно повторяются, поэтому домены URL запоминаются в ограниченном кеше по
+// началу реферера до пути ("https://www.example.com"): все страницы сайта дают одну ячейку.
+// Кеш устроен как в UserAgentClassifier - наборы по WAYS ячеек с вытеснением давно не
+// использовавшейся; при попадании возвращается тот же экземпляр String, хеш которого
+// уже посчитан, что ускоряет и подсчёт доменов в HashMap.
+// Экземпляр не потокобезопасен: у каждой Statistics свой.
+final class RefererDomainExtractor {
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final int WAYS = 4;
+
+    private final int setMask;
+    private final String[] keys;
+    private final int[] hashes;
+    private final String[] values;
+    private final long[] lastUsed;
+    private long clock;
+
+    RefererDomainExtractor(int capacity) {
+        int sets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+        this.setMask = sets - 1;
+        this.keys = new String[sets * WAYS];
+        this.hashes = new int[sets * WAYS];
+        this.values = new String[sets * WAYS];
+        this.lastUsed = new long[sets * WAYS];
+    }
+
+    RefererDomainExtractor() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // Домен реферера или null, если его нет
+    String extract(String referer) {
+        int authority = authorityStart(referer);
+        if (authority < 0) {
+            return domainInParameters(referer);
+        }
+        int end = authorityEnd(referer, authority);
+        int hash = hash(referer, end);
+        int base = (hash & setMask) * WAYS;
+        int victim = base;
+        clock++;
+
+        for (int slot = base; slot < base + WAYS; slot++) {
+            String key = keys[slot];
+            if (key == null) {
+                victim = slot;
+                break;
+            }
+            if (hashes[slot] == hash && key.length() == end && referer.regionMatches(0, key, 0, end)) {
+                lastUsed[slot] = clock;
+                return values[slot];
+            }
+            if (lastUsed[slot] < lastUsed[victim]) {
+                victim = slot;
+            }
+        }
+
+        String host = host(referer, authority, end);
+        if (host == null) {
+            // Без хоста результат зависит от всей строки, такие рефереры не кешируются
+            return domainInParameters(referer);
+        }
+        keys[victim] = referer.substring(0, end);
+        hashes[victim] = hash;
+        values[victim] = host;
+        lastUsed[victim] = clock;
+        return host;
+    }
+
+    // То же без кеша
+    static String extractDomain(String referer) {
+        int authority = authorityStart(referer);
+        if (authority >= 0) {
+            String host = host(referer, authority, authorityEnd(referer, authority));
+            if (host != null) {
+                return host;
+            }
+        }
+        return domainInParameters(referer);
+    }
+
+    // Начало части "хост" после "схема://" или -1, если строка не URL
+    private static int authorityStart(String referer) {
+        int colon = referer.indexOf(':');
+        if (colon <= 0 || !referer.startsWith("//", colon + 1) || !isLetter(referer.charAt(0))) {
+            return -1;
+        }
+        for (int i = 1; i < colon; i++) {
+            char c = referer.charAt(i);
+            if (!isLetter(c) && !isDigit(c) && c != '+' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+        return colon + 3;
+    }
+
+    // Хост кончается там, где начинается путь, запрос или фрагмент
+    private static int authorityEnd(String referer, int start) {
+        for (int i = start; i < referer.length(); i++) {
+            char c = referer.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return referer.length();
+    }
+
+    // Хост из [start, end) без пользователя, порта и "www." или null, если хоста нет
+    // или в нём недопустимые символы
+    private static String host(String referer, int start, int end) {
+        int at = referer.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            start = at + 1;
+        }
+        if (start < end && referer.charAt(start) == '[') {
+            // IPv6 возвращается в скобках, как его отдаёт URI.getHost
+            int close = referer.indexOf(']', start);
+            if (close < 0 || close >= end || !isPort(referer, close + 1, end)) {
+                return null;
+            }
+            for (int i = start + 1; i < close; i++) {
+                char c = referer.charAt(i);
+                if (!isHexDigit(c) && c != ':' && c != '.') {
+                    return null;
+                }
+            }
+            return close == start + 1 ? null : referer.substring(start, close + 1);
+        }
+        int hostEnd = start;
+        while (hostEnd < end && referer.charAt(hostEnd) != ':') {
+            hostEnd++;
+        }
+        if (!isPort(referer, hostEnd, end) || !isHostName(referer, start, hostEnd)) {
+            return null;
+        }
+        return withoutWww(referer, start, hostEnd);
+    }
+
+    // Пусто или ":" и цифры
+    private static boolean isPort(String referer, int start, int end) {
+        if (start == end) {
+            return true;
+        }
+        if (referer.charAt(start) != ':') {
+            return false;
+        }
+        for (int i = start + 1; i < end; i++) {
+            if (!isDigit(referer.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Метки из букв, цифр и дефисов через точки; дефис не может начинать и заканчивать метку,
+    // пустая метка допустима только в конце ("example.com.")
+    private static boolean isHostName(String referer, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        int labelStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || referer.charAt(i) == '.') {
+                if (i == labelStart) {
+                    if (i != end || i == start) {
+                        return false;
+                    }
+                } else if (referer.charAt(labelStart) == '-' || referer.charAt(i - 1) == '-') {
+                    return false;
+                }
+                labelStart = i + 1;
+            } else {
+                char c = referer.charAt(i);
+                if (!isLetter(c) && !isDigit(c) && c != '-') {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Первый фрагмент между &, ? и = (без пробелов по краям) вида "буквы-цифры.tld",
+    // где tld - не меньше двух латинских букв
+    private static String domainInParameters(String referer) {
+        int start = 0;
+        for (int i = 0; i <= referer.length(); i++) {
+            if (i < referer.length()) {
+                char c = referer.charAt(i);
+                if (c != '&' && c != '?' && c != '=') {
+                    continue;
+                }
+            }
+            int from = start;
+            int to = i;
+            while (from < to && referer.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && referer.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            if (looksLikeDomain(referer, from, to)) {
+                return withoutWww(referer, from, to);
+            }
+            start = i + 1;
+        }
+        return null;
+    }
+
+    private static boolean looksLikeDomain(String s, int start, int end) {
+        int lastDot = -1;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                lastDot = i;
+            } else if (!isLetter(c) && !isDigit(c) && c != '-') {
+                return false;
+            }
+        }
+        if (lastDot <= start || end - lastDot - 1 < 2) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < end; i++) {
+            if (!isLetter(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String withoutWww(String s, int start, int end) {
+        if (s.startsWith("www.", start)) {
+            start += 4;
+        }
+        return s.substring(start, end);
+    }
+
+    private static int hash(String s, int end) {
+        int h = 0;
+        for (int i = 0; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
\ No newline at end of file
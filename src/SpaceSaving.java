@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Поиск самых частых значений алгоритмом Space-Saving с фиксированным числом счётчиков.
+// Пока счётчиков хватает, подсчёт точный. Когда место кончается, новое значение вытесняет
+// самое редкое и наследует его счёт как верхнюю оценку ошибки. Любое значение, встретившееся
+// больше total / capacity раз, гарантированно присутствует в отчёте.
+// Счётчики лежат в min-куче, поэтому обновление стоит O(log capacity).
+final class SpaceSaving {
+    // Примерный объём одного счётчика вместе со строкой значения и записью в HashMap
+    static final int BYTES_PER_COUNTER = 160;
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final Counter[] heap;
+    private int size;
+    private long total;
+
+    private static final class Counter {
+        private final String value;
+        private long count;
+        private long error;
+        private int heapIndex;
+
+        private Counter(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Число счётчиков должно быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    void add(String value) {
+        add(value, 1, 0);
+    }
+
+    // Значение, встретившееся count раз подряд
+    void add(String value, long count) {
+        add(value, count, 0);
+    }
+
+    private void add(String value, long count, long error) {
+        total += count;
+        Counter counter = counters.get(value);
+        if (counter != null) {
+            counter.count += count;
+            counter.error += error;
+            siftDown(counter.heapIndex);
+        } else if (size < capacity) {
+            counter = new Counter(value, count, error);
+            counters.put(value, counter);
+            heap[size] = counter;
+            counter.heapIndex = size;
+            siftUp(size++);
+        } else {
+            // Вытесняем самое редкое значение
+            Counter evicted = heap[0];
+            counters.remove(evicted.value);
+            counter = new Counter(value, evicted.count + count, evicted.count + error);
+            counters.put(value, counter);
+            heap[0] = counter;
+            counter.heapIndex = 0;
+            siftDown(0);
+        }
+    }
+
+    // Сколько раз значение могло встретиться: точный счёт, если значение отслеживается,
+    // иначе - верхняя граница (счёт самого редкого отслеживаемого значения)
+    private long upperBound(String value) {
+        Counter counter = counters.get(value);
+        if (counter != null) {
+            return counter.count;
+        }
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    // Объединение сводок: каждое значение получает сумму верхних оценок из обеих сводок,
+    // после чего остаются capacity самых частых
+    void merge(SpaceSaving other) {
+        Map<String, long[]> combined = new HashMap<>();
+        long thisMin = size < capacity ? 0 : heap[0].count;
+        long otherMin = other.size < other.capacity ? 0 : other.heap[0].count;
+        for (Counter counter : counters.values()) {
+            Counter match = other.counters.get(counter.value);
+            combined.put(counter.value, new long[]{
+                    counter.count + other.upperBound(counter.value),
+                    counter.error + (match != null ? match.error : otherMin)});
+        }
+        for (Counter counter : other.counters.values()) {
+            if (!combined.containsKey(counter.value)) {
+                combined.put(counter.value, new long[]{
+                        counter.count + thisMin, counter.error + thisMin});
+            }
+        }
+
+        long mergedTotal = total + other.total;
+        counters.clear();
+        Arrays.fill(heap, null);
+        size = 0;
+        combined.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed())
+                .limit(capacity)
+                .forEach(e -> add(e.getKey(), e.getValue()[0], e.getValue()[1]));
+        total = mergedTotal;
+    }
+
+    // Самые частые значения в порядке убывания счёта
+    List<HeavyHitter> top(int n) {
+        List<HeavyHitter> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new HeavyHitter(heap[i].value, heap[i].count, heap[i].error));
+        }
+        result.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed());
+        return result.size() > n ? new ArrayList<>(result.subList(0, n)) : result;
+    }
+
+    List<String> values() {
+        return new ArrayList<>(counters.keySet());
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    // Наибольшее возможное завышение любого счёта
+    long maxError() {
+        return size < capacity ? 0 : total / capacity;
+    }
+
+    // Для контрольной точки: счётчики в порядке кучи, чтобы при чтении куча
+    // восстановилась без перестроения и с тем же порядком равных счётов
+    void writeTo(StatisticsCheckpoint.Output out) throws IOException {
+        out.writeVarLong(capacity);
+        out.writeVarLong(total);
+        out.writeVarLong(size);
+        for (int i = 0; i < size; i++) {
+            out.writeString(heap[i].value);
+            out.writeVarLong(heap[i].count);
+            out.writeVarLong(heap[i].error);
+        }
+    }
+
+    // Чтение в пустую сводку той же ёмкости
+    void readFrom(StatisticsCheckpoint.Input in) throws IOException {
+        if (in.readVarLong() != capacity) {
+            throw new IOException("Контрольная точка записана с другим числом счётчиков Space-Saving");
+        }
+        total = in.readVarLong();
+        int count = in.readCount();
+        if (count > capacity) {
+            throw new IOException("Контрольная точка повреждена: счётчиков больше ёмкости");
+        }
+        for (int i = 0; i < count; i++) {
+            Counter counter = new Counter(in.readString(), in.readVarLong(), in.readVarLong());
+            counters.put(counter.value, counter);
+            place(counter, i);
+        }
+        size = count;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (heap[child].count >= counter.count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+}
\ No newline at end of file
@@ -1,50 +1,120 @@
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 public class Statistics {
     private long totalTraffic;
-    private LocalDateTime minTime;
-    private LocalDateTime maxTime;
-    private final Map<String, Integer> osStatistics;
-    private final Map<String, Integer> browserStatistics;
-    private final Set<String> existingPages;
+    // Временной диапазон в секундах эпохи UTC; пока записей нет, min > max
+    private long minEpochSecond;
+    private long maxEpochSecond;
+    private final int[] osCounts; // Количество запросов по ОС (индекс - OsType.ordinal)
+    private final int[] browserCounts; // Количество запросов по браузерам (индекс - BrowserType.ordinal)
+    private final int[] methodCounts; // Количество запросов по HTTP-методам (индекс - HttpMethod.ordinal)
+    private final Map<String, Integer> existingPages; // Страницы с кодом 200 и число обращений к ним
     private final Set<String> notFoundPages;
-    private final Map<String, Integer> osCountMap;
-    private final Map<String, Integer> browserCountMap;
 
     private int totalVisits;
     private int nonBotVisits;
     private int errorRequests;
-    private final Set<String> nonBotIps;
 
-    private final Map<Long, Integer> visitsPerSecond; // Посещения по секундам (не-боты)
-    private final Set<String> refererDomains; // Домены рефереров
-    private final Map<String, Integer> visitsPerUser; // Посещения по пользователям (IP не-ботов)
+    private final LongIntHashMap visitsPerSecond; // Посещения по секундам (не-боты)
+    private final Map<String, Integer> refererDomains; // Домены рефереров и число переходов с них
+    private final RefererDomainExtractor refererDomainExtractor = new RefererDomainExtractor();
+    // Посещения по пользователям (IP не-ботов): IPv4 упакованы в число,
+    // остальные адреса хранятся строками
+    private final LongIntHashMap visitsPerIpv4;
+    private final Map<String, Integer> visitsPerOtherIp;
+
+    // Приближённый режим: множества IP, страниц и рефереров, которые растут вместе с трафиком,
+    // заменяются скетчами фиксированного размера. В точном режиме поля равны null
+    private final long memoryBudgetBytes;
+    private final HyperLogLog uniqueIps;
+    private final SpaceSaving topIps;
+    private final SpaceSaving topExistingPages;
+    private final SpaceSaving topNotFoundPages;
+    private final SpaceSaving topRefererDomains;
+
+    // Ряды по минутам, часам и суткам: посещения, ошибки и трафик во времени
+    private final TimeRollup timeSeries;
+    // Квантили времени ответа по записям, где оно есть
+    private final LatencyStatistics latency;
 
     public Statistics() {
+        this(0);
+    }
+
+    // Статистика в приближённом режиме, которая занимает не больше memoryBudgetBytes
+    // на уникальные IP, страницы и домены рефереров независимо от объёма трафика
+    public static Statistics approximate(long memoryBudgetBytes) {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Бюджет памяти должен быть положительным: " + memoryBudgetBytes);
+        }
+        return new Statistics(memoryBudgetBytes);
+    }
+
+    private Statistics(long memoryBudgetBytes) {
         this.totalTraffic = 0;
-        this.minTime = null;
-        this.maxTime = null;
-        this.osStatistics = new HashMap<>();
-        this.browserStatistics = new HashMap<>();
-        this.existingPages = new HashSet<>();
+        this.minEpochSecond = Long.MAX_VALUE;
+        this.maxEpochSecond = Long.MIN_VALUE;
+        this.osCounts = new int[OsType.values().length];
+        this.browserCounts = new int[BrowserType.values().length];
+        this.methodCounts = new int[HttpMethod.values().length];
+        this.existingPages = new HashMap<>();
         this.notFoundPages = new HashSet<>();
-        this.osCountMap = new HashMap<>();
-        this.browserCountMap = new HashMap<>();
 
         this.totalVisits = 0;
         this.nonBotVisits = 0;
         this.errorRequests = 0;
-        this.nonBotIps = new HashSet<>();
 
         // Инициализация новых полей
-        this.visitsPerSecond = new HashMap<>();
-        this.refererDomains = new HashSet<>();
-        this.visitsPerUser = new HashMap<>();
+        this.visitsPerSecond = new LongIntHashMap();
+        this.refererDomains = new HashMap<>();
+        this.visitsPerIpv4 = new LongIntHashMap();
+        this.visitsPerOtherIp = new HashMap<>();
+        this.timeSeries = new TimeRollup();
+        this.latency = new LatencyStatistics();
+
+        // Восьмая часть бюджета уходит на HyperLogLog, остальное поровну делится между
+        // четырьмя отчётами о частых значениях
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        if (memoryBudgetBytes > 0) {
+            this.uniqueIps = new HyperLogLog(HyperLogLog.precisionFor(memoryBudgetBytes / 8));
+            int counters = (int) Math.max(16, Math.min(Integer.MAX_VALUE / 2,
+                    (memoryBudgetBytes - uniqueIps.sizeInBytes()) / 4 / SpaceSaving.BYTES_PER_COUNTER));
+            this.topIps = new SpaceSaving(counters);
+            this.topExistingPages = new SpaceSaving(counters);
+            this.topNotFoundPages = new SpaceSaving(counters);
+            this.topRefererDomains = new SpaceSaving(counters);
+        } else {
+            this.uniqueIps = null;
+            this.topIps = null;
+            this.topExistingPages = null;
+            this.topNotFoundPages = null;
+            this.topRefererDomains = null;
+        }
+    }
+
+    // Пустая статистика в том же режиме и с тем же бюджетом памяти (для частичных результатов потоков)
+    public Statistics createEmpty() {
+        return new Statistics(memoryBudgetBytes);
+    }
+
+    public boolean isApproximate() {
+        return memoryBudgetBytes > 0;
+    }
+
+    long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
     }
 
     public void addEntry(LogEntry entry) {
@@ -54,61 +124,66 @@ public class Statistics {
         totalTraffic += entry.getDataSize();
 
         // Обновление временного диапазона
-        LocalDateTime entryTime = entry.getDateTime();
-        if (minTime == null || entryTime.isBefore(minTime)) {
-            minTime = entryTime;
-        }
-        if (maxTime == null || entryTime.isAfter(maxTime)) {
-            maxTime = entryTime;
-        }
+        long epochSecond = entry.getEpochSecond();
+        minEpochSecond = Math.min(minEpochSecond, epochSecond);
+        maxEpochSecond = Math.max(maxEpochSecond, epochSecond);
 
-        // Обновление статистики ОС
-        String os = entry.getUserAgent().getOsType();
-        osStatistics.put(os, osStatistics.getOrDefault(os, 0) + 1);
-
-        // Обновление статистики браузера
-        String browser = entry.getUserAgent().getBrowserType();
-        browserStatistics.put(browser, browserStatistics.getOrDefault(browser, 0) + 1);
+        // Обновление статистики ОС, браузеров и HTTP-методов
+        osCounts[entry.getUserAgent().getOs().ordinal()]++;
+        browserCounts[entry.getUserAgent().getBrowser().ordinal()]++;
+        methodCounts[entry.getMethod().ordinal()]++;
 
         // Добавление существующих страниц (код ответа 200)
         if (entry.getResponseCode() == 200) {
-            existingPages.add(entry.getPath());
+            if (isApproximate()) {
+                topExistingPages.add(entry.getPath());
+            } else {
+                existingPages.merge(entry.getPath(), 1, Integer::sum);
+            }
         }
 
         // Добавление несуществующих страниц (код ответа 404)
         if (entry.getResponseCode() == 404) {
-            notFoundPages.add(entry.getPath());
+            if (isApproximate()) {
+                topNotFoundPages.add(entry.getPath());
+            } else {
+                notFoundPages.add(entry.getPath());
+            }
         }
 
-        // Подсчет операционных систем для статистики долей
-        String osType = entry.getUserAgent().getOsType();
-        osCountMap.put(osType, osCountMap.getOrDefault(osType, 0) + 1);
-
-        // Подсчет браузеров для статистики долей
-        String browserType = entry.getUserAgent().getBrowserType();
-        browserCountMap.put(browserType, browserCountMap.getOrDefault(browserType, 0) + 1);
-
         // Проверка на бота
         boolean isBot = entry.getUserAgent().isBot();
 
         if (!isBot) {
             nonBotVisits++;
-            nonBotIps.add(entry.getIpAddress());
 
             // Подсчет посещений по секундам (для пиковой посещаемости)
-            long secondTimestamp = entry.getDateTime().toEpochSecond(java.time.ZoneOffset.UTC);
-            visitsPerSecond.put(secondTimestamp, visitsPerSecond.getOrDefault(secondTimestamp, 0) + 1);
+            visitsPerSecond.add(epochSecond, 1);
 
-            // Подсчет посещений по пользователям (для максимальной посещаемости)
+            // Подсчет посещений по пользователям (для максимальной и средней посещаемости)
             String ip = entry.getIpAddress();
-            visitsPerUser.put(ip, visitsPerUser.getOrDefault(ip, 0) + 1);
+            if (isApproximate()) {
+                uniqueIps.add(ip);
+                topIps.add(ip);
+            } else {
+                long packedIp = packIpv4(ip);
+                if (packedIp >= 0) {
+                    visitsPerIpv4.add(packedIp, 1);
+                } else {
+                    visitsPerOtherIp.merge(ip, 1, Integer::sum);
+                }
+            }
         }
 
         // Сбор доменов рефереров
         if (entry.getReferer() != null && !entry.getReferer().equals("-")) {
-            String domain = extractDomainFromUrl(entry.getReferer());
+            String domain = refererDomainExtractor.extract(entry.getReferer());
             if (domain != null) {
-                refererDomains.add(domain);
+                if (isApproximate()) {
+                    topRefererDomains.add(domain);
+                } else {
+                    refererDomains.merge(domain, 1, Integer::sum);
+                }
             }
         }
 
@@ -117,79 +192,381 @@ public class Statistics {
         if (responseCode >= 400 && responseCode <= 599) {
             errorRequests++;
         }
+
+        timeSeries.add(epochSecond, isBot, responseCode, entry.getDataSize());
+
+        // Время ответа, если оно записано в логе
+        long requestTime = entry.getRequestTimeMicros();
+        if (requestTime >= 0) {
+            latency.record(entry.getMethod(), responseCode, entry.getPath(), requestTime);
+        }
+    }
+
+    // Добавление уже подсчитанных значений (загрузка из LogIndex): каждое значение приходит
+    // один раз вместе с числом повторений, а не по одной записи, как в addEntry.
+    // Нулевые счётчики пропускаются
+    void addRequests(int visits, long traffic, long firstEpochSecond, long lastEpochSecond) {
+        totalVisits += visits;
+        totalTraffic += traffic;
+        minEpochSecond = Math.min(minEpochSecond, firstEpochSecond);
+        maxEpochSecond = Math.max(maxEpochSecond, lastEpochSecond);
+    }
+
+    // Одна запись во временных рядах; при загрузке индекса ряды строятся по записям
+    void addTimeSeries(long epochSecond, boolean bot, int responseCode, long bytes) {
+        timeSeries.add(epochSecond, bot, responseCode, bytes);
+    }
+
+    // Время ответа одной записи; как и временные ряды, при загрузке индекса - по записям
+    void addRequestTime(HttpMethod method, int responseCode, String path, long micros) {
+        latency.record(method, responseCode, path, micros);
+    }
+
+    void addUserAgent(UserAgent userAgent, int count) {
+        osCounts[userAgent.getOs().ordinal()] += count;
+        browserCounts[userAgent.getBrowser().ordinal()] += count;
+    }
+
+    void addMethod(HttpMethod method, int count) {
+        methodCounts[method.ordinal()] += count;
+    }
+
+    void addResponseCode(int responseCode, int count) {
+        if (responseCode >= 400 && responseCode <= 599) {
+            errorRequests += count;
+        }
     }
 
-    // Вспомогательный метод для извлечения домена из referer
-    private String extractDomainFromUrl(String referer) {
-        if (referer == null || referer.equals("-") || referer.trim().isEmpty()) {
-            return null;
+    void addExistingPage(String path, int count) {
+        if (count == 0) {
+            return;
         }
-        try {
-            if (referer.contains("://")) {
-                java.net.URI uri = new java.net.URI(referer);
-                String host = uri.getHost();
-                if (host != null) {
-                    if (host.startsWith("www.")) {
-                        return host.substring(4);
-                    }
-                    return host;
-                }
+        if (isApproximate()) {
+            topExistingPages.add(path, count);
+        } else {
+            existingPages.merge(path, count, Integer::sum);
+        }
+    }
+
+    void addNotFoundPage(String path, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (isApproximate()) {
+            topNotFoundPages.add(path, count);
+        } else {
+            notFoundPages.add(path);
+        }
+    }
+
+    // Посещения не-бота с одного IP
+    void addNonBotVisits(String ip, int count) {
+        if (count == 0) {
+            return;
+        }
+        nonBotVisits += count;
+        if (isApproximate()) {
+            uniqueIps.add(ip);
+            topIps.add(ip, count);
+        } else {
+            long packedIp = packIpv4(ip);
+            if (packedIp >= 0) {
+                visitsPerIpv4.add(packedIp, count);
+            } else {
+                visitsPerOtherIp.merge(ip, count, Integer::sum);
             }
+        }
+    }
 
-            // Если это не URL, а строка параметров ищем паттерны, похожие на домены
-            if (referer.contains(".")) {
-                String[] parts = referer.split("[&?=]");
-                for (String part : parts) {
-                    part = part.trim();
-                    if (part.matches("^[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$")) {
-                        if (part.startsWith("www.")) {
-                            part = part.substring(4);
-                        }
-                        return part;
-                    }
-                }
+    // Посещения не-ботов за одну секунду; сами посещения учитываются в addNonBotVisits
+    void addNonBotSecond(long epochSecond, int count) {
+        if (count > 0) {
+            visitsPerSecond.add(epochSecond, count);
+        }
+    }
+
+    void addReferer(String referer, int count) {
+        if (count == 0 || referer == null || referer.equals("-")) {
+            return;
+        }
+        String domain = refererDomainExtractor.extract(referer);
+        if (domain != null) {
+            if (isApproximate()) {
+                topRefererDomains.add(domain, count);
+            } else {
+                refererDomains.merge(domain, count, Integer::sum);
             }
+        }
+    }
 
-            return null;
-        } catch (Exception e) {
-            return null;
+    // Объединение с частичной статистикой, собранной другим потоком
+    public void merge(Statistics other) {
+        if (other.memoryBudgetBytes != memoryBudgetBytes) {
+            throw new IllegalArgumentException("Нельзя объединить статистику, собранную в разных режимах");
+        }
+        totalTraffic += other.totalTraffic;
+        totalVisits += other.totalVisits;
+        nonBotVisits += other.nonBotVisits;
+        errorRequests += other.errorRequests;
+
+        minEpochSecond = Math.min(minEpochSecond, other.minEpochSecond);
+        maxEpochSecond = Math.max(maxEpochSecond, other.maxEpochSecond);
+
+        addAll(osCounts, other.osCounts);
+        addAll(browserCounts, other.browserCounts);
+        addAll(methodCounts, other.methodCounts);
+        other.visitsPerSecond.forEach(visitsPerSecond::add);
+        other.visitsPerIpv4.forEach(visitsPerIpv4::add);
+        other.visitsPerOtherIp.forEach((ip, count) -> visitsPerOtherIp.merge(ip, count, Integer::sum));
+
+        other.existingPages.forEach((page, count) -> existingPages.merge(page, count, Integer::sum));
+        notFoundPages.addAll(other.notFoundPages);
+        other.refererDomains.forEach((domain, count) -> refererDomains.merge(domain, count, Integer::sum));
+        timeSeries.merge(other.timeSeries);
+        latency.merge(other.latency);
+
+        if (isApproximate()) {
+            uniqueIps.merge(other.uniqueIps);
+            topIps.merge(other.topIps);
+            topExistingPages.merge(other.topExistingPages);
+            topNotFoundPages.merge(other.topNotFoundPages);
+            topRefererDomains.merge(other.topRefererDomains);
         }
     }
 
-    // Метод расчёта пиковой посещаемости сайта в секунду
-    public int getPeakVisitsPerSecond() {
-        if (visitsPerSecond.isEmpty()) {
-            return 0;
+    // Запись состояния в контрольную точку (формат описан в StatisticsCheckpoint)
+    void writeTo(StatisticsCheckpoint.Output out) throws IOException {
+        out.writeVarLong(totalVisits);
+        out.writeVarLong(nonBotVisits);
+        out.writeVarLong(errorRequests);
+        out.writeVarLong(totalTraffic);
+        out.writeZigZag(minEpochSecond);
+        out.writeZigZag(maxEpochSecond);
+        writeCounts(out, osCounts);
+        writeCounts(out, browserCounts);
+        writeCounts(out, methodCounts);
+
+        // Общий словарь страниц: у каждой число обращений с кодом 200 (0 - не было),
+        // затем номера страниц с кодом 404
+        String[] pages = new String[existingPages.size() + notFoundPages.size()];
+        int[] counts = new int[pages.length];
+        int size = 0;
+        for (Map.Entry<String, Integer> page : existingPages.entrySet()) {
+            pages[size] = page.getKey();
+            counts[size++] = page.getValue();
+        }
+        for (String page : notFoundPages) {
+            if (!existingPages.containsKey(page)) {
+                pages[size++] = page;
+            }
+        }
+        pages = Arrays.copyOf(pages, size);
+        int[] order = out.writeDictionary(pages);
+        for (int index : order) {
+            out.writeVarLong(counts[index]);
+        }
+        out.writeVarLong(notFoundPages.size());
+        int previous = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (notFoundPages.contains(pages[order[i]])) {
+                out.writeVarLong(i - previous);
+                previous = i;
+            }
+        }
+
+        out.writeCounts(visitsPerSecond);
+        out.writeCounts(visitsPerIpv4);
+        out.writeCounts(visitsPerOtherIp);
+        out.writeCounts(refererDomains);
+        timeSeries.writeTo(out);
+        latency.writeTo(out);
+        if (isApproximate()) {
+            uniqueIps.writeTo(out);
+            topIps.writeTo(out);
+            topExistingPages.writeTo(out);
+            topNotFoundPages.writeTo(out);
+            topRefererDomains.writeTo(out);
+        }
+    }
+
+    // Чтение состояния, записанного writeTo, в пустую статистику того же режима
+    void readFrom(StatisticsCheckpoint.Input in) throws IOException {
+        totalVisits = in.readVarInt();
+        nonBotVisits = in.readVarInt();
+        errorRequests = in.readVarInt();
+        totalTraffic = in.readVarLong();
+        minEpochSecond = in.readZigZag();
+        maxEpochSecond = in.readZigZag();
+        readCounts(in, osCounts);
+        readCounts(in, browserCounts);
+        readCounts(in, methodCounts);
+
+        String[] pages = in.readDictionary();
+        for (String page : pages) {
+            int count = in.readVarInt();
+            if (count > 0) {
+                existingPages.put(page, count);
+            }
+        }
+        int page = 0;
+        for (int i = in.readCount(); i > 0; i--) {
+            page += in.readIndex();
+            notFoundPages.add(pages[page]);
+        }
+
+        in.readCounts(visitsPerSecond);
+        in.readCounts(visitsPerIpv4);
+        in.readCounts(visitsPerOtherIp);
+        in.readCounts(refererDomains);
+        timeSeries.readFrom(in);
+        latency.readFrom(in);
+        if (isApproximate()) {
+            uniqueIps.readFrom(in);
+            topIps.readFrom(in);
+            topExistingPages.readFrom(in);
+            topNotFoundPages.readFrom(in);
+            topRefererDomains.readFrom(in);
+        }
+    }
+
+    private static void writeCounts(StatisticsCheckpoint.Output out, int[] counts) throws IOException {
+        out.writeVarLong(counts.length);
+        for (int count : counts) {
+            out.writeVarLong(count);
+        }
+    }
+
+    // Число счётчиков должно совпасть: при изменении перечислений меняется версия формата
+    private static void readCounts(StatisticsCheckpoint.Input in, int[] counts) throws IOException {
+        if (in.readCount() != counts.length) {
+            throw new IOException("Контрольная точка повреждена: неверное число счётчиков");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = in.readVarInt();
+        }
+    }
+
+    private static void addAll(int[] target, int[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += source[i];
         }
+    }
 
-        return visitsPerSecond.values().stream()
-                .max(Integer::compare)
-                .orElse(0);
+    // Упаковывает IPv4-адрес вида a.b.c.d в число; возвращает -1 для других адресов.
+    // Октеты с ведущими нулями не упаковываются, чтобы "01.2.3.4" и "1.2.3.4" считались разными
+    static long packIpv4(String ip) {
+        long packed = 0;
+        int octets = 0;
+        int pos = 0;
+        int length = ip.length();
+        while (pos < length && octets < 4) {
+            int start = pos;
+            int value = 0;
+            while (pos < length && pos - start < 3 && ip.charAt(pos) >= '0' && ip.charAt(pos) <= '9') {
+                value = value * 10 + (ip.charAt(pos++) - '0');
+            }
+            if (pos == start || value > 255 || (pos - start > 1 && ip.charAt(start) == '0')) {
+                return -1;
+            }
+            packed = (packed << 8) | value;
+            octets++;
+            if (octets < 4) {
+                if (pos >= length || ip.charAt(pos) != '.') {
+                    return -1;
+                }
+                pos++;
+            }
+        }
+        return octets == 4 && pos == length ? packed : -1;
+    }
+
+    static String unpackIpv4(long packed) {
+        return ((packed >>> 24) & 0xFF) + "." + ((packed >>> 16) & 0xFF) + "."
+                + ((packed >>> 8) & 0xFF) + "." + (packed & 0xFF);
+    }
+
+    // Неизменяемый срез текущих показателей для чтения из других потоков
+    public StatisticsSnapshot snapshot() {
+        return new StatisticsSnapshot(this);
+    }
+
+    // Временной ряд с заданным шагом за период [from, to]; пустые интервалы входят с нулями.
+    // Период вне хранимой истории шага (TimeGranularity.getRetention) не возвращается
+    public List<TimeBucket> getTimeSeries(TimeGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        return timeSeries.series(granularity, from.toEpochSecond(ZoneOffset.UTC),
+                to.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    // Сумма показателей за период [from, to] по интервалам заданного шага
+    public TimeBucket getTimeSeriesTotal(TimeGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        return timeSeries.total(granularity, from.toEpochSecond(ZoneOffset.UTC),
+                to.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    // Интервалы с наибольшим числом посещений не-ботов
+    public List<TimeBucket> getBusiestPeriods(TimeGranularity granularity, int n) {
+        return timeSeries.busiest(granularity, n);
+    }
+
+    // Записи, опоздавшие больше чем на сутки и не попавшие в минутный ряд
+    public long getLateEntries() {
+        return timeSeries.lateEntries();
+    }
+
+    // Квантили времени ответа по всем запросам; null, если в логах его не было
+    public LatencySummary getLatency() {
+        return latency.summary();
+    }
+
+    public List<LatencySummary> getLatencyByMethod() {
+        return latency.byMethod();
+    }
+
+    // Классы кодов ответа 1xx-5xx, коды вне 100-599 - в разрезе "прочие"
+    public List<LatencySummary> getLatencyByStatusClass() {
+        return latency.byStatusClass();
+    }
+
+    // n начал пути (первых сегментов) с наибольшим числом запросов
+    public List<LatencySummary> getLatencyByPathPrefix(int n) {
+        return latency.byPathPrefix(n);
+    }
+
+    // Метод расчёта пиковой посещаемости сайта в секунду
+    public int getPeakVisitsPerSecond() {
+        return visitsPerSecond.maxValue();
     }
 
     // Метод, возвращающий список сайтов-рефереров
+    // (в приближённом режиме - только самые частые из них)
     public Set<String> getRefererDomains() {
-        return new HashSet<>(refererDomains);
+        if (isApproximate()) {
+            return new HashSet<>(topRefererDomains.values());
+        }
+        return new HashSet<>(refererDomains.keySet());
     }
 
     // Метод расчёта максимальной посещаемости одним пользователем
+    // (в приближённом режиме - верхняя оценка с погрешностью не больше getTopIps(1).get(0).getMaxError())
     public int getMaxVisitsPerUser() {
-        if (visitsPerUser.isEmpty()) {
-            return 0;
+        if (isApproximate()) {
+            List<HeavyHitter> top = topIps.top(1);
+            return top.isEmpty() ? 0 : (int) top.get(0).getCount();
         }
 
-        return visitsPerUser.values().stream()
-                .max(Integer::compare)
-                .orElse(0);
+        int max = visitsPerIpv4.maxValue();
+        for (int count : visitsPerOtherIp.values()) {
+            max = Math.max(max, count);
+        }
+        return max;
     }
 
-    // Остальные существующие методы остаются без изменений
     public double getAverageVisitsPerHour() {
-        if (minTime == null || maxTime == null || nonBotVisits == 0) {
+        if (minEpochSecond > maxEpochSecond || nonBotVisits == 0) {
             return 0.0;
         }
 
-        long hoursBetween = ChronoUnit.HOURS.between(minTime, maxTime);
+        long hoursBetween = (maxEpochSecond - minEpochSecond) / 3600;
         if (hoursBetween == 0) {
             return nonBotVisits;
         }
@@ -198,11 +575,11 @@ public class Statistics {
     }
 
     public double getAverageErrorsPerHour() {
-        if (minTime == null || maxTime == null || errorRequests == 0) {
+        if (minEpochSecond > maxEpochSecond || errorRequests == 0) {
             return 0.0;
         }
 
-        long hoursBetween = ChronoUnit.HOURS.between(minTime, maxTime);
+        long hoursBetween = (maxEpochSecond - minEpochSecond) / 3600;
         if (hoursBetween == 0) {
             return errorRequests;
         }
@@ -211,19 +588,20 @@ public class Statistics {
     }
 
     public double getAverageVisitsPerUser() {
-        if (nonBotIps.isEmpty() || nonBotVisits == 0) {
+        int uniqueIps = getUniqueNonBotIps();
+        if (uniqueIps == 0 || nonBotVisits == 0) {
             return 0.0;
         }
 
-        return (double) nonBotVisits / nonBotIps.size();
+        return (double) nonBotVisits / uniqueIps;
     }
 
     public double getTrafficRate() {
-        if (minTime == null || maxTime == null || totalTraffic == 0) {
+        if (minEpochSecond > maxEpochSecond || totalTraffic == 0) {
             return 0.0;
         }
 
-        long hoursBetween = ChronoUnit.HOURS.between(minTime, maxTime);
+        long hoursBetween = (maxEpochSecond - minEpochSecond) / 3600;
         if (hoursBetween == 0) {
             return totalTraffic;
         }
@@ -231,26 +609,99 @@ public class Statistics {
         return (double) totalTraffic / hoursBetween;
     }
 
+    // В приближённом режиме списки страниц содержат только самые посещаемые страницы
     public Set<String> getExistingPages() {
-        return new HashSet<>(existingPages);
+        if (isApproximate()) {
+            return new HashSet<>(topExistingPages.values());
+        }
+        return new HashSet<>(existingPages.keySet());
     }
 
     public Set<String> getNotFoundPages() {
+        if (isApproximate()) {
+            return new HashSet<>(topNotFoundPages.values());
+        }
         return new HashSet<>(notFoundPages);
     }
 
-    public Map<String, Double> getOsShareStatistics() {
-        Map<String, Double> osShareMap = new HashMap<>();
+    // IP-адреса пользователей (не ботов) с наибольшим числом посещений
+    public List<HeavyHitter> getTopIps(int n) {
+        if (isApproximate()) {
+            return topIps.top(n);
+        }
+        TopCollector collector = new TopCollector(n);
+        visitsPerIpv4.forEach((ip, count) -> {
+            if (collector.accepts(count)) {
+                collector.add(unpackIpv4(ip), count);
+            }
+        });
+        visitsPerOtherIp.forEach(collector::add);
+        return collector.result();
+    }
 
-        if (osCountMap.isEmpty()) {
-            return osShareMap;
+    // Самые посещаемые существующие страницы (код ответа 200)
+    public List<HeavyHitter> getTopPages(int n) {
+        if (isApproximate()) {
+            return topExistingPages.top(n);
         }
+        TopCollector collector = new TopCollector(n);
+        existingPages.forEach(collector::add);
+        return collector.result();
+    }
+
+    // Домены рефереров с наибольшим числом переходов
+    public List<HeavyHitter> getTopRefererDomains(int n) {
+        if (isApproximate()) {
+            return topRefererDomains.top(n);
+        }
+        TopCollector collector = new TopCollector(n);
+        refererDomains.forEach(collector::add);
+        return collector.result();
+    }
+
+    // Стандартная относительная ошибка числа уникальных IP (0 в точном режиме)
+    public double getUniqueIpsRelativeError() {
+        return isApproximate() ? uniqueIps.relativeError() : 0.0;
+    }
 
-        int totalCount = osCountMap.values().stream().mapToInt(Integer::intValue).sum();
+    // Отбор n значений с наибольшим счётом без сортировки всех значений
+    private static class TopCollector {
+        private final int limit;
+        private final PriorityQueue<HeavyHitter> heap =
+                new PriorityQueue<>(Comparator.comparingLong(HeavyHitter::getCount));
 
-        for (Map.Entry<String, Integer> entry : osCountMap.entrySet()) {
-            double share = (double) entry.getValue() / totalCount;
-            osShareMap.put(entry.getKey(), share);
+        private TopCollector(int limit) {
+            this.limit = limit;
+        }
+
+        private boolean accepts(long count) {
+            return limit > 0 && (heap.size() < limit || count > heap.peek().getCount());
+        }
+
+        private void add(String value, long count) {
+            if (accepts(count)) {
+                heap.add(new HeavyHitter(value, count, 0));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+
+        private List<HeavyHitter> result() {
+            List<HeavyHitter> result = new ArrayList<>(heap);
+            result.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed());
+            return result;
+        }
+    }
+
+    public Map<String, Double> getOsShareStatistics() {
+        Map<String, Double> osShareMap = new HashMap<>();
+        int totalCount = sum(osCounts);
+
+        for (OsType os : OsType.values()) {
+            if (osCounts[os.ordinal()] > 0) {
+                osShareMap.put(os.getDisplayName(), (double) osCounts[os.ordinal()] / totalCount);
+            }
         }
 
         return osShareMap;
@@ -258,28 +709,72 @@ public class Statistics {
 
     public Map<String, Double> getBrowserShareStatistics() {
         Map<String, Double> browserShareMap = new HashMap<>();
+        int totalCount = sum(browserCounts);
 
-        if (browserCountMap.isEmpty()) {
-            return browserShareMap;
+        for (BrowserType browser : BrowserType.values()) {
+            if (browserCounts[browser.ordinal()] > 0) {
+                browserShareMap.put(browser.getDisplayName(), (double) browserCounts[browser.ordinal()] / totalCount);
+            }
         }
 
-        int totalCount = browserCountMap.values().stream().mapToInt(Integer::intValue).sum();
+        return browserShareMap;
+    }
+
+    public Map<String, Integer> getOsStatistics() {
+        Map<String, Integer> osStatistics = new HashMap<>();
+        for (OsType os : OsType.values()) {
+            if (osCounts[os.ordinal()] > 0) {
+                osStatistics.put(os.getDisplayName(), osCounts[os.ordinal()]);
+            }
+        }
+        return osStatistics;
+    }
 
-        for (Map.Entry<String, Integer> entry : browserCountMap.entrySet()) {
-            double share = (double) entry.getValue() / totalCount;
-            browserShareMap.put(entry.getKey(), share);
+    public Map<String, Integer> getBrowserStatistics() {
+        Map<String, Integer> browserStatistics = new HashMap<>();
+        for (BrowserType browser : BrowserType.values()) {
+            if (browserCounts[browser.ordinal()] > 0) {
+                browserStatistics.put(browser.getDisplayName(), browserCounts[browser.ordinal()]);
+            }
         }
+        return browserStatistics;
+    }
 
-        return browserShareMap;
+    public Map<HttpMethod, Integer> getMethodStatistics() {
+        Map<HttpMethod, Integer> methodStatistics = new EnumMap<>(HttpMethod.class);
+        for (HttpMethod method : HttpMethod.values()) {
+            if (methodCounts[method.ordinal()] > 0) {
+                methodStatistics.put(method, methodCounts[method.ordinal()]);
+            }
+        }
+        return methodStatistics;
+    }
+
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
     }
 
     public long getTotalTraffic() { return totalTraffic; }
-    public LocalDateTime getMinTime() { return minTime; }
-    public LocalDateTime getMaxTime() { return maxTime; }
-    public Map<String, Integer> getOsStatistics() { return osStatistics; }
-    public Map<String, Integer> getBrowserStatistics() { return browserStatistics; }
+    // Границы временного диапазона по UTC; null, если записей не было
+    public LocalDateTime getMinTime() { return toDateTime(minEpochSecond, Long.MAX_VALUE); }
+    public LocalDateTime getMaxTime() { return toDateTime(maxEpochSecond, Long.MIN_VALUE); }
+
+    private static LocalDateTime toDateTime(long epochSecond, long empty) {
+        return epochSecond == empty ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
     public int getTotalVisits() { return totalVisits; }
     public int getNonBotVisits() { return nonBotVisits; }
     public int getErrorRequests() { return errorRequests; }
-    public int getUniqueNonBotIps() { return nonBotIps.size(); }
+
+    // В приближённом режиме - оценка HyperLogLog с погрешностью getUniqueIpsRelativeError()
+    public int getUniqueNonBotIps() {
+        if (isApproximate()) {
+            return (int) Math.min(Integer.MAX_VALUE, uniqueIps.estimate());
+        }
+        return visitsPerIpv4.size() + visitsPerOtherIp.size();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,530 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Контрольная точка: состояние Statistics и позиции чтения входных файлов в компактном
+// бинарном виде, чтобы после перезапуска продолжить с места остановки, а не читать логи заново.
+//
+// Числа записываются переменной длиной (varint). Секунды и упакованные IPv4 - отсортированные
+// разности с предыдущим ключом, поэтому соседние секунды и адреса одной подсети занимают
+// по байту-два. Строки (страницы, прочие IP, домены рефереров) - отсортированный словарь,
+// где каждая строка хранит только отличие от предыдущей (длина общего начала и остаток);
+// множество несуществующих страниц - номера в словаре страниц. Гистограммы времени ответа -
+// только непустые корзины разностями номеров.
+//
+// Формат: сигнатура, версия, бюджет памяти приближённого режима, позиции файлов, затем
+// состояние Statistics и в конце CRC32 всего предшествующего. Файл пишется во временный,
+// сбрасывается на диск и переименовывается, поэтому прежняя контрольная точка заменяется
+// только целиком, в том числе при сбое питания.
+final class StatisticsCheckpoint {
+    private static final int MAGIC = 0x414C4350; // "ALCP"
+    // Версия 2: добавлены гистограммы времени ответа
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Сколько байт начала файла входит в его контрольную сумму
+    private static final int CHECKSUM_BYTES = 1 << 16;
+
+    private final Statistics statistics;
+    private final List<FileOffset> offsets;
+
+    private StatisticsCheckpoint(Statistics statistics, List<FileOffset> offsets) {
+        this.statistics = statistics;
+        this.offsets = offsets;
+    }
+
+    Statistics getStatistics() { return statistics; }
+    List<FileOffset> getOffsets() { return offsets; }
+
+    // Позиция, до которой обработан файл; пока по пути лежит тот же файл
+    // (совпадают идентификатор и контрольная сумма начала), чтение можно продолжить с неё
+    static final class FileOffset {
+        private final String path;
+        private final String fileKey;
+        private final long offset;
+        private final long checksum;
+
+        private FileOffset(String path, String fileKey, long offset, long checksum) {
+            this.path = path;
+            this.fileKey = fileKey;
+            this.offset = offset;
+            this.checksum = checksum;
+        }
+
+        // fileKey - BasicFileAttributes.fileKey(), может быть null
+        static FileOffset of(Path file, Object fileKey, long offset) throws IOException {
+            return new FileOffset(file.toAbsolutePath().normalize().toString(), String.valueOf(fileKey),
+                    offset, checksum(file, offset));
+        }
+
+        long getOffset() { return offset; }
+
+        boolean isFor(Path file) {
+            return path.equals(file.toAbsolutePath().normalize().toString());
+        }
+
+        // Лежит ли по пути тот же файл и не стал ли он короче сохранённой позиции
+        boolean matches(Path file, Object currentFileKey) throws IOException {
+            return isFor(file) && fileKey.equals(String.valueOf(currentFileKey))
+                    && Files.size(file) >= offset && checksum(file, offset) == checksum;
+        }
+
+        private static long checksum(Path file, long offset) throws IOException {
+            CRC32 crc = new CRC32();
+            try (InputStream in = Files.newInputStream(file)) {
+                crc.update(in.readNBytes((int) Math.min(CHECKSUM_BYTES, offset)));
+            }
+            return crc.getValue();
+        }
+    }
+
+    static void write(Path checkpoint, Statistics statistics, Collection<FileOffset> offsets) throws IOException {
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Output out = new Output(Channels.newOutputStream(channel))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeVarLong(statistics.getMemoryBudgetBytes());
+            out.writeVarLong(offsets.size());
+            for (FileOffset offset : offsets) {
+                out.writeString(offset.path);
+                out.writeString(offset.fileKey);
+                out.writeVarLong(offset.offset);
+                out.writeVarLong(offset.checksum);
+            }
+            statistics.writeTo(out);
+            out.writeChecksum();
+            // Содержимое должно оказаться на диске раньше, чем новое имя
+            channel.force(true);
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(checkpoint.toAbsolutePath().getParent());
+    }
+
+    // Сбрасывает на диск запись каталога о переименовании. Открыть каталог для этого можно
+    // не везде (в Windows нельзя); там переименование остаётся на совести файловой системы
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Каталог не открывается как файл
+        }
+    }
+
+    static StatisticsCheckpoint read(Path checkpoint) throws IOException {
+        try (Input in = new Input(Files.newInputStream(checkpoint), Files.size(checkpoint))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Файл не является контрольной точкой: " + checkpoint);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия контрольной точки " + version + ": " + checkpoint);
+            }
+            long memoryBudgetBytes = in.readVarLong();
+            Statistics statistics = memoryBudgetBytes > 0 ? Statistics.approximate(memoryBudgetBytes) : new Statistics();
+            List<FileOffset> offsets = new ArrayList<>();
+            for (long i = in.readVarLong(); i > 0; i--) {
+                offsets.add(new FileOffset(in.readString(), in.readString(), in.readVarLong(), in.readVarLong()));
+            }
+            statistics.readFrom(in);
+            in.verifyChecksum(checkpoint);
+            return new StatisticsCheckpoint(statistics, offsets);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Контрольная точка повреждена: " + checkpoint, e);
+        }
+    }
+
+    // Порядок строк по байтам: поразрядная сортировка по 8 байт. Очередные 8 байт каждой
+    // строки упаковываются в число, и сортируются числа в массиве подряд, не обращаясь
+    // к самим строкам в куче (сортировка миллионов строк через compareTo упирается
+    // в промахи кеша). Строки с одинаковыми 8 байтами досортировываются по следующим
+    private static int[] sortedOrder(byte[][] values) {
+        int[] order = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        sortRange(values, order, new long[values.length], 0, values.length, 0);
+        return order;
+    }
+
+    private static void sortRange(byte[][] values, int[] order, long[] keys, int from, int to, int depth) {
+        boolean longer = false;
+        for (int i = from; i < to; i++) {
+            byte[] value = values[order[i]];
+            long key = 0;
+            for (int j = depth; j < depth + 8; j++) {
+                key = (key << 8) | (j < value.length ? value[j] & 0xFF : 0);
+            }
+            // Смена знакового бита: беззнаковый порядок байтов при сравнении со знаком
+            keys[i] = key ^ Long.MIN_VALUE;
+            longer |= value.length > depth + 8;
+        }
+        quicksort(keys, order, from, to - 1);
+        if (!longer) {
+            return;
+        }
+        int start = from;
+        while (start < to) {
+            int end = start + 1;
+            while (end < to && keys[end] == keys[start]) {
+                end++;
+            }
+            if (end - start > 1) {
+                sortRange(values, order, keys, start, end, depth + 8);
+            }
+            start = end;
+        }
+    }
+
+    // Быстрая сортировка с разбиением на три части (много равных ключей - обычное дело)
+    private static void quicksort(long[] keys, int[] order, int low, int high) {
+        while (high - low > 16) {
+            int middle = (low + high) >>> 1;
+            long pivot = Math.max(Math.min(keys[low], keys[middle]), Math.min(Math.max(keys[low], keys[middle]), keys[high]));
+            int less = low;
+            int greater = high;
+            int i = low;
+            while (i <= greater) {
+                if (keys[i] < pivot) {
+                    swap(keys, order, less++, i++);
+                } else if (keys[i] > pivot) {
+                    swap(keys, order, i, greater--);
+                } else {
+                    i++;
+                }
+            }
+            // Рекурсия в меньшую часть, цикл - в большую
+            if (less - low < high - greater) {
+                quicksort(keys, order, low, less - 1);
+                low = greater + 1;
+            } else {
+                quicksort(keys, order, greater + 1, high);
+                high = less - 1;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && keys[j - 1] > keys[j]; j--) {
+                swap(keys, order, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] keys, int[] order, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int index = order[i];
+        order[i] = order[j];
+        order[j] = index;
+    }
+
+    // Буферизованная запись с подсчётом CRC32; как ByteColumn в LogIndex, байты копятся
+    // в своём массиве, а не пишутся в поток по одному
+    static final class Output implements AutoCloseable {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final CRC32 crc = new CRC32();
+        private int length;
+
+        private Output(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeByte(int value) throws IOException {
+            if (length == buffer.length) {
+                flushBuffer();
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeInt(int value) throws IOException {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte(value >>> shift);
+            }
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        // Для разностей, которые могут быть отрицательными
+        void writeZigZag(long value) throws IOException {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeBytes(byte[] values, int offset, int count) throws IOException {
+            while (count > 0) {
+                if (length == buffer.length) {
+                    flushBuffer();
+                }
+                int chunk = Math.min(count, buffer.length - length);
+                System.arraycopy(values, offset, buffer, length, chunk);
+                length += chunk;
+                offset += chunk;
+                count -= chunk;
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        // Счётчики по ключам: число ключей, затем по возрастанию ключа разность с предыдущим и счётчик
+        void writeCounts(LongIntHashMap counts) throws IOException {
+            long[] keys = new long[counts.size()];
+            int[] values = new int[counts.size()];
+            int[] size = {0};
+            counts.forEach((key, value) -> {
+                keys[size[0]] = key;
+                values[size[0]++] = value;
+            });
+            int[] order = new int[keys.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            quicksort(keys, order, 0, keys.length - 1);
+            writeVarLong(keys.length);
+            long previous = 0;
+            for (int i = 0; i < keys.length; i++) {
+                writeZigZag(keys[i] - previous);
+                writeVarLong(values[order[i]]);
+                previous = keys[i];
+            }
+        }
+
+        // Словарь: число строк, затем для каждой длина общего с предыдущей начала в байтах UTF-8
+        // и остаток. Строки записываются в порядке байтов UTF-8, чтобы у соседних было общее
+        // начало; возвращается этот порядок (номера в values), чтобы записать сопутствующие значения
+        int[] writeDictionary(String[] values) throws IOException {
+            byte[][] bytes = new byte[values.length][];
+            for (int i = 0; i < values.length; i++) {
+                bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            }
+            int[] order = sortedOrder(bytes);
+            writeVarLong(values.length);
+            byte[] previous = new byte[0];
+            for (int index : order) {
+                byte[] current = bytes[index];
+                // Индекс первого различия; -1 у равных строк (в словаре их нет)
+                int common = Arrays.mismatch(previous, current);
+                if (common < 0) {
+                    common = current.length;
+                }
+                writeVarLong(common);
+                writeVarLong(current.length - common);
+                writeBytes(current, common, current.length - common);
+                previous = current;
+            }
+            return order;
+        }
+
+        // Счётчики по строкам: словарь, затем счётчики в его порядке
+        void writeCounts(Map<String, Integer> counts) throws IOException {
+            String[] keys = new String[counts.size()];
+            int[] values = new int[counts.size()];
+            int size = 0;
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                keys[size] = entry.getKey();
+                values[size++] = entry.getValue();
+            }
+            for (int index : writeDictionary(keys)) {
+                writeVarLong(values[index]);
+            }
+        }
+
+        private void writeChecksum() throws IOException {
+            flushBuffer();
+            long value = crc.getValue();
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out.write((int) (value >>> shift));
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            crc.update(buffer, 0, length);
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    static final class Input implements AutoCloseable {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final CRC32 crc = new CRC32();
+        private int position;
+        private int limit;
+        // Сколько байт файла ещё не прочитано в буфер
+        private long unread;
+
+        private Input(InputStream in, long size) {
+            this.in = in;
+            this.unread = size;
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                crc.update(buffer, 0, limit);
+                limit = in.readNBytes(buffer, 0, buffer.length);
+                position = 0;
+                unread -= limit;
+                if (limit == 0) {
+                    throw new IOException("Контрольная точка повреждена: файл закончился раньше времени");
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        int readInt() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b < 0x80) {
+                    return value;
+                }
+            }
+            throw new IOException("Контрольная точка повреждена: слишком длинное число");
+        }
+
+        long readZigZag() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        // Число элементов или байт дальше в файле. Каждый занимает хотя бы байт, поэтому число
+        // больше остатка файла означает повреждение: массив под него не выделяется
+        int readCount() throws IOException {
+            long count = readVarLong();
+            if (count < 0 || count > remaining()) {
+                throw new IOException("Контрольная точка повреждена: неверная длина " + count);
+            }
+            return (int) count;
+        }
+
+        // Номер или разность номеров; отрицательное или чрезмерное значение означает повреждение
+        int readIndex() throws IOException {
+            long index = readVarLong();
+            if (index < 0 || index > Integer.MAX_VALUE) {
+                throw new IOException("Контрольная точка повреждена: неверный номер " + index);
+            }
+            return (int) index;
+        }
+
+        // Байт после текущей позиции, включая ещё не прочитанные в буфер
+        long remaining() {
+            return unread + limit - position;
+        }
+
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        void readBytes(byte[] target, int offset, int count) throws IOException {
+            while (count > 0) {
+                if (position == limit) {
+                    target[offset++] = (byte) readByte();
+                    count--;
+                    continue;
+                }
+                int chunk = Math.min(count, limit - position);
+                System.arraycopy(buffer, position, target, offset, chunk);
+                position += chunk;
+                offset += chunk;
+                count -= chunk;
+            }
+        }
+
+        String readString() throws IOException {
+            byte[] bytes = new byte[readCount()];
+            readBytes(bytes, 0, bytes.length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void readCounts(LongIntHashMap counts) throws IOException {
+            long key = 0;
+            for (int i = readCount(); i > 0; i--) {
+                key += readZigZag();
+                counts.add(key, readVarInt());
+            }
+        }
+
+        String[] readDictionary() throws IOException {
+            String[] values = new String[readCount()];
+            byte[] previous = new byte[0];
+            for (int i = 0; i < values.length; i++) {
+                int common = readCount();
+                if (common > previous.length) {
+                    throw new IOException("Контрольная точка повреждена: неверный словарь");
+                }
+                byte[] bytes = Arrays.copyOf(previous, common + readCount());
+                readBytes(bytes, common, bytes.length - common);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+                previous = bytes;
+            }
+            return values;
+        }
+
+        void readCounts(Map<String, Integer> counts) throws IOException {
+            for (String key : readDictionary()) {
+                counts.merge(key, readVarInt(), Integer::sum);
+            }
+        }
+
+        // Сверяет CRC32 прочитанного с записанным в конце файла
+        private void verifyChecksum(Path checkpoint) throws IOException {
+            crc.update(buffer, 0, position);
+            long expected = crc.getValue();
+            long actual = 0;
+            for (int i = 0; i < 4; i++) {
+                if (position == limit) {
+                    limit = in.readNBytes(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit == 0) {
+                        throw new IOException("Контрольная точка повреждена: нет контрольной суммы: " + checkpoint);
+                    }
+                }
+                actual = (actual << 8) | (buffer[position++] & 0xFF);
+            }
+            if (actual != expected) {
+                throw new IOException("Контрольная точка повреждена: не совпала контрольная сумма: " + checkpoint);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Неизменяемый срез показателей статистики на момент создания.
+// Срез можно читать из любого потока, пока исходная Statistics продолжает наполняться.
+public final class StatisticsSnapshot {
+    // Размер отчётов о самых частых значениях
+    static final int TOP_SIZE = 10;
+    // Сколько самых нагруженных часов показывать
+    static final int BUSIEST_HOURS = 5;
+
+    private final int totalVisits;
+    private final long totalTraffic;
+    private final LocalDateTime minTime;
+    private final LocalDateTime maxTime;
+    private final double trafficRate;
+    private final double averageVisitsPerHour;
+    private final double averageErrorsPerHour;
+    private final double averageVisitsPerUser;
+    private final int peakVisitsPerSecond;
+    private final int maxVisitsPerUser;
+    private final Set<String> refererDomains;
+    private final Map<String, Double> osShareStatistics;
+    private final Map<String, Double> browserShareStatistics;
+    private final Map<String, Integer> osStatistics;
+    private final Map<String, Integer> browserStatistics;
+    private final Map<HttpMethod, Integer> methodStatistics;
+    private final boolean approximate;
+    private final int uniqueNonBotIps;
+    private final double uniqueIpsRelativeError;
+    private final List<HeavyHitter> topIps;
+    private final List<HeavyHitter> topPages;
+    private final List<HeavyHitter> topRefererDomains;
+    private final List<TimeBucket> busiestHours;
+    private final long lateEntries;
+    private final LatencySummary latency;
+    private final List<LatencySummary> latencyByMethod;
+    private final List<LatencySummary> latencyByStatusClass;
+    private final List<LatencySummary> latencyByPathPrefix;
+
+    StatisticsSnapshot(Statistics statistics) {
+        this.totalVisits = statistics.getTotalVisits();
+        this.totalTraffic = statistics.getTotalTraffic();
+        this.minTime = statistics.getMinTime();
+        this.maxTime = statistics.getMaxTime();
+        this.trafficRate = statistics.getTrafficRate();
+        this.averageVisitsPerHour = statistics.getAverageVisitsPerHour();
+        this.averageErrorsPerHour = statistics.getAverageErrorsPerHour();
+        this.averageVisitsPerUser = statistics.getAverageVisitsPerUser();
+        this.peakVisitsPerSecond = statistics.getPeakVisitsPerSecond();
+        this.maxVisitsPerUser = statistics.getMaxVisitsPerUser();
+        // Геттеры Statistics уже возвращают копии, остаётся запретить их изменение
+        this.refererDomains = Collections.unmodifiableSet(statistics.getRefererDomains());
+        this.osShareStatistics = Collections.unmodifiableMap(statistics.getOsShareStatistics());
+        this.browserShareStatistics = Collections.unmodifiableMap(statistics.getBrowserShareStatistics());
+        this.osStatistics = Collections.unmodifiableMap(statistics.getOsStatistics());
+        this.browserStatistics = Collections.unmodifiableMap(statistics.getBrowserStatistics());
+        this.methodStatistics = Collections.unmodifiableMap(statistics.getMethodStatistics());
+        this.approximate = statistics.isApproximate();
+        this.uniqueNonBotIps = statistics.getUniqueNonBotIps();
+        this.uniqueIpsRelativeError = statistics.getUniqueIpsRelativeError();
+        this.topIps = Collections.unmodifiableList(statistics.getTopIps(TOP_SIZE));
+        this.topPages = Collections.unmodifiableList(statistics.getTopPages(TOP_SIZE));
+        this.topRefererDomains = Collections.unmodifiableList(statistics.getTopRefererDomains(TOP_SIZE));
+        this.busiestHours = Collections.unmodifiableList(statistics.getBusiestPeriods(TimeGranularity.HOUR, BUSIEST_HOURS));
+        this.lateEntries = statistics.getLateEntries();
+        this.latency = statistics.getLatency();
+        this.latencyByMethod = Collections.unmodifiableList(statistics.getLatencyByMethod());
+        this.latencyByStatusClass = Collections.unmodifiableList(statistics.getLatencyByStatusClass());
+        this.latencyByPathPrefix = Collections.unmodifiableList(statistics.getLatencyByPathPrefix(TOP_SIZE));
+    }
+
+    public int getTotalVisits() { return totalVisits; }
+    public long getTotalTraffic() { return totalTraffic; }
+    public LocalDateTime getMinTime() { return minTime; }
+    public LocalDateTime getMaxTime() { return maxTime; }
+    public double getTrafficRate() { return trafficRate; }
+    public double getAverageVisitsPerHour() { return averageVisitsPerHour; }
+    public double getAverageErrorsPerHour() { return averageErrorsPerHour; }
+    public double getAverageVisitsPerUser() { return averageVisitsPerUser; }
+    public int getPeakVisitsPerSecond() { return peakVisitsPerSecond; }
+    public int getMaxVisitsPerUser() { return maxVisitsPerUser; }
+    public Set<String> getRefererDomains() { return refererDomains; }
+    public Map<String, Double> getOsShareStatistics() { return osShareStatistics; }
+    public Map<String, Double> getBrowserShareStatistics() { return browserShareStatistics; }
+    public Map<String, Integer> getOsStatistics() { return osStatistics; }
+    public Map<String, Integer> getBrowserStatistics() { return browserStatistics; }
+    public Map<HttpMethod, Integer> getMethodStatistics() { return methodStatistics; }
+    public boolean isApproximate() { return approximate; }
+    public int getUniqueNonBotIps() { return uniqueNonBotIps; }
+    public double getUniqueIpsRelativeError() { return uniqueIpsRelativeError; }
+    public List<HeavyHitter> getTopIps() { return topIps; }
+    public List<HeavyHitter> getTopPages() { return topPages; }
+    public List<HeavyHitter> getTopRefererDomains() { return topRefererDomains; }
+    public List<TimeBucket> getBusiestHours() { return busiestHours; }
+    public long getLateEntries() { return lateEntries; }
+    // null, если времени ответа в логах не было
+    public LatencySummary getLatency() { return latency; }
+    public List<LatencySummary> getLatencyByMethod() { return latencyByMethod; }
+    public List<LatencySummary> getLatencyByStatusClass() { return latencyByStatusClass; }
+    public List<LatencySummary> getLatencyByPathPrefix() { return latencyByPathPrefix; }
+}
\ No newline at end of file
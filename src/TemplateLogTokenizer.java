@@ -0,0 +1,127 @@
+// Разборщик текстового формата, скомпилированного LogFormat из строки log_format.
+// Строка проходится один раз по шагам формата: значение каждой переменной кончается там,
+// где начинается литерал после неё. Числа ($status, $body_bytes_sent) и $time_local
+// разбираются прямо при проходе, у остальных нужных переменных запоминаются границы,
+// а ненужные только пропускаются поиском литерала.
+// Экземпляр не потокобезопасен: у каждого потока свой, как и у CombinedLogTokenizer.
+final class TemplateLogTokenizer extends LogTokenizer {
+    private final char[] prefix;
+    private final int[] steps;
+    private final char[][] literals;
+
+    TemplateLogTokenizer(LogFormat format) {
+        this.prefix = format.prefix;
+        this.steps = format.steps;
+        this.literals = format.literals;
+    }
+
+    @Override
+    boolean tokenize(CharSequence line) {
+        this.line = line;
+        int length = line.length();
+        if (!startsWith(line, 0, length, prefix)) return false;
+        int pos = prefix.length;
+        clearOptional();
+
+        for (int i = 0; i < steps.length; i++) {
+            char[] literal = literals[i];
+            int start = pos;
+            int end;
+            switch (steps[i]) {
+                case LogFormat.STATUS:
+                case LogFormat.BODY_BYTES_SENT:
+                case LogFormat.BYTES_SENT: {
+                    // Число кончается на первой не-цифре, и там же должен начинаться литерал
+                    long value = 0;
+                    while (pos < length && isDigit(line.charAt(pos))) {
+                        value = value * 10 + (line.charAt(pos++) - '0');
+                        if (value > Integer.MAX_VALUE) return false;
+                    }
+                    if (pos == start || !startsWith(line, pos, length, literal)) return false;
+                    end = pos;
+                    if (steps[i] == LogFormat.STATUS) {
+                        responseCode = (int) value;
+                    } else {
+                        dataSize = (int) value;
+                    }
+                    break;
+                }
+                case LogFormat.TIME_LOCAL:
+                    // Длина метки постоянна, поэтому литерал после неё не ищется
+                    end = start + TimestampDecoder.LENGTH;
+                    if (end > length || !startsWith(line, end, length, literal)
+                            || !timestampDecoder.decode(line, start, end)) return false;
+                    break;
+                default:
+                    end = find(line, start, length, literal);
+                    if (end < 0 || !setField(steps[i], line, start, end)) return false;
+                    break;
+            }
+            pos = end + literal.length;
+        }
+        return true;
+    }
+
+    private boolean setField(int variable, CharSequence line, int start, int end) {
+        switch (variable) {
+            case LogFormat.REMOTE_ADDR:
+                ipStart = start;
+                ipEnd = end;
+                return end > start;
+            case LogFormat.TIME_ISO8601:
+                return timestampDecoder.decodeIso8601(line, start, end);
+            case LogFormat.MSEC:
+                return timestampDecoder.decodeMsec(line, start, end);
+            case LogFormat.REQUEST:
+                return setRequest(line, start, end);
+            case LogFormat.REQUEST_METHOD:
+                methodStart = start;
+                methodEnd = end;
+                return true;
+            case LogFormat.REQUEST_URI:
+            case LogFormat.URI:
+                pathStart = start;
+                pathEnd = end;
+                return end > start;
+            case LogFormat.HTTP_REFERER:
+                refererStart = start;
+                refererEnd = end;
+                return true;
+            case LogFormat.HTTP_USER_AGENT:
+                userAgentStart = start;
+                userAgentEnd = end;
+                return true;
+            case LogFormat.REQUEST_TIME:
+                requestTime = parseSeconds(line, start, end);
+                return requestTime >= 0;
+            default:
+                return true;
+        }
+    }
+
+    // Первое вхождение литерала начиная с pos; пустой литерал последней переменной - конец строки
+    private static int find(CharSequence s, int pos, int length, char[] literal) {
+        if (literal.length == 0) {
+            return length;
+        }
+        char first = literal[0];
+        for (int i = indexOf(s, first, pos, length); i >= 0; i = indexOf(s, first, i + 1, length)) {
+            if (startsWith(s, i, length, literal)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence s, int pos, int length, char[] literal) {
+        if (length - pos < literal.length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length; i++) {
+            if (s.charAt(pos + i) != literal[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
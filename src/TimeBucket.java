@@ -0,0 +1,44 @@
+import java.time.LocalDateTime;
+
+// Показатели трафика за один интервал временного ряда (минуту, час или сутки)
+// или сумма нескольких интервалов
+public final class TimeBucket {
+    private final LocalDateTime start;
+    private final int seconds;
+    private final long visits;
+    private final long botVisits;
+    private final long clientErrors;
+    private final long serverErrors;
+    private final long traffic;
+    private final int peakVisitsPerSecond;
+
+    TimeBucket(LocalDateTime start, int seconds, long visits, long botVisits, long clientErrors,
+               long serverErrors, long traffic, int peakVisitsPerSecond) {
+        this.start = start;
+        this.seconds = seconds;
+        this.visits = visits;
+        this.botVisits = botVisits;
+        this.clientErrors = clientErrors;
+        this.serverErrors = serverErrors;
+        this.traffic = traffic;
+        this.peakVisitsPerSecond = peakVisitsPerSecond;
+    }
+
+    public LocalDateTime getStart() { return start; }
+    public int getSeconds() { return seconds; }
+    // Посещения не-ботов
+    public long getVisits() { return visits; }
+    public long getBotVisits() { return botVisits; }
+    // Ответы 4xx и 5xx
+    public long getClientErrors() { return clientErrors; }
+    public long getServerErrors() { return serverErrors; }
+    public long getTraffic() { return traffic; }
+    // Наибольшее число посещений не-ботов за одну секунду интервала
+    public int getPeakVisitsPerSecond() { return peakVisitsPerSecond; }
+
+    @Override
+    public String toString() {
+        return start + ": посещений " + visits + ", ботов " + botVisits + ", 4xx " + clientErrors
+                + ", 5xx " + serverErrors + ", трафик " + traffic + ", пик в секунду " + peakVisitsPerSecond;
+    }
+}
\ No newline at end of file
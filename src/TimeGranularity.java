@@ -0,0 +1,21 @@
+// Шаг временных рядов Statistics и сколько последних интервалов каждого шага хранится
+enum TimeGranularity {
+    MINUTE(60, 24 * 60), HOUR(3600, 90 * 24), DAY(86400, 10 * 366);
+
+    private final int seconds;
+    private final int retention;
+
+    TimeGranularity(int seconds, int retention) {
+        this.seconds = seconds;
+        this.retention = retention;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    // Число хранимых интервалов; более старые данные этого шага вытесняются
+    public int getRetention() {
+        return retention;
+    }
+}
\ No newline at end of file
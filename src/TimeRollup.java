@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Временные ряды трафика с шагом в минуту, час и сутки в кольцевых буферах.
+// Каждая запись сразу попадает во все три ряда, поэтому часы и сутки точны
+// и после того, как минуты за них вытеснены. Объём памяти постоянный: для каждого
+// шага хранится TimeGranularity.getRetention() последних интервалов. Буферы (около 0,7 МБ
+// на все шаги) выделяются при первой записи или объединении, так что пустые частичные
+// статистики (createEmpty в параллельном чтении, пакетном режиме и слежении) их не занимают.
+//
+// Записи могут приходить не по порядку. Запись учитывается в ряду, если её интервал
+// не старше самого нового минус длина буфера (для минут - сутки, для часов - 90 дней);
+// более старые записи в ряд не попадают и считаются опоздавшими.
+// Пик в секунду считается по посекундным счётчикам минутного ряда, поэтому для часов
+// и суток он учитывает только секунды, пришедшие, пока их минута ещё хранилась.
+final class TimeRollup {
+    private static final TimeGranularity[] GRANULARITIES = TimeGranularity.values();
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    // null - в ряд этого шага ещё ничего не записано
+    private final Level[] levels = new Level[GRANULARITIES.length];
+    private long lateEntries;
+
+    // Буфер шага с номером index; выделяется при первом обращении на запись
+    private Level level(int index) {
+        if (levels[index] == null) {
+            levels[index] = new Level(GRANULARITIES[index]);
+        }
+        return levels[index];
+    }
+
+    void add(long epochSecond, boolean bot, int responseCode, long bytes) {
+        Level minutes = level(TimeGranularity.MINUTE.ordinal());
+        int secondVisits = 0;
+        for (int l = 0; l < levels.length; l++) {
+            Level level = level(l);
+            long key = Math.floorDiv(epochSecond, level.width);
+            int slot = level.slotFor(key);
+            if (slot < 0) {
+                if (level == minutes) {
+                    lateEntries++;
+                }
+                continue;
+            }
+            if (bot) {
+                level.botVisits[slot]++;
+            } else {
+                level.visits[slot]++;
+                if (level == minutes) {
+                    secondVisits = ++minutes.secondVisits[slot * 60 + (int) Math.floorMod(epochSecond, 60L)];
+                }
+                if (secondVisits > level.peaks[slot]) {
+                    level.peaks[slot] = secondVisits;
+                }
+            }
+            if (responseCode >= 400 && responseCode <= 499) {
+                level.clientErrors[slot]++;
+            } else if (responseCode >= 500 && responseCode <= 599) {
+                level.serverErrors[slot]++;
+            }
+            level.traffic[slot] += bytes;
+        }
+    }
+
+    // Объединение с рядами другой статистики; посекундные счётчики складываются,
+    // так что пик секунды, разделённой между частями файла, не теряется
+    void merge(TimeRollup other) {
+        lateEntries += other.lateEntries;
+        if (other.isEmpty()) {
+            return;
+        }
+        Level minutes = level(TimeGranularity.MINUTE.ordinal());
+        for (int l = 0; l < levels.length; l++) {
+            Level level = level(l);
+            Level source = other.levels[l];
+            if (source == null) {
+                continue;
+            }
+            for (int i = 0; i < source.keys.length; i++) {
+                if (source.keys[i] == EMPTY) {
+                    continue;
+                }
+                int slot = level.slotFor(source.keys[i]);
+                if (slot < 0) {
+                    // Как в add: записи, не попавшие в минутный ряд, считаются опоздавшими
+                    if (level == minutes) {
+                        lateEntries += source.visits[i] + source.botVisits[i];
+                    }
+                    continue;
+                }
+                level.visits[slot] += source.visits[i];
+                level.botVisits[slot] += source.botVisits[i];
+                level.clientErrors[slot] += source.clientErrors[i];
+                level.serverErrors[slot] += source.serverErrors[i];
+                level.traffic[slot] += source.traffic[i];
+                level.peaks[slot] = Math.max(level.peaks[slot], source.peaks[i]);
+                if (level == minutes) {
+                    for (int s = 0; s < 60; s++) {
+                        int visits = level.secondVisits[slot * 60 + s] += source.secondVisits[i * 60 + s];
+                        level.peaks[slot] = Math.max(level.peaks[slot], visits);
+                    }
+                }
+            }
+        }
+        // Уточнённые пики минут поднимаются в часы и сутки
+        for (int i = 0; i < minutes.keys.length; i++) {
+            if (minutes.keys[i] == EMPTY) {
+                continue;
+            }
+            long epochSecond = minutes.keys[i] * minutes.width;
+            for (int l = 1; l < levels.length; l++) {
+                Level level = levels[l];
+                int slot = level.find(Math.floorDiv(epochSecond, level.width));
+                if (slot >= 0 && minutes.peaks[i] > level.peaks[slot]) {
+                    level.peaks[slot] = minutes.peaks[i];
+                }
+            }
+        }
+    }
+
+    // Интервалы шага granularity, пересекающиеся с [from, to], в хронологическом порядке.
+    // Просматриваются только интервалы диапазона, попадающие в буфер; пустые интервалы
+    // возвращаются с нулями
+    List<TimeBucket> series(TimeGranularity granularity, long fromEpochSecond, long toEpochSecond) {
+        Level level = levels[granularity.ordinal()];
+        List<TimeBucket> result = new ArrayList<>();
+        if (level == null || level.newest == EMPTY) {
+            return result;
+        }
+        long first = Math.max(Math.floorDiv(fromEpochSecond, level.width), level.newest - level.keys.length + 1);
+        long last = Math.min(Math.floorDiv(toEpochSecond, level.width), level.newest);
+        for (long key = first; key <= last; key++) {
+            int slot = level.find(key);
+            LocalDateTime start = LocalDateTime.ofEpochSecond(key * level.width, 0, ZoneOffset.UTC);
+            result.add(slot < 0
+                    ? new TimeBucket(start, level.width, 0, 0, 0, 0, 0, 0)
+                    : new TimeBucket(start, level.width, level.visits[slot], level.botVisits[slot],
+                    level.clientErrors[slot], level.serverErrors[slot], level.traffic[slot], level.peaks[slot]));
+        }
+        return result;
+    }
+
+    // Сумма интервалов шага granularity, пересекающихся с [from, to]
+    TimeBucket total(TimeGranularity granularity, long fromEpochSecond, long toEpochSecond) {
+        long visits = 0, botVisits = 0, clientErrors = 0, serverErrors = 0, traffic = 0;
+        int peak = 0;
+        List<TimeBucket> buckets = series(granularity, fromEpochSecond, toEpochSecond);
+        for (TimeBucket bucket : buckets) {
+            visits += bucket.getVisits();
+            botVisits += bucket.getBotVisits();
+            clientErrors += bucket.getClientErrors();
+            serverErrors += bucket.getServerErrors();
+            traffic += bucket.getTraffic();
+            peak = Math.max(peak, bucket.getPeakVisitsPerSecond());
+        }
+        LocalDateTime start = buckets.isEmpty() ? null : buckets.get(0).getStart();
+        return new TimeBucket(start, buckets.size() * granularity.getSeconds(),
+                visits, botVisits, clientErrors, serverErrors, traffic, peak);
+    }
+
+    // Интервалы с наибольшим числом посещений не-ботов, по убыванию
+    List<TimeBucket> busiest(TimeGranularity granularity, int n) {
+        Level level = levels[granularity.ordinal()];
+        List<TimeBucket> result = new ArrayList<>();
+        if (level == null) {
+            return result;
+        }
+        for (int slot = 0; slot < level.keys.length; slot++) {
+            if (level.keys[slot] != EMPTY && level.visits[slot] > 0) {
+                result.add(new TimeBucket(LocalDateTime.ofEpochSecond(level.keys[slot] * level.width, 0, ZoneOffset.UTC),
+                        level.width, level.visits[slot], level.botVisits[slot], level.clientErrors[slot],
+                        level.serverErrors[slot], level.traffic[slot], level.peaks[slot]));
+            }
+        }
+        result.sort((a, b) -> Long.compare(b.getVisits(), a.getVisits()));
+        return result.size() > n ? new ArrayList<>(result.subList(0, n)) : result;
+    }
+
+    // В ряды ещё ничего не записано, буферы не выделены
+    private boolean isEmpty() {
+        for (Level level : levels) {
+            if (level != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Записи, не попавшие в минутный ряд из-за опоздания больше чем на сутки
+    long lateEntries() {
+        return lateEntries;
+    }
+
+    // Для контрольной точки: по каждому шагу занятые интервалы в порядке времени
+    // (разность номера с предыдущим и счётчики), у минут - ещё 60 посекундных счётчиков
+    void writeTo(StatisticsCheckpoint.Output out) throws IOException {
+        for (Level level : levels) {
+            if (level == null) {
+                out.writeVarLong(0);
+                continue;
+            }
+            long[] keys = Arrays.stream(level.keys).filter(key -> key != EMPTY).sorted().toArray();
+            out.writeVarLong(keys.length);
+            long previous = 0;
+            for (long key : keys) {
+                int slot = level.find(key);
+                out.writeZigZag(key - previous);
+                out.writeVarLong(level.visits[slot]);
+                out.writeVarLong(level.botVisits[slot]);
+                out.writeVarLong(level.clientErrors[slot]);
+                out.writeVarLong(level.serverErrors[slot]);
+                out.writeVarLong(level.traffic[slot]);
+                out.writeVarLong(level.peaks[slot]);
+                if (level.secondVisits != null) {
+                    for (int s = 0; s < 60; s++) {
+                        out.writeVarLong(level.secondVisits[slot * 60 + s]);
+                    }
+                }
+                previous = key;
+            }
+        }
+        out.writeVarLong(lateEntries);
+    }
+
+    // Чтение в пустые ряды; интервалы идут по возрастанию, поэтому все помещаются в буферы
+    void readFrom(StatisticsCheckpoint.Input in) throws IOException {
+        for (int l = 0; l < levels.length; l++) {
+            long key = 0;
+            for (int i = in.readCount(); i > 0; i--) {
+                Level level = level(l);
+                key += in.readZigZag();
+                int slot = level.slotFor(key);
+                if (slot < 0) {
+                    throw new IOException("Контрольная точка повреждена: интервалы не по порядку");
+                }
+                level.visits[slot] = in.readVarLong();
+                level.botVisits[slot] = in.readVarLong();
+                level.clientErrors[slot] = in.readVarLong();
+                level.serverErrors[slot] = in.readVarLong();
+                level.traffic[slot] = in.readVarLong();
+                level.peaks[slot] = in.readVarInt();
+                if (level.secondVisits != null) {
+                    for (int s = 0; s < 60; s++) {
+                        level.secondVisits[slot * 60 + s] = in.readVarInt();
+                    }
+                }
+            }
+        }
+        lateEntries = in.readVarLong();
+    }
+
+    // Кольцевой буфер интервалов одного шага; интервал с номером key лежит в ячейке key mod размер
+    private static final class Level {
+        private final int width;
+        private final long[] keys;
+        private final long[] visits;
+        private final long[] botVisits;
+        private final long[] clientErrors;
+        private final long[] serverErrors;
+        private final long[] traffic;
+        private final int[] peaks;
+        // Посещения по секундам, 60 счётчиков на ячейку; только у минутного ряда
+        private final int[] secondVisits;
+        private long newest = EMPTY;
+
+        private Level(TimeGranularity granularity) {
+            int size = granularity.getRetention();
+            this.width = granularity.getSeconds();
+            this.keys = new long[size];
+            Arrays.fill(keys, EMPTY);
+            this.visits = new long[size];
+            this.botVisits = new long[size];
+            this.clientErrors = new long[size];
+            this.serverErrors = new long[size];
+            this.traffic = new long[size];
+            this.peaks = new int[size];
+            this.secondVisits = granularity == TimeGranularity.MINUTE ? new int[size * 60] : null;
+        }
+
+        // Ячейка для интервала key с очисткой вытесняемого интервала; -1, если интервал уже вне буфера
+        private int slotFor(long key) {
+            if (newest != EMPTY && key <= newest - keys.length) {
+                return -1;
+            }
+            if (newest == EMPTY || key > newest) {
+                newest = key;
+            }
+            int slot = (int) Math.floorMod(key, (long) keys.length);
+            if (keys[slot] != key) {
+                keys[slot] = key;
+                visits[slot] = 0;
+                botVisits[slot] = 0;
+                clientErrors[slot] = 0;
+                serverErrors[slot] = 0;
+                traffic[slot] = 0;
+                peaks[slot] = 0;
+                if (secondVisits != null) {
+                    Arrays.fill(secondVisits, slot * 60, slot * 60 + 60, 0);
+                }
+            }
+            return slot;
+        }
+
+        private int find(long key) {
+            int slot = (int) Math.floorMod(key, (long) keys.length);
+            return keys[slot] == key ? slot : -1;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+// Разбор метки времени combined-лога вида "dd/MMM/yyyy:HH:mm:ss +hhmm" сразу в секунды
+// эпохи UTC без DateTimeFormatter и LocalDateTime. Смещение пояса вычитается, поэтому
+// строки серверов из разных поясов сравнимы между собой.
+// Соседние строки лога почти всегда относятся к одной секунде, поэтому декодер помнит
+// символы предыдущей метки и при совпадении возвращает прежний результат без разбора.
+// Форматы других логов ($time_iso8601 и $msec nginx) разбираются отдельными методами
+// в те же поля; результат последнего успешного вызова любого из них.
+// Экземпляр не потокобезопасен: у каждого разборщика свой декодер.
+final class TimestampDecoder {
+    static final int LENGTH = 26;
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    // Наибольшее смещение, которое допускает ZoneOffset
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+    // "yyyy-MM-ddTHH:mm:ssZ" и самая длинная метка ISO 8601, которая запоминается
+    private static final int ISO_MIN_LENGTH = 20;
+    private static final int ISO_MAX_LENGTH = 40;
+    // Секунды $msec больше этого числа считаются ошибкой (год больше 30000)
+    private static final long MAX_EPOCH_SECOND = 1L << 40;
+
+    private final char[] previous = new char[LENGTH];
+    private boolean hasPrevious;
+    private final char[] previousIso = new char[ISO_MAX_LENGTH];
+    private int previousIsoLength;
+    private long epochSecond;
+    private int offsetSeconds;
+
+    // Разбирает метку на участке [start, end); возвращает false, если формат неверен
+    boolean decode(CharSequence s, int start, int end) {
+        if (end - start != LENGTH) {
+            return false;
+        }
+        if (hasPrevious && sameAsPrevious(s, start)) {
+            return true;
+        }
+        long decoded = decodeEpochSecond(s, start, end);
+        if (decoded == INVALID) {
+            hasPrevious = false;
+            return false;
+        }
+        epochSecond = decoded;
+        offsetSeconds = decodeOffsetSeconds(s, start);
+        for (int i = 0; i < LENGTH; i++) {
+            previous[i] = s.charAt(start + i);
+        }
+        hasPrevious = true;
+        previousIsoLength = 0;
+        return true;
+    }
+
+    // Метка ISO 8601 вида "yyyy-MM-ddTHH:mm:ss+hh:mm", как её пишет $time_iso8601;
+    // допускаются доли секунды, "Z" и смещение без двоеточия. Как и decode, помнит
+    // предыдущую метку
+    boolean decodeIso8601(CharSequence s, int start, int end) {
+        int length = end - start;
+        // Пока запомненной метки нет, previousIsoLength равен 0: без проверки длины пустое
+        // значение сравнивалось бы с символами за его концом
+        if (length >= ISO_MIN_LENGTH && length == previousIsoLength && sameAsPreviousIso(s, start, length)) {
+            return true;
+        }
+        hasPrevious = false;
+        previousIsoLength = 0;
+        if (length < ISO_MIN_LENGTH || length > ISO_MAX_LENGTH || s.charAt(start + 4) != '-'
+                || s.charAt(start + 7) != '-' || (s.charAt(start + 10) != 'T' && s.charAt(start + 10) != ' ')
+                || s.charAt(start + 13) != ':' || s.charAt(start + 16) != ':') {
+            return false;
+        }
+        int year = parseDigits(s, start, 4);
+        int month = parseDigits(s, start + 5, 2);
+        int day = parseDigits(s, start + 8, 2);
+        int hour = parseDigits(s, start + 11, 2);
+        int minute = parseDigits(s, start + 14, 2);
+        int second = parseDigits(s, start + 17, 2);
+        int pos = start + 19;
+        if (s.charAt(pos) == '.') {
+            int fraction = ++pos;
+            while (pos < end && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') pos++;
+            if (pos == fraction) return false;
+        }
+        int offset = decodeIsoOffsetSeconds(s, pos, end);
+        if (offset == Integer.MIN_VALUE || year < 0 || month < 1 || month > 12 || day < 1
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+        int daysInMonth = month == 2 && isLeapYear(year) ? 29 : DAYS_IN_MONTH[month - 1];
+        if (day > daysInMonth) {
+            return false;
+        }
+        epochSecond = daysFromCivil(year, month, day) * 86400 + hour * 3600 + minute * 60 + second - offset;
+        offsetSeconds = offset;
+        for (int i = 0; i < length; i++) {
+            previousIso[i] = s.charAt(start + i);
+        }
+        previousIsoLength = length;
+        return true;
+    }
+
+    // Метка $msec вида "1705314600.123": секунды эпохи с долями, пояс UTC
+    boolean decodeMsec(CharSequence s, int start, int end) {
+        int pos = start;
+        long seconds = 0;
+        while (pos < end && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+            seconds = seconds * 10 + (s.charAt(pos++) - '0');
+            if (seconds > MAX_EPOCH_SECOND) return false;
+        }
+        if (pos == start) return false;
+        if (pos < end) {
+            if (s.charAt(pos) != '.') return false;
+            while (++pos < end) {
+                if (s.charAt(pos) < '0' || s.charAt(pos) > '9') return false;
+            }
+        }
+        hasPrevious = false;
+        previousIsoLength = 0;
+        epochSecond = seconds;
+        offsetSeconds = 0;
+        return true;
+    }
+
+    // Результат последнего успешного decode
+    long epochSecond() { return epochSecond; }
+    int offsetSeconds() { return offsetSeconds; }
+
+    private boolean sameAsPrevious(CharSequence s, int start) {
+        // Сначала секунды и минуты - они меняются чаще всего
+        for (int i = LENGTH - 7; i >= 0; i--) {
+            if (previous[i] != s.charAt(start + i)) {
+                return false;
+            }
+        }
+        for (int i = LENGTH - 6; i < LENGTH; i++) {
+            if (previous[i] != s.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameAsPreviousIso(CharSequence s, int start, int length) {
+        // Секунды "ss" стоят на позициях 17-18
+        if (previousIso[18] != s.charAt(start + 18) || previousIso[17] != s.charAt(start + 17)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (previousIso[i] != s.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Секунды эпохи UTC или INVALID, если формат неверен или такой даты нет (например, 31/Feb)
+    static long decodeEpochSecond(CharSequence s, int start, int end) {
+        if (end - start != LENGTH || s.charAt(start + 2) != '/' || s.charAt(start + 6) != '/'
+                || s.charAt(start + 11) != ':' || s.charAt(start + 14) != ':'
+                || s.charAt(start + 17) != ':' || s.charAt(start + 20) != ' ') {
+            return INVALID;
+        }
+        int offset = decodeOffsetSeconds(s, start);
+        int day = parseDigits(s, start, 2);
+        int month = parseMonth(s, start + 3);
+        int year = parseDigits(s, start + 7, 4);
+        int hour = parseDigits(s, start + 12, 2);
+        int minute = parseDigits(s, start + 15, 2);
+        int second = parseDigits(s, start + 18, 2);
+        if (offset == Integer.MIN_VALUE || day < 1 || month < 0 || year < 0
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        int daysInMonth = month == 2 && isLeapYear(year) ? 29 : DAYS_IN_MONTH[month - 1];
+        if (day > daysInMonth) {
+            return INVALID;
+        }
+        return daysFromCivil(year, month, day) * 86400 + hour * 3600 + minute * 60 + second - offset;
+    }
+
+    // Смещение "+hhmm" в секундах или Integer.MIN_VALUE, если оно записано неверно
+    static int decodeOffsetSeconds(CharSequence s, int start) {
+        return offsetSeconds(s.charAt(start + 21), parseDigits(s, start + 22, 2), parseDigits(s, start + 24, 2));
+    }
+
+    // Смещение ISO 8601 на участке [start, end): "Z", "+hh:mm" или "+hhmm"
+    private static int decodeIsoOffsetSeconds(CharSequence s, int start, int end) {
+        int length = end - start;
+        if (length == 1 && s.charAt(start) == 'Z') {
+            return 0;
+        }
+        if ((length != 5 && length != 6) || (length == 6 && s.charAt(start + 3) != ':')) {
+            return Integer.MIN_VALUE;
+        }
+        return offsetSeconds(s.charAt(start), parseDigits(s, start + 1, 2), parseDigits(s, end - 2, 2));
+    }
+
+    private static int offsetSeconds(char sign, int hours, int minutes) {
+        if ((sign != '+' && sign != '-') || hours < 0 || minutes < 0 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        int seconds = hours * 3600 + minutes * 60;
+        if (seconds > MAX_OFFSET_SECONDS) {
+            return Integer.MIN_VALUE;
+        }
+        return sign == '-' ? -seconds : seconds;
+    }
+
+    // Число дней от 1970-01-01 по григорианскому календарю (алгоритм days_from_civil)
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * ((month + 9) % 12) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    // Месяц по трём буквам одним switch по упакованным символам вместо перебора названий
+    private static int parseMonth(CharSequence s, int start) {
+        char c0 = s.charAt(start), c1 = s.charAt(start + 1), c2 = s.charAt(start + 2);
+        if ((c0 | c1 | c2) > 0xFF) {
+            return -1;
+        }
+        switch (c0 << 16 | c1 << 8 | c2) {
+            case 'J' << 16 | 'a' << 8 | 'n': return 1;
+            case 'F' << 16 | 'e' << 8 | 'b': return 2;
+            case 'M' << 16 | 'a' << 8 | 'r': return 3;
+            case 'A' << 16 | 'p' << 8 | 'r': return 4;
+            case 'M' << 16 | 'a' << 8 | 'y': return 5;
+            case 'J' << 16 | 'u' << 8 | 'n': return 6;
+            case 'J' << 16 | 'u' << 8 | 'l': return 7;
+            case 'A' << 16 | 'u' << 8 | 'g': return 8;
+            case 'S' << 16 | 'e' << 8 | 'p': return 9;
+            case 'O' << 16 | 'c' << 8 | 't': return 10;
+            case 'N' << 16 | 'o' << 8 | 'v': return 11;
+            case 'D' << 16 | 'e' << 8 | 'c': return 12;
+            default: return -1;
+        }
+    }
+
+    private static int parseDigits(CharSequence s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
\ No newline at end of file
@@ -1,45 +1,39 @@
 public class UserAgent {
-    private final String osType;
-    private final String browserType;
+    private final OsType osType;
+    private final BrowserType browserType;
     private final boolean isBot;
 
+    // Классификация по активной таблице правил UserAgentRules.
+    // При разборе логов экземпляры берутся из кеша UserAgentClassifier и разделяются между записями
     public UserAgent(String userAgentString) {
-        this.osType = parseOsType(userAgentString);
-        this.browserType = parseBrowserType(userAgentString);
-        this.isBot = userAgentString != null && userAgentString.toLowerCase().contains("bot");
+        this(userAgentString == null
+                ? UserAgentRules.active().resolve(0)
+                : UserAgentRules.active().classify(userAgentString, 0, userAgentString.length()));
     }
 
-    private String parseOsType(String userAgent) {
-        if (userAgent == null) return "Unknown";
-
-        String lowerUserAgent = userAgent.toLowerCase();
-        if (lowerUserAgent.contains("windows")) return "Windows";
-        if (lowerUserAgent.contains("mac")) return "macOS";
-        if (lowerUserAgent.contains("linux")) return "Linux";
-        if (lowerUserAgent.contains("android")) return "Android";
-        if (lowerUserAgent.contains("ios")) return "iOS";
-
-        return "Unknown";
+    private UserAgent(UserAgent other) {
+        this(other.osType, other.browserType, other.isBot);
     }
 
-    private String parseBrowserType(String userAgent) {
-        if (userAgent == null) return "Unknown";
+    UserAgent(OsType osType, BrowserType browserType, boolean isBot) {
+        this.osType = osType;
+        this.browserType = browserType;
+        this.isBot = isBot;
+    }
 
-        String lowerUserAgent = userAgent.toLowerCase();
-        if (lowerUserAgent.contains("edg")) return "Edge";
-        if (lowerUserAgent.contains("firefox")) return "Firefox";
-        if (lowerUserAgent.contains("chrome")) return "Chrome";
-        if (lowerUserAgent.contains("safari")) return "Safari";
-        if (lowerUserAgent.contains("opera")) return "Opera";
+    public String getOsType() {
+        return osType.getDisplayName();
+    }
 
-        return "Other";
+    public String getBrowserType() {
+        return browserType.getDisplayName();
     }
 
-    public String getOsType() {
+    public OsType getOs() {
         return osType;
     }
 
-    public String getBrowserType() {
+    public BrowserType getBrowser() {
         return browserType;
     }
 
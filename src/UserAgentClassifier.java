@@ -0,0 +1,114 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// Классификатор User-Agent с ограниченным кешем по исходной строке.
+// В типичном логе несколько тысяч различных User-Agent, поэтому почти все строки
+// находятся в кеше, и автомат UserAgentRules запускается только на промахах.
+//
+// Кеш множественно-ассоциативный: строка по хешу попадает в набор из WAYS ячеек,
+// при промахе вытесняется давно не использовавшаяся ячейка набора (LRU внутри набора).
+// Поиск сравнивает символы участка строки лога с ключом без создания String,
+// поэтому при попадании User-Agent не материализуется вовсе.
+// Экземпляр не потокобезопасен: у каждого потока разбора свой классификатор.
+final class UserAgentClassifier {
+    static final int DEFAULT_CAPACITY = 4096;
+    private static final int WAYS = 4;
+
+    // Общие для всех потоков счётчики попаданий и промахов
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private final UserAgentRules rules;
+    private final int setMask;
+    private final String[] keys;
+    private final int[] hashes;
+    private final UserAgent[] values;
+    private final long[] lastUsed;
+    private long clock;
+
+    UserAgentClassifier(UserAgentRules rules, int capacity) {
+        int sets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+        this.rules = rules;
+        this.setMask = sets - 1;
+        this.keys = new String[sets * WAYS];
+        this.hashes = new int[sets * WAYS];
+        this.values = new UserAgent[sets * WAYS];
+        this.lastUsed = new long[sets * WAYS];
+    }
+
+    UserAgentClassifier() {
+        this(UserAgentRules.active(), DEFAULT_CAPACITY);
+    }
+
+    // Классифицирует участок [start, end) строки лога
+    UserAgent classify(CharSequence line, int start, int end) {
+        int hash = hash(line, start, end);
+        int base = (hash & setMask) * WAYS;
+        int victim = base;
+        clock++;
+
+        for (int slot = base; slot < base + WAYS; slot++) {
+            String key = keys[slot];
+            if (key == null) {
+                victim = slot;
+                break;
+            }
+            if (hashes[slot] == hash && contentEquals(key, line, start, end)) {
+                lastUsed[slot] = clock;
+                HITS.increment();
+                return values[slot];
+            }
+            if (lastUsed[slot] < lastUsed[victim]) {
+                victim = slot;
+            }
+        }
+
+        MISSES.increment();
+        UserAgent userAgent = rules.classify(line, start, end);
+        keys[victim] = copyChars(line, start, end);
+        hashes[victim] = hash;
+        values[victim] = userAgent;
+        lastUsed[victim] = clock;
+        return userAgent;
+    }
+
+    // Доля попаданий в кеш по всем потокам с момента запуска
+    static double hitRate() {
+        long hits = HITS.sum();
+        long total = hits + MISSES.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    static long lookups() {
+        return HITS.sum() + MISSES.sum();
+    }
+
+    // Ключ хранит символы в том виде, в каком их отдаёт строка лога (для ByteSlice - байты),
+    // чтобы сравнение не зависело от декодирования
+    private static String copyChars(CharSequence s, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = s.charAt(i);
+        }
+        return new String(chars);
+    }
+
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String key, CharSequence s, int start, int end) {
+        if (key.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != s.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
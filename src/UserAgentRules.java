@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Таблица правил классификации User-Agent и построенный по ней автомат Ахо-Корасик.
+// Все подстроки ищутся за один проход по строке без учёта регистра. Для ОС и браузера
+// побеждает первое по порядку совпавшее правило, поэтому порядок строк в таблице задаёт приоритет.
+//
+// Формат файла правил: по одному правилу в строке, "<категория> <подстрока> [<результат>]",
+// где категория - os, browser или bot, результат - имя значения OsType или BrowserType.
+// Пустые строки и строки, начинающиеся с #, пропускаются.
+final class UserAgentRules {
+    private static final int ALPHABET = 128;
+    private static final int MAX_RULES = 64;
+
+    private static final UserAgentRules DEFAULT = new UserAgentRules(Arrays.asList(
+            new Rule(Category.OS, "windows", OsType.WINDOWS),
+            new Rule(Category.OS, "mac", OsType.MACOS),
+            new Rule(Category.OS, "linux", OsType.LINUX),
+            new Rule(Category.OS, "android", OsType.ANDROID),
+            new Rule(Category.OS, "ios", OsType.IOS),
+            new Rule(Category.BROWSER, "edg", BrowserType.EDGE),
+            new Rule(Category.BROWSER, "firefox", BrowserType.FIREFOX),
+            new Rule(Category.BROWSER, "chrome", BrowserType.CHROME),
+            new Rule(Category.BROWSER, "safari", BrowserType.SAFARI),
+            new Rule(Category.BROWSER, "opera", BrowserType.OPERA),
+            new Rule(Category.BOT, "bot", null)));
+
+    private static volatile UserAgentRules active = DEFAULT;
+
+    enum Category { OS, BROWSER, BOT }
+
+    // Одно правило: подстрока и результат, который она означает
+    static final class Rule {
+        private final Category category;
+        private final String pattern;
+        private final Enum<?> result;
+
+        Rule(Category category, String pattern, Enum<?> result) {
+            this.category = category;
+            this.pattern = pattern.toLowerCase(Locale.ROOT);
+            this.result = result;
+        }
+    }
+
+    private final List<Rule> rules;
+    // Переходы автомата: transitions[состояние * ALPHABET + символ]
+    private final int[] transitions;
+    // Маска правил, чьи подстроки заканчиваются в состоянии (с учётом суффиксных ссылок)
+    private final long[] outputs;
+    private final long botMask;
+    // Все возможные результаты классификации заранее созданы и переиспользуются
+    private final UserAgent[] instances;
+
+    UserAgentRules(List<Rule> rules) {
+        if (rules.size() > MAX_RULES) {
+            throw new IllegalArgumentException("Правил User-Agent не может быть больше " + MAX_RULES);
+        }
+        this.rules = new ArrayList<>(rules);
+
+        // Бор из всех подстрок
+        List<int[]> trie = new ArrayList<>();
+        List<Long> terminal = new ArrayList<>();
+        trie.add(newNode());
+        terminal.add(0L);
+        long bots = 0;
+        for (int r = 0; r < this.rules.size(); r++) {
+            Rule rule = this.rules.get(r);
+            if (rule.pattern.isEmpty()) {
+                throw new IllegalArgumentException("Пустая подстрока в правиле User-Agent");
+            }
+            int state = 0;
+            for (char c : rule.pattern.toCharArray()) {
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Подстрока правила User-Agent должна быть в ASCII: " + rule.pattern);
+                }
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newNode());
+                    terminal.add(0L);
+                }
+                state = trie.get(state)[c];
+            }
+            terminal.set(state, terminal.get(state) | (1L << r));
+            if (rule.category == Category.BOT) {
+                bots |= 1L << r;
+            }
+        }
+        this.botMask = bots;
+
+        // Суффиксные ссылки обходом в ширину превращают бор в полный автомат переходов
+        int states = trie.size();
+        this.transitions = new int[states * ALPHABET];
+        this.outputs = new long[states];
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        outputs[0] = terminal.get(0);
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie.get(0)[c];
+            if (next >= 0) {
+                transitions[c] = next;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            outputs[state] = terminal.get(state) | outputs[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie.get(state)[c];
+                if (next >= 0) {
+                    fail[next] = transitions[fail[state] * ALPHABET + c];
+                    transitions[state * ALPHABET + c] = next;
+                    queue[tail++] = next;
+                } else {
+                    transitions[state * ALPHABET + c] = transitions[fail[state] * ALPHABET + c];
+                }
+            }
+        }
+
+        OsType[] osTypes = OsType.values();
+        BrowserType[] browserTypes = BrowserType.values();
+        this.instances = new UserAgent[osTypes.length * browserTypes.length * 2];
+        for (OsType os : osTypes) {
+            for (BrowserType browser : browserTypes) {
+                for (int bot = 0; bot < 2; bot++) {
+                    instances[index(os, browser, bot == 1)] = new UserAgent(os, browser, bot == 1);
+                }
+            }
+        }
+    }
+
+    // Правила по умолчанию повторяют прежнюю цепочку проверок contains
+    static UserAgentRules defaults() {
+        return DEFAULT;
+    }
+
+    // Правила, которые используются при разборе логов
+    static UserAgentRules active() {
+        return active;
+    }
+
+    static void activate(UserAgentRules rules) {
+        active = rules;
+    }
+
+    static UserAgentRules load(Path path) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            try {
+                Category category = Category.valueOf(parts[0].toUpperCase(Locale.ROOT));
+                if (category == Category.BOT) {
+                    if (parts.length != 2) throw new IllegalArgumentException("ожидается: bot <подстрока>");
+                    rules.add(new Rule(category, parts[1], null));
+                } else {
+                    if (parts.length != 3) throw new IllegalArgumentException("ожидается: " + parts[0] + " <подстрока> <результат>");
+                    Enum<?> result = category == Category.OS
+                            ? OsType.valueOf(parts[2].toUpperCase(Locale.ROOT))
+                            : BrowserType.valueOf(parts[2].toUpperCase(Locale.ROOT));
+                    rules.add(new Rule(category, parts[1], result));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Ошибка в правилах User-Agent, строка " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        return new UserAgentRules(rules);
+    }
+
+    // Один проход автомата по участку [start, end); возвращает маску совпавших правил
+    long match(CharSequence s, int start, int end) {
+        long matched = 0;
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            } else if (c >= ALPHABET) {
+                c = Character.toLowerCase(c);
+                if (c >= ALPHABET) {
+                    state = 0;
+                    continue;
+                }
+            }
+            state = transitions[state * ALPHABET + c];
+            matched |= outputs[state];
+        }
+        return matched;
+    }
+
+    UserAgent classify(CharSequence s, int start, int end) {
+        return resolve(match(s, start, end));
+    }
+
+    // По маске совпавших правил выбирает первое правило каждой категории
+    UserAgent resolve(long matched) {
+        OsType os = OsType.UNKNOWN;
+        BrowserType browser = BrowserType.OTHER;
+        boolean osFound = false;
+        boolean browserFound = false;
+        for (int r = 0; r < rules.size() && matched != 0; r++) {
+            if ((matched & (1L << r)) == 0) {
+                continue;
+            }
+            Rule rule = rules.get(r);
+            if (rule.category == Category.OS && !osFound) {
+                os = (OsType) rule.result;
+                osFound = true;
+            } else if (rule.category == Category.BROWSER && !browserFound) {
+                browser = (BrowserType) rule.result;
+                browserFound = true;
+            }
+        }
+        return instances[index(os, browser, (matched & botMask) != 0)];
+    }
+
+    private static int index(OsType os, BrowserType browser, boolean bot) {
+        return (os.ordinal() * BrowserType.values().length + browser.ordinal()) * 2 + (bot ? 1 : 0);
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+}
\ No newline at end of file
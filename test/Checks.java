@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Общее для проверок: условие с сообщением и сравнение статистик показатель за показателем
+final class Checks {
+    private Checks() {
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    static void compare(String name, Map<String, String> expected, Map<String, String> actual) {
+        for (Map.Entry<String, String> field : expected.entrySet()) {
+            check(field.getValue().equals(actual.get(field.getKey())), name + ", показатель " + field.getKey() + ": "
+                    + actual.get(field.getKey()) + " вместо " + field.getValue());
+        }
+    }
+
+    static void compare(String name, Statistics expected, Statistics actual) {
+        compare(name, fields(expected), fields(actual));
+    }
+
+    // Показатели статистики по отдельности; множества упорядочены, отчёты о частых значениях
+    // сравниваются без учёта порядка равных счётов
+    static Map<String, String> fields(Statistics s) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("totalVisits", "" + s.getTotalVisits());
+        fields.put("nonBotVisits", "" + s.getNonBotVisits());
+        fields.put("errorRequests", "" + s.getErrorRequests());
+        fields.put("totalTraffic", "" + s.getTotalTraffic());
+        fields.put("minTime", "" + s.getMinTime());
+        fields.put("maxTime", "" + s.getMaxTime());
+        fields.put("uniqueNonBotIps", "" + s.getUniqueNonBotIps());
+        fields.put("uniqueIpsRelativeError", "" + s.getUniqueIpsRelativeError());
+        fields.put("peakVisitsPerSecond", "" + s.getPeakVisitsPerSecond());
+        fields.put("maxVisitsPerUser", "" + s.getMaxVisitsPerUser());
+        fields.put("averageVisitsPerUser", "" + s.getAverageVisitsPerUser());
+        fields.put("averageVisitsPerHour", "" + s.getAverageVisitsPerHour());
+        fields.put("averageErrorsPerHour", "" + s.getAverageErrorsPerHour());
+        fields.put("trafficRate", "" + s.getTrafficRate());
+        fields.put("existingPages", "" + new TreeSet<>(s.getExistingPages()));
+        fields.put("notFoundPages", "" + new TreeSet<>(s.getNotFoundPages()));
+        fields.put("refererDomains", "" + new TreeSet<>(s.getRefererDomains()));
+        fields.put("os", "" + new TreeMap<>(s.getOsStatistics()));
+        fields.put("browsers", "" + new TreeMap<>(s.getBrowserStatistics()));
+        fields.put("methods", "" + s.getMethodStatistics());
+        fields.put("topIps", top(s.getTopIps(20)));
+        fields.put("topPages", top(s.getTopPages(20)));
+        fields.put("topRefererDomains", top(s.getTopRefererDomains(20)));
+        fields.put("lateEntries", "" + s.getLateEntries());
+        // Без записей со временем (как у статистики, собранной из отдельных ключей) рядов нет
+        if (s.getMinTime() != null) {
+            for (TimeGranularity granularity : TimeGranularity.values()) {
+                fields.put("timeSeries." + granularity, "" + s.getTimeSeries(granularity, s.getMinTime(), s.getMaxTime()));
+            }
+        }
+        fields.put("latency", "" + s.getLatency());
+        fields.put("latencyByMethod", "" + s.getLatencyByMethod());
+        fields.put("latencyByStatusClass", "" + s.getLatencyByStatusClass());
+        fields.put("latencyByPathPrefix", "" + s.getLatencyByPathPrefix(Integer.MAX_VALUE));
+        return fields;
+    }
+
+    // Порядок равных счётов зависит от порядка обхода HashMap, поэтому отчёт сравнивается
+    // как множество значений со счётом больше последнего и список счётов
+    static String top(List<HeavyHitter> top) {
+        long last = top.isEmpty() ? 0 : top.get(top.size() - 1).getCount();
+        TreeSet<String> above = new TreeSet<>();
+        List<Long> counts = new ArrayList<>();
+        for (HeavyHitter hitter : top) {
+            counts.add(hitter.getCount());
+            if (hitter.getCount() > last) {
+                above.add(hitter.toString());
+            }
+        }
+        return above + "" + counts;
+    }
+
+    // Записи строк одним разборщиком формата combined
+    static LogEntry[] entries(String[] lines) {
+        LogTokenizer tokenizer = LogFormat.combined().newTokenizer();
+        LogEntry[] entries = new LogEntry[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            entries[i] = new LogEntry(lines[i], tokenizer);
+        }
+        return entries;
+    }
+
+    static Statistics statistics(LogEntry[] entries) {
+        Statistics statistics = new Statistics();
+        for (LogEntry entry : entries) {
+            statistics.addEntry(entry);
+        }
+        return statistics;
+    }
+}
\ No newline at end of file
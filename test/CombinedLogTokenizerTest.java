@@ -0,0 +1,63 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// CombinedLogTokenizer против прежнего разбора LogEntry регулярным выражением
+class CombinedLogTokenizerTest {
+    private static final Pattern LEGACY = Pattern.compile(
+            "^([\\d.]+) \\S+ \\S+ \\[(.*?)\\] \"(\\w+) (.*?) HTTP/.*?\" (\\d+) (\\d+) \"([^\"]*)\" \"([^\"]*)\"");
+    private static final DateTimeFormatter LEGACY_DATE = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    // Поля каждой строки, которую разбирало регулярное выражение, совпадают с прежними;
+    // время - местное, как в строке лога
+    static void testMatchesLegacyRegex() {
+        String[] lines = new LogGenerator(42).lines(20_000);
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        int matched = 0;
+        for (String line : lines) {
+            Matcher matcher = LEGACY.matcher(line);
+            if (!matcher.find()) {
+                continue;
+            }
+            matched++;
+            LogEntry entry = new LogEntry(line, tokenizer);
+            String referer = matcher.group(7).equals("-") ? null : matcher.group(7);
+            UserAgent userAgent = new UserAgent(matcher.group(8));
+            String expected = matcher.group(1) + "|" + LocalDateTime.parse(matcher.group(2), LEGACY_DATE) + "|"
+                    + HttpMethod.valueOf(matcher.group(3)) + "|" + matcher.group(4) + "|" + matcher.group(5) + "|"
+                    + matcher.group(6) + "|" + referer + "|" + userAgent.getOs() + "/" + userAgent.getBrowser();
+            String actual = entry.getIpAddress() + "|" + entry.getDateTime() + "|" + entry.getMethod() + "|"
+                    + entry.getPath() + "|" + entry.getResponseCode() + "|" + entry.getDataSize() + "|"
+                    + entry.getReferer() + "|" + entry.getUserAgent().getOs() + "/" + entry.getUserAgent().getBrowser();
+            Checks.check(actual.equals(expected), actual + " вместо " + expected + " для " + line);
+        }
+        Checks.check(matched > lines.length / 2, "регулярное выражение разобрало только " + matched + " строк");
+    }
+
+    static void testRequestTime() {
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        String line = "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\"";
+        Checks.check(tokenizer.tokenize(line) && tokenizer.requestTimeMicros() == -1, "время ответа без поля");
+        Checks.check(tokenizer.tokenize(line + " 0.250") && tokenizer.requestTimeMicros() == 250_000,
+                "время ответа 0.250: " + tokenizer.requestTimeMicros());
+    }
+
+    // Числа, которые не помещаются в int, отвергаются, а не переполняются
+    static void testRejectsMalformed() {
+        String[] rejected = {
+                "",
+                "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 99999999999 5 \"-\" \"ua\"",
+                "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 99999999999 \"-\" \"ua\"",
+                "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 2x0 5 \"-\" \"ua\"",
+                "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua",
+                "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300 \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\"",
+                "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET /\" 200 5 \"-\" \"ua\"",
+        };
+        CombinedLogTokenizer tokenizer = new CombinedLogTokenizer();
+        for (String line : rejected) {
+            Checks.check(!tokenizer.tokenize(line), "строка должна отклоняться: " + line);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ConcurrentStatistics под нагрузкой нескольких потоков против последовательной Statistics
+class ConcurrentStatisticsTest {
+    // Пока потоки добавляют записи по одной, другой поток непрерывно читает срезы;
+    // итог должен совпасть с последовательным при любом числе потоков
+    static void testMatchesSerialWhileReading() throws InterruptedException {
+        LogEntry[] entries = Checks.entries(new LogGenerator(7).lines(50_000));
+        Statistics serial = Checks.statistics(entries);
+        Map<String, String> expected = Checks.fields(serial);
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            ConcurrentStatistics statistics = new ConcurrentStatistics();
+            AtomicBoolean writing = new AtomicBoolean(true);
+            Thread reader = new Thread(() -> {
+                while (writing.get()) {
+                    statistics.snapshot();
+                }
+            });
+            reader.start();
+            List<Thread> workers = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            for (int t = 0; t < threads; t++) {
+                int from = entries.length * t / threads;
+                int to = entries.length * (t + 1) / threads;
+                workers.add(start(start, () -> {
+                    for (int i = from; i < to; i++) {
+                        statistics.addEntry(entries[i]);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            writing.set(false);
+            reader.join();
+            Checks.compare("потоков " + threads, expected, Checks.fields(statistics.merged()));
+            checkCounters(threads, serial, statistics);
+        }
+    }
+
+    // Корпус с временем ответа, чтобы сравнивались и его квантили. Поток t берёт записи t,
+    // t + threads, ... пачками разного размера в один переиспользуемый массив, как
+    // NetworkListener, так что пачки потоков перемежаются по времени записей и захвату полос
+    static void testBatches() throws InterruptedException {
+        LogEntry[] entries = Checks.entries(LogGenerator.reformat(new LogGenerator(11).lines(50_000), "timed", 5));
+        Statistics serial = Checks.statistics(entries);
+        Map<String, String> expected = Checks.fields(serial);
+        for (int threads = 2; threads <= 8; threads *= 2) {
+            for (int round = 0; round < 2; round++) {
+                ConcurrentStatistics statistics = new ConcurrentStatistics(new Statistics(), Math.max(1, threads / 2));
+                CountDownLatch start = new CountDownLatch(1);
+                List<Thread> producers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int first = t;
+                    int step = threads;
+                    int batchSize = 1 + 37 * (t + round) % 128;
+                    producers.add(start(start, () -> {
+                        LogEntry[] batch = new LogEntry[batchSize];
+                        int size = 0;
+                        for (int i = first; i < entries.length; i += step) {
+                            batch[size++] = entries[i];
+                            if (size == batch.length) {
+                                statistics.addEntries(batch, size);
+                                size = 0;
+                            }
+                        }
+                        statistics.addEntries(batch, size);
+                    }));
+                }
+                start.countDown();
+                for (Thread producer : producers) {
+                    producer.join();
+                }
+                Checks.compare("пачки, потоков " + threads, expected, Checks.fields(statistics.merged()));
+                checkCounters(threads, serial, statistics);
+            }
+        }
+    }
+
+    // Счётчики, которые ConcurrentStatistics отдаёт без объединения полос
+    private static void checkCounters(int threads, Statistics serial, ConcurrentStatistics statistics) {
+        Checks.check(statistics.getTotalVisits() == serial.getTotalVisits()
+                        && statistics.getTotalTraffic() == serial.getTotalTraffic()
+                        && statistics.getNonBotVisits() == serial.getNonBotVisits()
+                        && statistics.getErrorRequests() == serial.getErrorRequests()
+                        && statistics.getMinTime().equals(serial.getMinTime())
+                        && statistics.getMaxTime().equals(serial.getMaxTime()),
+                "потоков " + threads + ": счётчики без объединения расходятся с последовательными");
+    }
+
+    // Поток ждёт общего старта, чтобы все писатели начинали одновременно
+    private static Thread start(CountDownLatch start, Runnable body) {
+        Thread thread = new Thread(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            body.run();
+        });
+        thread.start();
+        return thread;
+    }
+}
\ No newline at end of file
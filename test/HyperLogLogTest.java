@@ -0,0 +1,24 @@
+// Оценка HyperLogLog против точного числа значений
+class HyperLogLogTest {
+    // Оценка в пределах четырёх стандартных ошибок; объединение двух скетчей,
+    // пересекающихся на четверть значений, равно скетчу объединения
+    static void testEstimateAndMerge() {
+        int precision = 14;
+        for (int n : new int[]{0, 1, 10, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog first = new HyperLogLog(precision);
+            HyperLogLog second = new HyperLogLog(precision);
+            HyperLogLog union = new HyperLogLog(precision);
+            for (int i = 0; i < n; i++) {
+                String value = "10." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF);
+                if (i < n * 3 / 4) first.add(value);
+                if (i >= n / 2) second.add(value);
+                union.add(value);
+            }
+            long estimate = union.estimate();
+            double error = n == 0 ? estimate : Math.abs(estimate - n) / (double) n;
+            Checks.check(error <= 4 * union.relativeError(), "оценка " + estimate + " для " + n + " значений");
+            first.merge(second);
+            Checks.check(first.estimate() == estimate, "объединение даёт " + first.estimate() + " вместо " + estimate);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Квантили LatencyHistogram против точных по отсортированному массиву
+class LatencyHistogramTest {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    // Логнормальное распределение с тяжёлым хвостом от микросекунд до минут, плюс нули
+    // и значения за пределом гистограммы: оценка не меньше точной и больше не более чем на 1/32
+    static void testQuantileAccuracy() {
+        int count = 2_000_000;
+        Random random = new Random(3);
+        long[] values = new long[count];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < count; i++) {
+            values[i] = i % 100_000 == 0 ? (i % 200_000 == 0 ? 0 : LatencyHistogram.MAX_VALUE)
+                    : (long) Math.exp(9 + 2.5 * random.nextGaussian());
+            values[i] = Math.min(values[i], LatencyHistogram.MAX_VALUE);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double quantile : QUANTILES) {
+            long exact = values[(int) Math.max(0, Math.ceil(quantile * count) - 1)];
+            long estimate = histogram.quantile(quantile);
+            double error = exact == 0 ? estimate : (double) (estimate - exact) / exact;
+            Checks.check(estimate >= exact && error <= 1.0 / 32, "квантиль " + quantile + ": " + estimate + " вместо " + exact);
+        }
+    }
+
+    // Каждое значение попадает в корзину, границы которой его содержат
+    static void testBuckets() {
+        for (long value = 0; value <= LatencyHistogram.MAX_VALUE; value = value * 5 / 4 + 1) {
+            int index = LatencyHistogram.index(value);
+            Checks.check(LatencyHistogram.highestValue(index) >= value
+                            && (index == 0 || LatencyHistogram.highestValue(index - 1) < value),
+                    "значение " + value + " вне своей корзины " + index);
+        }
+    }
+}
\ No newline at end of file
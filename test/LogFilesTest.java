@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Чтение сжатых логов и выбор входных файлов
+class LogFilesTest {
+    // Сжатый файл без .gz в имени узнаётся по содержимому и читается построчно так же, как
+    // несжатый; файл из нескольких частей gzip (как после cat a.gz b.gz) читается целиком
+    static void testReadsGzip() throws Exception {
+        String[] lines = new LogGenerator(42).lines(30_000);
+        Path directory = Files.createTempDirectory("gzip");
+        Path plain = directory.resolve("access.log");
+        Path compressed = directory.resolve("access.log.1");
+        try {
+            Files.write(plain, Arrays.asList(lines));
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                Files.copy(plain, out);
+            }
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed, StandardOpenOption.APPEND))) {
+                Files.copy(plain, out);
+            }
+            Checks.check(LogFiles.detect(plain) == LogFiles.Compression.NONE
+                    && LogFiles.detect(compressed) == LogFiles.Compression.GZIP, "сжатие определено неверно");
+            List<String> expected = new ArrayList<>(Arrays.asList(lines));
+            expected.addAll(Arrays.asList(lines));
+            List<String> actual = new ArrayList<>();
+            int count = LogFiles.read(compressed, 1024, line -> actual.add(line.toString()));
+            Checks.check(count == expected.size() && actual.equals(expected), "прочитано строк: " + count);
+        } finally {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(compressed);
+            Files.delete(directory);
+        }
+    }
+
+    // Повреждённый gzip и zstd - IOException, а не зависание или другое исключение
+    static void testRejectsBrokenAndZstd() throws Exception {
+        Path file = Files.createTempFile("access", ".log");
+        try {
+            Files.write(file, new byte[]{0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 1, 2, 3});
+            Checks.check(LogFiles.detect(file) == LogFiles.Compression.ZSTD, "zstd не узнан");
+            Checks.check(rejected(file), "zstd прочитан");
+            Files.write(file, new byte[]{0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3});
+            Checks.check(rejected(file), "повреждённый gzip прочитан");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Папка - все файлы, кроме индексов; шаблон - файлы с подходящим именем; по порядку имён
+    static void testExpand() throws Exception {
+        Path directory = Files.createTempDirectory("logs");
+        List<Path> created = new ArrayList<>();
+        try {
+            for (String name : new String[]{"access.log.2", "access.log", "access.log.1", "error.log"}) {
+                created.add(Files.write(directory.resolve(name), Arrays.asList(new LogGenerator(1).lines(10))));
+            }
+            Path index = LogIndex.defaultPath(directory.resolve("access.log"));
+            LogIndex.build(directory.resolve("access.log"), index, 1024);
+            created.add(index);
+
+            Checks.check(names(LogFiles.expand(directory.toString()))
+                            .equals(List.of("access.log", "access.log.1", "access.log.2", "error.log")),
+                    "папка: " + names(LogFiles.expand(directory.toString())));
+            Checks.check(names(LogFiles.expand(directory.resolve("access.log.[0-9]").toString()))
+                            .equals(List.of("access.log.1", "access.log.2")),
+                    "шаблон: " + names(LogFiles.expand(directory.resolve("access.log.[0-9]").toString())));
+            Checks.check(LogFiles.expand(directory.resolve("missing.log").toString()).isEmpty(), "несуществующий файл");
+        } finally {
+            for (Path path : created) {
+                Files.deleteIfExists(path);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static boolean rejected(Path file) {
+        try {
+            LogFiles.read(file, 1024, line -> { });
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static List<String> names(List<Path> files) {
+        List<String> names = new ArrayList<>();
+        for (Path file : files) {
+            names.add(file.getFileName().toString());
+        }
+        return names;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Режим слежения: строки дописываются в файл, пока LogFollower читает его в отдельном потоке
+class LogFollowerTest {
+    // Слишком длинные строки (короче и длиннее блока LineSplitter) пропускаются по одной,
+    // а строки после них в том же блоке учитываются
+    static void testSkipsLongLines() throws Exception {
+        String[] lines = new LogGenerator(42).lines(1000);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            String line = i == 10 ? "x".repeat(5_000) : i == 500 ? "y".repeat(200_000) : lines[i];
+            text.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        Statistics statistics = follow(text.toString(), lines.length);
+        Checks.check(statistics.getTotalVisits() == lines.length - 2, "учтено строк: " + statistics.getTotalVisits());
+    }
+
+    // Строка длиннее блока чтения в 64 МБ пропускается до следующего перевода строки
+    static void testSkipsLineLongerThanChunk() throws Exception {
+        String[] lines = new LogGenerator(43).lines(100);
+        String text = String.join("\n", Arrays.copyOf(lines, 50)) + "\n" + "z".repeat(70 << 20) + "\n"
+                + String.join("\n", Arrays.copyOfRange(lines, 50, 100)) + "\n";
+        Statistics statistics = follow(text, 100);
+        Checks.check(statistics.getTotalVisits() == 100, "учтено строк: " + statistics.getTotalVisits());
+    }
+
+    // Одиночный "\r" - перевод строки, а "\n", дописанный после "\r" позже, не даёт пустой строки
+    static void testCarriageReturns() throws Exception {
+        String[] lines = new LogGenerator(44).lines(100);
+        Path directory = Files.createTempDirectory("follow");
+        Path file = directory.resolve("access.log");
+        Files.writeString(file, String.join("\r", Arrays.copyOf(lines, 50)) + "\r");
+        Statistics statistics = new Statistics();
+        LogFollower follower = new LogFollower(file, statistics, 1024, 1000);
+        Thread reader = start(follower);
+        try {
+            await(follower, 50);
+            Files.writeString(file, "\n" + String.join("\r\n", Arrays.copyOfRange(lines, 50, 100)) + "\r\n",
+                    StandardOpenOption.APPEND);
+            await(follower, 100);
+        } finally {
+            follower.stop();
+            reader.join();
+            Files.delete(file);
+            Files.delete(directory);
+        }
+        Checks.check(follower.getProcessedLines() == 100 && statistics.getTotalVisits() == 100,
+                "прочитано строк: " + follower.getProcessedLines() + ", учтено: " + statistics.getTotalVisits());
+    }
+
+    // Файл переименовывается и создаётся заново: дописанное в старый дочитывается, новый читается с начала
+    static void testRotation() throws Exception {
+        String[] lines = new LogGenerator(45).lines(300);
+        Path directory = Files.createTempDirectory("follow");
+        Path file = directory.resolve("access.log");
+        Path rotated = directory.resolve("access.log.1");
+        Files.writeString(file, String.join("\n", Arrays.copyOf(lines, 100)) + "\n");
+        Statistics statistics = new Statistics();
+        LogFollower follower = new LogFollower(file, statistics, 1024, 1000);
+        Thread reader = start(follower);
+        try {
+            await(follower, 100);
+            Files.writeString(file, String.join("\n", Arrays.copyOfRange(lines, 100, 200)) + "\n", StandardOpenOption.APPEND);
+            Files.move(file, rotated);
+            Files.writeString(file, String.join("\n", Arrays.copyOfRange(lines, 200, 300)) + "\n");
+            await(follower, 300);
+        } finally {
+            follower.stop();
+            reader.join();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(rotated);
+            Files.delete(directory);
+        }
+        Checks.check(statistics.getTotalVisits() == 300, "учтено строк после ротации: " + statistics.getTotalVisits());
+    }
+
+    // Статистика файла с текстом text после того, как прочитано count строк
+    private static Statistics follow(String text, int count) throws Exception {
+        Path directory = Files.createTempDirectory("follow");
+        Path file = directory.resolve("access.log");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        Statistics statistics = new Statistics();
+        LogFollower follower = new LogFollower(file, statistics, 1024, 1000);
+        Thread reader = start(follower);
+        try {
+            await(follower, count);
+        } finally {
+            follower.stop();
+            reader.join();
+            Files.delete(file);
+            Files.delete(directory);
+        }
+        return statistics;
+    }
+
+    private static Thread start(LogFollower follower) {
+        Thread reader = new Thread(() -> {
+            try {
+                follower.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        reader.start();
+        return reader;
+    }
+
+    private static void await(LogFollower follower, int lines) throws InterruptedException {
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        while (follower.getProcessedLines() < lines && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+import java.nio.charset.StandardCharsets;
+
+// Разборщики всех форматов LogFormat против разбора combined написанным вручную
+// CombinedLogTokenizer на корпусе FormatBenchmark.corpus
+class LogFormatTest {
+    // Строки, которые должны разбираться: формат, строка, ожидаемые поля через "|"
+    // (ip|epochSecond|метод|путь|код|размер|referer|User-Agent)
+    private static final String[][] ACCEPTED = {
+            {"combined-template", "::1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"curl/8.0\"",
+                    "::1|1664053200|GET|/|200|5|null|curl/8.0"},
+            {"custom", "10.0.0.1 - alice [25/Sep/2022:00:00:01 -0100] \"POST /a?b=c d HTTP/2.0\" 201 17 \"https://x.org/\" "
+                    + "\"Mozilla \\x22quoted\\x22\" rt=0.001 uct=\"-\" urt=\"-\" host=example.com",
+                    "10.0.0.1|1664067601|POST|/a?b=c d|201|17|https://x.org/|Mozilla \\x22quoted\\x22"},
+            {"json", "  { \"status\" : \"404\", \"remote_addr\":\"10.0.0.2\", \"time_iso8601\":\"2022-09-25T00:00:00.5Z\","
+                    + " \"extra\": {\"a\": [1, {\"b\": \"}\"}]}, \"request_uri\": \"/\\u043f\\/x\", \"request_method\": \"GET\","
+                    + " \"http_referer\": null, \"http_user_agent\": \"say \\\"hi\\\"\", \"body_bytes_sent\": 0 }",
+                    "10.0.0.2|1664064000|GET|/п/x|404|0|null|say \"hi\""},
+            {"json", "{\"remote_addr\":\"10.0.0.3\",\"msec\":\"1664064000.123\",\"uri\":\"/u\",\"status\":200}",
+                    "10.0.0.3|1664064000|UNKNOWN|/u|200|0|null|"},
+            {"json", "{\"remote_addr\":\"10.0.0.4\",\"time_local\":\"25/Sep/2022:03:00:00 +0300\",\"request\":\"HEAD /h HTTP/1.0\","
+                    + "\"request_uri\":\"/ignored\",\"status\":301,\"bytes_sent\":\"99\"}",
+                    "10.0.0.4|1664064000|HEAD|/h|301|99|null|"},
+            {"json-template", "{\"request_time\":0.5,\"upstream_response_time\":\"0.4\",\"remote_addr\":\"10.0.0.5\","
+                    + "\"time_iso8601\":\"2022-09-25T03:00:00+0300\",\"request_method\":\"DELETE\",\"request_uri\":\"/d\","
+                    + "\"status\":204,\"body_bytes_sent\":0,\"http_referer\":\"-\",\"http_user_agent\":\"ua\",\"host\":\"x\"}",
+                    "10.0.0.5|1664064000|DELETE|/d|204|0|null|ua"},
+    };
+
+    // Строки, которые должны отклоняться
+    private static final String[][] REJECTED = {
+            {"combined-template", "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 2x0 5 \"-\" \"ua\""},
+            {"combined-template", "10.0.0.1 - - [31/Feb/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\""},
+            {"combined-template", "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET /\" 200 5 \"-\" \"ua\""},
+            {"common", "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200"},
+            {"custom", "10.0.0.1 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\""},
+            {"json", "{\"remote_addr\":\"10.0.0.1\",\"status\":200,\"request_uri\":\"/\"}"},
+            {"json", "{\"remote_addr\":\"10.0.0.1\",\"msec\":\"1.5\",\"request_uri\":\"/\",\"status\":\"2xx\"}"},
+            {"json", "{\"remote_addr\":\"10.0.0.1\",\"msec\":\"1.5\",\"request_uri\":\"/\\q\",\"status\":200}"},
+            {"json", "{\"remote_addr\":\"10.0.0.1\",\"msec\":\"1.5\",\"request_uri\":\"/\",\"status\":200"},
+            {"json", "[\"remote_addr\"]"},
+            {"json", "{\"remote_addr\":\"10.0.0.1\",\"time_iso8601\":\"\",\"request_uri\":\"/\",\"status\":200}"},
+            {"json", "{\"remote_addr\":\"10.0.0.1\",\"time_iso8601\":\"2022-09-25T00:00\",\"request_uri\":\"/\",\"status\":200}"},
+    };
+
+    // Строка, её формат и ожидаемое время в микросекундах (-1 - времени нет)
+    private static final String[][] REQUEST_TIMES = {
+            {"combined", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\" 0.000", "0"},
+            {"combined", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\" 12 0.011", "12000000"},
+            {"combined", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\" 1.2345678", "1234567"},
+            {"combined", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\"", "-1"},
+            {"combined", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\" -", "-1"},
+            {"combined", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\" 1.", "-1"},
+            {"combined", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\" host=x", "-1"},
+            {"custom", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\" rt=0.25 uct=\"-\" urt=\"-\" host=x", "250000"},
+            {"custom", "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 5 \"-\" \"ua\" rt=- uct=\"-\" urt=\"-\" host=x", null},
+            {"json", "{\"remote_addr\":\"1.2.3.4\",\"msec\":\"1.5\",\"request_uri\":\"/\",\"status\":200,\"request_time\":\"0.5\"}", "500000"},
+            {"json", "{\"remote_addr\":\"1.2.3.4\",\"msec\":\"1.5\",\"request_uri\":\"/\",\"status\":200,\"request_time\":null}", "-1"},
+            {"json", "{\"remote_addr\":\"1.2.3.4\",\"msec\":\"1.5\",\"request_uri\":\"/\",\"status\":200,\"request_time\":-1}", null},
+    };
+
+    // Поля каждой строки во всех форматах, разобранной из String и из ByteSlice, совпадают
+    // с разбором combined (в common нет referer и User-Agent)
+    static void testMatchesCombined() {
+        String[] combined = new LogGenerator(42).lines(10_000);
+        String[][] corpus = FormatBenchmark.corpus(combined);
+        LogTokenizer reference = LogFormat.combined().newTokenizer();
+        ByteSlice slice = new ByteSlice();
+        for (int f = 0; f < FormatBenchmark.NAMES.length; f++) {
+            String name = FormatBenchmark.NAMES[f];
+            LogTokenizer tokenizer = FormatBenchmark.format(name).newTokenizer();
+            for (int i = 0; i < combined.length; i++) {
+                String expected = describe(new LogEntry(combined[i], reference));
+                String wanted = name.equals("common") ? withoutAgent(expected) : expected;
+                String actual = describe(new LogEntry(corpus[f][i], tokenizer));
+                Checks.check(actual.equals(wanted), name + ": " + actual + " вместо " + wanted + " для " + corpus[f][i]);
+                byte[] bytes = corpus[f][i].getBytes(StandardCharsets.UTF_8);
+                slice.set(bytes, 0, bytes.length);
+                Checks.check(describe(new LogEntry(slice, tokenizer)).equals(wanted),
+                        name + ": разбор байтов расходится со строкой для " + corpus[f][i]);
+            }
+        }
+    }
+
+    static void testAccepted() {
+        for (String[] accepted : ACCEPTED) {
+            LogTokenizer tokenizer = FormatBenchmark.format(accepted[0]).newTokenizer();
+            Checks.check(tokenizer.tokenize(accepted[1]) && describe(tokenizer).equals(accepted[2]),
+                    accepted[0] + ": неожиданный разбор " + accepted[1]);
+        }
+    }
+
+    static void testRejected() {
+        for (String[] rejected : REJECTED) {
+            Checks.check(!FormatBenchmark.format(rejected[0]).newTokenizer().tokenize(rejected[1]),
+                    rejected[0] + ": строка должна отклоняться: " + rejected[1]);
+        }
+    }
+
+    // Время ответа одинаково в combined с числом в конце, расширенном текстовом формате
+    // и JSON и совпадает с записанным в строке
+    static void testRequestTime() {
+        String[] combined = new LogGenerator(42).lines(10_000);
+        String[] timed = LogGenerator.reformat(combined, "timed", 7);
+        String[] json = LogGenerator.reformat(combined, "json", 7);
+        String[] names = {"combined", "custom", "json-template", "json"};
+        String[][] corpus = {timed, LogGenerator.reformat(combined, "custom", 7), json, json};
+        for (int f = 0; f < names.length; f++) {
+            LogTokenizer tokenizer = FormatBenchmark.format(names[f]).newTokenizer();
+            for (int i = 0; i < combined.length; i++) {
+                long expected = Math.round(Double.parseDouble(timed[i].substring(timed[i].lastIndexOf(' ') + 1)) * 1e6);
+                long actual = new LogEntry(corpus[f][i], tokenizer).getRequestTimeMicros();
+                Checks.check(actual == expected, names[f] + ": " + actual + " мкс вместо " + expected + " для " + corpus[f][i]);
+            }
+        }
+        for (String[] line : REQUEST_TIMES) {
+            LogTokenizer tokenizer = FormatBenchmark.format(line[0]).newTokenizer();
+            boolean parsed = tokenizer.tokenize(line[1]);
+            Checks.check(line[2] == null ? !parsed : parsed && tokenizer.requestTimeMicros() == Long.parseLong(line[2]),
+                    line[0] + ": неожиданный разбор " + line[1]);
+        }
+    }
+
+    private static String describe(LogEntry entry) {
+        return entry.getIpAddress() + "|" + entry.getEpochSecond() + "|" + entry.getMethod() + "|" + entry.getPath()
+                + "|" + entry.getResponseCode() + "|" + entry.getDataSize() + "|" + entry.getReferer() + "|"
+                + entry.getUserAgent().getOs() + "/" + entry.getUserAgent().getBrowser() + "/" + entry.getUserAgent().isBot();
+    }
+
+    private static String describe(LogTokenizer tokenizer) {
+        return tokenizer.ipAddress() + "|" + tokenizer.epochSecond() + "|" + tokenizer.method() + "|" + tokenizer.path()
+                + "|" + tokenizer.responseCode() + "|" + tokenizer.dataSize() + "|" + tokenizer.referer() + "|"
+                + tokenizer.userAgentString();
+    }
+
+    // В common нет referer и User-Agent: они как у пустого User-Agent
+    private static String withoutAgent(String described) {
+        UserAgent empty = new UserAgent("");
+        String prefix = described.substring(0, described.lastIndexOf('|', described.lastIndexOf('|') - 1));
+        return prefix + "|null|" + empty.getOs() + "/" + empty.getBrowser() + "/" + empty.isBot();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+// Статистика по колоночному индексу против статистики по тексту лога
+class LogIndexTest {
+    // Строки с временем ответа, чтобы сравнивались и его квантили
+    static void testMatchesText() throws Exception {
+        String[] lines = LogGenerator.reformat(new LogGenerator(42).lines(20_000), "timed", 7);
+        Path directory = Files.createTempDirectory("index");
+        Path log = directory.resolve("access.log");
+        Path index = LogIndex.defaultPath(log);
+        try {
+            Files.write(log, Arrays.asList(lines));
+            Checks.check(LogIndex.build(log, index, 1024) == lines.length && LogIndex.isIndex(index), "индекс содержит не все строки");
+            Statistics indexed = new Statistics();
+            Checks.check(LogIndex.load(index, indexed) == lines.length, "загружены не все строки");
+            Checks.compare("индекс", Checks.statistics(Checks.entries(lines)), indexed);
+        } finally {
+            Files.deleteIfExists(index);
+            Files.deleteIfExists(log);
+            Files.delete(directory);
+        }
+    }
+
+    // Индекс лога, который изменился после построения, отвергается
+    static void testRejectsStale() throws Exception {
+        Path directory = Files.createTempDirectory("index");
+        Path log = directory.resolve("access.log");
+        Path index = LogIndex.defaultPath(log);
+        try {
+            Files.write(log, Arrays.asList(new LogGenerator(1).lines(100)));
+            LogIndex.build(log, index, 1024);
+            Files.write(log, Arrays.asList(new LogGenerator(2).lines(101)));
+            Checks.check(rejected(index), "устаревший индекс прочитан");
+        } finally {
+            Files.deleteIfExists(index);
+            Files.deleteIfExists(log);
+            Files.delete(directory);
+        }
+    }
+
+    // Каждая усечённая копия индекса отвергается с IOException; копия с испорченными байтами
+    // либо отвергается так же, либо читается без других исключений
+    static void testRejectsDamaged() throws Exception {
+        Path directory = Files.createTempDirectory("index");
+        Path log = directory.resolve("access.log");
+        Path index = LogIndex.defaultPath(log);
+        Path copy = directory.resolve("copy.idx");
+        try {
+            Files.write(log, Arrays.asList(LogGenerator.reformat(new LogGenerator(3).lines(1000), "timed", 3)));
+            LogIndex.build(log, index, 1024);
+            byte[] bytes = Files.readAllBytes(index);
+            for (int length = 0; length < bytes.length; length += 1 + length / 16) {
+                Files.write(copy, Arrays.copyOf(bytes, length));
+                Checks.check(rejected(copy), "индекс, усечённый до " + length + " байт, прочитан");
+            }
+            Random random = new Random(11);
+            for (int round = 0; round < 1000; round++) {
+                byte[] corrupted = bytes.clone();
+                for (int i = 1 + random.nextInt(4); i > 0; i--) {
+                    corrupted[random.nextInt(corrupted.length)] = (byte) random.nextInt(256);
+                }
+                Files.write(copy, corrupted);
+                rejected(copy);
+            }
+        } finally {
+            Files.deleteIfExists(copy);
+            Files.deleteIfExists(index);
+            Files.deleteIfExists(log);
+            Files.delete(directory);
+        }
+    }
+
+    // true, если индекс отвергнут с IOException; любое другое исключение - ошибка проверки
+    private static boolean rejected(Path index) {
+        try {
+            LogIndex.load(index, new Statistics());
+            return false;
+        } catch (IOException e) {
+            return true;
+        } catch (RuntimeException | OutOfMemoryError e) {
+            throw new IllegalStateException("повреждённый индекс вызвал " + e, e);
+        }
+    }
+}
\ No newline at end of file
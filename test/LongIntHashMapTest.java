@@ -0,0 +1,38 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// LongIntHashMap против HashMap<Long, Integer>
+class LongIntHashMapTest {
+    // Случайные ключи из узкого и полного диапазонов, включая 0 и крайние значения,
+    // с положительными приращениями; таблица растёт через несколько удвоений
+    static void testMatchesHashMap() {
+        Random random = new Random(1);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        long[] special = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (int i = 0; i < 200_000; i++) {
+            long key = i < special.length ? special[i] : i % 2 == 0 ? random.nextInt(5_000) : random.nextLong();
+            int delta = 1 + random.nextInt(10);
+            int value = expected.merge(key, delta, Integer::sum);
+            Checks.check(map.add(key, delta) == value, "add(" + key + ") вернул не " + value);
+        }
+        Map<Long, Integer> actual = new HashMap<>();
+        map.forEach((key, value) -> Checks.check(actual.put(key, value) == null, "ключ " + key + " встретился дважды"));
+        int max = expected.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        Checks.check(actual.equals(expected) && map.size() == expected.size() && map.maxValue() == max
+                && map.get(12_345_678_901L) == 0, "обход расходится с HashMap");
+        for (long key : expected.keySet()) {
+            Checks.check(map.get(key) == expected.get(key), "get(" + key + ") вернул " + map.get(key));
+        }
+    }
+
+    static void testClear() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (long key = 0; key < 1_000; key++) {
+            map.add(key * 31, 1);
+        }
+        map.clear();
+        Checks.check(map.isEmpty() && map.get(0) == 0 && map.add(0, 3) == 3 && map.size() == 1, "после clear таблица не пуста");
+    }
+}
\ No newline at end of file
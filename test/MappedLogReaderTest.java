@@ -0,0 +1,113 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// MappedLogReader и LineSplitter против BufferedReader.readLine
+class MappedLogReaderTest {
+    static void testMatchesBufferedReader() throws Exception {
+        String[] lines = LogGenerator.reformat(new LogGenerator(42).lines(20_000), "timed", 7);
+        Path file = Files.createTempFile("access", ".log");
+        try {
+            Files.write(file, Arrays.asList(lines));
+            Statistics buffered = new Statistics();
+            LogTokenizer tokenizer = LogFormat.combined().newTokenizer();
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    buffered.addEntry(new LogEntry(line, tokenizer));
+                }
+            }
+            Statistics mapped = new Statistics();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                int count = new MappedLogReader(1024).read(channel, 0, channel.size(),
+                        line -> mapped.addEntry(new LogEntry(line, tokenizer)));
+                Checks.check(count == lines.length, "прочитано строк: " + count);
+            }
+            Checks.compare("mmap", buffered, mapped);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Порции случайного размера от одного байта, так что "\r\n", многобайтовые символы
+    // и строки длиннее блока разрезаются в любом месте
+    static void testChunkBoundaries() {
+        Random random = new Random(3);
+        String[] separators = {"\n", "\r", "\r\n"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            int length = i % 500 == 0 ? 100_000 + random.nextInt(100_000) : random.nextInt(200);
+            for (int j = 0; j < length; j++) {
+                text.append(j % 7 == 0 ? 'ж' : (char) ('a' + random.nextInt(26)));
+            }
+            text.append(separators[random.nextInt(separators.length)]);
+        }
+        text.append("последняя строка без перевода");
+        List<String> expected = readLines(text.toString());
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        for (int maxChunk : new int[]{1, 7, 4096, 1 << 20}) {
+            List<String> actual = new ArrayList<>();
+            LineSplitter splitter = new LineSplitter(Integer.MAX_VALUE, line -> actual.add(line.toString()));
+            for (int pos = 0; pos < bytes.length; ) {
+                int size = Math.min(bytes.length - pos, 1 + random.nextInt(maxChunk));
+                splitter.accept(ByteBuffer.wrap(bytes, pos, size));
+                pos += size;
+            }
+            Checks.check(splitter.finish() == expected.size() && actual.equals(expected),
+                    "порции до " + maxChunk + " байт: строк " + actual.size() + " вместо " + expected.size());
+        }
+    }
+
+    // Слишком длинная строка - ошибка, а с обработчиком tooLong пропускается только она,
+    // в том числе когда она длиннее блока
+    static void testTooLongLine() {
+        String text = "a\n" + "b".repeat(50) + "\r\n" + "c".repeat(200_000) + "\nd";
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        try {
+            LineSplitter splitter = new LineSplitter(40, line -> { });
+            splitter.accept(bytes.duplicate());
+            splitter.finish();
+            throw new IllegalStateException("слишком длинная строка принята");
+        } catch (Main.LineTooLongException expected) {
+            // ожидаемо
+        }
+        List<String> lines = new ArrayList<>();
+        int[] skipped = new int[1];
+        LineSplitter splitter = new LineSplitter(40, line -> lines.add(line.toString()), () -> skipped[0]++);
+        splitter.accept(bytes.duplicate());
+        Checks.check(splitter.finish() == 4 && lines.equals(List.of("a", "d")) && skipped[0] == 2,
+                "пропуск длинных строк: " + lines + ", пропущено " + skipped[0]);
+    }
+
+    // Ограничение длины - в символах, а не в байтах UTF-8
+    static void testLengthInChars() {
+        List<String> lines = new ArrayList<>();
+        LineSplitter splitter = new LineSplitter(10, line -> lines.add(line.toString()));
+        splitter.accept(ByteBuffer.wrap("жжжжжжжжжж\n".getBytes(StandardCharsets.UTF_8)));
+        Checks.check(splitter.finish() == 1 && lines.equals(List.of("жжжжжжжжжж")), "строка из 10 символов: " + lines);
+    }
+
+    private static List<String> readLines(String text) {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return lines;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+// Приём NetworkListener через loopback против последовательной Statistics
+class NetworkListenerTest {
+    // По TCP сообщения не теряются: строки с заголовками RFC 5424 и без них дают ту же статистику
+    static void testTcpMatchesSerial() throws Exception {
+        String[] lines = new LogGenerator(3).lines(20_000);
+        ConcurrentStatistics statistics = new ConcurrentStatistics();
+        try (NetworkListener listener = new NetworkListener(statistics, 2, 1024)) {
+            int port = listener.bindTcp(new InetSocketAddress("127.0.0.1", 0));
+            listener.start();
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port))) {
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < lines.length; i++) {
+                    String header = i % 4 == 0 ? "<190>1 2022-09-25T00:00:00Z lb1 nginx - - - "
+                            : i % 4 == 1 ? "<190>1 2022-09-25T00:00:00Z lb1 nginx 12 - [id k=\"a\\]b\"] " : "";
+                    text.append(header).append(lines[i]).append('\n');
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            awaitProcessed(listener);
+            Checks.check(listener.getReceived() == lines.length && listener.getParsed() == lines.length,
+                    "получено " + listener.getReceived() + ", разобрано " + listener.getParsed());
+        }
+        Checks.compare("TCP", Checks.statistics(Checks.entries(lines)), statistics.merged());
+    }
+
+    // По UDP часть датаграмм может потеряться, но каждая полученная учтена ровно один раз
+    static void testUdpAccounting() throws Exception {
+        String[] lines = new LogGenerator(5).lines(2_000);
+        ConcurrentStatistics statistics = new ConcurrentStatistics();
+        try (NetworkListener listener = new NetworkListener(statistics, 2, 1024)) {
+            int port = listener.bindUdp(new InetSocketAddress("127.0.0.1", 0));
+            listener.start();
+            try (DatagramChannel channel = DatagramChannel.open()) {
+                channel.connect(new InetSocketAddress("127.0.0.1", port));
+                for (int i = 0; i < lines.length; i++) {
+                    channel.write(ByteBuffer.wrap(("<190>Sep 25 00:00:00 lb1 nginx: " + lines[i])
+                            .getBytes(StandardCharsets.UTF_8)));
+                    if (i % 100 == 99) {
+                        Thread.sleep(1);
+                    }
+                }
+            }
+            awaitProcessed(listener);
+            Checks.check(listener.getReceived() > 0 && listener.getReceived() <= lines.length
+                            && listener.getFailed() == 0 && statistics.getTotalVisits() == listener.getParsed(),
+                    "получено " + listener.getReceived() + ", разобрано " + listener.getParsed() + ", с ошибками "
+                            + listener.getFailed() + ", учтено " + statistics.getTotalVisits());
+        }
+    }
+
+    // Заголовки syslog обоих видов отрезаются, строка без заголовка остаётся целиком
+    static void testPayloadStart() {
+        String line = "1.2.3.4 - - [25/Sep/2022:00:00:00 +0300] \"GET / HTTP/1.1\" 200 1 \"-\" \"-\"";
+        String[] headers = {"", "<190>Sep 25 00:00:00 lb1 nginx: ", "<13>1 2022-09-25T00:00:00Z lb1 nginx 12 ID - ",
+                "<13>1 - - - - - [a b=\"]\"][c d=\"\\\"\"] ", "<13>1 - - - - - - \u00EF\u00BB\u00BF"};
+        for (String header : headers) {
+            Checks.check(NetworkListener.payloadStart(header + line) == header.length(), "заголовок " + header);
+        }
+        for (String text : new String[]{"<190", "<>x", "<12345>x"}) {
+            Checks.check(NetworkListener.payloadStart(text) == 0, "не заголовок " + text);
+        }
+    }
+
+    // Ждёт, пока все полученные сообщения разобраны и новые перестали приходить
+    private static void awaitProcessed(NetworkListener listener) throws InterruptedException {
+        long previous = -1;
+        while (true) {
+            Thread.sleep(200);
+            long received = listener.getReceived();
+            long handled = listener.getParsed() + listener.getFailed() + listener.getDropped();
+            if (received == handled && received == previous) {
+                return;
+            }
+            previous = received;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+// Разбор одного файла в несколько потоков против последовательного чтения
+class ParallelLogProcessorTest {
+    static void testMatchesSerial() throws Exception {
+        String[] lines = LogGenerator.reformat(new LogGenerator(42).lines(20_000), "timed", 7);
+        Path file = Files.createTempFile("access", ".log");
+        try {
+            Files.write(file, Arrays.asList(lines));
+            Map<String, String> expected = Checks.fields(readSerially(file));
+            for (int workers = 1; workers <= 8; workers++) {
+                Statistics statistics = new Statistics();
+                int processed = ParallelLogProcessor.process(file.toString(), statistics, workers, 1024);
+                Checks.check(processed == lines.length, "потоков " + workers + ": строк " + processed);
+                Checks.compare("потоков " + workers, expected, Checks.fields(statistics));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Концы строк "\r", "\n" и "\r\n" вперемешку и только "\r" при любом числе потоков,
+    // в том числе когда граница диапазона приходится между "\r" и "\n"
+    static void testLineEndings() throws Exception {
+        String[] lines = new LogGenerator(5).lines(1000);
+        String[][] separators = {{"\n", "\r", "\r\n"}, {"\r"}};
+        Random random = new Random(5);
+        Path file = Files.createTempFile("endings", ".log");
+        try {
+            for (String[] choice : separators) {
+                StringBuilder text = new StringBuilder();
+                for (String line : lines) {
+                    text.append(line).append(choice[random.nextInt(choice.length)]);
+                }
+                Files.writeString(file, text);
+                Map<String, String> expected = Checks.fields(readSerially(file));
+                String name = Arrays.toString(choice).replace("\r", "\\r").replace("\n", "\\n");
+                for (int workers = 2; workers <= 33; workers++) {
+                    Statistics statistics = new Statistics();
+                    int processed = ParallelLogProcessor.process(file.toString(), statistics, workers, 1024);
+                    Checks.check(processed == lines.length, "концы строк " + name + ", потоков " + workers + ": строк " + processed);
+                    Checks.compare("концы строк " + name + ", потоков " + workers, expected, Checks.fields(statistics));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Statistics readSerially(Path file) throws IOException {
+        Statistics statistics = new Statistics();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                statistics.addEntry(new LogEntry(line));
+            }
+        }
+        return statistics;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// Счета SpaceSaving против точных
+class SpaceSavingTest {
+    // Поток с тяжёлым хвостом делится на две части; у каждой части и у их объединения
+    // каждый отчётный счёт лежит в [точный, точный + ошибка], ошибка не больше maxError,
+    // а значения чаще total / capacity присутствуют в отчёте
+    static void testBoundsAndMerge() {
+        int capacity = 100;
+        Random random = new Random(2);
+        SpaceSaving[] parts = {new SpaceSaving(capacity), new SpaceSaving(capacity)};
+        List<Map<String, Long>> exact = List.of(new HashMap<>(), new HashMap<>());
+        for (int i = 0; i < 200_000; i++) {
+            String value = "/page/" + (int) (Math.pow(random.nextDouble(), 4) * 20_000);
+            long weight = 1 + random.nextInt(3);
+            int part = i % 3 == 0 ? 1 : 0;
+            parts[part].add(value, weight);
+            exact.get(part).merge(value, weight, Long::sum);
+        }
+        Map<String, Long> total = new HashMap<>(exact.get(0));
+        exact.get(1).forEach((value, count) -> total.merge(value, count, Long::sum));
+        checkBounds("первая часть", parts[0], exact.get(0));
+        checkBounds("вторая часть", parts[1], exact.get(1));
+        parts[0].merge(parts[1]);
+        checkBounds("объединение", parts[0], total);
+    }
+
+    // Приближённая статистика на том же потоке, что и точная: оценка уникальных IP
+    // в пределах четырёх стандартных ошибок, счета частых IP и страниц не занижены
+    // и завышены не больше своей ошибки
+    static void testApproximateStatistics() {
+        Random random = new Random(11);
+        Statistics approximate = Statistics.approximate(256 * 1024);
+        Map<String, Long> ips = new HashMap<>();
+        Map<String, Long> pages = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            int ip = (int) (Math.pow(random.nextDouble(), 4) * 1_000_000);
+            String address = "10." + (ip >>> 16 & 0xFF) + "." + (ip >>> 8 & 0xFF) + "." + (ip & 0xFF);
+            String page = "/page/" + (int) (Math.pow(random.nextDouble(), 4) * 500_000);
+            approximate.addEntry(new LogEntry(address + " - - [25/Sep/2022:06:" + String.format("%02d:%02d", i / 60 % 60, i % 60)
+                    + " +0300] \"GET " + page + " HTTP/1.0\" 200 10 \"-\" \"Mozilla/5.0 (Windows NT 10.0) Chrome/120.0\""));
+            ips.merge(address, 1L, Long::sum);
+            pages.merge(page, 1L, Long::sum);
+        }
+        double error = Math.abs(approximate.getUniqueNonBotIps() - ips.size()) / (double) ips.size();
+        Checks.check(error <= 4 * approximate.getUniqueIpsRelativeError(),
+                "уникальных IP " + approximate.getUniqueNonBotIps() + " вместо " + ips.size());
+        checkTop("IP", approximate.getTopIps(10), ips);
+        checkTop("страниц", approximate.getTopPages(10), pages);
+    }
+
+    private static void checkTop(String name, List<HeavyHitter> top, Map<String, Long> exact) {
+        Checks.check(top.size() == 10, "топ " + name + ": " + top.size() + " значений");
+        for (HeavyHitter hitter : top) {
+            long actual = exact.getOrDefault(hitter.getValue(), 0L);
+            Checks.check(hitter.getCount() >= actual && hitter.getCount() - hitter.getMaxError() <= actual,
+                    "топ " + name + ": " + hitter + " при точном счёте " + actual);
+        }
+    }
+
+    private static void checkBounds(String name, SpaceSaving sketch, Map<String, Long> exact) {
+        long sum = exact.values().stream().mapToLong(Long::longValue).sum();
+        Set<String> reported = new HashSet<>();
+        for (HeavyHitter hitter : sketch.top(sketch.capacity())) {
+            long actual = exact.getOrDefault(hitter.getValue(), 0L);
+            Checks.check(hitter.getCount() >= actual && hitter.getCount() - hitter.getMaxError() <= actual
+                    && hitter.getMaxError() <= sketch.maxError(), name + ": " + hitter + " при точном счёте " + actual);
+            reported.add(hitter.getValue());
+        }
+        exact.forEach((value, count) -> Checks.check(count <= sum / sketch.capacity() || reported.contains(value),
+                name + ": потеряно частое значение " + value + " (" + count + ")"));
+    }
+}
\ No newline at end of file
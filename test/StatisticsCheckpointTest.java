@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+// Запись и чтение StatisticsCheckpoint и продолжение слежения LogFollower с её позиции
+class StatisticsCheckpointTest {
+    // Точная и приближённая статистика с позицией в файле переживают запись и чтение
+    static void testRoundTrip() throws IOException {
+        String[] lines = LogGenerator.reformat(new LogGenerator(42).lines(20_000), "timed", 7);
+        Path directory = Files.createTempDirectory("checkpoint");
+        Path log = directory.resolve("access.log");
+        Path checkpoint = directory.resolve("state.ckpt");
+        Files.write(log, Arrays.asList(lines));
+        try {
+            for (Statistics statistics : new Statistics[]{new Statistics(), Statistics.approximate(1 << 20)}) {
+                for (LogEntry entry : Checks.entries(lines)) {
+                    statistics.addEntry(entry);
+                }
+                long position = Files.size(log) / 2;
+                StatisticsCheckpoint.write(checkpoint, statistics, List.of(StatisticsCheckpoint.FileOffset.of(log, "key", position)));
+                StatisticsCheckpoint restored = StatisticsCheckpoint.read(checkpoint);
+                String mode = statistics.isApproximate() ? "приближённый режим" : "точный режим";
+                Checks.compare(mode, statistics, restored.getStatistics());
+                Checks.check(restored.getStatistics().isApproximate() == statistics.isApproximate()
+                        && restored.getOffsets().size() == 1 && restored.getOffsets().get(0).getOffset() == position
+                        && restored.getOffsets().get(0).matches(log, "key"), mode + ": позиция не восстановилась");
+            }
+        } finally {
+            Files.deleteIfExists(checkpoint);
+            Files.delete(log);
+            Files.delete(directory);
+        }
+    }
+
+    // Худший случай для размера: каждый IP, страница и секунда встречаются один раз
+    static void testDistinctKeys() throws IOException {
+        Path checkpoint = Files.createTempFile("checkpoint", ".ckpt");
+        try {
+            Statistics statistics = CheckpointBenchmark.distinctKeys(60_000);
+            StatisticsCheckpoint.write(checkpoint, statistics, List.of());
+            Checks.compare("различные ключи", statistics, StatisticsCheckpoint.read(checkpoint).getStatistics());
+        } finally {
+            Files.delete(checkpoint);
+        }
+    }
+
+    // Усечённая, испорченная, чужая и с подделанной длиной контрольная точка отвергается с IOException
+    static void testRejectsDamaged() throws IOException {
+        Path checkpoint = Files.createTempFile("checkpoint", ".ckpt");
+        try {
+            Statistics statistics = Checks.statistics(Checks.entries(new LogGenerator(43).lines(5_000)));
+            StatisticsCheckpoint.write(checkpoint, statistics, List.of());
+            byte[] bytes = Files.readAllBytes(checkpoint);
+            for (int length : new int[]{0, 7, bytes.length / 2, bytes.length - 1}) {
+                Files.write(checkpoint, Arrays.copyOf(bytes, length));
+                expectRejected(checkpoint, "усечённая до " + length + " байт");
+            }
+            bytes[bytes.length - 9] ^= 0x40;
+            Files.write(checkpoint, bytes);
+            expectRejected(checkpoint, "с испорченным байтом");
+
+            Files.writeString(checkpoint, "not a checkpoint");
+            expectRejected(checkpoint, "чужая");
+            // Заголовок, точный режим, одна позиция с путём длиной в четыре гигабайта
+            Files.write(checkpoint, new byte[]{0x41, 0x4C, 0x43, 0x50, 0, 0, 0, 2, 0, 1,
+                    (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'a'});
+            expectRejected(checkpoint, "с подделанной длиной");
+        } finally {
+            Files.delete(checkpoint);
+        }
+    }
+
+    // Первый LogFollower читает половину файла и останавливается, записав контрольную точку;
+    // после дописывания второй продолжает с её позиции, и итог совпадает с разбором всего файла
+    static void testResume() throws Exception {
+        String[] lines = new LogGenerator(23).lines(20_000);
+        Path directory = Files.createTempDirectory("checkpoint");
+        Path log = directory.resolve("access.log");
+        Path checkpoint = directory.resolve("state.ckpt");
+        try {
+            Files.write(log, Arrays.asList(lines).subList(0, lines.length / 2));
+            follow(log, new Statistics(), checkpoint, false, lines.length / 2);
+            Files.write(log, Arrays.asList(lines).subList(lines.length / 2, lines.length), StandardOpenOption.APPEND);
+            Statistics resumed = new Statistics();
+            resumed.merge(StatisticsCheckpoint.read(checkpoint).getStatistics());
+            follow(log, resumed, checkpoint, true, lines.length - lines.length / 2);
+            Checks.compare("продолжение", Checks.statistics(Checks.entries(lines)),
+                    StatisticsCheckpoint.read(checkpoint).getStatistics());
+        } finally {
+            Files.deleteIfExists(checkpoint);
+            Files.deleteIfExists(log);
+            Files.delete(directory);
+        }
+    }
+
+    // Читает файл в отдельном потоке, пока не обработано lines строк, затем останавливает
+    // чтение с записью последней контрольной точки
+    private static void follow(Path log, Statistics statistics, Path checkpoint, boolean resume, long lines) throws Exception {
+        LogFollower follower = new LogFollower(log, statistics, 4096, 60_000);
+        if (resume) {
+            Checks.check(follower.resume(StatisticsCheckpoint.read(checkpoint).getOffsets()) >= 0,
+                    "позиция контрольной точки не подошла к файлу");
+        }
+        follower.enableCheckpoints(checkpoint, 3_600_000);
+        Thread thread = new Thread(() -> {
+            try {
+                follower.run();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        while (follower.getProcessedLines() < lines) {
+            Thread.sleep(10);
+        }
+        follower.stop();
+        thread.join();
+        Checks.check(follower.getProcessedLines() == lines, "прочитано строк: " + follower.getProcessedLines());
+    }
+
+    private static void expectRejected(Path checkpoint, String description) {
+        try {
+            StatisticsCheckpoint.read(checkpoint);
+        } catch (IOException e) {
+            return;
+        }
+        throw new IllegalStateException("Прочитана контрольная точка " + description);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Объединение частичных статистик против последовательного прохода
+class StatisticsTest {
+    // Части подряд и вперемешку, объединённые в прямом и обратном порядке
+    static void testMergeInAnyOrder() {
+        LogEntry[] entries = Checks.entries(LogGenerator.reformat(new LogGenerator(42).lines(20_000), "timed", 7));
+        Map<String, String> expected = Checks.fields(Checks.statistics(entries));
+        int parts = 5;
+        for (boolean interleaved : new boolean[]{false, true}) {
+            List<Statistics> partial = new ArrayList<>();
+            for (int p = 0; p < parts; p++) {
+                Statistics part = new Statistics();
+                for (int i = 0; i < entries.length; i++) {
+                    if ((interleaved ? i % parts : (long) i * parts / entries.length) == p) {
+                        part.addEntry(entries[i]);
+                    }
+                }
+                partial.add(part);
+            }
+            Statistics forward = new Statistics();
+            Statistics backward = new Statistics();
+            for (int p = 0; p < parts; p++) {
+                forward.merge(partial.get(p));
+                backward.merge(partial.get(parts - 1 - p));
+            }
+            String name = "объединение частей" + (interleaved ? " вперемешку" : " подряд");
+            Checks.compare(name, expected, Checks.fields(forward));
+            Checks.compare(name + " в обратном порядке", expected, Checks.fields(backward));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Запуск проверок без внешних библиотек: в каждом классе из аргументов по алфавиту вызываются
+// статические методы без параметров, имена которых начинаются с test. Проверка не пройдена,
+// если метод бросил исключение; остальные проверки всё равно выполняются, а код возврата - 1.
+//   gradle test
+//   java -cp out TestRunner LogIndexTest [класс...]
+public class TestRunner {
+    public static void main(String[] args) throws Exception {
+        int passed = 0;
+        List<String> failed = new ArrayList<>();
+        for (String className : args) {
+            Method[] methods = Class.forName(className).getDeclaredMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                if (!isTest(method)) {
+                    continue;
+                }
+                String name = className + "." + method.getName();
+                method.setAccessible(true);
+                long start = System.nanoTime();
+                try {
+                    method.invoke(null);
+                    passed++;
+                    System.out.printf("OK     %s (%d мс)%n", name, (System.nanoTime() - start) / 1_000_000);
+                } catch (InvocationTargetException e) {
+                    failed.add(name);
+                    System.out.println("ОШИБКА " + name);
+                    e.getCause().printStackTrace(System.out);
+                }
+            }
+        }
+        System.out.printf("Проверок пройдено: %d, не пройдено: %d%n", passed, failed.size());
+        if (!failed.isEmpty()) {
+            System.out.println("Не пройдены: " + String.join(", ", failed));
+            System.exit(1);
+        }
+    }
+
+    private static boolean isTest(Method method) {
+        return method.getName().startsWith("test") && Modifier.isStatic(method.getModifiers())
+                && method.getParameterCount() == 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Временные ряды TimeRollup против подсчёта по каждой записи
+class TimeRollupTest {
+    private static final long START = 1_664_064_000L;
+
+    // Записи за 20 часов в случайном порядке: все попадают в минутный ряд, поэтому каждый
+    // интервал каждого шага, включая пик в секунду, равен подсчёту по записям
+    static void testSeriesMatchBruteForce() {
+        Random random = new Random(4);
+        long[][] events = new long[50_000][];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new long[]{START + random.nextInt(20 * 3600), random.nextInt(5) == 0 ? 1 : 0,
+                    new int[]{200, 200, 404, 503}[random.nextInt(4)], random.nextInt(10_000)};
+        }
+        TimeRollup rollup = new TimeRollup();
+        for (long[] event : events) {
+            rollup.add(event[0], event[1] == 1, (int) event[2], event[3]);
+        }
+        for (TimeGranularity granularity : TimeGranularity.values()) {
+            int width = granularity.getSeconds();
+            Map<Long, long[]> expected = new HashMap<>();
+            Map<Long, Integer> perSecond = new HashMap<>();
+            for (long[] event : events) {
+                long[] bucket = expected.computeIfAbsent(Math.floorDiv(event[0], width), key -> new long[6]);
+                if (event[1] == 1) {
+                    bucket[1]++;
+                } else {
+                    bucket[0]++;
+                    int visits = perSecond.merge(event[0], 1, Integer::sum);
+                    bucket[5] = Math.max(bucket[5], visits);
+                }
+                if (event[2] >= 500) {
+                    bucket[3]++;
+                } else if (event[2] >= 400) {
+                    bucket[2]++;
+                }
+                bucket[4] += event[3];
+            }
+            List<TimeBucket> series = rollup.series(granularity, START, START + 20 * 3600);
+            long total = 0;
+            for (TimeBucket bucket : series) {
+                long[] counts = expected.getOrDefault(bucket.getStart().toEpochSecond(ZoneOffset.UTC) / width, new long[6]);
+                Checks.check(bucket.getVisits() == counts[0] && bucket.getBotVisits() == counts[1]
+                                && bucket.getClientErrors() == counts[2] && bucket.getServerErrors() == counts[3]
+                                && bucket.getTraffic() == counts[4] && bucket.getPeakVisitsPerSecond() == counts[5],
+                        granularity + " " + bucket + " при подсчёте " + Arrays.toString(counts));
+                total += bucket.getVisits() + bucket.getBotVisits();
+            }
+            Checks.check(total == events.length, granularity + ": в ряду " + total + " записей");
+            Checks.check(rollup.lateEntries() == 0, "опоздавших записей: " + rollup.lateEntries());
+        }
+    }
+
+    // Вторая часть содержит минуты, которые при объединении оказываются старше суток от самой
+    // новой минуты первой части: они должны учитываться как опоздавшие, как при подряд идущих записях
+    static void testLateEntriesAfterMerge() {
+        long[][] parts = {{START + 3 * 86_400, START + 3 * 86_400 + 5}, {START, START + 60, START + 120}};
+        Statistics serial = new Statistics();
+        Statistics merged = new Statistics();
+        for (long[] times : parts) {
+            Statistics part = new Statistics();
+            for (int i = 0; i < times.length; i++) {
+                serial.addTimeSeries(times[i], i % 2 == 0, 200, 10);
+                part.addTimeSeries(times[i], i % 2 == 0, 200, 10);
+            }
+            merged.merge(part);
+        }
+        Checks.check(serial.getLateEntries() == 3 && merged.getLateEntries() == serial.getLateEntries(),
+                "опоздавших записей после объединения " + merged.getLateEntries() + ", подряд " + serial.getLateEntries());
+    }
+
+    // Пустые ряды: ни интервалов, ни самых загруженных периодов, в том числе после объединения с пустыми
+    static void testEmpty() {
+        TimeRollup rollup = new TimeRollup();
+        rollup.merge(new TimeRollup());
+        LocalDateTime start = LocalDateTime.ofEpochSecond(START, 0, ZoneOffset.UTC);
+        Checks.check(rollup.series(TimeGranularity.MINUTE, START, START + 3600).isEmpty()
+                && rollup.busiest(TimeGranularity.HOUR, 3).isEmpty() && rollup.lateEntries() == 0
+                && new Statistics().getTimeSeries(TimeGranularity.DAY, start, start).isEmpty(), "пустые ряды не пусты");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// TimestampDecoder против OffsetDateTime.parse с DateTimeFormatter
+class TimestampDecoderTest {
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    // Метки подряд идущих строк (повторы берутся из памяти), случайные метки за шесть веков
+    // с любым смещением пояса и пограничные даты
+    static void testMatchesFormatter() {
+        List<String> dates = new ArrayList<>(List.of(TimestampBenchmark.dates(new LogGenerator(42).lines(20_000))));
+        Random random = new Random(6);
+        for (int i = 0; i < 20_000; i++) {
+            long second = -11_000_000_000L + (long) (random.nextDouble() * 22_000_000_000L);
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds((random.nextInt(36) - 18) * 3600 + random.nextInt(4) * 15 * 60);
+            dates.add(FORMAT.format(OffsetDateTime.ofInstant(Instant.ofEpochSecond(second), offset)));
+        }
+        dates.addAll(List.of("29/Feb/2024:23:59:59 -0130", "01/Jan/1970:00:00:00 +0000",
+                "31/Dec/9999:12:00:00 +1800", "15/Mar/1600:06:07:08 -1800"));
+        TimestampDecoder decoder = new TimestampDecoder();
+        for (String date : dates) {
+            OffsetDateTime expected = OffsetDateTime.parse(date, FORMAT);
+            Checks.check(TimestampDecoder.decodeEpochSecond(date, 0, date.length()) == expected.toEpochSecond()
+                            && decoder.decode(date, 0, date.length()) && decoder.epochSecond() == expected.toEpochSecond()
+                            && decoder.offsetSeconds() == expected.getOffset().getTotalSeconds(),
+                    "расхождение для " + date + ": " + decoder.epochSecond());
+        }
+    }
+
+    // Неверные даты отвергаются, в том числе сразу после удачного разбора той же секунды
+    static void testRejectsInvalid() {
+        TimestampDecoder decoder = new TimestampDecoder();
+        for (String invalid : new String[]{"31/Feb/2024:00:00:00 +0000", "29/Feb/2023:00:00:00 +0000",
+                "01/Foo/2024:00:00:00 +0000", "01/Jan/2024:24:00:00 +0000", "01/Jan/2024:00:00:00 +1900",
+                "01/Jan/2024:00:00:00 0000", "1/Jan/2024:00:00:00 +0000", "01/Jan/2024:00:00:00 +00", ""}) {
+            Checks.check(decoder.decode("01/Jan/2024:00:00:00 +0000", 0, 26), "верная дата отвергнута");
+            Checks.check(!decoder.decode(invalid, 0, invalid.length()), "принята неверная дата " + invalid);
+        }
+    }
+
+    // Метки ISO 8601: пустые и короткие значения отвергаются, в том числе сразу после
+    // неудачного разбора и внутри длинной строки, где за концом значения идёт другое поле
+    static void testIso8601() {
+        String line = "2022-09-25T00:00:00Z|2022-09-25T00:00:00Z";
+        for (int end : new int[]{0, 1, 10, 19}) {
+            TimestampDecoder iso = new TimestampDecoder();
+            Checks.check(!iso.decodeIso8601(line, 0, end) && !iso.decodeIso8601(line, 21, 21 + end)
+                    && iso.decodeIso8601(line, 0, 20) && iso.epochSecond() == 1664064000
+                    && !iso.decodeIso8601(line, 21, 21 + end) && !iso.decodeIso8601("", 0, 0),
+                    "принята неверная метка ISO 8601 длиной " + end);
+        }
+        TimestampDecoder iso = new TimestampDecoder();
+        for (String date : new String[]{"2022-09-25T03:00:00+03:00", "2022-09-25T03:00:00+0300",
+                "2022-09-24T23:30:00.250-00:30", "2022-09-25T00:00:00Z"}) {
+            Checks.check(iso.decodeIso8601(date, 0, date.length()) && iso.epochSecond() == 1664064000,
+                    "метка " + date + ": " + iso.epochSecond());
+        }
+    }
+
+    static void testMsec() {
+        TimestampDecoder decoder = new TimestampDecoder();
+        Checks.check(decoder.decodeMsec("1664064000.123", 0, 14) && decoder.epochSecond() == 1664064000
+                && decoder.offsetSeconds() == 0 && decoder.decodeMsec("5", 0, 1) && decoder.epochSecond() == 5
+                && !decoder.decodeMsec("", 0, 0) && !decoder.decodeMsec("1.2.3", 0, 5)
+                && !decoder.decodeMsec("99999999999999999999", 0, 20), "разбор $msec");
+    }
+}
\ No newline at end of file
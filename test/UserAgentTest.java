@@ -0,0 +1,39 @@
+// Автомат правил с кешем UserAgentClassifier против прежней цепочки toLowerCase().contains
+// (UserAgentBenchmark.legacy)
+class UserAgentTest {
+    private static final String[] EDGE_CASES = {
+            "", "-", "WINDOWS", "MacBot", "Mozilla/5.0 (iPad; CPU OS 16_0 like Mac OS X)", "Opera/9.80 (Linux)",
+            "EdgeBrowser", "Googlebot/2.1", "Mozilla/5.0 (X11; Linux x86_64) Chrome/120.0 Safari/537.36 OPR/105.0",
+            "SAFARI", "firefox chrome", "Андроид bot", "İndows",
+    };
+
+    static void testMatchesLegacy() {
+        String[] agents = UserAgentBenchmark.generateAgents(50_000, 3000, 10);
+        UserAgentClassifier classifier = new UserAgentClassifier();
+        for (String[] set : new String[][]{agents, EDGE_CASES}) {
+            for (String agent : set) {
+                // Дважды: второй раз результат берётся из кеша
+                for (int pass = 0; pass < 2; pass++) {
+                    UserAgent actual = classifier.classify(agent, 0, agent.length());
+                    Checks.check(describe(actual).equals(describe(UserAgentBenchmark.legacy(agent))),
+                            describe(actual) + " вместо " + describe(UserAgentBenchmark.legacy(agent)) + " для " + agent);
+                }
+            }
+        }
+    }
+
+    // Классификация части строки - та же, что у отдельной строки
+    static void testClassifiesRange() {
+        UserAgentClassifier classifier = new UserAgentClassifier();
+        for (String agent : UserAgentBenchmark.generateAgents(2_000, 100, 50)) {
+            String line = "\"windows bot\" \"" + agent + "\" \"mac\"";
+            int start = line.indexOf(agent);
+            UserAgent actual = classifier.classify(line, start, start + agent.length());
+            Checks.check(describe(actual).equals(describe(UserAgentBenchmark.legacy(agent))), "часть строки: " + agent);
+        }
+    }
+
+    private static String describe(UserAgent userAgent) {
+        return userAgent.getOs() + "/" + userAgent.getBrowser() + "/" + userAgent.isBot();
+    }
+}
\ No newline at end of file